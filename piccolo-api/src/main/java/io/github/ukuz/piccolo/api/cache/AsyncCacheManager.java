@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.api.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * {@link CacheManager}的异步版本，调用方不会被阻塞，回调可能在IO线程中执行，回调中不要再做阻塞操作
+ *
+ * @author ukuz90
+ */
+public interface AsyncCacheManager {
+
+    CompletionStage<Void> delAsync(String key);
+
+    CompletionStage<Long> hincrByAsync(String key, String field, long value);
+
+    CompletionStage<Void> setAsync(String key, String value);
+
+    CompletionStage<Void> setAsync(String key, String value, int expireTime);
+
+    CompletionStage<String> getAsync(String key);
+
+    <T> CompletionStage<T> getAsync(String key, Class<T> tClass);
+
+    CompletionStage<Void> hsetAsync(String key, String field, String value);
+
+    <T> CompletionStage<T> hgetAsync(String key, String field, Class<T> tClass);
+
+    CompletionStage<Void> hdelAsync(String key, String field);
+
+    CompletionStage<Map<String, String>> hgetAllAsync(String key);
+
+    <T> CompletionStage<Map<String, T>> hgetAllAsync(String key, Class<T> clazz);
+
+    /**
+     * @see CacheManager#hgetAll(Collection, Class)
+     */
+    <T> CompletionStage<Map<String, Map<String, T>>> hgetAllAsync(Collection<String> keys, Class<T> clazz);
+
+    /**
+     * @see CacheManager#evalEach(String, List, List)
+     */
+    CompletionStage<Long> evalEachAsync(String script, List<String> keys, List<List<String>> args);
+
+    CompletionStage<Void> zAddAsync(String key, String field, double score);
+
+    CompletionStage<Long> zCardAsync(String key);
+
+    CompletionStage<Void> zRemAsync(String key, String field);
+
+    /**
+     * @see CacheManager#zUpdate(String, Collection, double, Collection)
+     */
+    CompletionStage<Long> zUpdateAsync(String key, Collection<String> addFields, double score, Collection<String> remFields);
+
+    <T> CompletionStage<List<T>> zrangeAsync(String key, int start, int end, Class<T> clazz);
+
+    CompletionStage<Void> lpushAsync(String key, String... value);
+
+    <T> CompletionStage<List<T>> lrangeAsync(String key, int start, int end, Class<T> clazz);
+
+}
@@ -18,6 +18,7 @@ package io.github.ukuz.piccolo.api.cache;
 import io.github.ukuz.piccolo.api.PiccoloContext;
 import io.github.ukuz.piccolo.api.spi.Spi;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +32,13 @@ public interface CacheManager {
 
     void destroy();
 
+    /**
+     * 同一个缓存的异步视图，阻塞方法只是在其之上等待结果
+     *
+     * @return
+     */
+    AsyncCacheManager async();
+
     void del(String key);
 
     long hincrBy(String key, String field, long value);
@@ -57,12 +65,43 @@ public interface CacheManager {
 
     <T> Map<String, T> hgetAll(String key, Class<T> clazz);
 
+    /**
+     * 批量获取多个hash，不存在的key不会出现在结果中
+     *
+     * @param keys
+     * @param clazz
+     * @param <T>
+     * @return key -> (field -> value)
+     */
+    <T> Map<String, Map<String, T>> hgetAll(Collection<String> keys, Class<T> clazz);
+
+    /**
+     * 对每个key各执行一次lua脚本，通过pipeline批量提交，脚本必须是幂等的
+     *
+     * @param script 只操作KEYS[1]，返回字符串"1"表示成功
+     * @param keys
+     * @param args 与keys一一对应的ARGV
+     * @return 成功的次数
+     */
+    long evalEach(String script, List<String> keys, List<List<String>> args);
+
     void zAdd(String key, String field, double score);
 
     Long zCard(String key);
 
     void zRem(String key, String field);
 
+    /**
+     * 通过pipeline批量添加和删除zset成员，成员按原样写入不做json序列化
+     *
+     * @param key
+     * @param addFields 待添加的成员
+     * @param score 添加成员的score
+     * @param remFields 待删除的成员
+     * @return zset成员数的净变化
+     */
+    long zUpdate(String key, Collection<String> addFields, double score, Collection<String> remFields);
+
     <T> List<T> zrange(String key, int start, int end, Class<T> clazz);
 
     void lpush(String key, String... value);
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.api.cache;
+
+import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.spi.Spi;
+
+/**
+ * 缓存值的编解码，{@link CacheManager}中带类型的读写都经过它
+ *
+ * @author ukuz90
+ */
+@Spi(primary = "json")
+public interface ValueCodec {
+
+    default void init(PiccoloContext piccoloContext) {
+    }
+
+    String encode(Object value);
+
+    /**
+     * @param value 缓存中的原始值，可能为null
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    <T> T decode(String value, Class<T> clazz);
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.api.common;
+
+import io.github.ukuz.piccolo.api.external.common.utils.ClassUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.jar.JarFile;
+
+/**
+ * 读取编译期由piccolo-index生成的索引，classpath中所有同名的索引文件合并读取
+ *
+ * 未经过piccolo-index编译的扩展jar包没有索引，其SPI配置文件仍由SpiLoader扫描合并，
+ * 只有已写入索引的SPI配置文件会被跳过；其配置类同样由PropertiesEnvironment扫描没有索引的jar包(目录)合并
+ *
+ * 通过-Dpiccolo.index.enabled=false可以忽略索引，回退到完全扫描classpath
+ *
+ * @author ukuz90
+ */
+public final class ClassIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassIndex.class);
+
+    public static final String PROPERTIES_INDEX = "META-INF/piccolo/properties.index";
+    public static final String SPI_INDEX = "META-INF/piccolo/spi.index";
+    private static final String SPI_DIR = "META-INF/piccolo/";
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("piccolo.index.enabled", "true"));
+
+    private ClassIndex() {
+    }
+
+    /**
+     * @return 所有@ConfigurationProperties的类名，没有索引时返回空集合
+     */
+    public static Set<String> getProperties() {
+        if (!ENABLED) {
+            return Collections.emptySet();
+        }
+        return new LinkedHashSet<>(readResources(PROPERTIES_INDEX));
+    }
+
+    /**
+     * @param spi SPI接口的类名
+     * @return key -> 实现类名，没有索引时返回null
+     */
+    public static Map<String, String> getExtensions(String spi) {
+        if (!ENABLED) {
+            return null;
+        }
+        return SpiIndexHolder.INDEX.get(spi);
+    }
+
+    /**
+     * @param declaration SPI配置文件的地址
+     * @return 该配置文件所在的jar包(目录)的索引中是否已包含这个SPI
+     */
+    public static boolean isIndexed(URL declaration) {
+        if (!ENABLED) {
+            return false;
+        }
+        return SpiIndexHolder.DECLARATIONS.contains(declaration.toString());
+    }
+
+    /**
+     * @param root classpath中的目录或jar包
+     * @param name 索引文件名
+     * @return 该目录(jar包)中是否包含索引文件
+     */
+    public static boolean hasIndex(File root, String name) {
+        if (!ENABLED) {
+            return false;
+        }
+        if (root.isDirectory()) {
+            return new File(root, name).isFile();
+        }
+        try (JarFile jarFile = new JarFile(root)) {
+            return jarFile.getEntry(name) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void loadSpiIndex(Map<String, Map<String, String>> index, Set<String> declarations) {
+        readResources(SPI_INDEX, (url, line) -> {
+            int keyIndex = line.indexOf(':');
+            int classIndex = line.indexOf('=');
+            if (keyIndex == -1 || classIndex < keyIndex) {
+                LOGGER.warn("illegal spi index: {}", line);
+                return;
+            }
+            String spi = line.substring(0, keyIndex);
+            index.computeIfAbsent(spi, k -> new LinkedHashMap<>())
+                    .putIfAbsent(line.substring(keyIndex + 1, classIndex), line.substring(classIndex + 1));
+            String root = url.toString();
+            declarations.add(root.substring(0, root.length() - SPI_INDEX.length()) + SPI_DIR + spi);
+        });
+    }
+
+    private static List<String> readResources(String name) {
+        List<String> lines = new ArrayList<>();
+        readResources(name, (url, line) -> lines.add(line));
+        return lines;
+    }
+
+    private static void readResources(String name, BiConsumer<URL, String> consumer) {
+        try {
+            Enumeration<URL> urls = ClassUtils.getClassLoader(ClassIndex.class).getResources(name);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                try (BufferedReader br = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        line = line.trim();
+                        if (!line.isEmpty() && !line.startsWith("#")) {
+                            consumer.accept(url, line);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("read index {} failure, cause: {}", name, e);
+        }
+    }
+
+    private static class SpiIndexHolder {
+        private static final Map<String, Map<String, String>> INDEX = new HashMap<>();
+        /**
+         * 已写入索引的SPI配置文件地址
+         */
+        private static final Set<String> DECLARATIONS = new HashSet<>();
+
+        static {
+            loadSpiIndex(INDEX, DECLARATIONS);
+        }
+    }
+}
@@ -26,8 +26,12 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 /**
  * @author ukuz90
@@ -44,6 +48,7 @@ public class ClassPathScanner {
 
     private Set<AnnotationTypeFilter> includes = new HashSet<>();
     private Set<AnnotationTypeFilter> excludes = new HashSet<>();
+    private Predicate<File> rootFilter = root -> true;
 
     public void addIncludeFilter(AnnotationTypeFilter filter) {
         if (excludes.contains(filter)) {
@@ -59,6 +64,14 @@ public class ClassPathScanner {
         excludes.add(filter);
     }
 
+    /**
+     * 只扫描满足条件的classpath根路径(目录或jar包)
+     * @param rootFilter
+     */
+    public void setRootFilter(Predicate<File> rootFilter) {
+        this.rootFilter = rootFilter;
+    }
+
     /**
      * 扫描加载类
      * @param scanPackages
@@ -76,6 +89,13 @@ public class ClassPathScanner {
                 p = StringUtils.uncapitalize(p);
             }
             File baseDir = new File(p);
+            if (!baseDir.exists() || !rootFilter.test(baseDir)) {
+                continue;
+            }
+            if (baseDir.isFile()) {
+                doCandidateInJar(baseDir, scanPackages, result);
+                continue;
+            }
             Path basePath = baseDir.toPath();
             for (String scanPackage : scanPackages) {
                 String scanPath = scanPackage.replace(PACKAGE_SEPARATOR, PATH_SEPARATOR);
@@ -103,6 +123,39 @@ public class ClassPathScanner {
         }
     }
 
+    private void doCandidateInJar(File jar, String[] scanPackages, Set<Class> candidatedClassSet) throws IOException, ClassNotFoundException {
+        Set<String> classNameSet = new HashSet<>();
+        try (JarFile jarFile = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (!name.endsWith(CLASS_EXTENSION)) {
+                    continue;
+                }
+                for (String scanPackage : scanPackages) {
+                    if (name.startsWith(scanPackage.replace(PACKAGE_SEPARATOR, PATH_SEPARATOR) + PATH_SEPARATOR)) {
+                        classNameSet.add(name.substring(0, name.length() - CLASS_EXTENSION.length()).replace(PATH_SEPARATOR, PACKAGE_SEPARATOR));
+                        break;
+                    }
+                }
+            }
+        }
+        if (!classNameSet.isEmpty() && LOGGER.isInfoEnabled()) {
+            LOGGER.info("scan jar: {}", jar.getAbsolutePath());
+        }
+        for (String className : classNameSet) {
+            try {
+                Class clazz = findClassLoader().loadClass(className);
+                if (candidate(clazz)) {
+                    candidatedClassSet.add(clazz);
+                }
+            } catch (LinkageError e) {
+                //jar包中依赖可选组件的类，缺少依赖时跳过
+                LOGGER.debug("skip class: {} cause: {}", className, e.toString());
+            }
+        }
+    }
+
     private boolean candidate(Class clazz) {
         for (AnnotationTypeFilter filter : excludes) {
             if (filter.match(clazz)) {
@@ -32,4 +32,16 @@ public interface ExecutorFactory {
 
     Executor create(String name, Environment environment);
 
+    /**
+     * resize the thread pool created by {@link #create(String, Environment)} at runtime
+     *
+     * @param name
+     * @param coreSize
+     * @param maxSize
+     * @return false if the thread pool was not created or can not be resized
+     */
+    default boolean resize(String name, int coreSize, int maxSize) {
+        return false;
+    }
+
 }
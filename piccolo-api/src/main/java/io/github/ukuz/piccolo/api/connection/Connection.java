@@ -80,6 +80,10 @@ public interface Connection {
 
     void updateLastWriteTime();
 
+    long getLastReadTime();
+
+    long getLastWriteTime();
+
     String getId();
 
 }
@@ -17,6 +17,8 @@ package io.github.ukuz.piccolo.api.connection;
 
 import io.netty.channel.Channel;
 
+import java.util.List;
+
 /**
  * @author ukuz90
  */
@@ -52,6 +54,13 @@ public interface ConnectionManager {
      */
     int getConnectionNum();
 
+    /**
+     * get a snapshot of all connections
+     *
+     * @return
+     */
+    List<Connection> getConnections();
+
     void init();
 
     void destroy();
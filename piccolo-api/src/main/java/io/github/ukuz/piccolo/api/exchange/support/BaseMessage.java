@@ -33,4 +33,13 @@ public interface BaseMessage {
      */
     void setRaw(boolean isRaw);
 
+    /**
+     * 处理该消息后会切换密钥，同一批收到的后续报文需要在该消息处理完之后再解码
+     *
+     * @return
+     */
+    default boolean isCipherBoundary() {
+        return false;
+    }
+
 }
@@ -35,5 +35,20 @@ public abstract class AbstractLoadbalancer implements LoadBalancer {
         return doChoose(serviceInstances);
     }
 
+    @Override
+    public ServiceInstance choose(List<? extends ServiceInstance> serviceInstances, String key) {
+        if (serviceInstances == null || serviceInstances.isEmpty()) {
+            return null;
+        }
+        if (serviceInstances.size() == 1) {
+            return serviceInstances.get(0);
+        }
+        return key == null ? doChoose(serviceInstances) : doChoose(serviceInstances, key);
+    }
+
     protected abstract ServiceInstance doChoose(List<? extends ServiceInstance> serviceInstances);
+
+    protected ServiceInstance doChoose(List<? extends ServiceInstance> serviceInstances, String key) {
+        return doChoose(serviceInstances);
+    }
 }
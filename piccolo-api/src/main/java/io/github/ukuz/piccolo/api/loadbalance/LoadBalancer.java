@@ -28,4 +28,15 @@ public interface LoadBalancer {
 
     ServiceInstance choose(List<? extends ServiceInstance> serviceInstances);
 
+    /**
+     * 按key选择实例，同一个key尽量选择同一个实例，不关心key的实现等同于{@link #choose(List)}
+     *
+     * @param serviceInstances
+     * @param key 例如userId
+     * @return
+     */
+    default ServiceInstance choose(List<? extends ServiceInstance> serviceInstances, String key) {
+        return choose(serviceInstances);
+    }
+
 }
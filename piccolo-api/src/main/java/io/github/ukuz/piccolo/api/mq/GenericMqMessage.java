@@ -46,10 +46,14 @@ public abstract class GenericMqMessage implements MQMessage {
         } catch (IOException e) {
             e.printStackTrace();
         }
-        byte[] bytes = new byte[this.outputStream.getTotalBytesWritten()];
-
-        output.readBytes(bytes);
-        return bytes;
+        try {
+            byte[] bytes = new byte[this.outputStream.getTotalBytesWritten()];
+            output.readBytes(bytes);
+            return bytes;
+        } finally {
+            this.outputStream = null;
+            output.release();
+        }
     }
 
     @Override
@@ -18,6 +18,8 @@ package io.github.ukuz.piccolo.api.mq;
 import io.github.ukuz.piccolo.api.service.Service;
 import io.github.ukuz.piccolo.api.spi.Spi;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author ukuz90
  */
@@ -28,10 +30,33 @@ public interface MQClient extends Service {
 
     void subscribe(String topic, MQMessageReceiver receiver);
 
+    /**
+     * 广播订阅，每个订阅者都能收到topic的全部消息，只消费订阅之后产生的消息，不需要提交位点
+     *
+     * @param topic
+     * @param receiver
+     */
+    default void subscribeBroadcast(String topic, MQMessageReceiver receiver) {
+        subscribe(topic, receiver);
+    }
+
     void publish(String topic, Object message);
 
     void publish(String topic, String key, Object message);
 
+    /**
+     * 异步发布，消息被MQ确认后future完成；MQ暂时无法接收更多消息时以{@link MQBusyException}失败
+     *
+     * @param topic
+     * @param key
+     * @param message
+     * @return
+     */
+    default CompletableFuture<Void> publishAsync(String topic, String key, Object message) {
+        publish(topic, key, message);
+        return CompletableFuture.completedFuture(null);
+    }
+
     void commitMessage(MQMessage message);
 
 }
@@ -76,4 +76,10 @@ public class PushContext {
      */
     private Set<String> tags;
 
+    /**
+     * 用户标签表达式，支持 &amp; | ! 以及括号，例如: vip &amp; (beijing | shanghai) &amp; !android
+     * 与tags同时存在时，优先使用tagExpression
+     */
+    private String tagExpression;
+
 }
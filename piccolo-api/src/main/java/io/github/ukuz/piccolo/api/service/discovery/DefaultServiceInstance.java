@@ -93,6 +93,10 @@ public class DefaultServiceInstance implements ServiceInstance, Registration {
         return metaData;
     }
 
+    public Map<String, String> getMetaData() {
+        return metaData;
+    }
+
     @Override
     public boolean isPersistent() {
         return isPersistent;
@@ -33,6 +33,16 @@ public interface ServiceDiscovery<S extends ServiceInstance> extends Service {
      */
     List<S> lookup(String serviceId);
 
+    /**
+     * the immutable snapshot of serviceId's available instances, with a version which increases on every change
+     *
+     * @param serviceId
+     * @return
+     */
+    default ServiceSnapshot<S> snapshot(String serviceId) {
+        return new ServiceSnapshot<>(serviceId, 0, lookup(serviceId));
+    }
+
     /**
      * subscribe the change of serviceId's instance
      *
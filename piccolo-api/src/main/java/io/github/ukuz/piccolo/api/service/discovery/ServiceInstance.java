@@ -60,6 +60,17 @@ public interface ServiceInstance {
         return null;
     }
 
+    /**
+     * get metadata value by key
+     *
+     * @param key
+     * @return
+     */
+    default String getMetaValue(String key) {
+        Map<String, String> metaData = getMetaData(key);
+        return metaData == null ? null : metaData.get(key);
+    }
+
     /**
      * is serivce instance persistent
      *
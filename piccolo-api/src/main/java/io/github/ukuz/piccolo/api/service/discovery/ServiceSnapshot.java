@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.api.service.discovery;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 某个服务在某一时刻的实例列表，不可变
+ *
+ * 同一服务每次实例发生变化版本号都会递增，调用方可以通过比较版本号判断是否需要重新计算
+ *
+ * @author ukuz90
+ */
+public final class ServiceSnapshot<S extends ServiceInstance> {
+
+    private final String serviceId;
+    private final long version;
+    private final List<S> instances;
+
+    public ServiceSnapshot(String serviceId, long version, List<S> instances) {
+        this.serviceId = serviceId;
+        this.version = version;
+        this.instances = instances == null || instances.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(instances);
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    /**
+     * @return 0表示注册中心不支持版本
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public List<S> getInstances() {
+        return instances;
+    }
+
+    public boolean isEmpty() {
+        return instances.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceSnapshot{" +
+                "serviceId='" + serviceId + '\'' +
+                ", version=" + version +
+                ", instances=" + instances.size() +
+                '}';
+    }
+}
@@ -29,4 +29,13 @@ public interface ServiceRegistry<R extends Registration> extends Service {
 
     void deregistry(R registration);
 
+    /**
+     * 刷新已注册实例的元数据
+     *
+     * @param registration
+     */
+    default void update(R registration) {
+        registry(registration);
+    }
+
 }
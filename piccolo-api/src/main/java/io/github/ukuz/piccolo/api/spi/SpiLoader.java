@@ -17,6 +17,7 @@ package io.github.ukuz.piccolo.api.spi;
 
 import io.github.ukuz.piccolo.api.annotation.AnnotationTypeFilter;
 import io.github.ukuz.piccolo.api.annotation.Order;
+import io.github.ukuz.piccolo.api.common.ClassIndex;
 import io.github.ukuz.piccolo.api.common.Holder;
 import io.github.ukuz.piccolo.api.common.OrderComparator;
 import io.github.ukuz.piccolo.api.external.common.utils.ClassUtils;
@@ -170,6 +171,7 @@ public class SpiLoader<T> {
         Object obj = holder.getValue();
         if (obj == null) {
             synchronized (holder) {
+                obj = holder.getValue();
                 if (obj == null) {
                     try {
                         obj = clazz.newInstance();
@@ -209,6 +211,12 @@ public class SpiLoader<T> {
      */
     private Map<String, Class<T>> loadExtensionClass() {
         Map<String, Class<T>> extensionClassMap = new HashMap<>(16);
+        //优先使用编译期生成的索引，已索引的配置文件不再解析
+        Map<String, String> indexed = ClassIndex.getExtensions(type.getName());
+        if (indexed != null) {
+            indexed.forEach((key, className) -> loadClass(extensionClassMap, key, className));
+        }
+        //合并未经过piccolo-index编译的扩展jar包中的声明
         loadDirectory(extensionClassMap, PLUGIN_SERVICES);
         loadDirectory(extensionClassMap, PLUGIN_PICCOLO);
         return extensionClassMap;
@@ -230,7 +238,7 @@ public class SpiLoader<T> {
             }
             Collections.list(urls)
                     .stream()
-                    .filter(url -> url != null)
+                    .filter(url -> url != null && !ClassIndex.isIndexed(url))
                     .forEach(url -> loadResource(extensionClassMap, url));
         } catch (IOException e) {
             e.printStackTrace();
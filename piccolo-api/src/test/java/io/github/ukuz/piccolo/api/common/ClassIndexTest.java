@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.api.common;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @DisplayName("test_hasIndex_Directory")
+    @Test
+    void testHasIndexDirectory() throws IOException {
+        File root = dir.toFile();
+        assertFalse(ClassIndex.hasIndex(root, ClassIndex.PROPERTIES_INDEX));
+
+        File index = new File(root, ClassIndex.PROPERTIES_INDEX);
+        assertTrue(index.getParentFile().mkdirs());
+        assertTrue(index.createNewFile());
+        assertTrue(ClassIndex.hasIndex(root, ClassIndex.PROPERTIES_INDEX));
+    }
+
+    @DisplayName("test_hasIndex_Jar")
+    @Test
+    void testHasIndexJar() throws IOException {
+        File indexed = newJar("indexed.jar", ClassIndex.PROPERTIES_INDEX);
+        File plugin = newJar("plugin.jar", "io/github/ukuz/piccolo/plugin/PluginProperties.class");
+        assertTrue(ClassIndex.hasIndex(indexed, ClassIndex.PROPERTIES_INDEX));
+        assertFalse(ClassIndex.hasIndex(plugin, ClassIndex.PROPERTIES_INDEX));
+    }
+
+    private File newJar(String name, String entry) throws IOException {
+        File jar = dir.resolve(name).toFile();
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(entry));
+            out.closeEntry();
+        }
+        return jar;
+    }
+}
@@ -22,6 +22,7 @@ import io.github.ukuz.piccolo.api.common.sub.Include;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Set;
@@ -54,6 +55,17 @@ class ClassPathScannerTest {
         assertEquals(ClassWithInclude.class, candidate.iterator().next());
     }
 
+    @DisplayName("test_scan_RootFilter")
+    @Test
+    void testScanRootFilter() throws ClassNotFoundException, IOException {
+        //跳过测试类所在的目录
+        File testClasses = new File(ClassWithInclude.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+        ClassPathScanner scanner = new ClassPathScanner();
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Include.class));
+        scanner.setRootFilter(root -> !root.getAbsoluteFile().equals(testClasses.getAbsoluteFile()));
+        assertTrue(scanner.scan(new String[]{"io.github.ukuz.piccolo.api.common"}).isEmpty());
+    }
+
     @DisplayName("test_scan_WithoutInclude")
     @Test
     void testScanWithoutInclude() throws ClassNotFoundException, IOException {
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.api.spi;
+
+/**
+ * 模拟未经过piccolo-index编译的扩展jar包，声明在测试运行时生成
+ *
+ * @author ukuz90
+ */
+public class PluginGreeting implements Greeting {
+    @Override
+    public String greet() {
+        return "plugin";
+    }
+}
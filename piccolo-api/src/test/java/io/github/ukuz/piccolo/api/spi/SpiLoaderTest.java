@@ -15,10 +15,20 @@
  */
 package io.github.ukuz.piccolo.api.spi;
 
+import io.github.ukuz.piccolo.api.common.ClassIndex;
 import io.github.ukuz.piccolo.api.common.DefaultOrderComparator;
 import io.github.ukuz.piccolo.api.common.OrderComparator;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -129,4 +139,29 @@ class SpiLoaderTest {
         assertEquals("Hello, World!", input.read());
     }
 
+    @SuppressWarnings("unchecked")
+    @DisplayName("test_getExtension_IndexMergeDeclaration")
+    @Test
+    void testGetExtensionIndexMergeDeclaration(@TempDir Path plugin) throws IOException {
+        assertEquals(Collections.singletonMap("indexed", IndexedGreeting.class.getName()),
+                ClassIndex.getExtensions(Greeting.class.getName()));
+        assertTrue(ClassIndex.isIndexed(Thread.currentThread().getContextClassLoader()
+                .getResource("META-INF/piccolo/" + Greeting.class.getName())));
+
+        //没有索引的扩展jar包，只有SPI配置文件
+        Path declaration = plugin.resolve("META-INF/piccolo/" + Greeting.class.getName());
+        Files.createDirectories(declaration.getParent());
+        Files.write(declaration, Collections.singletonList("plugin=" + PluginGreeting.class.getName()), StandardCharsets.UTF_8);
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{plugin.toUri().toURL()}, original)) {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            SpiLoader<Greeting> loader = SpiLoader.getLoader(Greeting.class);
+            assertEquals("indexed", loader.getExtension("indexed").greet());
+            assertEquals("plugin", loader.getExtension("plugin").greet());
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.local;
+
+import io.github.ukuz.piccolo.api.common.utils.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 某个key前缀的本地缓存策略
+ *
+ * @author ukuz90
+ */
+public final class LocalCachePolicy {
+
+    private final String prefix;
+    private final int maximumSize;
+    private final long ttlMs;
+
+    public LocalCachePolicy(String prefix, int maximumSize, long ttlMs) {
+        if (maximumSize <= 0 || ttlMs <= 0) {
+            throw new IllegalArgumentException("invalid local cache policy: " + prefix);
+        }
+        this.prefix = prefix;
+        this.maximumSize = maximumSize;
+        this.ttlMs = ttlMs;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getTtlMs() {
+        return ttlMs;
+    }
+
+    /**
+     * 解析策略配置，结果按前缀长度倒序排列，最长前缀优先匹配
+     *
+     * @param policies prefix1=maximumSize/ttlMs,prefix2=maximumSize/ttlMs
+     * @return
+     */
+    public static List<LocalCachePolicy> parse(String policies) {
+        List<LocalCachePolicy> list = new ArrayList<>();
+        if (!StringUtils.hasText(policies)) {
+            return list;
+        }
+        for (String policy : policies.split(",")) {
+            if (!StringUtils.hasText(policy)) {
+                continue;
+            }
+            int eq = policy.lastIndexOf('=');
+            int slash = policy.lastIndexOf('/');
+            if (eq <= 0 || slash < eq) {
+                throw new IllegalArgumentException("invalid local cache policy: " + policy);
+            }
+            list.add(new LocalCachePolicy(policy.substring(0, eq).trim(),
+                    Integer.parseInt(policy.substring(eq + 1, slash).trim()),
+                    Long.parseLong(policy.substring(slash + 1).trim())));
+        }
+        list.sort(Comparator.comparingInt((LocalCachePolicy p) -> p.prefix.length()).reversed());
+        return list;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.local;
+
+import io.github.ukuz.piccolo.api.config.ConfigurationProperties;
+import io.github.ukuz.piccolo.api.config.Properties;
+import lombok.Data;
+
+/**
+ * @author ukuz90
+ */
+@ConfigurationProperties(prefix = "piccolo.cache.local")
+@Data
+public class LocalCacheProperties implements Properties {
+
+    private Boolean enabled;
+    /**
+     * 按key前缀配置的本地缓存策略，格式: prefix1=maximumSize/ttlMs,prefix2=maximumSize/ttlMs
+     * 例如: piccolo:ur:=100000/30000,piccolo:ouc=1/1000
+     */
+    private String policies;
+    /**
+     * 集群中任意节点在本地缓存的key前缀，逗号分隔，
+     * 写操作命中这些前缀时，即使当前节点没有缓存也需要广播失效通知
+     */
+    private String sharedPrefixes;
+    /**
+     * 失效通知攒批发送的间隔
+     */
+    private Integer invalidateLingerMs;
+
+    public boolean isEnabled() {
+        return enabled != null && enabled;
+    }
+
+    public int getInvalidateLingerMs() {
+        return invalidateLingerMs != null && invalidateLingerMs > 0 ? invalidateLingerMs : 20;
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.local;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有容量以及过期时间上限的本地缓存，按W-TinyLFU淘汰:
+ * 1. 新写入的key先进入window(LRU，占1%)
+ * 2. 被挤出window的key进入main的probation段，与probation段最久未访问的key比较访问频率，频率高的留下
+ * 3. probation段中再次被访问的key晋升到protected段(占main的80%)，protected段满了则降级最久未访问的key
+ *
+ * 按key的hash分段加锁，每段各自维护频率统计
+ *
+ * @author ukuz90
+ */
+public class TinyLfuCache<V> {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 64;
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+    private final long ttlMs;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public TinyLfuCache(int maximumSize, long ttlMs) {
+        int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maximumSize / MIN_SEGMENT_SIZE)));
+        this.segments = new Segment[count];
+        this.segmentMask = count - 1;
+        this.ttlMs = ttlMs;
+        int segmentSize = Math.max(1, maximumSize / count);
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(segmentSize);
+        }
+    }
+
+    public V get(String key) {
+        int hash = spread(key.hashCode());
+        V value = segmentOf(hash).get(key, hash, System.currentTimeMillis());
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    public void put(String key, V value) {
+        int hash = spread(key.hashCode());
+        int evicted = segmentOf(hash).put(key, hash, value, System.currentTimeMillis() + ttlMs);
+        if (evicted > 0) {
+            evictions.add(evicted);
+        }
+    }
+
+    public void invalidate(String key) {
+        int hash = spread(key.hashCode());
+        segmentOf(hash).invalidate(key);
+    }
+
+    public void invalidateAll() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private Segment<V> segmentOf(int hash) {
+        return segments[(hash >>> 16) & segmentMask];
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 17;
+        h *= 0xed5ad4bb;
+        h ^= h >>> 11;
+        h *= 0xac4c1b51;
+        h ^= h >>> 15;
+        return h;
+    }
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static final class Node<V> {
+        final String key;
+        final int hash;
+        V value;
+        long expireAt;
+        int queue;
+        Node<V> prev;
+        Node<V> next;
+
+        Node(String key, int hash) {
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * 带哨兵的双向链表，头部为最久未访问
+     */
+    private static final class AccessQueue<V> {
+        final Node<V> head = new Node<>(null, 0);
+        int size;
+
+        AccessQueue() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        Node<V> first() {
+            return head.next == head ? null : head.next;
+        }
+
+        void addLast(Node<V> node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+            size++;
+        }
+
+        void remove(Node<V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToLast(Node<V> node) {
+            remove(node);
+            addLast(node);
+        }
+    }
+
+    private static final class Segment<V> {
+        private final Map<String, Node<V>> data = new HashMap<>();
+        @SuppressWarnings("unchecked")
+        private final AccessQueue<V>[] queues = new AccessQueue[]{new AccessQueue<>(), new AccessQueue<>(), new AccessQueue<>()};
+        private final FrequencySketch sketch;
+        private final int windowMax;
+        private final int mainMax;
+        private final int protectedMax;
+
+        Segment(int maximumSize) {
+            this.sketch = new FrequencySketch(maximumSize);
+            this.windowMax = Math.max(1, maximumSize / 100);
+            this.mainMax = Math.max(0, maximumSize - windowMax);
+            this.protectedMax = mainMax * 4 / 5;
+        }
+
+        synchronized V get(String key, int hash, long now) {
+            sketch.increment(hash);
+            Node<V> node = data.get(key);
+            if (node == null) {
+                return null;
+            }
+            if (node.expireAt <= now) {
+                remove(node);
+                return null;
+            }
+            onAccess(node);
+            return node.value;
+        }
+
+        /**
+         * @return 淘汰的数量
+         */
+        synchronized int put(String key, int hash, V value, long expireAt) {
+            Node<V> node = data.get(key);
+            if (node != null) {
+                node.value = value;
+                node.expireAt = expireAt;
+                onAccess(node);
+                return 0;
+            }
+            node = new Node<>(key, hash);
+            node.value = value;
+            node.expireAt = expireAt;
+            node.queue = WINDOW;
+            data.put(key, node);
+            queues[WINDOW].addLast(node);
+            if (queues[WINDOW].size <= windowMax) {
+                return 0;
+            }
+            //window满了，最久未访问的key进入probation
+            Node<V> candidate = queues[WINDOW].first();
+            queues[WINDOW].remove(candidate);
+            candidate.queue = PROBATION;
+            queues[PROBATION].addLast(candidate);
+            if (queues[PROBATION].size + queues[PROTECTED].size <= mainMax) {
+                return 0;
+            }
+            evict(candidate);
+            return 1;
+        }
+
+        private void evict(Node<V> candidate) {
+            Node<V> victim = queues[PROBATION].first();
+            if (victim == candidate) {
+                victim = queues[PROTECTED].first();
+            }
+            if (victim == null || sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                remove(victim == null ? candidate : victim);
+            } else {
+                remove(candidate);
+            }
+        }
+
+        private void onAccess(Node<V> node) {
+            switch (node.queue) {
+                case PROBATION:
+                    queues[PROBATION].remove(node);
+                    node.queue = PROTECTED;
+                    queues[PROTECTED].addLast(node);
+                    if (queues[PROTECTED].size > protectedMax) {
+                        Node<V> demoted = queues[PROTECTED].first();
+                        queues[PROTECTED].remove(demoted);
+                        demoted.queue = PROBATION;
+                        queues[PROBATION].addLast(demoted);
+                    }
+                    break;
+                default:
+                    queues[node.queue].moveToLast(node);
+                    break;
+            }
+        }
+
+        private void remove(Node<V> node) {
+            data.remove(node.key);
+            queues[node.queue].remove(node);
+        }
+
+        synchronized void invalidate(String key) {
+            Node<V> node = data.get(key);
+            if (node != null) {
+                remove(node);
+            }
+        }
+
+        synchronized void clear() {
+            for (Node<V> node : data.values().toArray(new Node[0])) {
+                remove(node);
+            }
+        }
+
+        synchronized int size() {
+            return data.size();
+        }
+    }
+}
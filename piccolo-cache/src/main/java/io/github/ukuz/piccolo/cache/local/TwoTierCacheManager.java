@@ -0,0 +1,454 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.local;
+
+import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.cache.AsyncCacheManager;
+import io.github.ukuz.piccolo.api.cache.CacheManager;
+import io.github.ukuz.piccolo.api.common.utils.StringUtils;
+import io.github.ukuz.piccolo.api.mq.MQClient;
+import io.github.ukuz.piccolo.api.mq.MQMessageReceiver;
+import io.github.ukuz.piccolo.api.mq.MQTopic;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.github.ukuz.piccolo.monitor.MetricsMonitor;
+import io.github.ukuz.piccolo.mq.kafka.Topics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在任意{@link CacheManager}(L2)之上增加一层进程内缓存(L1):
+ * 1. 只有匹配{@link LocalCachePolicy}前缀的key才会缓存，每个前缀一个{@link TinyLfuCache}
+ * 2. 缓存的是get/hgetAll的结果，hget从整个hash的缓存中读取，适合field较少的hash
+ * 3. 通过本实例的写操作会使本地缓存失效，命中本地策略或shared-prefixes的key通过MQ广播给其他节点，
+ *    因此只写不读的节点(例如server写路由，client缓存路由)也需要配置shared-prefixes
+ * 4. 加载期间发生过失效的结果不会写入本地缓存，避免缓存旧值
+ *
+ * {@link #async()}直接访问L2，不经过本地缓存，写操作也不会触发失效
+ *
+ * @author ukuz90
+ */
+public class TwoTierCacheManager implements CacheManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TwoTierCacheManager.class);
+
+    private static final String METRICS_TAG = "piccolo_local_cache";
+    private static final int MAX_KEYS_PER_MESSAGE = 512;
+    private static final char KEY_SEPARATOR = '\n';
+
+    private final CacheManager delegate;
+    private final List<LocalCachePolicy> policies = new ArrayList<>();
+    private final List<TinyLfuCache<Cached>> caches = new ArrayList<>();
+    /**
+     * 写操作需要广播失效通知的key前缀
+     */
+    private final List<String> sharedPrefixes = new ArrayList<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final Queue<String> pendingInvalidations = new ConcurrentLinkedQueue<>();
+    private MQClient mqClient;
+    private String topic;
+    private ScheduledThreadPoolExecutor publisher;
+
+    public TwoTierCacheManager(CacheManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void init(PiccoloContext piccoloContext) {
+        delegate.init(piccoloContext);
+        LocalCacheProperties properties = piccoloContext.getProperties(LocalCacheProperties.class);
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (LocalCachePolicy policy : LocalCachePolicy.parse(properties.getPolicies())) {
+            TinyLfuCache<Cached> cache = new TinyLfuCache<>(policy.getMaximumSize(), policy.getTtlMs());
+            policies.add(policy);
+            caches.add(cache);
+            MetricsMonitor.gaugeWithStrongRef(METRICS_TAG, policy.getPrefix(), "hit", cache::getHits);
+            MetricsMonitor.gaugeWithStrongRef(METRICS_TAG, policy.getPrefix(), "miss", cache::getMisses);
+            MetricsMonitor.gaugeWithStrongRef(METRICS_TAG, policy.getPrefix(), "eviction", cache::getEvictions);
+            MetricsMonitor.gaugeWithStrongRef(METRICS_TAG, policy.getPrefix(), "size", cache::size);
+            sharedPrefixes.add(policy.getPrefix());
+        }
+        if (StringUtils.hasText(properties.getSharedPrefixes())) {
+            for (String prefix : properties.getSharedPrefixes().split(",")) {
+                if (StringUtils.hasText(prefix) && !sharedPrefixes.contains(prefix.trim())) {
+                    sharedPrefixes.add(prefix.trim());
+                }
+            }
+        }
+        if (sharedPrefixes.isEmpty()) {
+            return;
+        }
+        mqClient = piccoloContext.getMQClient();
+        if (mqClient != null) {
+            MQTopic mqTopic = new MQTopic(Topics.CACHE_INVALIDATE.getTopic());
+            topic = mqTopic.getTopic();
+            mqClient.addTopicIfNeeded(mqTopic);
+            if (!policies.isEmpty()) {
+                mqClient.subscribeBroadcast(topic, (MQMessageReceiver<byte[]>) (t, message, attachment) -> onInvalidate(message));
+            }
+            publisher = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(ThreadNames.T_CACHE_INVALIDATE));
+            publisher.scheduleWithFixedDelay(this::publishInvalidations,
+                    properties.getInvalidateLingerMs(), properties.getInvalidateLingerMs(), TimeUnit.MILLISECONDS);
+        }
+        LOGGER.info("local cache enabled, policies: {} shared prefixes: {}", properties.getPolicies(), sharedPrefixes);
+    }
+
+    @Override
+    public void destroy() {
+        if (publisher != null) {
+            publisher.shutdown();
+            publishInvalidations();
+        }
+        caches.forEach(TinyLfuCache::invalidateAll);
+        delegate.destroy();
+    }
+
+    @Override
+    public AsyncCacheManager async() {
+        return delegate.async();
+    }
+
+    @Override
+    public void del(String key) {
+        delegate.del(key);
+        invalidate(key);
+    }
+
+    @Override
+    public long hincrBy(String key, String field, long value) {
+        long result = delegate.hincrBy(key, field, value);
+        invalidate(key);
+        return result;
+    }
+
+    @Override
+    public void set(String key, String value) {
+        delegate.set(key, value);
+        invalidate(key);
+    }
+
+    @Override
+    public void set(String key, String value, int expireTime) {
+        delegate.set(key, value, expireTime);
+        invalidate(key);
+    }
+
+    @Override
+    public void set(String key, Object value, int expireTime) {
+        delegate.set(key, value, expireTime);
+        invalidate(key);
+    }
+
+    @Override
+    public String get(String key) {
+        TinyLfuCache<Cached> cache = cacheOf(key);
+        if (cache == null) {
+            return delegate.get(key);
+        }
+        Cached cached = cache.get(key);
+        if (cached != null && cached.matches(null, false)) {
+            return (String) cached.value;
+        }
+        long stamp = generation.get();
+        String value = delegate.get(key);
+        putIfUnchanged(cache, key, new Cached(null, false, value), stamp);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Class<T> tClass) {
+        TinyLfuCache<Cached> cache = cacheOf(key);
+        if (cache == null) {
+            return delegate.get(key, tClass);
+        }
+        Cached cached = cache.get(key);
+        if (cached != null && cached.matches(tClass, false)) {
+            return (T) cached.value;
+        }
+        long stamp = generation.get();
+        T value = delegate.get(key, tClass);
+        putIfUnchanged(cache, key, new Cached(tClass, false, value), stamp);
+        return value;
+    }
+
+    @Override
+    public void hset(String key, String field, String value) {
+        delegate.hset(key, field, value);
+        invalidate(key);
+    }
+
+    @Override
+    public void hset(String key, String field, Object value) {
+        delegate.hset(key, field, value);
+        invalidate(key);
+    }
+
+    @Override
+    public <T> T hget(String key, String field, Class<T> tClass) {
+        if (cacheOf(key) == null) {
+            return delegate.hget(key, field, tClass);
+        }
+        return hgetAll(key, tClass).get(field);
+    }
+
+    @Override
+    public void hdel(String key, String field) {
+        delegate.hdel(key, field);
+        invalidate(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, String> hgetAll(String key) {
+        TinyLfuCache<Cached> cache = cacheOf(key);
+        if (cache == null) {
+            return delegate.hgetAll(key);
+        }
+        Cached cached = cache.get(key);
+        if (cached != null && cached.matches(null, true)) {
+            return (Map<String, String>) cached.value;
+        }
+        long stamp = generation.get();
+        Map<String, String> value = unmodifiable(delegate.hgetAll(key));
+        putIfUnchanged(cache, key, new Cached(null, true, value), stamp);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> hgetAll(String key, Class<T> clazz) {
+        TinyLfuCache<Cached> cache = cacheOf(key);
+        if (cache == null) {
+            return delegate.hgetAll(key, clazz);
+        }
+        Cached cached = cache.get(key);
+        if (cached != null && cached.matches(clazz, true)) {
+            return (Map<String, T>) cached.value;
+        }
+        long stamp = generation.get();
+        Map<String, T> value = unmodifiable(delegate.hgetAll(key, clazz));
+        putIfUnchanged(cache, key, new Cached(clazz, true, value), stamp);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, Map<String, T>> hgetAll(Collection<String> keys, Class<T> clazz) {
+        Map<String, Map<String, T>> result = new HashMap<>(keys.size());
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            TinyLfuCache<Cached> cache = cacheOf(key);
+            Cached cached = cache == null ? null : cache.get(key);
+            if (cached != null && cached.matches(clazz, true)) {
+                Map<String, T> hash = (Map<String, T>) cached.value;
+                if (!hash.isEmpty()) {
+                    result.put(key, hash);
+                }
+            } else {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        long stamp = generation.get();
+        Map<String, Map<String, T>> loaded = delegate.hgetAll(missing, clazz);
+        for (String key : missing) {
+            TinyLfuCache<Cached> cache = cacheOf(key);
+            Map<String, T> hash = loaded.get(key);
+            if (cache != null) {
+                //不存在的key也缓存为空hash
+                hash = unmodifiable(hash == null ? Collections.emptyMap() : hash);
+                putIfUnchanged(cache, key, new Cached(clazz, true, hash), stamp);
+            }
+            if (hash != null && !hash.isEmpty()) {
+                result.put(key, hash);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long evalEach(String script, List<String> keys, List<List<String>> args) {
+        long result = delegate.evalEach(script, keys, args);
+        keys.forEach(this::invalidate);
+        return result;
+    }
+
+    @Override
+    public void zAdd(String key, String field, double score) {
+        delegate.zAdd(key, field, score);
+        invalidate(key);
+    }
+
+    @Override
+    public Long zCard(String key) {
+        return delegate.zCard(key);
+    }
+
+    @Override
+    public void zRem(String key, String field) {
+        delegate.zRem(key, field);
+        invalidate(key);
+    }
+
+    @Override
+    public long zUpdate(String key, Collection<String> addFields, double score, Collection<String> remFields) {
+        long result = delegate.zUpdate(key, addFields, score, remFields);
+        invalidate(key);
+        return result;
+    }
+
+    @Override
+    public <T> List<T> zrange(String key, int start, int end, Class<T> clazz) {
+        return delegate.zrange(key, start, end, clazz);
+    }
+
+    @Override
+    public void lpush(String key, String... value) {
+        delegate.lpush(key, value);
+        invalidate(key);
+    }
+
+    @Override
+    public <T> List<T> lrange(String key, int start, int end, Class<T> clazz) {
+        return delegate.lrange(key, start, end, clazz);
+    }
+
+    private TinyLfuCache<Cached> cacheOf(String key) {
+        for (int i = 0; i < policies.size(); i++) {
+            if (key.startsWith(policies.get(i).getPrefix())) {
+                return caches.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 失效时先递增generation再删除缓存，这里先写入缓存再检查generation，
+     * 两者交错时要么失效删除了刚写入的值，要么这里检查到generation变化后自行删除
+     */
+    private void putIfUnchanged(TinyLfuCache<Cached> cache, String key, Cached cached, long stamp) {
+        if (generation.get() != stamp) {
+            return;
+        }
+        cache.put(key, cached);
+        if (generation.get() != stamp) {
+            cache.invalidate(key);
+        }
+    }
+
+    private void invalidate(String key) {
+        TinyLfuCache<Cached> cache = cacheOf(key);
+        if (cache != null) {
+            generation.incrementAndGet();
+            cache.invalidate(key);
+        }
+        if (publisher != null && isShared(key)) {
+            pendingInvalidations.offer(key);
+        }
+    }
+
+    private boolean isShared(String key) {
+        for (String prefix : sharedPrefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onInvalidate(byte[] message) {
+        String keys = new String(message, StandardCharsets.UTF_8);
+        generation.incrementAndGet();
+        int start = 0;
+        while (start < keys.length()) {
+            int end = keys.indexOf(KEY_SEPARATOR, start);
+            if (end < 0) {
+                end = keys.length();
+            }
+            String key = keys.substring(start, end);
+            TinyLfuCache<Cached> cache = cacheOf(key);
+            if (cache != null) {
+                cache.invalidate(key);
+            }
+            start = end + 1;
+        }
+    }
+
+    private void publishInvalidations() {
+        try {
+            StringBuilder sb = new StringBuilder();
+            int count = 0;
+            String key;
+            while ((key = pendingInvalidations.poll()) != null) {
+                if (count > 0) {
+                    sb.append(KEY_SEPARATOR);
+                }
+                sb.append(key);
+                if (++count >= MAX_KEYS_PER_MESSAGE) {
+                    mqClient.publish(topic, sb.toString());
+                    sb.setLength(0);
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                mqClient.publish(topic, sb.toString());
+            }
+        } catch (Exception e) {
+            LOGGER.error("publish cache invalidation failure, cause: {}", e);
+        }
+    }
+
+    private static <K, V> Map<K, V> unmodifiable(Map<K, V> map) {
+        return map == null || map.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 本地缓存的值，同一个key只会以一种方式读取(get/hgetAll以及类型)，方式不同时视为未命中
+     */
+    private static final class Cached {
+        final Class<?> type;
+        final boolean hash;
+        final Object value;
+
+        Cached(Class<?> type, boolean hash, Object value) {
+            this.type = type;
+            this.hash = hash;
+            this.value = value;
+        }
+
+        boolean matches(Class<?> type, boolean hash) {
+            return this.type == type && this.hash == hash;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.client;
+
+import io.github.ukuz.piccolo.cache.CacheException;
+import io.github.ukuz.piccolo.cache.redis.RedisNode;
+import io.github.ukuz.piccolo.cache.redis.properties.RedisProperties;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.EventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.util.JedisClusterCRC16;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 基于netty的异步redis客户端，每个节点只维护少量多路复用的连接，命令自动pipeline
+ *
+ * standalone: 直连
+ * sentinel: 每次建立连接前通过sentinel查询当前master，故障切换后断开的连接会重连到新的master
+ * cluster: 本地维护slot路由表，遇到MOVED/ASK时重定向并异步刷新路由表
+ *
+ * @author ukuz90
+ */
+public class RedisClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisClient.class);
+
+    private static final int SLOTS = 16384;
+    private static final int MAX_REDIRECTS = 5;
+
+    private final RedisProperties properties;
+    private final List<RedisNode> seeds;
+    private final ConcurrentMap<String, NodeConnections> nodes = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private EventLoopGroup group;
+    private Bootstrap bootstrap;
+    private NodeConnections master;
+    private List<RedisConnection> sentinels;
+    private volatile NodeConnections[] slots;
+
+    public RedisClient(RedisProperties properties) {
+        this.properties = properties;
+        this.seeds = RedisNode.from(properties.getHost());
+    }
+
+    public void start() {
+        group = new NioEventLoopGroup(properties.getIoThreads(), new NamedThreadFactory(ThreadNames.T_REDIS_CLIENT));
+        bootstrap = new Bootstrap()
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, properties.getTimeoutMs());
+
+        if (properties.isCluster()) {
+            seeds.forEach(this::nodeOf);
+            slots = new NodeConnections[SLOTS];
+            join(refreshSlots());
+        } else if (properties.isSentinel()) {
+            sentinels = new ArrayList<>(seeds.size());
+            for (RedisNode sentinel : seeds) {
+                sentinels.add(newConnection(() -> CompletableFuture.completedFuture(sentinel), null, 0));
+            }
+            master = new NodeConnections(this::resolveMaster);
+        } else {
+            RedisNode node = seeds.get(0);
+            master = new NodeConnections(() -> CompletableFuture.completedFuture(node));
+        }
+    }
+
+    public void close() {
+        nodes.values().forEach(NodeConnections::close);
+        if (master != null) {
+            master.close();
+        }
+        if (sentinels != null) {
+            sentinels.forEach(RedisConnection::close);
+        }
+        if (group != null) {
+            group.shutdownGracefully(0, properties.getTimeoutMs(), TimeUnit.MILLISECONDS).syncUninterruptibly();
+        }
+    }
+
+    /**
+     * 当前线程是否是redis的IO线程，IO线程中不能阻塞等待redis的结果
+     *
+     * @return
+     */
+    public boolean inEventLoop() {
+        for (EventExecutor executor : group) {
+            if (executor.inEventLoop()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 执行一条命令
+     *
+     * @param key 用于cluster模式下的路由
+     * @param args 命令以及参数
+     * @return
+     */
+    public CompletableFuture<Object> execute(String key, String... args) {
+        if (!properties.isCluster()) {
+            return master.next().send(args);
+        }
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        send(route(key), args, false, MAX_REDIRECTS, result);
+        return result;
+    }
+
+    private void send(NodeConnections node, String[] args, boolean asking, int redirects, CompletableFuture<Object> result) {
+        RedisCommand command = new RedisCommand(args, asking);
+        node.next().send(command);
+        command.future.whenComplete((reply, cause) -> {
+            if (cause instanceof RedisReplyException && redirects > 0) {
+                RedisReplyException e = (RedisReplyException) cause;
+                if (e.isMoved()) {
+                    NodeConnections target = nodeOf(e.getRedirectAddress());
+                    slots[slotOf(e)] = target;
+                    refreshSlots();
+                    send(target, args, false, redirects - 1, result);
+                    return;
+                }
+                if (e.isAsk()) {
+                    send(nodeOf(e.getRedirectAddress()), args, true, redirects - 1, result);
+                    return;
+                }
+            }
+            if (cause != null) {
+                result.completeExceptionally(cause);
+            } else {
+                result.complete(reply);
+            }
+        });
+    }
+
+    private NodeConnections route(String key) {
+        NodeConnections node = slots[JedisClusterCRC16.getSlot(key)];
+        if (node == null) {
+            //路由表还未就绪，随便发给一个节点，由MOVED重定向
+            node = nodes.values().iterator().next();
+        }
+        return node;
+    }
+
+    private static int slotOf(RedisReplyException e) {
+        String message = e.getMessage();
+        int start = message.indexOf(' ') + 1;
+        return Integer.parseInt(message.substring(start, message.indexOf(' ', start)));
+    }
+
+    /**
+     * 通过CLUSTER SLOTS刷新路由表，同一时间只有一个刷新任务
+     *
+     * @return
+     */
+    private CompletableFuture<Void> refreshSlots() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        refreshSlots(new ArrayList<>(nodes.values()), 0, result);
+        return result.whenComplete((v, cause) -> refreshing.set(false));
+    }
+
+    private void refreshSlots(List<NodeConnections> candidates, int index, CompletableFuture<Void> result) {
+        if (index >= candidates.size()) {
+            result.completeExceptionally(new CacheException("refresh cluster slots failure"));
+            return;
+        }
+        candidates.get(index).next().send("CLUSTER", "SLOTS").whenComplete((reply, cause) -> {
+            if (cause != null) {
+                LOGGER.warn("cluster slots failure, cause: {}", cause.getMessage());
+                refreshSlots(candidates, index + 1, result);
+                return;
+            }
+            NodeConnections[] table = new NodeConnections[SLOTS];
+            for (Object range : (List<?>) reply) {
+                List<?> entry = (List<?>) range;
+                List<?> master = (List<?>) entry.get(2);
+                NodeConnections node = nodeOf(master.get(0) + ":" + master.get(1));
+                for (int slot = ((Long) entry.get(0)).intValue(); slot <= ((Long) entry.get(1)).intValue(); slot++) {
+                    table[slot] = node;
+                }
+            }
+            slots = table;
+            result.complete(null);
+        });
+    }
+
+    /**
+     * 依次询问各个sentinel，返回第一个查询到的master
+     *
+     * @return
+     */
+    private CompletionStage<RedisNode> resolveMaster() {
+        CompletableFuture<RedisNode> result = new CompletableFuture<>();
+        resolveMaster(0, result);
+        return result;
+    }
+
+    private void resolveMaster(int index, CompletableFuture<RedisNode> result) {
+        if (index >= sentinels.size()) {
+            result.completeExceptionally(new CacheException("can not resolve redis master: " + properties.getSentinelMaster()));
+            return;
+        }
+        sentinels.get(index).send("SENTINEL", "get-master-addr-by-name", properties.getSentinelMaster()).whenComplete((reply, cause) -> {
+            if (cause != null || reply == null) {
+                resolveMaster(index + 1, result);
+                return;
+            }
+            List<?> address = (List<?>) reply;
+            result.complete(new RedisNode((String) address.get(0), Integer.parseInt((String) address.get(1))));
+        });
+    }
+
+    private NodeConnections nodeOf(RedisNode node) {
+        return nodeOf(node.getHostAndPort());
+    }
+
+    private NodeConnections nodeOf(String hostAndPort) {
+        return nodes.computeIfAbsent(hostAndPort, key -> {
+            RedisNode node = RedisNode.from(key).get(0);
+            return new NodeConnections(() -> CompletableFuture.completedFuture(node));
+        });
+    }
+
+    private RedisConnection newConnection(Supplier<CompletionStage<RedisNode>> address, String password, int database) {
+        return new RedisConnection(address, bootstrap, group.next(), password, database, properties.getTimeoutMs());
+    }
+
+    private <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.get(properties.getTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            throw new CacheException("redis client start failure", e);
+        }
+    }
+
+    /**
+     * 单个节点上的一组连接，轮询使用
+     */
+    private final class NodeConnections {
+        private final RedisConnection[] connections;
+        private final AtomicInteger index = new AtomicInteger();
+
+        NodeConnections(Supplier<CompletionStage<RedisNode>> address) {
+            int database = properties.getDatabase() == null ? 0 : properties.getDatabase();
+            connections = new RedisConnection[properties.getConnections()];
+            for (int i = 0; i < connections.length; i++) {
+                //cluster模式不支持select
+                connections[i] = newConnection(address, properties.getPassword(), properties.isCluster() ? 0 : database);
+            }
+        }
+
+        RedisConnection next() {
+            return connections[(index.getAndIncrement() & Integer.MAX_VALUE) % connections.length];
+        }
+
+        void close() {
+            for (RedisConnection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一条待发送的redis命令，以RESP数组的形式编码
+ *
+ * @author ukuz90
+ */
+final class RedisCommand {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final String[] ASKING = {"ASKING"};
+
+    final String[] args;
+    final CompletableFuture<Object> future = new CompletableFuture<>();
+    /**
+     * 需要忽略的回复数，ASK重定向时会在命令前附带一条ASKING
+     */
+    int skipReplies;
+    long sentNanos;
+
+    RedisCommand(String[] args) {
+        this(args, false);
+    }
+
+    RedisCommand(String[] args, boolean asking) {
+        this.args = args;
+        this.skipReplies = asking ? 1 : 0;
+    }
+
+    void encode(ByteBuf out) {
+        if (skipReplies > 0) {
+            encode(ASKING, out);
+        }
+        encode(args, out);
+    }
+
+    private static void encode(String[] args, ByteBuf out) {
+        out.writeByte('*');
+        writeLength(args.length, out);
+        for (String arg : args) {
+            byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+            out.writeByte('$');
+            writeLength(bytes.length, out);
+            out.writeBytes(bytes);
+            out.writeBytes(CRLF);
+        }
+    }
+
+    private static void writeLength(int length, ByteBuf out) {
+        ByteBufUtil.writeAscii(out, Integer.toString(length));
+        out.writeBytes(CRLF);
+    }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.client;
+
+import io.github.ukuz.piccolo.cache.CacheException;
+import io.github.ukuz.piccolo.cache.redis.RedisNode;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 与单个redis节点之间的一条长连接，所有调用方共享(多路复用):
+ * 1. 调用方把命令放入MPSC队列，由所属EventLoop一次取出所有排队的命令编码后合并写出，即自动pipeline
+ * 2. redis按请求顺序回复，按FIFO顺序与在途命令一一对应
+ * 3. 连接在第一次发送命令时建立，断开后所有在途/排队的命令失败，下一次发送时重连
+ * 4. 最早的在途命令超时说明连接已经不可用，直接关闭连接
+ *
+ * 每次重连都会创建新的channel，channel上的handler也需要每次新建，再转发给当前连接
+ *
+ * @author ukuz90
+ */
+final class RedisConnection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisConnection.class);
+
+    private static final int MAX_WRITE_BYTES = 64 * 1024;
+    private static final long RECONNECT_BACKOFF_MS = 1000;
+
+    private final Supplier<CompletionStage<RedisNode>> address;
+    private final Bootstrap bootstrap;
+    private final EventLoop eventLoop;
+    private final String password;
+    private final int database;
+    private final long timeoutNanos;
+
+    private final Queue<RedisCommand> pending = PlatformDependent.newMpscQueue();
+    private final ArrayDeque<RedisCommand> inflight = new ArrayDeque<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean connecting = new AtomicBoolean();
+    private volatile Channel channel;
+    private volatile long nextConnectMs;
+    private volatile boolean closed;
+    private ScheduledFuture<?> timeoutChecker;
+
+    RedisConnection(Supplier<CompletionStage<RedisNode>> address, Bootstrap bootstrap, EventLoop eventLoop,
+                    String password, int database, long timeoutMs) {
+        this.address = address;
+        this.eventLoop = eventLoop;
+        this.password = password;
+        this.database = database;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.bootstrap = bootstrap.clone(eventLoop).handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(new RedisReplyDecoder(), new ReplyHandler());
+            }
+        });
+    }
+
+    CompletableFuture<Object> send(String... args) {
+        RedisCommand command = new RedisCommand(args);
+        send(command);
+        return command.future;
+    }
+
+    void send(RedisCommand command) {
+        if (closed) {
+            command.future.completeExceptionally(new CacheException("redis client closed"));
+            return;
+        }
+        pending.offer(command);
+        if (channel == null) {
+            connect();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            eventLoop.execute(this::flush);
+        }
+    }
+
+    void close() {
+        closed = true;
+        Channel ch = channel;
+        if (ch != null) {
+            ch.close();
+        } else {
+            eventLoop.execute(() -> failPending(new CacheException("redis client closed")));
+        }
+    }
+
+    private void connect() {
+        if (!connecting.compareAndSet(false, true)) {
+            return;
+        }
+        //获取到连接权后再次检查，期间其他线程可能已经建立了连接
+        if (channel != null) {
+            connecting.set(false);
+            if (flushScheduled.compareAndSet(false, true)) {
+                eventLoop.execute(this::flush);
+            }
+            return;
+        }
+        if (System.currentTimeMillis() < nextConnectMs) {
+            connecting.set(false);
+            //队列只能在EventLoop中消费
+            eventLoop.execute(() -> failPending(new CacheException("redis unavailable, wait for reconnect")));
+            return;
+        }
+        address.get().whenComplete((node, cause) -> {
+            if (cause != null) {
+                connectFailed(null, cause);
+                return;
+            }
+            bootstrap.connect(node.getHost(), node.getPort()).addListener((ChannelFutureListener) future -> {
+                if (future.isSuccess()) {
+                    connected(future.channel());
+                } else {
+                    connectFailed(node, future.cause());
+                }
+            });
+        });
+    }
+
+    private void connected(Channel ch) {
+        //1. 先于排队的命令发送认证以及select
+        if (!StringUtil.isNullOrEmpty(password)) {
+            handshake(ch, "AUTH", password);
+        }
+        if (database > 0) {
+            handshake(ch, "SELECT", Integer.toString(database));
+        }
+        long checkIntervalMs = Math.max(TimeUnit.NANOSECONDS.toMillis(timeoutNanos) / 2, 100);
+        timeoutChecker = eventLoop.scheduleAtFixedRate(this::checkTimeout, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+        //2. 连接可用后写出排队的命令
+        channel = ch;
+        connecting.set(false);
+        if (closed) {
+            ch.close();
+            return;
+        }
+        flush();
+    }
+
+    private void connectFailed(RedisNode node, Throwable cause) {
+        LOGGER.warn("redis connect failure, node: {} cause: {}", node == null ? null : node.getHostAndPort(), cause.getMessage());
+        nextConnectMs = System.currentTimeMillis() + RECONNECT_BACKOFF_MS;
+        connecting.set(false);
+        eventLoop.execute(() -> failPending(new CacheException("redis connect failure", cause)));
+    }
+
+    private void handshake(Channel ch, String... args) {
+        RedisCommand command = new RedisCommand(args);
+        command.future.whenComplete((reply, cause) -> {
+            if (cause != null) {
+                LOGGER.error("redis {} failure, cause: {}", args[0], cause.getMessage());
+                ch.close();
+            }
+        });
+        ByteBuf buf = ch.alloc().ioBuffer();
+        command.encode(buf);
+        command.sentNanos = System.nanoTime();
+        inflight.add(command);
+        ch.write(buf).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        Channel ch = channel;
+        if (ch == null) {
+            return;
+        }
+        ByteBuf buf = null;
+        ChannelFuture lastWrite = null;
+        RedisCommand command;
+        while ((command = pending.poll()) != null) {
+            if (command.future.isDone()) {
+                continue;
+            }
+            if (buf == null) {
+                buf = ch.alloc().ioBuffer();
+            }
+            command.encode(buf);
+            command.sentNanos = System.nanoTime();
+            inflight.add(command);
+            if (buf.readableBytes() >= MAX_WRITE_BYTES) {
+                lastWrite = ch.write(buf);
+                buf = null;
+            }
+        }
+        if (buf != null) {
+            lastWrite = ch.write(buf);
+        }
+        if (lastWrite != null) {
+            lastWrite.addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            ch.flush();
+        }
+    }
+
+    private void checkTimeout() {
+        RedisCommand oldest = inflight.peek();
+        Channel ch = channel;
+        if (oldest != null && ch != null && System.nanoTime() - oldest.sentNanos > timeoutNanos) {
+            LOGGER.warn("redis command timeout, close connection: {} inflight: {}", ch, inflight.size());
+            ch.close();
+        }
+    }
+
+    private void channelRead(ChannelHandlerContext ctx, Object msg) {
+        RedisCommand command = inflight.peek();
+        if (command == null) {
+            LOGGER.warn("redis reply without command, channel: {}", ctx.channel());
+            return;
+        }
+        if (command.skipReplies > 0) {
+            command.skipReplies--;
+            return;
+        }
+        inflight.poll();
+        if (msg instanceof RedisReplyException) {
+            command.future.completeExceptionally((RedisReplyException) msg);
+        } else {
+            command.future.complete(msg == RedisReplyDecoder.NIL ? null : msg);
+        }
+    }
+
+    private void channelInactive(ChannelHandlerContext ctx) {
+        if (channel != ctx.channel()) {
+            return;
+        }
+        channel = null;
+        if (timeoutChecker != null) {
+            timeoutChecker.cancel(false);
+            timeoutChecker = null;
+        }
+        ClosedChannelException cause = new ClosedChannelException();
+        RedisCommand command;
+        while ((command = inflight.poll()) != null) {
+            command.future.completeExceptionally(new CacheException("redis connection closed", cause));
+        }
+        failPending(new CacheException("redis connection closed", cause));
+    }
+
+    private void failPending(CacheException cause) {
+        RedisCommand command;
+        while ((command = pending.poll()) != null) {
+            command.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 每个channel独有的handler
+     */
+    private final class ReplyHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            RedisConnection.this.channelRead(ctx, msg);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            RedisConnection.this.channelInactive(ctx);
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            LOGGER.warn("redis connection exception, channel: {} cause: {}", ctx.channel(), cause.getMessage());
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.DecoderException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RESP2回复解码:
+ * +OK -> String, -ERR -> {@link RedisReplyException}, :1 -> Long, $n -> String, *n -> List
+ * 空的bulk string/array解码为{@link #NIL}，数组中的空元素为null
+ *
+ * 数据不完整时等待更多数据后从头重新解析
+ *
+ * @author ukuz90
+ */
+public class RedisReplyDecoder extends ByteToMessageDecoder {
+
+    public static final Object NIL = new Object();
+
+    private static final Object INCOMPLETE = new Object();
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        while (in.isReadable()) {
+            int readerIndex = in.readerIndex();
+            Object reply = parse(in);
+            if (reply == INCOMPLETE) {
+                in.readerIndex(readerIndex);
+                return;
+            }
+            out.add(reply == null ? NIL : reply);
+        }
+    }
+
+    private Object parse(ByteBuf in) {
+        if (!in.isReadable()) {
+            return INCOMPLETE;
+        }
+        byte type = in.readByte();
+        int eol = in.indexOf(in.readerIndex(), in.writerIndex(), (byte) '\n');
+        if (eol < 0) {
+            return INCOMPLETE;
+        }
+        switch (type) {
+            case '+':
+                return readLine(in, eol);
+            case '-':
+                return new RedisReplyException(readLine(in, eol));
+            case ':':
+                return readLong(in, eol);
+            case '$':
+                return parseBulkString(in, readLong(in, eol));
+            case '*':
+                return parseArray(in, readLong(in, eol));
+            default:
+                throw new DecoderException("unknown redis reply type: " + (char) type);
+        }
+    }
+
+    private Object parseBulkString(ByteBuf in, long length) {
+        if (length < 0) {
+            return null;
+        }
+        if (in.readableBytes() < length + 2) {
+            return INCOMPLETE;
+        }
+        String value = in.toString(in.readerIndex(), (int) length, StandardCharsets.UTF_8);
+        in.skipBytes((int) length + 2);
+        return value;
+    }
+
+    private Object parseArray(ByteBuf in, long size) {
+        if (size < 0) {
+            return null;
+        }
+        List<Object> list = new ArrayList<>((int) size);
+        for (int i = 0; i < size; i++) {
+            Object element = parse(in);
+            if (element == INCOMPLETE) {
+                return INCOMPLETE;
+            }
+            list.add(element);
+        }
+        return list;
+    }
+
+    private static String readLine(ByteBuf in, int eol) {
+        String line = in.toString(in.readerIndex(), eol - 1 - in.readerIndex(), StandardCharsets.UTF_8);
+        in.readerIndex(eol + 1);
+        return line;
+    }
+
+    private static long readLong(ByteBuf in, int eol) {
+        int end = eol - 1;
+        int i = in.readerIndex();
+        boolean negative = in.getByte(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            byte b = in.getByte(i);
+            if (b < '0' || b > '9') {
+                throw new DecoderException("invalid redis reply number");
+            }
+            value = value * 10 + (b - '0');
+        }
+        in.readerIndex(eol + 1);
+        return negative ? -value : value;
+    }
+}
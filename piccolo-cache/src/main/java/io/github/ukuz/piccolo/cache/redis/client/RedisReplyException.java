@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.client;
+
+import io.github.ukuz.piccolo.cache.CacheException;
+
+/**
+ * redis返回的错误回复(-ERR ...)
+ *
+ * @author ukuz90
+ */
+public class RedisReplyException extends CacheException {
+
+    public RedisReplyException(String message) {
+        super(message);
+    }
+
+    public boolean isNoScript() {
+        return getMessage().startsWith("NOSCRIPT");
+    }
+
+    public boolean isMoved() {
+        return getMessage().startsWith("MOVED ");
+    }
+
+    public boolean isAsk() {
+        return getMessage().startsWith("ASK ");
+    }
+
+    /**
+     * MOVED/ASK重定向的目标节点，格式: MOVED slot host:port
+     *
+     * @return
+     */
+    public String getRedirectAddress() {
+        return getMessage().substring(getMessage().lastIndexOf(' ') + 1);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -19,6 +19,7 @@ package io.github.ukuz.piccolo.cache.redis.connection;
 import io.github.ukuz.piccolo.api.spi.Spi;
 import io.github.ukuz.piccolo.cache.redis.operator.HashOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.ListOperator;
+import io.github.ukuz.piccolo.cache.redis.operator.PipelineOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.ValueOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.ZSetOperator;
 import io.github.ukuz.piccolo.cache.redis.properties.RedisProperties;
@@ -36,6 +37,8 @@ public interface RedisConnectionFactory {
 
     ZSetOperator getZSetOperator(String key);
 
+    PipelineOperator getPipelineOperator();
+
     void destroy();
 
 }
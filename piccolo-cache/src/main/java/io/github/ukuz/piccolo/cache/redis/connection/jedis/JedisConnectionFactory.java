@@ -19,10 +19,12 @@ import io.github.ukuz.piccolo.cache.redis.RedisNode;
 import io.github.ukuz.piccolo.cache.redis.connection.RedisConnectionFactory;
 import io.github.ukuz.piccolo.cache.redis.operator.HashOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.ListOperator;
+import io.github.ukuz.piccolo.cache.redis.operator.PipelineOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.ValueOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.ZSetOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.jedis.JedisHashOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.jedis.JedisListOperator;
+import io.github.ukuz.piccolo.cache.redis.operator.jedis.JedisPipelineOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.jedis.JedisValueOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.jedis.JedisZSetOperator;
 import io.github.ukuz.piccolo.cache.redis.properties.RedisProperties;
@@ -91,6 +93,11 @@ public class JedisConnectionFactory implements RedisConnectionFactory {
         return new JedisZSetOperator(key, getCommands());
     }
 
+    @Override
+    public PipelineOperator getPipelineOperator() {
+        return new JedisPipelineOperator(getCommands());
+    }
+
     private JedisCommands getCommands() {
         if (properties.isCluster()) {
             return getJedisClusterConnection();
@@ -116,7 +123,7 @@ public class JedisConnectionFactory implements RedisConnectionFactory {
                 .map(node -> new HostAndPort(node.getHost(), node.getPort()))
                 .collect(Collectors.toSet());
         int maxAttempts = 5;
-        return new JedisCluster(hostAndPorts, timeout, maxAttempts, properties.getPoolConfig().apply());
+        return new SlotAwareJedisCluster(hostAndPorts, timeout, maxAttempts, properties.getPoolConfig().apply());
     }
 
     private Pool<Jedis> createPool() {
@@ -133,7 +140,7 @@ public class JedisConnectionFactory implements RedisConnectionFactory {
                 shardInfo.getPort(),
                 shardInfo.getSoTimeout(),
                 shardInfo.getPassword(),
-                properties.getDatabase() >= 0 ? properties.getDatabase() : Protocol.DEFAULT_DATABASE);
+                database);
     }
 
     private Pool<Jedis> createRedisSentinelPool() {
@@ -142,16 +149,22 @@ public class JedisConnectionFactory implements RedisConnectionFactory {
                 .map(RedisNode::getHostAndPort)
                 .collect(Collectors.toSet());
 
-        return new JedisSentinelPool(properties.getSentinelMaster(), sentinels, properties.getPoolConfig().apply());
+        return new JedisSentinelPool(properties.getSentinelMaster(), sentinels, properties.getPoolConfig().apply(),
+                timeout, properties.getPassword(), database);
     }
 
     public JedisCluster getJedisClusterConnection() {
         return cluster;
     }
 
+    /**
+     * 连接池创建连接时已经select过database，这里不再每次借出都发送一次SELECT
+     *
+     * @return
+     */
     public Jedis getJedisConnection() {
         Jedis jedis = fetchJedisConnector();
-        if (jedis != null) {
+        if (pool == null && jedis != null && database != Protocol.DEFAULT_DATABASE) {
             jedis.select(database);
         }
         return jedis;
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.connection.jedis;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisSlotBasedConnectionHandler;
+
+import java.util.Set;
+
+/**
+ * 暴露slot到节点连接的映射，用于按节点进行pipeline
+ *
+ * @author ukuz90
+ */
+public class SlotAwareJedisCluster extends JedisCluster {
+
+    public SlotAwareJedisCluster(Set<HostAndPort> nodes, int timeout, int maxAttempts, GenericObjectPoolConfig poolConfig) {
+        super(nodes, timeout, maxAttempts, poolConfig);
+    }
+
+    /**
+     * 获取slot所在节点的连接，使用完需要close归还
+     *
+     * @param slot
+     * @return
+     */
+    public Jedis getConnectionFromSlot(int slot) {
+        return ((JedisSlotBasedConnectionHandler) connectionHandler).getConnectionFromSlot(slot);
+    }
+
+    public void renewSlotCache() {
+        connectionHandler.renewSlotCache();
+    }
+}
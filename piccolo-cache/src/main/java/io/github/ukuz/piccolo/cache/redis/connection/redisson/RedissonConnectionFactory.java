@@ -18,6 +18,7 @@ package io.github.ukuz.piccolo.cache.redis.connection.redisson;
 import io.github.ukuz.piccolo.cache.redis.connection.RedisConnectionFactory;
 import io.github.ukuz.piccolo.cache.redis.operator.HashOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.ListOperator;
+import io.github.ukuz.piccolo.cache.redis.operator.PipelineOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.ValueOperator;
 import io.github.ukuz.piccolo.cache.redis.operator.ZSetOperator;
 import io.github.ukuz.piccolo.cache.redis.properties.RedisProperties;
@@ -60,6 +61,11 @@ public class RedissonConnectionFactory implements RedisConnectionFactory {
         return null;
     }
 
+    @Override
+    public PipelineOperator getPipelineOperator() {
+        return null;
+    }
+
     private Config initConfig(RedisProperties redisProperties) {
         Config config = new Config();
 
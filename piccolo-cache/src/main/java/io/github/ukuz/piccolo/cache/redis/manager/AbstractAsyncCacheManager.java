@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.manager;
+
+import io.github.ukuz.piccolo.api.cache.AsyncCacheManager;
+import io.github.ukuz.piccolo.api.cache.ValueCodec;
+import io.github.ukuz.piccolo.cache.redis.properties.RedisProperties;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
+
+/**
+ * 统一处理值的反序列化以及空参数，子类只需要实现原始的字符串读写
+ *
+ * @author ukuz90
+ */
+public abstract class AbstractAsyncCacheManager implements AsyncCacheManager {
+
+    protected ValueCodec codec;
+
+    public abstract void init(RedisProperties properties);
+
+    public abstract void destroy();
+
+    public void setCodec(ValueCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * 当前线程是否不允许阻塞等待结果
+     *
+     * @return
+     */
+    public boolean inIoThread() {
+        return false;
+    }
+
+    protected abstract CompletionStage<String> hgetAsync(String key, String field);
+
+    protected abstract CompletionStage<Map<String, Map<String, String>>> hgetAllAsync(Collection<String> keys);
+
+    protected abstract CompletionStage<Long> doEvalEachAsync(String script, List<String> keys, List<List<String>> args);
+
+    protected abstract CompletionStage<Long> doZUpdateAsync(String key, Map<String, Double> adds, Collection<String> remFields);
+
+    protected abstract CompletionStage<? extends Collection<String>> zrangeAsync(String key, int start, int end);
+
+    protected abstract CompletionStage<List<String>> lrangeAsync(String key, int start, int end);
+
+    @Override
+    public <T> CompletionStage<T> getAsync(String key, Class<T> tClass) {
+        return getAsync(key).thenApply(value -> codec.decode(value, tClass));
+    }
+
+    @Override
+    public <T> CompletionStage<T> hgetAsync(String key, String field, Class<T> tClass) {
+        return hgetAsync(key, field).thenApply(value -> codec.decode(value, tClass));
+    }
+
+    @Override
+    public <T> CompletionStage<Map<String, T>> hgetAllAsync(String key, Class<T> clazz) {
+        return hgetAllAsync(key).thenApply(map -> decode(map, clazz));
+    }
+
+    @Override
+    public <T> CompletionStage<Map<String, Map<String, T>>> hgetAllAsync(Collection<String> keys, Class<T> clazz) {
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+        return hgetAllAsync(keys).thenApply(map -> {
+            Map<String, Map<String, T>> result = new HashMap<>(map.size());
+            map.forEach((key, hash) -> result.put(key, decode(hash, clazz)));
+            return result;
+        });
+    }
+
+    @Override
+    public CompletionStage<Long> evalEachAsync(String script, List<String> keys, List<List<String>> args) {
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        return doEvalEachAsync(script, keys, args);
+    }
+
+    @Override
+    public CompletionStage<Long> zUpdateAsync(String key, Collection<String> addFields, double score, Collection<String> remFields) {
+        if (addFields.isEmpty() && remFields.isEmpty()) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        Map<String, Double> adds = new HashMap<>(addFields.size());
+        addFields.forEach(field -> adds.put(field, score));
+        return doZUpdateAsync(key, adds, remFields);
+    }
+
+    @Override
+    public <T> CompletionStage<List<T>> zrangeAsync(String key, int start, int end, Class<T> clazz) {
+        return zrangeAsync(key, start, end).thenApply(values -> decode(values, clazz));
+    }
+
+    @Override
+    public <T> CompletionStage<List<T>> lrangeAsync(String key, int start, int end, Class<T> clazz) {
+        return lrangeAsync(key, start, end).thenApply(values -> decode(values, clazz));
+    }
+
+    private <T> Map<String, T> decode(Map<String, String> map, Class<T> clazz) {
+        if (map.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, T> result = new HashMap<>(map.size());
+        map.forEach((k, v) -> result.put(k, codec.decode(v, clazz)));
+        return result;
+    }
+
+    private <T> List<T> decode(Collection<String> values, Class<T> clazz) {
+        return values.stream()
+                .map(v -> codec.decode(v, clazz))
+                .collect(Collectors.toList());
+    }
+}
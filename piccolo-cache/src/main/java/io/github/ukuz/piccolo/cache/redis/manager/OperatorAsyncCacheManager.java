@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.manager;
+
+import io.github.ukuz.piccolo.cache.redis.connection.RedisConnectionFactory;
+import io.github.ukuz.piccolo.cache.redis.properties.RedisProperties;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * 基于jedis/redisson等同步客户端的实现，命令在调用线程中执行，返回已经完成的结果
+ *
+ * @author ukuz90
+ */
+public class OperatorAsyncCacheManager extends AbstractAsyncCacheManager {
+
+    private final RedisConnectionFactory factory;
+
+    public OperatorAsyncCacheManager(RedisConnectionFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public void init(RedisProperties properties) {
+        factory.init(properties);
+    }
+
+    @Override
+    public void destroy() {
+        factory.destroy();
+    }
+
+    @Override
+    public CompletionStage<Void> delAsync(String key) {
+        return run(() -> factory.getValueOperator(key).del());
+    }
+
+    @Override
+    public CompletionStage<Long> hincrByAsync(String key, String field, long value) {
+        return call(() -> factory.getHashOperator(key).incr(field, value));
+    }
+
+    @Override
+    public CompletionStage<Void> setAsync(String key, String value) {
+        return run(() -> factory.getValueOperator(key).set(value));
+    }
+
+    @Override
+    public CompletionStage<Void> setAsync(String key, String value, int expireTime) {
+        return run(() -> factory.getValueOperator(key).setEx(value, expireTime));
+    }
+
+    @Override
+    public CompletionStage<String> getAsync(String key) {
+        return call(() -> (String) factory.getValueOperator(key).get());
+    }
+
+    @Override
+    public CompletionStage<Void> hsetAsync(String key, String field, String value) {
+        return run(() -> factory.getHashOperator(key).set(field, value));
+    }
+
+    @Override
+    protected CompletionStage<String> hgetAsync(String key, String field) {
+        return call(() -> (String) factory.getHashOperator(key).get(field));
+    }
+
+    @Override
+    public CompletionStage<Void> hdelAsync(String key, String field) {
+        return run(() -> factory.getHashOperator(key).del(field));
+    }
+
+    @Override
+    public CompletionStage<Map<String, String>> hgetAllAsync(String key) {
+        return call(() -> factory.getHashOperator(key).getAll());
+    }
+
+    @Override
+    protected CompletionStage<Map<String, Map<String, String>>> hgetAllAsync(Collection<String> keys) {
+        return call(() -> factory.getPipelineOperator().hgetAll(keys));
+    }
+
+    @Override
+    protected CompletionStage<Long> doEvalEachAsync(String script, List<String> keys, List<List<String>> args) {
+        return call(() -> factory.getPipelineOperator().evalEach(script, keys, args));
+    }
+
+    @Override
+    public CompletionStage<Void> zAddAsync(String key, String field, double score) {
+        return run(() -> factory.getZSetOperator(key).zAdd(field, score));
+    }
+
+    @Override
+    public CompletionStage<Long> zCardAsync(String key) {
+        return call(() -> factory.getZSetOperator(key).zCard());
+    }
+
+    @Override
+    public CompletionStage<Void> zRemAsync(String key, String field) {
+        return run(() -> factory.getZSetOperator(key).zRem(field));
+    }
+
+    @Override
+    protected CompletionStage<Long> doZUpdateAsync(String key, Map<String, Double> adds, Collection<String> remFields) {
+        return call(() -> factory.getPipelineOperator().zUpdate(key, adds, remFields));
+    }
+
+    @Override
+    protected CompletionStage<? extends Collection<String>> zrangeAsync(String key, int start, int end) {
+        return call(() -> factory.getZSetOperator(key).zRange(start, end));
+    }
+
+    @Override
+    public CompletionStage<Void> lpushAsync(String key, String... value) {
+        return run(() -> factory.getListOperator(key).lPush(value));
+    }
+
+    @Override
+    protected CompletionStage<List<String>> lrangeAsync(String key, int start, int end) {
+        return call(() -> factory.getListOperator(key).lRange(start, end));
+    }
+
+    private static CompletionStage<Void> run(Runnable runnable) {
+        return call(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    private static <T> CompletionStage<T> call(Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(supplier.get());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.manager;
+
+import io.github.ukuz.piccolo.cache.redis.client.RedisClient;
+import io.github.ukuz.piccolo.cache.redis.client.RedisReplyException;
+import io.github.ukuz.piccolo.cache.redis.operator.jedis.JedisPipelineOperator;
+import io.github.ukuz.piccolo.cache.redis.properties.RedisProperties;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于{@link RedisClient}的实现，并发的命令会被自动合并成pipeline写出，
+ * 批量操作只需要逐条提交，不需要再按节点分组
+ *
+ * @author ukuz90
+ */
+public class PipelinedAsyncCacheManager extends AbstractAsyncCacheManager {
+
+    private static final String SCRIPT_SUCCESS = "1";
+
+    private RedisClient client;
+
+    @Override
+    public void init(RedisProperties properties) {
+        client = new RedisClient(properties);
+        client.start();
+    }
+
+    @Override
+    public void destroy() {
+        client.close();
+    }
+
+    @Override
+    public boolean inIoThread() {
+        return client.inEventLoop();
+    }
+
+    @Override
+    public CompletionStage<Void> delAsync(String key) {
+        return client.execute(key, "DEL", key).thenApply(PipelinedAsyncCacheManager::ignore);
+    }
+
+    @Override
+    public CompletionStage<Long> hincrByAsync(String key, String field, long value) {
+        return client.execute(key, "HINCRBY", key, field, Long.toString(value)).thenApply(Long.class::cast);
+    }
+
+    @Override
+    public CompletionStage<Void> setAsync(String key, String value) {
+        return client.execute(key, "SET", key, value).thenApply(PipelinedAsyncCacheManager::ignore);
+    }
+
+    @Override
+    public CompletionStage<Void> setAsync(String key, String value, int expireTime) {
+        return client.execute(key, "SETEX", key, Integer.toString(expireTime), value).thenApply(PipelinedAsyncCacheManager::ignore);
+    }
+
+    @Override
+    public CompletionStage<String> getAsync(String key) {
+        return client.execute(key, "GET", key).thenApply(String.class::cast);
+    }
+
+    @Override
+    public CompletionStage<Void> hsetAsync(String key, String field, String value) {
+        return client.execute(key, "HSET", key, field, value).thenApply(PipelinedAsyncCacheManager::ignore);
+    }
+
+    @Override
+    protected CompletionStage<String> hgetAsync(String key, String field) {
+        return client.execute(key, "HGET", key, field).thenApply(String.class::cast);
+    }
+
+    @Override
+    public CompletionStage<Void> hdelAsync(String key, String field) {
+        return client.execute(key, "HDEL", key, field).thenApply(PipelinedAsyncCacheManager::ignore);
+    }
+
+    @Override
+    public CompletionStage<Map<String, String>> hgetAllAsync(String key) {
+        return client.execute(key, "HGETALL", key).thenApply(PipelinedAsyncCacheManager::toMap);
+    }
+
+    @Override
+    protected CompletionStage<Map<String, Map<String, String>>> hgetAllAsync(Collection<String> keys) {
+        Map<String, Map<String, String>> result = new HashMap<>(keys.size());
+        CompletableFuture<?>[] futures = new CompletableFuture[keys.size()];
+        int i = 0;
+        for (String key : keys) {
+            futures[i++] = client.execute(key, "HGETALL", key).thenAccept(reply -> {
+                Map<String, String> hash = toMap(reply);
+                if (!hash.isEmpty()) {
+                    synchronized (result) {
+                        result.put(key, hash);
+                    }
+                }
+            });
+        }
+        return CompletableFuture.allOf(futures).thenApply(v -> result);
+    }
+
+    @Override
+    protected CompletionStage<Long> doEvalEachAsync(String script, List<String> keys, List<List<String>> args) {
+        String sha = JedisPipelineOperator.scriptSha(script);
+        AtomicLong success = new AtomicLong();
+        CompletableFuture<?>[] futures = new CompletableFuture[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            List<String> argv = args.get(i);
+            futures[i] = client.execute(key, scriptArgs("EVALSHA", sha, key, argv))
+                    .handle((reply, cause) -> {
+                        //脚本未加载时退化为EVAL，同时也会加载脚本
+                        if (cause != null && unwrap(cause) instanceof RedisReplyException
+                                && ((RedisReplyException) unwrap(cause)).isNoScript()) {
+                            return client.execute(key, scriptArgs("EVAL", script, key, argv));
+                        }
+                        CompletableFuture<Object> future = new CompletableFuture<>();
+                        if (cause != null) {
+                            future.completeExceptionally(cause);
+                        } else {
+                            future.complete(reply);
+                        }
+                        return future;
+                    })
+                    .thenCompose(future -> future)
+                    .thenAccept(reply -> {
+                        if (SCRIPT_SUCCESS.equals(reply)) {
+                            success.incrementAndGet();
+                        }
+                    });
+        }
+        return CompletableFuture.allOf(futures).thenApply(v -> success.get());
+    }
+
+    @Override
+    public CompletionStage<Void> zAddAsync(String key, String field, double score) {
+        return client.execute(key, "ZADD", key, Double.toString(score), field).thenApply(PipelinedAsyncCacheManager::ignore);
+    }
+
+    @Override
+    public CompletionStage<Long> zCardAsync(String key) {
+        return client.execute(key, "ZCARD", key).thenApply(Long.class::cast);
+    }
+
+    @Override
+    public CompletionStage<Void> zRemAsync(String key, String field) {
+        return client.execute(key, "ZREM", key, field).thenApply(PipelinedAsyncCacheManager::ignore);
+    }
+
+    @Override
+    protected CompletionStage<Long> doZUpdateAsync(String key, Map<String, Double> adds, Collection<String> remFields) {
+        CompletableFuture<Long> added = CompletableFuture.completedFuture(0L);
+        CompletableFuture<Long> removed = CompletableFuture.completedFuture(0L);
+        if (!adds.isEmpty()) {
+            List<String> args = new ArrayList<>(2 + adds.size() * 2);
+            args.add("ZADD");
+            args.add(key);
+            adds.forEach((member, score) -> {
+                args.add(Double.toString(score));
+                args.add(member);
+            });
+            added = client.execute(key, args.toArray(new String[0])).thenApply(Long.class::cast);
+        }
+        if (!remFields.isEmpty()) {
+            List<String> args = new ArrayList<>(2 + remFields.size());
+            args.add("ZREM");
+            args.add(key);
+            args.addAll(remFields);
+            removed = client.execute(key, args.toArray(new String[0])).thenApply(Long.class::cast);
+        }
+        return added.thenCombine(removed, (a, r) -> a - r);
+    }
+
+    @Override
+    protected CompletionStage<? extends Collection<String>> zrangeAsync(String key, int start, int end) {
+        return client.execute(key, "ZRANGE", key, Integer.toString(start), Integer.toString(end))
+                .thenApply(PipelinedAsyncCacheManager::toList);
+    }
+
+    @Override
+    public CompletionStage<Void> lpushAsync(String key, String... value) {
+        String[] args = new String[value.length + 2];
+        args[0] = "LPUSH";
+        args[1] = key;
+        System.arraycopy(value, 0, args, 2, value.length);
+        return client.execute(key, args).thenApply(PipelinedAsyncCacheManager::ignore);
+    }
+
+    @Override
+    protected CompletionStage<List<String>> lrangeAsync(String key, int start, int end) {
+        return client.execute(key, "LRANGE", key, Integer.toString(start), Integer.toString(end))
+                .thenApply(PipelinedAsyncCacheManager::toList);
+    }
+
+    private static String[] scriptArgs(String command, String script, String key, List<String> argv) {
+        String[] args = new String[argv.size() + 4];
+        args[0] = command;
+        args[1] = script;
+        args[2] = "1";
+        args[3] = key;
+        for (int i = 0; i < argv.size(); i++) {
+            args[i + 4] = argv.get(i);
+        }
+        return args;
+    }
+
+    private static Throwable unwrap(Throwable cause) {
+        return cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+    }
+
+    private static Void ignore(Object reply) {
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> toList(Object reply) {
+        return reply == null ? Collections.emptyList() : (List<String>) reply;
+    }
+
+    private static Map<String, String> toMap(Object reply) {
+        List<String> list = toList(reply);
+        if (list.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> map = new HashMap<>(list.size());
+        for (int i = 0; i + 1 < list.size(); i += 2) {
+            map.put(list.get(i), list.get(i + 1));
+        }
+        return map;
+    }
+}
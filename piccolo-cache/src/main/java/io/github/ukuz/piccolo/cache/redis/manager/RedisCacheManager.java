@@ -16,143 +16,177 @@
 package io.github.ukuz.piccolo.cache.redis.manager;
 
 import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.cache.AsyncCacheManager;
 import io.github.ukuz.piccolo.api.cache.CacheManager;
+import io.github.ukuz.piccolo.api.cache.ValueCodec;
 import io.github.ukuz.piccolo.api.spi.SpiLoader;
+import io.github.ukuz.piccolo.cache.CacheException;
 import io.github.ukuz.piccolo.cache.redis.connection.RedisConnectionFactory;
 import io.github.ukuz.piccolo.cache.redis.properties.RedisProperties;
-import io.github.ukuz.piccolo.common.json.Jsons;
+import io.github.ukuz.piccolo.common.cache.codec.ValueCodecs;
 import io.github.ukuz.piccolo.common.properties.CoreProperties;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 
 /**
+ * 阻塞版本的缓存，所有操作都委托给{@link AsyncCacheManager}并等待结果:
+ * piccolo.core.cache=netty 时使用自动pipeline的netty客户端，否则使用jedis/redisson等同步客户端
+ *
  * @author ukuz90
  */
 public class RedisCacheManager implements CacheManager {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(RedisCacheManager.class);
-    private RedisConnectionFactory factory;
+    private AbstractAsyncCacheManager async;
+    private ValueCodec codec;
 
     @Override
     public void init(PiccoloContext piccoloContext) {
         CoreProperties properties = piccoloContext.getProperties(CoreProperties.class);
-        factory = SpiLoader.getLoader(RedisConnectionFactory.class).getExtension(properties.getCache());
-        factory.init(piccoloContext.getProperties(RedisProperties.class));
+        if (RedisProperties.CLI_NETTY.equals(properties.getCache())) {
+            async = new PipelinedAsyncCacheManager();
+        } else {
+            async = new OperatorAsyncCacheManager(SpiLoader.getLoader(RedisConnectionFactory.class).getExtension(properties.getCache()));
+        }
+        codec = ValueCodecs.of(piccoloContext);
+        async.setCodec(codec);
+        async.init(piccoloContext.getProperties(RedisProperties.class));
     }
 
     @Override
     public void destroy() {
-        factory.destroy();
+        async.destroy();
+    }
+
+    @Override
+    public AsyncCacheManager async() {
+        return async;
     }
 
     @Override
     public void del(String key) {
-        factory.getValueOperator(key).del();
+        join(async.delAsync(key));
     }
 
     @Override
     public long hincrBy(String key, String field, long value) {
-        return factory.getHashOperator(key).incr(field, value);
+        return join(async.hincrByAsync(key, field, value));
     }
 
     @Override
     public void set(String key, String value) {
-        factory.getValueOperator(key).set(value);
+        join(async.setAsync(key, value));
     }
 
     @Override
     public void set(String key, String value, int expireTime) {
-        factory.getValueOperator(key).setEx(value, expireTime);
+        join(async.setAsync(key, value, expireTime));
     }
 
     @Override
     public void set(String key, Object value, int expireTime) {
-        factory.getValueOperator(key).setEx(Jsons.toJson(value), expireTime);
+        join(async.setAsync(key, codec.encode(value), expireTime));
     }
 
     @Override
     public String get(String key) {
-        return (String) factory.getValueOperator(key).get();
+        return join(async.getAsync(key));
     }
 
     @Override
     public <T> T get(String key, Class<T> tClass) {
-        return Jsons.fromJson((String) factory.getValueOperator(key).get(), tClass);
+        return join(async.getAsync(key, tClass));
     }
 
     @Override
     public void hset(String key, String field, String value) {
-        factory.getHashOperator(key).set(field, value);
+        join(async.hsetAsync(key, field, value));
     }
 
     @Override
     public void hset(String key, String field, Object value) {
-        factory.getHashOperator(key).set(field, Jsons.toJson(value));
+        join(async.hsetAsync(key, field, codec.encode(value)));
     }
 
     @Override
     public <T> T hget(String key, String field, Class<T> tClass) {
-        return Jsons.fromJson((String) factory.getHashOperator(key).get(field), tClass);
+        return join(async.hgetAsync(key, field, tClass));
     }
 
     @Override
     public void hdel(String key, String field) {
-        factory.getHashOperator(key).del(field);
+        join(async.hdelAsync(key, field));
     }
 
     @Override
     public Map<String, String> hgetAll(String key) {
-        return factory.getHashOperator(key).getAll();
+        return join(async.hgetAllAsync(key));
     }
 
     @Override
     public <T> Map<String, T> hgetAll(String key, Class<T> clazz) {
-        Map<String, String> map = hgetAll(key);
-        if (map.isEmpty()) {
-            return Collections.emptyMap();
-        }
-        Map<String, T> result = new HashMap<>(map.size());
-        map.forEach((k, v) -> result.put(k, Jsons.fromJson(v, clazz)) );
-        return result;
+        return join(async.hgetAllAsync(key, clazz));
+    }
+
+    @Override
+    public <T> Map<String, Map<String, T>> hgetAll(Collection<String> keys, Class<T> clazz) {
+        return join(async.hgetAllAsync(keys, clazz));
+    }
+
+    @Override
+    public long evalEach(String script, List<String> keys, List<List<String>> args) {
+        return join(async.evalEachAsync(script, keys, args));
     }
 
     @Override
     public void zAdd(String key, String field, double score) {
-        factory.getZSetOperator(key).zAdd(field, score);
+        join(async.zAddAsync(key, field, score));
     }
 
     @Override
     public Long zCard(String key) {
-        return factory.getZSetOperator(key).zCard();
+        return join(async.zCardAsync(key));
     }
 
     @Override
     public void zRem(String key, String field) {
-        factory.getZSetOperator(key).zRem(field);
+        join(async.zRemAsync(key, field));
+    }
+
+    @Override
+    public long zUpdate(String key, Collection<String> addFields, double score, Collection<String> remFields) {
+        return join(async.zUpdateAsync(key, addFields, score, remFields));
     }
 
     @Override
     public <T> List<T> zrange(String key, int start, int end, Class<T> clazz) {
-        Set<String> tmpResult = factory.getZSetOperator(key).zRange(start, end);
-        return tmpResult.stream()
-                .map(v -> Jsons.fromJson(v, clazz))
-                .collect(Collectors.toList());
+        return join(async.zrangeAsync(key, start, end, clazz));
     }
 
     @Override
     public void lpush(String key, String... value) {
-        factory.getListOperator(key).lPush(value);
+        join(async.lpushAsync(key, value));
     }
 
     @Override
     public <T> List<T> lrange(String key, int start, int end, Class<T> clazz) {
-        List<String> tmpResult = factory.getListOperator(key).lRange(start, end);
-        return tmpResult.stream()
-                .map(v -> Jsons.fromJson(v, clazz))
-                .collect(Collectors.toList());
+        return join(async.lrangeAsync(key, start, end, clazz));
+    }
+
+    private <T> T join(CompletionStage<T> stage) {
+        if (async.inIoThread()) {
+            throw new IllegalStateException("blocking cache call in redis io thread, use async() instead");
+        }
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CacheException) {
+                throw (CacheException) cause;
+            }
+            throw new CacheException("redis call failure", cause);
+        }
     }
 }
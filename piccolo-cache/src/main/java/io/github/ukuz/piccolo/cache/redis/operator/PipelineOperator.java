@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.operator;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨多个key的批量操作，通过pipeline减少网络往返
+ *
+ * @author ukuz90
+ */
+public interface PipelineOperator {
+
+    /**
+     * 批量获取多个hash，不存在的key不会出现在结果中
+     *
+     * @param keys
+     * @return key -> (field -> value)
+     */
+    Map<String, Map<String, String>> hgetAll(Collection<String> keys);
+
+    /**
+     * 在同一个pipeline中对zset批量添加和删除成员
+     *
+     * @param key
+     * @param adds 待添加的成员及score
+     * @param removes 待删除的成员
+     * @return zset成员数的净变化
+     */
+    long zUpdate(String key, Map<String, Double> adds, Collection<String> removes);
+
+    /**
+     * 对每个key各执行一次lua脚本，集群模式下按slot所在节点合并为pipeline
+     * 脚本必须是幂等的，部分失败或迁移时可能会被重复执行
+     *
+     * @param script 只操作KEYS[1]，返回字符串
+     * @param keys
+     * @param args 与keys一一对应的ARGV
+     * @return 脚本返回"1"的次数
+     */
+    long evalEach(String script, List<String> keys, List<List<String>> args);
+
+}
@@ -37,7 +37,6 @@ public abstract class JedisOperator {
     }
 
     public void run(Consumer<JedisCommands> consumer) {
-        LOGGER.info("redis run");
         try {
             consumer.accept(commands);
         } catch (Exception e) {
@@ -51,7 +50,6 @@ public abstract class JedisOperator {
     }
 
     public <T> T call(Function<JedisCommands, T> function) {
-        LOGGER.info("redis call");
         try {
             return function.apply(commands);
         } catch (Exception e) {
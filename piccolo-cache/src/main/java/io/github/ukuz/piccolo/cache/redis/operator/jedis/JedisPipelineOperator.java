@@ -0,0 +1,261 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.operator.jedis;
+
+import io.github.ukuz.piccolo.cache.redis.connection.jedis.SlotAwareJedisCluster;
+import io.github.ukuz.piccolo.cache.redis.operator.PipelineOperator;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClusterInfoCache;
+import redis.clients.jedis.JedisCommands;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.JedisClusterCRC16;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @author ukuz90
+ */
+public class JedisPipelineOperator extends JedisOperator implements PipelineOperator {
+
+    private static final String SCRIPT_SUCCESS = "1";
+    private static final ConcurrentMap<String, String> SCRIPT_SHA = new ConcurrentHashMap<>();
+
+    public JedisPipelineOperator(JedisCommands jedisCommands) {
+        super(jedisCommands);
+    }
+
+    @Override
+    public Map<String, Map<String, String>> hgetAll(Collection<String> keys) {
+        return call(commands -> {
+            if (commands instanceof SlotAwareJedisCluster) {
+                return clusterHgetAll((SlotAwareJedisCluster) commands, keys);
+            }
+            Map<String, Map<String, String>> result = new HashMap<>(keys.size());
+            pipelineHgetAll((Jedis) commands, keys, result);
+            return result;
+        });
+    }
+
+    @Override
+    public long zUpdate(String key, Map<String, Double> adds, Collection<String> removes) {
+        String[] members = removes.toArray(new String[0]);
+        return call(commands -> {
+            if (commands instanceof SlotAwareJedisCluster) {
+                SlotAwareJedisCluster cluster = (SlotAwareJedisCluster) commands;
+                try (Jedis jedis = cluster.getConnectionFromSlot(JedisClusterCRC16.getSlot(key))) {
+                    return pipelineZUpdate(jedis, key, adds, members);
+                } catch (Exception e) {
+                    //迁移中(MOVED/ASK)，退化为逐条命令
+                    cluster.renewSlotCache();
+                    long added = adds.isEmpty() ? 0 : cluster.zadd(key, adds);
+                    long removed = members.length == 0 ? 0 : cluster.zrem(key, members);
+                    return added - removed;
+                }
+            }
+            return pipelineZUpdate((Jedis) commands, key, adds, members);
+        });
+    }
+
+    @Override
+    public long evalEach(String script, List<String> keys, List<List<String>> args) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        String sha = scriptSha(script);
+        return call(commands -> {
+            if (!(commands instanceof SlotAwareJedisCluster)) {
+                List<Integer> indexes = new ArrayList<>(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    indexes.add(i);
+                }
+                return pipelineEval((Jedis) commands, script, sha, keys, args, indexes);
+            }
+            SlotAwareJedisCluster cluster = (SlotAwareJedisCluster) commands;
+            Map<String, Jedis> nodeConnections = new HashMap<>();
+            try {
+                Map<String, List<Integer>> nodeIndexes = groupByNode(cluster, keys, nodeConnections);
+                long success = 0;
+                for (Map.Entry<String, List<Integer>> entry : nodeIndexes.entrySet()) {
+                    try {
+                        success += pipelineEval(nodeConnections.get(entry.getKey()), script, sha, keys, args, entry.getValue());
+                    } catch (Exception e) {
+                        //迁移中(MOVED/ASK)，退化为逐条执行，脚本幂等，已经执行过的不受影响
+                        cluster.renewSlotCache();
+                        for (int i : entry.getValue()) {
+                            if (SCRIPT_SUCCESS.equals(cluster.eval(script, keys.subList(i, i + 1), args.get(i)))) {
+                                success++;
+                            }
+                        }
+                    }
+                }
+                return success;
+            } finally {
+                nodeConnections.values().forEach(Jedis::close);
+            }
+        });
+    }
+
+    private long pipelineEval(Jedis jedis, String script, String sha, List<String> keys, List<List<String>> args, List<Integer> indexes) {
+        for (int attempt = 0; ; attempt++) {
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<String>> responses = new ArrayList<>(indexes.size());
+            for (int i : indexes) {
+                responses.add(pipeline.evalsha(sha, keys.subList(i, i + 1), args.get(i)));
+            }
+            pipeline.sync();
+            long success = 0;
+            boolean noScript = false;
+            for (Response<String> response : responses) {
+                try {
+                    if (SCRIPT_SUCCESS.equals(response.get())) {
+                        success++;
+                    }
+                } catch (JedisDataException e) {
+                    if (attempt > 0 || e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT")) {
+                        throw e;
+                    }
+                    noScript = true;
+                }
+            }
+            if (!noScript) {
+                return success;
+            }
+            //脚本未加载，加载后整批重新执行
+            jedis.scriptLoad(script);
+        }
+    }
+
+    /**
+     * 脚本的SHA1，用于EVALSHA
+     *
+     * @param script
+     * @return
+     */
+    public static String scriptSha(String script) {
+        return SCRIPT_SHA.computeIfAbsent(script, JedisPipelineOperator::sha1);
+    }
+
+    private static String sha1(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long pipelineZUpdate(Jedis jedis, String key, Map<String, Double> adds, String[] members) {
+        Pipeline pipeline = jedis.pipelined();
+        Response<Long> added = adds.isEmpty() ? null : pipeline.zadd(key, adds);
+        Response<Long> removed = members.length == 0 ? null : pipeline.zrem(key, members);
+        pipeline.sync();
+        return (added == null ? 0 : added.get()) - (removed == null ? 0 : removed.get());
+    }
+
+    private Map<String, Map<String, String>> clusterHgetAll(SlotAwareJedisCluster cluster, Collection<String> keys) {
+        //1. 按slot分组
+        Map<Integer, List<String>> slotKeys = new HashMap<>();
+        for (String key : keys) {
+            slotKeys.computeIfAbsent(JedisClusterCRC16.getSlot(key), s -> new ArrayList<>()).add(key);
+        }
+        //2. 同一节点上的slot合并为一个pipeline
+        Map<String, Jedis> nodeConnections = new HashMap<>();
+        Map<String, List<String>> nodeKeys = new HashMap<>();
+        Map<Integer, Jedis> unused = new HashMap<>();
+        try {
+            slotKeys.forEach((slot, list) -> {
+                Jedis jedis = cluster.getConnectionFromSlot(slot);
+                String node = JedisClusterInfoCache.getNodeKey(jedis);
+                if (nodeConnections.putIfAbsent(node, jedis) != null) {
+                    unused.put(slot, jedis);
+                }
+                nodeKeys.computeIfAbsent(node, n -> new ArrayList<>()).addAll(list);
+            });
+            unused.values().forEach(Jedis::close);
+            unused.clear();
+
+            Map<String, Map<String, String>> result = new HashMap<>(keys.size());
+            nodeKeys.forEach((node, list) -> {
+                try {
+                    pipelineHgetAll(nodeConnections.get(node), list, result);
+                } catch (Exception e) {
+                    //迁移中(MOVED/ASK)，退化为逐个查询
+                    cluster.renewSlotCache();
+                    for (String key : list) {
+                        Map<String, String> value = cluster.hgetAll(key);
+                        if (value != null && !value.isEmpty()) {
+                            result.put(key, value);
+                        }
+                    }
+                }
+            });
+            return result;
+        } finally {
+            unused.values().forEach(Jedis::close);
+            nodeConnections.values().forEach(Jedis::close);
+        }
+    }
+
+    /**
+     * 按slot所在节点对keys的下标分组，每个节点只保留一个连接放入nodeConnections，由调用方负责close
+     */
+    private Map<String, List<Integer>> groupByNode(SlotAwareJedisCluster cluster, List<String> keys, Map<String, Jedis> nodeConnections) {
+        Map<Integer, List<Integer>> slotIndexes = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            slotIndexes.computeIfAbsent(JedisClusterCRC16.getSlot(keys.get(i)), s -> new ArrayList<>()).add(i);
+        }
+        Map<String, List<Integer>> nodeIndexes = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : slotIndexes.entrySet()) {
+            Jedis jedis = cluster.getConnectionFromSlot(entry.getKey());
+            String node = JedisClusterInfoCache.getNodeKey(jedis);
+            if (nodeConnections.putIfAbsent(node, jedis) != null) {
+                jedis.close();
+            }
+            nodeIndexes.computeIfAbsent(node, n -> new ArrayList<>()).addAll(entry.getValue());
+        }
+        return nodeIndexes;
+    }
+
+    private void pipelineHgetAll(Jedis jedis, Collection<String> keys, Map<String, Map<String, String>> result) {
+        Pipeline pipeline = jedis.pipelined();
+        Map<String, Response<Map<String, String>>> responses = new HashMap<>(keys.size());
+        for (String key : keys) {
+            responses.put(key, pipeline.hgetAll(key));
+        }
+        pipeline.sync();
+        responses.forEach((key, response) -> {
+            Map<String, String> value = response.get();
+            if (value != null && !value.isEmpty()) {
+                result.put(key, value);
+            }
+        });
+    }
+}
@@ -32,13 +32,14 @@ public class RedisProperties implements Properties {
 
     public static final String CLI_JEDIS = "jedis";
     public static final String CLI_REDISSON = "redisson";
+    public static final String CLI_NETTY = "netty";
 
     public static final String MODE_STANDALONE = "standalone";
     public static final String MODE_SENTINEL = "sentinel";
     public static final String MODE_CLUSTER = "cluster";
 
     /**
-     * client (eg: jedis / redisson)
+     * client (eg: jedis / redisson / netty)
      */
     private String cli = CLI_JEDIS;
     /**
@@ -58,6 +59,31 @@ public class RedisProperties implements Properties {
 
     private RedisPoolNestedConfig poolConfig;
 
+    /**
+     * netty客户端每个节点的连接数，连接是多路复用的，少量连接即可 (default 2)
+     */
+    private Integer connections;
+    /**
+     * netty客户端的IO线程数 (default 1)
+     */
+    private Integer ioThreads;
+    /**
+     * netty客户端连接以及命令的超时时间 (default 3000ms)
+     */
+    private Integer timeoutMs;
+
+    public int getConnections() {
+        return connections != null && connections > 0 ? connections : 2;
+    }
+
+    public int getIoThreads() {
+        return ioThreads != null && ioThreads > 0 ? ioThreads : 1;
+    }
+
+    public int getTimeoutMs() {
+        return timeoutMs != null && timeoutMs > 0 ? timeoutMs : 3000;
+    }
+
     public boolean isSentinel() {
         return MODE_SENTINEL.equals(mode) && !StringUtil.isNullOrEmpty(sentinelMaster);
     }
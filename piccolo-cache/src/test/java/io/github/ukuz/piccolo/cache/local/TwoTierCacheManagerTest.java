@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.local;
+
+import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.cache.CacheManager;
+import io.github.ukuz.piccolo.api.mq.MQClient;
+import io.github.ukuz.piccolo.api.mq.MQMessageReceiver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author ukuz90
+ */
+public class TwoTierCacheManagerTest {
+
+    private CacheManager delegate;
+    private MQClient mqClient;
+    private TwoTierCacheManager cacheManager;
+    private MQMessageReceiver<byte[]> receiver;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        delegate = mock(CacheManager.class);
+        mqClient = mock(MQClient.class);
+        PiccoloContext context = mock(PiccoloContext.class);
+        LocalCacheProperties properties = new LocalCacheProperties();
+        properties.setEnabled(true);
+        properties.setPolicies("piccolo:ur:=100/60000");
+        properties.setInvalidateLingerMs(1);
+        when(context.getProperties(LocalCacheProperties.class)).thenReturn(properties);
+        when(context.getMQClient()).thenReturn(mqClient);
+
+        cacheManager = new TwoTierCacheManager(delegate);
+        cacheManager.init(context);
+
+        ArgumentCaptor<MQMessageReceiver> captor = ArgumentCaptor.forClass(MQMessageReceiver.class);
+        verify(mqClient).subscribeBroadcast(eq("piccolo.cache-invalidate"), captor.capture());
+        receiver = captor.getValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cacheManager.destroy();
+    }
+
+    @Test
+    @DisplayName("test_readThroughAndInvalidate")
+    void testReadThroughAndInvalidate() {
+        when(delegate.hgetAll("piccolo:ur:1", String.class)).thenReturn(Collections.singletonMap("1", "a"));
+
+        assertEquals("a", cacheManager.hget("piccolo:ur:1", "1", String.class));
+        assertEquals(Collections.singletonMap("1", "a"), cacheManager.hgetAll("piccolo:ur:1", String.class));
+        assertTrue(cacheManager.hgetAll(Collections.singletonList("piccolo:ur:1"), String.class).containsKey("piccolo:ur:1"));
+        verify(delegate, times(1)).hgetAll("piccolo:ur:1", String.class);
+
+        //不匹配任何策略的key直接访问L2
+        cacheManager.get("piccolo:sk:1");
+        cacheManager.get("piccolo:sk:1");
+        verify(delegate, times(2)).get("piccolo:sk:1");
+
+        cacheManager.hset("piccolo:ur:1", "1", "b");
+        cacheManager.hgetAll("piccolo:ur:1", String.class);
+        verify(delegate, times(2)).hgetAll("piccolo:ur:1", String.class);
+        verify(mqClient, timeout(1000)).publish("piccolo.cache-invalidate", "piccolo:ur:1");
+        verify(mqClient, never()).publish(anyString(), eq("piccolo:sk:1"));
+    }
+
+    @Test
+    @DisplayName("test_remoteInvalidate")
+    void testRemoteInvalidate() {
+        when(delegate.get("piccolo:ur:1")).thenReturn("a");
+        when(delegate.get("piccolo:ur:2")).thenReturn("b");
+        cacheManager.get("piccolo:ur:1");
+        cacheManager.get("piccolo:ur:2");
+        cacheManager.get("piccolo:ur:1");
+        verify(delegate, times(1)).get("piccolo:ur:1");
+
+        receiver.receive("piccolo.cache-invalidate", "piccolo:ur:1\npiccolo:ur:3".getBytes(StandardCharsets.UTF_8));
+        cacheManager.get("piccolo:ur:1");
+        cacheManager.get("piccolo:ur:2");
+        verify(delegate, times(2)).get("piccolo:ur:1");
+        verify(delegate, times(1)).get("piccolo:ur:2");
+        verify(mqClient, never()).publish(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("test_sharedPrefixInvalidate")
+    @SuppressWarnings("unchecked")
+    void testSharedPrefixInvalidate() {
+        //两个节点共享同一个L2和MQ，写节点本地不缓存路由，读节点缓存路由
+        List<MQMessageReceiver<byte[]>> receivers = new CopyOnWriteArrayList<>();
+        MQClient bus = mock(MQClient.class);
+        doAnswer(invocation -> receivers.add(invocation.getArgument(1)))
+                .when(bus).subscribeBroadcast(anyString(), any(MQMessageReceiver.class));
+        doAnswer(invocation -> {
+            byte[] message = ((String) invocation.getArgument(1)).getBytes(StandardCharsets.UTF_8);
+            receivers.forEach(r -> r.receive(invocation.getArgument(0), message));
+            return null;
+        }).when(bus).publish(anyString(), any());
+
+        TwoTierCacheManager writer = newNode(bus, "piccolo:ouc=1/1000", "piccolo:ur:");
+        TwoTierCacheManager reader = newNode(bus, "piccolo:ur:=100/60000", null);
+        try {
+            when(delegate.hgetAll("piccolo:ur:1", String.class)).thenReturn(Collections.singletonMap("1", "a"));
+            reader.hgetAll("piccolo:ur:1", String.class);
+            reader.hgetAll("piccolo:ur:1", String.class);
+            verify(delegate, times(1)).hgetAll("piccolo:ur:1", String.class);
+
+            writer.hset("piccolo:ur:1", "1", "b");
+            verify(bus, timeout(1000)).publish("piccolo.cache-invalidate", "piccolo:ur:1");
+            reader.hgetAll("piccolo:ur:1", String.class);
+            verify(delegate, times(2)).hgetAll("piccolo:ur:1", String.class);
+
+            //不在共享前缀中的key不广播
+            writer.hset("piccolo:sk:1", "1", "b");
+            verify(bus, after(100).never()).publish(anyString(), eq("piccolo:sk:1"));
+        } finally {
+            writer.destroy();
+            reader.destroy();
+        }
+    }
+
+    private TwoTierCacheManager newNode(MQClient bus, String policies, String sharedPrefixes) {
+        PiccoloContext context = mock(PiccoloContext.class);
+        LocalCacheProperties properties = new LocalCacheProperties();
+        properties.setEnabled(true);
+        properties.setPolicies(policies);
+        properties.setSharedPrefixes(sharedPrefixes);
+        properties.setInvalidateLingerMs(1);
+        when(context.getProperties(LocalCacheProperties.class)).thenReturn(properties);
+        when(context.getMQClient()).thenReturn(bus);
+        TwoTierCacheManager node = new TwoTierCacheManager(delegate);
+        node.init(context);
+        return node;
+    }
+
+    @Test
+    @DisplayName("test_tinyLfuAdmission")
+    void testTinyLfuAdmission() {
+        TinyLfuCache<String> cache = new TinyLfuCache<>(100, 60000);
+        for (int i = 0; i < 100; i++) {
+            cache.put("hot" + i, "v");
+            for (int j = 0; j < 5; j++) {
+                cache.get("hot" + i);
+            }
+        }
+        //一次性扫描的冷数据不应挤掉热点数据
+        for (int i = 0; i < 1000; i++) {
+            cache.put("cold" + i, "v");
+        }
+        int retained = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.get("hot" + i) != null) {
+                retained++;
+            }
+        }
+        assertTrue(retained >= 90, "retained: " + retained);
+        assertTrue(cache.size() <= 100);
+        assertTrue(cache.getEvictions() > 0);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.client;
+
+import io.github.ukuz.piccolo.cache.redis.RedisNode;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ukuz90
+ */
+public class RedisConnectionTest {
+
+    private EventLoopGroup group;
+    private Channel server;
+    private ChannelGroup accepted;
+    private RedisConnection connection;
+
+    @BeforeEach
+    void setUp() {
+        group = new NioEventLoopGroup(2);
+        accepted = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+        //每条命令都回复+OK
+        server = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        accepted.add(ch);
+                        ch.pipeline().addLast(new RedisReplyDecoder(), new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                ctx.writeAndFlush(Unpooled.copiedBuffer("+OK\r\n", StandardCharsets.US_ASCII));
+                            }
+                        });
+                    }
+                })
+                .bind("127.0.0.1", 0).syncUninterruptibly().channel();
+        RedisNode node = new RedisNode("127.0.0.1", ((InetSocketAddress) server.localAddress()).getPort());
+        Bootstrap bootstrap = new Bootstrap().channel(NioSocketChannel.class);
+        connection = new RedisConnection(() -> CompletableFuture.completedFuture(node), bootstrap, group.next(), null, 0, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connection.close();
+        server.close().syncUninterruptibly();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Test
+    @DisplayName("test_reconnect")
+    void testReconnect() throws Exception {
+        assertEquals("OK", connection.send("PING").get(1, TimeUnit.SECONDS));
+
+        //服务端断开连接后，下一次发送时重连
+        accepted.close().syncUninterruptibly();
+        for (int i = 0; i < 2; i++) {
+            Object reply = sendUntilReconnected();
+            assertEquals("OK", reply);
+            accepted.close().syncUninterruptibly();
+        }
+    }
+
+    private Object sendUntilReconnected() throws Exception {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (true) {
+            try {
+                return connection.send("PING").get(1, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                //连接断开的通知可能晚于发送
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.cache.redis.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ukuz90
+ */
+public class RedisReplyDecoderTest {
+
+    @Test
+    @DisplayName("test_decode")
+    void testDecode() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RedisReplyDecoder());
+        channel.writeInbound(buf("+OK\r\n:-12\r\n$3\r\n中\r\n$-1\r\n-NOSCRIPT No matching script\r\n"));
+
+        assertEquals("OK", channel.readInbound());
+        assertEquals(-12L, (Long) channel.readInbound());
+        assertEquals("中", channel.readInbound());
+        assertSame(RedisReplyDecoder.NIL, channel.readInbound());
+        RedisReplyException error = channel.readInbound();
+        assertTrue(error.isNoScript());
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    @DisplayName("test_decodeFragmentedArray")
+    void testDecodeFragmentedArray() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RedisReplyDecoder());
+        String reply = "*2\r\n*3\r\n:0\r\n:5460\r\n*2\r\n$9\r\n127.0.0.1\r\n:7000\r\n$-1\r\n";
+        for (int i = 0; i < reply.length(); i++) {
+            channel.writeInbound(buf(reply.substring(i, i + 1)));
+        }
+
+        assertEquals(Arrays.asList(Arrays.asList(0L, 5460L, Arrays.asList("127.0.0.1", 7000L)), null), channel.readInbound());
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    @DisplayName("test_encodeAsking")
+    void testEncodeAsking() {
+        ByteBuf out = Unpooled.buffer();
+        new RedisCommand(new String[]{"GET", "k"}, true).encode(out);
+
+        assertEquals("*1\r\n$6\r\nASKING\r\n*2\r\n$3\r\nGET\r\n$1\r\nk\r\n", out.toString(StandardCharsets.UTF_8));
+
+        RedisReplyException moved = new RedisReplyException("MOVED 3999 127.0.0.1:6381");
+        assertTrue(moved.isMoved());
+        assertEquals("127.0.0.1:6381", moved.getRedirectAddress());
+    }
+
+    private static ByteBuf buf(String s) {
+        return Unpooled.copiedBuffer(s, StandardCharsets.UTF_8);
+    }
+}
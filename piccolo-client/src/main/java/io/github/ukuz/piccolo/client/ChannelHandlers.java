@@ -22,6 +22,7 @@ import io.github.ukuz.piccolo.client.common.MultiMessageClientHandler;
 import io.github.ukuz.piccolo.client.connect.ClientConfig;
 import io.github.ukuz.piccolo.client.connect.ConnectClientHandler;
 import io.github.ukuz.piccolo.client.id.snowflake.IdGenClientHandler;
+import io.github.ukuz.piccolo.client.push.PushResultClientHandler;
 
 /**
  * @author ukuz90
@@ -37,7 +38,7 @@ public final class ChannelHandlers {
 
     public static ChannelHandler newGatewayClientHandler(PiccoloClient context) {
         IdGenClientHandler handler = new IdGenClientHandler(context);
-        return new MultiMessageClientHandler(handler);
+        return new MultiMessageClientHandler(new PushResultClientHandler(handler));
     }
 
 }
@@ -30,6 +30,7 @@ import io.github.ukuz.piccolo.api.service.ServiceRegistryAndDiscovery;
 import io.github.ukuz.piccolo.api.service.discovery.ServiceDiscovery;
 import io.github.ukuz.piccolo.api.service.registry.ServiceRegistry;
 import io.github.ukuz.piccolo.api.spi.SpiLoader;
+import io.github.ukuz.piccolo.cache.local.TwoTierCacheManager;
 import io.github.ukuz.piccolo.client.gateway.connection.GatewayConnectionFactory;
 import io.github.ukuz.piccolo.client.gateway.connection.GatewayTcpConnectionFactory;
 import io.github.ukuz.piccolo.client.id.snowflake.SnowflakeIdGenDelegate;
@@ -79,12 +80,14 @@ public class PiccoloClient implements PiccoloContext {
         //initialize executor
         executorFactory = new ClientExecutorFactory();
         //initialize eventBus
-        EventBus.create(executorFactory.create(ExecutorFactory.EVENT_BUS, environment));
+        EventBus.create(executorFactory.create(ExecutorFactory.EVENT_BUS, environment),
+                core.getEventBusRingSize(), core.getEventBusBatchSize());
 
-        mqClient = SpiLoader.getLoader(MQClient.class).getExtension();
+        mqClient = StringUtils.hasText(core.getMq()) ? SpiLoader.getLoader(MQClient.class).getExtension(core.getMq())
+                : SpiLoader.getLoader(MQClient.class).getExtension();
         mqClient.startAsync(this).join();
 
-        cacheManager = SpiLoader.getLoader(CacheManager.class).getExtension();
+        cacheManager = new TwoTierCacheManager(SpiLoader.getLoader(CacheManager.class).getExtension());
         cacheManager.init(this);
         remoteRouterManager = new CachedRemoteRouterManager(cacheManager);
 
@@ -49,6 +49,12 @@ public class ClientPacketToMessageConverter implements PacketToMessageConverter
                 return new IdGenOkMessage(connection);
             case DISPATCH:
                 return new DispatcherResponseMessage(connection);
+            case PUSH:
+                return new ClientPushMessage(connection);
+            case PUSH_RESULT:
+                return new PushResultMessage(connection);
+            case REDIRECT:
+                return new RedirectMessage(connection);
             default:
                 LOGGER.error("packet covert failure, not found mapping cmd: {} packet: {} conn: {}", cmd, packet, connection);
                 break;
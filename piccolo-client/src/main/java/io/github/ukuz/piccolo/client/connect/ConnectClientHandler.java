@@ -45,6 +45,10 @@ import java.util.concurrent.TimeUnit;
 public class ConnectClientHandler implements ChannelHandler {
 
     private static final SimpleStatistics STATISTICS = new SimpleStatistics();
+    /**
+     * 提前于心跳间隔发送心跳，抵消网络延迟
+     */
+    private static final int HEARTBEAT_ADVANCE_MS = 1000;
     private final Logger logger = LoggerFactory.getLogger(ConnectClientHandler.class);
 
     public static final AttributeKey<ClientConfig> CONFIG_KEY = AttributeKey.newInstance("config_key");
@@ -114,11 +118,12 @@ public class ConnectClientHandler implements ChannelHandler {
 
             context.changeCipher(new AESCipher(sessionKey, clientConfig.getIv()));
             context.setHeartbeat(msg.heartbeat);
-            startHeartbeat(msg.heartbeat - 1000);
+            startHeartbeat(connection);
 
-            bindUser(connection);
+            //握手中已携带绑定信息
+            context.setUserId(clientConfig.getUserId());
             if (!isPerformanceTest) {
-                saveFastConnectionInfo(msg, context.getCipher());
+                saveFastConnectionInfo(msg.sessionId, msg.expireTime, context.getCipher());
             }
             logger.info("handshake success, clientConfig: {} conn: {} connectedNum: {}", clientConfig, connection, connectedNum);
 
@@ -132,11 +137,31 @@ public class ConnectClientHandler implements ChannelHandler {
 
             connection.getSessionContext().changeCipher(new AESCipher(key, iv));
             context.setHeartbeat(msg.heartbeat);
-            startHeartbeat(msg.heartbeat - 1000);
+            startHeartbeat(connection);
 
-
-            bindUser(connection);
+            //快速重连中已携带绑定信息
+            context.setUserId(clientConfig.getUserId());
             logger.info("fast connect success, clientConfig: {} conn: {} connectedNum: {}", clientConfig, connection, connectedNum);
+        } else if (message instanceof HeartbeatMessage) {
+            HeartbeatMessage msg = (HeartbeatMessage) message;
+            if (msg.heartbeat > 0) {
+                context.setHeartbeat(msg.heartbeat);
+                logger.info("heartbeat interval updated, heartbeat: {} conn: {}", msg.heartbeat, connection);
+            }
+        } else if (message instanceof RedirectMessage) {
+            RedirectMessage msg = (RedirectMessage) message;
+            //服务端下线，保存快速重连信息后断开，由客户端重连到建议的节点
+            if (!StringUtil.isNullOrEmpty(msg.sessionId)) {
+                saveFastConnectionInfo(msg.sessionId, msg.expireTime, context.getCipher());
+            }
+            logger.info("receive redirect message: {} conn: {}", msg, connection);
+            connection.close();
+        } else if (message instanceof ClientPushMessage) {
+            ClientPushMessage msg = (ClientPushMessage) message;
+            CumulativeAcker.received(connection, msg.seq);
+            if (logger.isDebugEnabled()) {
+                logger.debug("receive push message: {} conn: {}", msg, connection);
+            }
         } else if (message instanceof ErrorMessage) {
             logger.error("receive of error message: {}", message);
         }
@@ -153,6 +178,8 @@ public class ConnectClientHandler implements ChannelHandler {
         message.osName = clientConfig.getOsName();
         message.osVersion = clientConfig.getOsVersion();
         message.timestamp = System.currentTimeMillis();
+        message.userId = clientConfig.getUserId();
+        message.tags = "test";
         connection.sendAsync(message, future -> {
             if (future.isSuccess()) {
                 //切换RSA=>AES(ClientKey)
@@ -191,6 +218,8 @@ public class ConnectClientHandler implements ChannelHandler {
         FastConnectMessage message = new FastConnectMessage(connection);
         message.deviceId = clientConfig.getDeviceId();
         message.sessionId = sessionId;
+        message.userId = clientConfig.getUserId();
+        message.tags = "test";
 
         connection.sendRawAsync(message, future -> {
             if (future.isSuccess()) {
@@ -202,11 +231,11 @@ public class ConnectClientHandler implements ChannelHandler {
 
     }
 
-    private void saveFastConnectionInfo(HandshakeOkMessage message, Cipher cipher) {
+    private void saveFastConnectionInfo(String sessionId, long expireTime, Cipher cipher) {
         Map<String, String> result = new HashMap<>(3);
-        result.put("expireTime", String.valueOf(message.expireTime));
-        result.put("sessionId", message.sessionId);
-        result.put("cipher", cipher.toString());
+        result.put("expireTime", String.valueOf(expireTime));
+        result.put("sessionId", sessionId);
+        result.put("cipherStr", cipher.toString());
         String key = CacheKeys.getDeviceIdKey(clientConfig.getDeviceId());
         cacheManager.set(key, result, 60 * 5);
     }
@@ -216,21 +245,43 @@ public class ConnectClientHandler implements ChannelHandler {
         return cacheManager.get(key, Map.class);
     }
 
-    private void bindUser(Connection connection) {
-        BindUserMessage message = new BindUserMessage(connection);
-        message.userId = clientConfig.getUserId();
-        message.tags = "test";
-        connection.sendAsync(message);
-
-        connection.getSessionContext().setUserId(clientConfig.getUserId());
+    private void startHeartbeat(Connection connection) {
+        scheduleHeartbeat(connection, heartbeatDelay(connection.getSessionContext().getHeartbeat()));
     }
 
-    private void startHeartbeat(int heartbeat) {
+    /**
+     * 只有在一个心跳间隔内没有收到任何消息时才发送心跳，收到的推送等消息都视为连接存活
+     */
+    private void scheduleHeartbeat(Connection connection, long delayMs) {
+        connection.getChannel().eventLoop().schedule(() -> {
+            if (!connection.getChannel().isActive()) {
+                return;
+            }
+            if (!healthCheck(connection)) {
+                logger.warn("heartbeat timeout, close conn: {}", connection);
+                connection.close();
+                return;
+            }
+            long delay = heartbeatDelay(connection.getSessionContext().getHeartbeat());
+            long idle = System.currentTimeMillis() - connection.getLastReadTime();
+            if (idle >= delay) {
+                connection.sendAsync(new HeartbeatMessage(connection));
+                scheduleHeartbeat(connection, delay);
+            } else {
+                scheduleHeartbeat(connection, delay - idle);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
 
+    private long heartbeatDelay(int heartbeat) {
+        return Math.max(heartbeat - HEARTBEAT_ADVANCE_MS, heartbeat / 2);
     }
 
-    private boolean healthCheck() {
-        return false;
+    /**
+     * 服务端只在没有写出时回复心跳，超过两个心跳间隔没有收到任何消息则认为连接已失效
+     */
+    private boolean healthCheck(Connection connection) {
+        return System.currentTimeMillis() - connection.getLastReadTime() < connection.getSessionContext().getHeartbeat() * 2L;
     }
 
     @Override
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.client.connect;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.common.message.AckMessage;
+import io.netty.util.AttributeKey;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端的批量累积ack: 每收到{@link #ACK_BATCH}条或距首条未ack推送{@link #ACK_DELAY_MS}毫秒后，
+ * 只回一条携带最大seq的ack
+ *
+ * 所有状态只在连接所属的EventLoop上访问
+ *
+ * @author ukuz90
+ */
+public final class CumulativeAcker {
+
+    private static final AttributeKey<CumulativeAcker> ACKER_KEY = AttributeKey.valueOf("cumulative_acker");
+    private static final int ACK_BATCH = 8;
+    private static final long ACK_DELAY_MS = 50;
+
+    private final Connection connection;
+    private int lastSeq;
+    private int unacked;
+    private boolean scheduled;
+
+    private CumulativeAcker(Connection connection) {
+        this.connection = connection;
+    }
+
+    public static void received(Connection connection, int seq) {
+        CumulativeAcker acker = connection.getChannel().attr(ACKER_KEY).get();
+        if (acker == null) {
+            acker = new CumulativeAcker(connection);
+            connection.getChannel().attr(ACKER_KEY).set(acker);
+        }
+        acker.onReceived(seq);
+    }
+
+    private void onReceived(int seq) {
+        lastSeq = seq;
+        if (++unacked >= ACK_BATCH) {
+            flush();
+        } else if (!scheduled) {
+            scheduled = true;
+            connection.getChannel().eventLoop().schedule(this::flush, ACK_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        scheduled = false;
+        if (unacked == 0) {
+            return;
+        }
+        unacked = 0;
+        connection.sendAsync(AckMessage.build(connection).seq(lastSeq));
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.client.dispatch;
+
+import io.github.ukuz.piccolo.api.common.utils.NetworkUtils;
+import io.github.ukuz.piccolo.api.common.utils.StringUtils;
+import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
+import io.github.ukuz.piccolo.api.exchange.support.PacketToMessageConverter;
+import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
+import io.github.ukuz.piccolo.api.spi.SpiLoader;
+import io.github.ukuz.piccolo.client.PiccoloClient;
+import io.github.ukuz.piccolo.client.common.MultiMessageClientHandler;
+import io.github.ukuz.piccolo.client.properties.ClientProperties;
+import io.github.ukuz.piccolo.common.ServiceNames;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.github.ukuz.piccolo.transport.codec.Codec;
+import io.github.ukuz.piccolo.transport.codec.MultiPacketCodec;
+import io.github.ukuz.piccolo.transport.connection.NettyConnectionManager;
+import io.github.ukuz.piccolo.transport.server.NettyServer;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.socket.ServerSocketChannel;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 业务服务上接收网关直连转发的服务，每个注册了handler的topic都以{@link ServiceNames#S_DIRECT_DISPATCH}/topic注册到服务发现
+ *
+ * @author ukuz90
+ */
+public class DirectDispatchServer extends NettyServer {
+
+    private final InetSocketAddress address;
+    private String host;
+    private int port;
+
+    public DirectDispatchServer(PiccoloClient piccoloClient, ChannelHandler channelHandler) {
+        super(piccoloClient, new MultiMessageClientHandler(channelHandler), new NettyConnectionManager());
+        this.address = new InetSocketAddress(piccoloClient.getProperties(ClientProperties.class).getDirectDispatchPort());
+    }
+
+    /**
+     * 构建topic对应的注册信息
+     *
+     * @param topic
+     * @return
+     */
+    public DefaultServiceInstance newServiceInstance(String topic) {
+        return DefaultServiceInstance.build()
+                .host(host)
+                .port(port)
+                .isPersistent(false)
+                .serviceId(ServiceNames.S_DIRECT_DISPATCH + "/" + topic);
+    }
+
+    @Override
+    protected Codec newCodec() {
+        return new MultiPacketCodec(SpiLoader.getLoader(PacketToMessageConverter.class).getExtension());
+    }
+
+    @Override
+    protected void doInit() {
+    }
+
+    @Override
+    protected void initOptions(ServerBootstrap server) {
+        super.initOptions(server);
+        server.childOption(ChannelOption.TCP_NODELAY, true);
+    }
+
+    @Override
+    protected void doStartComplete(ServerSocketChannel channel) {
+        String directDispatchHost = piccoloContext.getProperties(ClientProperties.class).getDirectDispatchHost();
+        this.host = StringUtils.hasText(directDispatchHost) ? directDispatchHost : NetworkUtils.getLocalAddress();
+        this.port = channel.localAddress().getPort();
+    }
+
+    @Override
+    protected void doDestroy() {
+        cxnxManager.destroy();
+    }
+
+    @Override
+    protected InetSocketAddress getInetSocketAddress() {
+        return address;
+    }
+
+    @Override
+    public int getWorkerIORatio() {
+        return 70;
+    }
+
+    @Override
+    public int getBossThreadNum() {
+        return 1;
+    }
+
+    @Override
+    public int getWorkerThreadNum() {
+        return 1;
+    }
+
+    @Override
+    public String getBossThreadName() {
+        return ThreadNames.T_DIRECT_DISPATCH_BOSS;
+    }
+
+    @Override
+    public String getWorkerThreadName() {
+        return ThreadNames.T_DIRECT_DISPATCH_WORKER;
+    }
+
+    @Override
+    public String getId() {
+        return "direct-dispatch-server";
+    }
+
+    @Override
+    public boolean isSecurity() {
+        return false;
+    }
+}
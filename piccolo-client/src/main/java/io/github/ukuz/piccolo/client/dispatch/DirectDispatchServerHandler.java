@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.client.dispatch;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.ExchangeException;
+import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
+import io.github.ukuz.piccolo.api.external.common.Assert;
+import io.github.ukuz.piccolo.client.push.BaseDispatcherHandler;
+import io.github.ukuz.piccolo.common.message.DirectDispatchMessage;
+import io.github.ukuz.piccolo.common.message.DirectDispatchResponseMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * 处理网关直连转发的上行消息，在业务线程池中调用topic对应的handler，handler返回后回复网关
+ *
+ * @author ukuz90
+ */
+public class DirectDispatchServerHandler implements ChannelHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectDispatchServerHandler.class);
+
+    private final Function<String, BaseDispatcherHandler> handlers;
+    private final Executor executor;
+
+    public DirectDispatchServerHandler(Function<String, BaseDispatcherHandler> handlers, Executor executor) {
+        Assert.notNull(handlers, "handlers must not be null");
+        Assert.notNull(executor, "executor must not be null");
+        this.handlers = handlers;
+        this.executor = executor;
+    }
+
+    @Override
+    public void connected(Connection connection) throws ExchangeException {
+    }
+
+    @Override
+    public void disconnected(Connection connection) throws ExchangeException {
+    }
+
+    @Override
+    public void sent(Connection connection, Object message) throws ExchangeException {
+    }
+
+    @Override
+    public void received(Connection connection, Object message) throws ExchangeException {
+        if (!(message instanceof DirectDispatchMessage)) {
+            LOGGER.error("handler unknown message, message: {} conn: {}", message, connection);
+            return;
+        }
+        DirectDispatchMessage msg = (DirectDispatchMessage) message;
+        BaseDispatcherHandler handler = handlers.apply(msg.topic);
+        if (handler == null) {
+            LOGGER.error("direct dispatch failure, not found handler, topic: {}", msg.topic);
+            connection.sendAsync(DirectDispatchResponseMessage.build(msg).code(DirectDispatchResponseMessage.CODE_FAILURE));
+            return;
+        }
+        try {
+            executor.execute(() -> dispatch(connection, msg, handler));
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("direct dispatch rejected, topic: {} xid: {}", msg.topic, msg.xid);
+            connection.sendAsync(DirectDispatchResponseMessage.build(msg).code(DirectDispatchResponseMessage.CODE_FAILURE));
+        }
+    }
+
+    private void dispatch(Connection connection, DirectDispatchMessage msg, BaseDispatcherHandler handler) {
+        DirectDispatcherMqMessage mqMessage = new DirectDispatcherMqMessage(msg);
+        DirectDispatchResponseMessage response = DirectDispatchResponseMessage.build(msg);
+        try {
+            handler.onDispatch(mqMessage);
+            response.code(DirectDispatchResponseMessage.CODE_SUCCESS).payload(mqMessage.getReply());
+        } catch (Exception e) {
+            LOGGER.error("direct dispatch handle failure, topic: {} xid: {}", msg.topic, msg.xid, e);
+            response.code(DirectDispatchResponseMessage.CODE_FAILURE);
+        }
+        connection.sendAsync(response);
+    }
+
+    @Override
+    public void caught(Connection connection, Throwable exception) throws ExchangeException {
+        LOGGER.error("direct dispatch connection caught exception, conn: {}", connection, exception);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.client.dispatch;
+
+import io.github.ukuz.piccolo.api.mq.GenericMqMessage;
+import io.github.ukuz.piccolo.common.message.DirectDispatchMessage;
+import io.github.ukuz.piccolo.common.message.push.DispatcherMqMessage;
+
+/**
+ * 网关直连转发过来的上行消息，不经过MQ，因此没有offset需要提交。
+ * 业务handler可以在{@link io.github.ukuz.piccolo.client.push.BaseDispatcherHandler#onDispatch}返回之前调用{@link #reply(byte[])}，
+ * 响应内容会由网关直接下发给客户端
+ *
+ * 编码格式的前半部分(xid, uid, payload)与{@link io.github.ukuz.piccolo.common.message.push.KafkaDispatcherMqMessage}一致，
+ * 末尾追加topic
+ *
+ * @author ukuz90
+ */
+public class DirectDispatcherMqMessage extends GenericMqMessage implements DispatcherMqMessage {
+
+    private String topic;
+    private String uid;
+    private long xid;
+    private byte[] payload;
+    private volatile byte[] reply;
+
+    public DirectDispatcherMqMessage() {
+    }
+
+    public DirectDispatcherMqMessage(DirectDispatchMessage msg) {
+        this.topic = msg.topic;
+        this.uid = msg.uid;
+        this.xid = msg.xid;
+        this.payload = msg.payload;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    @Override
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String getUid() {
+        return uid;
+    }
+
+    @Override
+    public long getXid() {
+        return xid;
+    }
+
+    /**
+     * 设置下发给客户端的响应
+     *
+     * @param reply
+     */
+    public void reply(byte[] reply) {
+        this.reply = reply;
+    }
+
+    public byte[] getReply() {
+        return reply;
+    }
+
+    @Override
+    public void completeConsume() {
+        //直连转发没有需要提交的位点
+    }
+
+    @Override
+    protected void doEncode() {
+        writeLong(xid);
+        writeString(uid);
+        writeBytes(payload);
+        writeString(topic);
+    }
+
+    @Override
+    protected void doDecode() {
+        xid = readLong();
+        uid = readString();
+        payload = readBytes();
+        topic = readString();
+    }
+
+    @Override
+    public String toString() {
+        return "DirectDispatcherMqMessage{" +
+                "topic='" + topic + '\'' +
+                ", uid='" + uid + '\'' +
+                ", xid=" + xid +
+                '}';
+    }
+}
@@ -15,8 +15,6 @@
  */
 package io.github.ukuz.piccolo.client.gateway.connection;
 
-import com.google.common.eventbus.AllowConcurrentEvents;
-import com.google.common.eventbus.Subscribe;
 import io.github.ukuz.piccolo.api.connection.Connection;
 import io.github.ukuz.piccolo.api.event.ConnectionConnectEvent;
 import io.github.ukuz.piccolo.api.exchange.support.BaseMessage;
@@ -36,6 +34,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * @author ukuz90
@@ -57,7 +56,7 @@ public class GatewayTcpConnectionFactory implements GatewayConnectionFactory {
 
         this.gatewayClient = new GatewayClient(piccoloClient);
         this.gatewayClient.start();
-        EventBus.register(this);
+        EventBus.subscribe("GatewayTcpConnectionFactory.ConnectionConnectEvent", ConnectionConnectEvent.class, this::on);
         piccoloClient.getServiceDiscovery().subscribe(ServiceNames.S_GATEWAY, this);
         piccoloClient.getServiceDiscovery().lookup(ServiceNames.S_GATEWAY).forEach(si -> this.syncAddConnection((ServiceInstance) si));
     }
@@ -85,9 +84,15 @@ public class GatewayTcpConnectionFactory implements GatewayConnectionFactory {
                 if (connection == null) {
                     logger.warn("zk 补偿");
                     List<ServiceInstance> serviceInstances = piccoloClient.getServiceDiscovery().lookup(ServiceNames.S_GATEWAY);
-                    serviceInstances.stream()
+                    List<ServiceInstance> matched = serviceInstances.stream()
                             .filter(si -> si.getHostAndPort().equals(hostAndPort))
-                            .forEach(this::syncAddConnection);
+                            .collect(Collectors.toList());
+                    if (matched.isEmpty()) {
+                        //快照中已不存在该网关，无需等待重连
+                        logger.error("getConnection failure, gateway not found: {}", hostAndPort);
+                        return null;
+                    }
+                    matched.forEach(this::syncAddConnection);
 
                     try {
                         TimeUnit.MILLISECONDS.sleep(300);
@@ -142,8 +147,6 @@ public class GatewayTcpConnectionFactory implements GatewayConnectionFactory {
         }
     }
 
-    @Subscribe
-    @AllowConcurrentEvents
     void on(ConnectionConnectEvent event) {
         Connection connection = event.getConnection();
         String hostAndPort = connection.getChannel().attr(attrKey).get();
@@ -17,6 +17,7 @@ package io.github.ukuz.piccolo.client.id.snowflake;
 
 import io.github.ukuz.piccolo.api.common.remote.FailoverInvoker;
 import io.github.ukuz.piccolo.api.common.threadpool.ExecutorFactory;
+import io.github.ukuz.piccolo.api.common.utils.StringUtils;
 import io.github.ukuz.piccolo.api.connection.Connection;
 import io.github.ukuz.piccolo.api.external.common.Assert;
 import io.github.ukuz.piccolo.api.id.IdGen;
@@ -27,11 +28,13 @@ import io.github.ukuz.piccolo.api.spi.SpiLoader;
 import io.github.ukuz.piccolo.client.PiccoloClient;
 import io.github.ukuz.piccolo.client.id.IdGenManager;
 import io.github.ukuz.piccolo.client.id.UniqueIdGen;
+import io.github.ukuz.piccolo.client.properties.ClientProperties;
 import io.github.ukuz.piccolo.common.ServiceNames;
 import io.github.ukuz.piccolo.common.message.IdGenMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -55,6 +58,7 @@ public class SnowflakeIdGenDelegate implements IdGen, UniqueIdGen {
     private final AtomicBoolean sending;
     private final AtomicBoolean started = new AtomicBoolean(false);
     private final Long id;
+    private final LoadBalancer loadBalancer;
 
     public SnowflakeIdGenDelegate(PiccoloClient piccoloClient) {
         this(piccoloClient, DEFAULT_BUFFER_SIZE, DEFAULT_THRESHOLD);
@@ -82,6 +86,10 @@ public class SnowflakeIdGenDelegate implements IdGen, UniqueIdGen {
 
         this.piccoloClient = piccoloClient;
         this.sending = new AtomicBoolean(false);
+        String loadBalancerName = piccoloClient.getProperties(ClientProperties.class).getLoadBalancer();
+        this.loadBalancer = StringUtils.hasText(loadBalancerName) ?
+                SpiLoader.getLoader(LoadBalancer.class).getExtension(loadBalancerName) :
+                SpiLoader.getLoader(LoadBalancer.class).getExtension();
 
         id = IdGenManager.getInstance().acquireId();
         IdGenManager.getInstance().register(this);
@@ -170,8 +178,7 @@ public class SnowflakeIdGenDelegate implements IdGen, UniqueIdGen {
                 return;
             }
             executor.execute(()-> {
-                List<ServiceInstance> serviceInstances = piccoloClient.getServiceDiscovery().lookup(ServiceNames.S_GATEWAY);
-                LoadBalancer loadBalancer = SpiLoader.getLoader(LoadBalancer.class).getExtension();
+                List<ServiceInstance> serviceInstances = new ArrayList<>(piccoloClient.getServiceDiscovery().lookup(ServiceNames.S_GATEWAY));
                 LOGGER.info("get xid async, init: {}", isInit);
                 FailoverInvoker invoker = new FailoverInvoker();
                 try {
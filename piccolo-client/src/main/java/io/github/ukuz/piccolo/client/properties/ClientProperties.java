@@ -37,4 +37,59 @@ public class ClientProperties implements Properties {
 
      private Integer aesKeyLength;
 
+     /**
+      * 批量推送时单个BatchPushMessage包含的最大用户数
+      */
+     private Integer pushBatchSize;
+
+     /**
+      * 接收网关直连转发的端口，0表示不开启，只通过MQ接收上行消息
+      */
+     private Integer directDispatchPort;
+
+     /**
+      * 注册到服务发现的地址，不配置时使用本机地址
+      */
+     private String directDispatchHost;
+
+     /**
+      * 本地在线用户索引从网关全量同步的间隔
+      */
+     private Integer presenceResyncIntervalMs;
+
+     /**
+      * 超过该时间未能成功全量同步时，在线查询退化为精确查询
+      */
+     private Integer presenceMaxStalenessMs;
+
+     /**
+      * 全量同步时重放本地上下线事件的时间窗口，不配置时按网关的presence-flush-interval-ms推算
+      */
+     private Integer presenceReplayWindowMs;
+
+     /**
+      * 选择网关节点时使用的负载均衡策略，random/p2c/weighted/hash，不配置时使用默认策略
+      */
+     private String loadBalancer;
+
+     public int getPushBatchSize() {
+          return pushBatchSize != null && pushBatchSize > 0 ? pushBatchSize : 500;
+     }
+
+     public int getDirectDispatchPort() {
+          return directDispatchPort != null && directDispatchPort > 0 ? directDispatchPort : 0;
+     }
+
+     public int getPresenceResyncIntervalMs() {
+          return presenceResyncIntervalMs != null && presenceResyncIntervalMs > 0 ? presenceResyncIntervalMs : 60000;
+     }
+
+     public int getPresenceMaxStalenessMs() {
+          return presenceMaxStalenessMs != null && presenceMaxStalenessMs > 0 ? presenceMaxStalenessMs : getPresenceResyncIntervalMs() * 3;
+     }
+
+     public int getPresenceReplayWindowMs() {
+          return presenceReplayWindowMs != null && presenceReplayWindowMs > 0 ? presenceReplayWindowMs : 0;
+     }
+
 }
@@ -17,29 +17,48 @@ package io.github.ukuz.piccolo.client.push;
 
 import static io.github.ukuz.piccolo.api.common.threadpool.ExecutorFactory.*;
 
+import io.github.ukuz.piccolo.api.common.utils.StringUtils;
 import io.github.ukuz.piccolo.api.connection.Connection;
 import io.github.ukuz.piccolo.api.external.common.Assert;
 import io.github.ukuz.piccolo.api.id.IdGenException;
 import io.github.ukuz.piccolo.api.mq.MQMessageReceiver;
+import io.github.ukuz.piccolo.api.push.AckModel;
+import io.github.ukuz.piccolo.api.push.PushCallback;
 import io.github.ukuz.piccolo.api.push.PushContext;
+import io.github.ukuz.piccolo.api.push.PushResult;
+import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
 import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
 import io.github.ukuz.piccolo.client.PiccoloClient;
+import io.github.ukuz.piccolo.client.dispatch.DirectDispatchServer;
+import io.github.ukuz.piccolo.client.dispatch.DirectDispatchServerHandler;
 import io.github.ukuz.piccolo.client.id.IdGenBuilder;
+import io.github.ukuz.piccolo.client.properties.ClientProperties;
 import io.github.ukuz.piccolo.common.ServiceNames;
+import io.github.ukuz.piccolo.common.message.BatchPushMessage;
 import io.github.ukuz.piccolo.common.message.PushMessage;
+import io.github.ukuz.piccolo.common.message.TagPushMessage;
 import io.github.ukuz.piccolo.common.message.push.KafkaDispatcherMqMessage;
+import io.github.ukuz.piccolo.common.properties.OfflineProperties;
 import io.github.ukuz.piccolo.common.router.RemoteRouter;
+import io.github.ukuz.piccolo.mq.kafka.properties.KafkaProperties;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 import static io.github.ukuz.piccolo.mq.kafka.Topics.*;
 
@@ -52,10 +71,21 @@ public class PushClient implements AutoCloseable {
     private PiccoloClient piccoloClient;
     private static final Logger LOGGER = LoggerFactory.getLogger(PushClient.class);
     private ExecutorService dispatchHandlerExecutor;
+    private static final int DEFAULT_PUSH_TIMEOUT = 3000;
+    private DirectDispatchServer directDispatchServer;
+    private final ConcurrentMap<String, DefaultServiceInstance> directRegistrations = new ConcurrentHashMap<>();
 
     public PushClient() {
         piccoloClient = PiccoloClient.getInstance();
         dispatchHandlerExecutor = (ExecutorService) piccoloClient.getExecutorFactory().create(PUSH_CLIENT, piccoloClient.getEnvironment());
+        if (piccoloClient.getProperties(ClientProperties.class).getDirectDispatchPort() > 0) {
+            //开启网关直连转发，handler与MQ共用
+            directDispatchServer = new DirectDispatchServer(piccoloClient, new DirectDispatchServerHandler(topic -> {
+                NestedMessageReceiver receiver = topicsHandler.get(topic);
+                return receiver == null ? null : receiver.handler;
+            }, dispatchHandlerExecutor));
+            directDispatchServer.start();
+        }
     }
 
     /**
@@ -74,10 +104,20 @@ public class PushClient implements AutoCloseable {
     public void push(PushContext context) {
         Assert.notNull(context, "context must not be null");
         //先查询client所在的网关服务器的地址
+        AckModel ackModel = context.getAckModel() == null ? AckModel.NO_ACK : context.getAckModel();
+        int timeout = context.getTimeout() > 0 ? context.getTimeout() : DEFAULT_PUSH_TIMEOUT;
         if (context.getUserId() != null) {
-            pushSingleUser(context.getUserId(), context.getContext());
+            pushSingleUser(context.getUserId(), context.getContext(), ackModel, timeout, context.getCallback());
+        } else if (ackModel != AckModel.NO_ACK && !CollectionUtils.isEmpty(context.getUserIds())) {
+            //需要ack的推送按用户逐个回调结果
+            context.getUserIds().forEach(userId ->
+                    pushSingleUser(userId, context.getContext(), ackModel, timeout, context.getCallback()));
         } else if (context.getUserIds() != null && !CollectionUtils.isEmpty(context.getUserIds())) {
-            context.getUserIds().forEach(userId -> pushSingleUser(userId, context.getContext()));
+            pushMultiUser(context.getUserIds(), context.getContext());
+        } else if (StringUtils.hasText(context.getTagExpression()) || !CollectionUtils.isEmpty(context.getTags())) {
+            String expression = StringUtils.hasText(context.getTagExpression()) ?
+                    context.getTagExpression() : String.join(" | ", context.getTags());
+            pushByTags(expression, context.getContext());
         } else if (context.isBroadcast()) {
             broadcast(context.getContext());
         }
@@ -94,25 +134,93 @@ public class PushClient implements AutoCloseable {
         return piccoloClient.getIdGen().get(null);
     }
 
-    private void pushSingleUser(String userId, byte[] context) {
+    private void pushSingleUser(String userId, byte[] context, AckModel ackModel, int timeout, PushCallback callback) {
         Set<RemoteRouter> remoteRouters = piccoloClient.getRemoteRouterManager().lookupAll(userId);
-        remoteRouters
-                .stream()
-                .filter(RemoteRouter::isOnline)
-                .forEach(remoteRouter -> {
+        boolean ack = ackModel != AckModel.NO_ACK;
+        if (ack && remoteRouters.stream().noneMatch(RemoteRouter::isOnline)) {
+            PushRequestTable.notify(callback, PushResult.CODE_OFFLINE, userId, null);
+            return;
+        }
+        deliverableRouters(remoteRouters).forEach(remoteRouter -> {
             Connection connection = piccoloClient.getGatewayConnectionFactory().getConnection(remoteRouter.getRouterValue().getHostAndPort());
             if (connection != null) {
                 PushMessage msg = PushMessage.build(connection).content(context).userId(userId);
+                if (ack) {
+                    long pushId = PushRequestTable.getInstance().register(callback, userId, remoteRouter.getRouterValue(), timeout);
+                    msg.ack((byte) ackModel.ordinal(), timeout, pushId).clientType(remoteRouter.getClientType());
+                }
                 connection.sendAsync(msg);
             } else {
                 LOGGER.error("can not push message to gateway server, is it work, userId: {} server: {}",
                         userId,
                         remoteRouter.getRouterValue().getHostAndPort());
+                if (ack) {
+                    PushRequestTable.notify(callback, PushResult.CODE_FAILURE, userId, remoteRouter.getRouterValue());
+                }
                 //TODO 是否重试？
             }
         });
     }
 
+    private void pushMultiUser(List<String> userIds, byte[] context) {
+        int batchSize = piccoloClient.getProperties(ClientProperties.class).getPushBatchSize();
+        //1. 分批pipeline查询路由，并按网关分组
+        Map<String, Set<String>> gatewayUsers = new HashMap<>();
+        for (int from = 0; from < userIds.size(); from += batchSize) {
+            List<String> batch = userIds.subList(from, Math.min(from + batchSize, userIds.size()));
+            Map<String, Set<RemoteRouter>> routers = piccoloClient.getRemoteRouterManager().lookupAll(batch);
+            routers.forEach((userId, remoteRouters) -> deliverableRouters(remoteRouters)
+                    .forEach(remoteRouter -> gatewayUsers
+                            .computeIfAbsent(remoteRouter.getRouterValue().getHostAndPort(), k -> new LinkedHashSet<>())
+                            .add(userId)));
+        }
+        //2. 每个网关每批用户只发送一条消息，由网关在本地扇出
+        gatewayUsers.forEach((hostAndPort, users) -> {
+            Connection connection = piccoloClient.getGatewayConnectionFactory().getConnection(hostAndPort);
+            if (connection == null) {
+                LOGGER.error("can not push message to gateway server, is it work, user's size: {} server: {}",
+                        users.size(), hostAndPort);
+                return;
+            }
+            List<String> list = new ArrayList<>(users);
+            for (int from = 0; from < list.size(); from += batchSize) {
+                BatchPushMessage msg = BatchPushMessage.build(connection)
+                        .userIds(list.subList(from, Math.min(from + batchSize, list.size())))
+                        .content(context);
+                connection.sendAsync(msg);
+            }
+        });
+    }
+
+    /**
+     * 用户在线时返回在线的路由；用户不在线且开启了离线存储时，每个网关返回一个最后所在的路由，由网关保存离线消息
+     *
+     * @param remoteRouters
+     * @return
+     */
+    private Collection<RemoteRouter> deliverableRouters(Set<RemoteRouter> remoteRouters) {
+        List<RemoteRouter> online = remoteRouters.stream().filter(RemoteRouter::isOnline).collect(Collectors.toList());
+        if (!online.isEmpty() || !piccoloClient.getProperties(OfflineProperties.class).isEnable()) {
+            return online;
+        }
+        Map<String, RemoteRouter> lastGateways = new LinkedHashMap<>();
+        remoteRouters.forEach(remoteRouter -> lastGateways.putIfAbsent(remoteRouter.getRouterValue().getHostAndPort(), remoteRouter));
+        return lastGateways.values();
+    }
+
+    private void pushByTags(String expression, byte[] context) {
+        List<ServiceInstance> serviceInstances = piccoloClient.getServiceDiscovery().lookup(ServiceNames.S_GATEWAY);
+        serviceInstances.forEach(serviceInstance -> {
+            Connection connection = piccoloClient.getGatewayConnectionFactory().getConnection(serviceInstance.getHostAndPort());
+            if (connection != null) {
+                connection.sendAsync(TagPushMessage.build(connection).expression(expression).content(context));
+            } else {
+                LOGGER.error("can not push message to gateway server, is it work, server: {}",
+                        serviceInstance.getHostAndPort());
+            }
+        });
+    }
+
     private void broadcast(byte[] context) {
         List<ServiceInstance> serviceInstances = piccoloClient.getServiceDiscovery().lookup(ServiceNames.S_GATEWAY);
         serviceInstances.forEach(serviceInstance -> {
@@ -135,10 +243,23 @@ public class PushClient implements AutoCloseable {
 
         topicsHandler.computeIfAbsent(topic, t -> new NestedMessageReceiver(handler));
         piccoloClient.getMQClient().subscribe(topic, topicsHandler.get(topic));
+        if (directDispatchServer != null && directDispatchServer.isRunning()) {
+            directRegistrations.computeIfAbsent(topic, t -> {
+                DefaultServiceInstance instance = directDispatchServer.newServiceInstance(t);
+                piccoloClient.getServiceRegistry().registry(instance);
+                return instance;
+            });
+        }
     }
 
     @Override
     public void close() throws Exception {
+        if (directDispatchServer != null) {
+            //先注销，网关不再转发后再关闭
+            directRegistrations.values().forEach(piccoloClient.getServiceRegistry()::deregistry);
+            directRegistrations.clear();
+            directDispatchServer.stop();
+        }
         dispatchHandlerExecutor.shutdown();
         piccoloClient.destroy();
     }
@@ -146,10 +267,13 @@ public class PushClient implements AutoCloseable {
     private class NestedMessageReceiver implements MQMessageReceiver<byte[]> {
 
         private BaseDispatcherHandler handler;
+        private final boolean parallelConsume;
 
         public NestedMessageReceiver(BaseDispatcherHandler handler) {
             Assert.notNull(handler, "handler must not be null");
             this.handler = handler;
+            KafkaProperties.ConsumerNestedProperties consumer = piccoloClient.getProperties(KafkaProperties.class).getConsumer();
+            this.parallelConsume = consumer != null && consumer.getParallelism() > 0;
         }
 
         @Override
@@ -164,7 +288,12 @@ public class PushClient implements AutoCloseable {
             msg.setPartition(topicPartition.partition());
             msg.setOffset(offsetAndMetadata.offset());
             msg.decode(message);
-            dispatchHandlerExecutor.execute(() -> handler.onDispatch(msg));
+            if (parallelConsume) {
+                //并行消费时已经在按uid分配的消费线程上，直接处理才能保证同一个用户的顺序
+                handler.onDispatch(msg);
+            } else {
+                dispatchHandlerExecutor.execute(() -> handler.onDispatch(msg));
+            }
         }
     }
 
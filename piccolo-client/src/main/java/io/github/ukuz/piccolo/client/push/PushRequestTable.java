@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.client.push;
+
+import io.github.ukuz.piccolo.api.push.PushCallback;
+import io.github.ukuz.piccolo.api.push.PushResult;
+import io.github.ukuz.piccolo.api.router.ClientLocator;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 等待网关回传推送结果的请求表，pushId -> callback
+ *
+ * @author ukuz90
+ */
+public final class PushRequestTable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PushRequestTable.class);
+    private static final PushRequestTable INSTANCE = new PushRequestTable();
+
+    /**
+     * 网关自身也会按timeout判定超时，客户端多等待一段时间，避免两边同时超时
+     */
+    private static final int TIMEOUT_GRACE_MS = 1000;
+
+    private final AtomicLong pushIdGen = new AtomicLong();
+    private final ConcurrentMap<Long, PushRequest> requests = new ConcurrentHashMap<>();
+    private final HashedWheelTimer timer = new HashedWheelTimer(new NamedThreadFactory(ThreadNames.T_PUSH_CLIENT_TIMER),
+            10, TimeUnit.MILLISECONDS);
+
+    private PushRequestTable() {}
+
+    public static PushRequestTable getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 登记一个等待结果的推送
+     *
+     * @param callback
+     * @param userId
+     * @param clientLocator
+     * @param timeoutMs
+     * @return pushId
+     */
+    public long register(PushCallback callback, String userId, ClientLocator clientLocator, int timeoutMs) {
+        long pushId = pushIdGen.incrementAndGet();
+        PushRequest request = new PushRequest(callback, userId, clientLocator);
+        requests.put(pushId, request);
+        request.timeout = timer.newTimeout(t -> complete(pushId, PushResult.CODE_TIMEOUT),
+                timeoutMs + TIMEOUT_GRACE_MS, TimeUnit.MILLISECONDS);
+        return pushId;
+    }
+
+    public void complete(long pushId, byte resultCode) {
+        PushRequest request = requests.remove(pushId);
+        if (request == null) {
+            //已超时或重复的结果
+            return;
+        }
+        if (request.timeout != null) {
+            request.timeout.cancel();
+        }
+        notify(request.callback, resultCode, request.userId, request.clientLocator);
+    }
+
+    public int size() {
+        return requests.size();
+    }
+
+    public static void notify(PushCallback callback, byte resultCode, String userId, ClientLocator clientLocator) {
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.onResult(PushResult.builder()
+                    .resultCode(resultCode)
+                    .userId(userId)
+                    .clientLocator(clientLocator)
+                    .build());
+        } catch (Exception e) {
+            LOGGER.error("push callback error, userId: {} resultCode: {}", userId, resultCode, e);
+        }
+    }
+
+    private static final class PushRequest {
+        final PushCallback callback;
+        final String userId;
+        final ClientLocator clientLocator;
+        volatile Timeout timeout;
+
+        PushRequest(PushCallback callback, String userId, ClientLocator clientLocator) {
+            this.callback = callback;
+            this.userId = userId;
+            this.clientLocator = clientLocator;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.client.push;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.ExchangeException;
+import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
+import io.github.ukuz.piccolo.client.common.ClientChannelHandlerAdaptor;
+import io.github.ukuz.piccolo.common.message.PushResultMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 处理网关回传的推送结果
+ *
+ * @author ukuz90
+ */
+public class PushResultClientHandler extends ClientChannelHandlerAdaptor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PushResultClientHandler.class);
+
+    public PushResultClientHandler(ChannelHandler delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public void received(Connection connection, Object message) throws ExchangeException {
+        if (message instanceof PushResultMessage) {
+            PushResultMessage msg = (PushResultMessage) message;
+            PushRequestTable table = PushRequestTable.getInstance();
+            for (int i = 0; i < msg.pushIds.length; i++) {
+                table.complete(msg.pushIds[i], msg.resultCodes[i]);
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("received push result message, msg: {}", msg);
+            }
+        } else {
+            super.received(connection, message);
+        }
+    }
+}
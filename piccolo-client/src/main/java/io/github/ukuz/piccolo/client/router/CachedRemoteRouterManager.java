@@ -15,25 +15,20 @@
  */
 package io.github.ukuz.piccolo.client.router;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import io.github.ukuz.piccolo.api.cache.CacheManager;
 import io.github.ukuz.piccolo.common.router.RemoteRouter;
 import io.github.ukuz.piccolo.common.router.RemoteRouterManager;
 
-import java.time.Duration;
 import java.util.Set;
 
 /**
+ * 路由的本地缓存由{@link io.github.ukuz.piccolo.cache.local.TwoTierCacheManager}负责，
+ * 路由变更时通过MQ广播失效，不再使用固定过期时间的缓存
+ *
  * @author ukuz90
  */
 public class CachedRemoteRouterManager extends RemoteRouterManager {
 
-    private Cache<String, Set<RemoteRouter>> cache = CacheBuilder.newBuilder()
-            .expireAfterAccess(Duration.ofMinutes(5))
-            .expireAfterWrite(Duration.ofMinutes(5))
-            .build();
-
     public CachedRemoteRouterManager(CacheManager cacheManager) {
         super(cacheManager);
     }
@@ -48,17 +43,4 @@ public class CachedRemoteRouterManager extends RemoteRouterManager {
         }
         return null;
     }
-
-    @Override
-    public Set<RemoteRouter> lookupAll(String userId) {
-        Set<RemoteRouter> cached = cache.getIfPresent(userId);
-        if (cached != null) {
-            return cached;
-        }
-        cached = super.lookupAll(userId);
-        if (cached != null) {
-            cache.put(userId, cached);
-        }
-        return cached;
-    }
 }
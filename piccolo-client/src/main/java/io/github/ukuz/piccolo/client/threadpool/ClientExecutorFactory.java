@@ -40,7 +40,7 @@ public class ClientExecutorFactory extends AbstractExecutorFactory {
                         .queueCapacity(tp.getPushClient().getQueueSize())
                         .keepAliveSeconds(tp.getPushClient().getKeepAliveSeconds())
                         .build();
-                return createExecutor(config);
+                return register(name, createExecutor(config));
             case ID_GEN:
                 config = ThreadPoolConfig.builder()
                         .name(ThreadNames.T_ID_GEN)
@@ -49,7 +49,7 @@ public class ClientExecutorFactory extends AbstractExecutorFactory {
                         .queueCapacity(tp.getIdGen().getQueueSize())
                         .keepAliveSeconds(tp.getIdGen().getKeepAliveSeconds())
                         .build();
-                return createScheduledExecutor(config);
+                return register(name, createScheduledExecutor(config));
             default:
                 return super.create(name, environment);
         }
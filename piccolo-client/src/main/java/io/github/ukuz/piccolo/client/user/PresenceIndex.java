@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.client.user;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地在线用户索引:
+ * 1. 上下线事件实时更新索引，同时记录每个用户最后一次事件
+ * 2. 全量同步时以快照为基础，重放同步开始前replayWindow内以及同步期间的事件后整体替换，
+ *    避免快照中尚未写入的变更被覆盖
+ *
+ * @author ukuz90
+ */
+class PresenceIndex {
+
+    private final long replayWindowNanos;
+    private volatile Set<String> online = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Event> journal = new ConcurrentHashMap<>();
+    private volatile long lastResyncNanos;
+    private volatile boolean synced;
+
+    /**
+     * @param replayWindowMs 网关写入在线列表的最大延迟
+     */
+    PresenceIndex(long replayWindowMs) {
+        this.replayWindowNanos = TimeUnit.MILLISECONDS.toNanos(replayWindowMs);
+    }
+
+    void online(String userId) {
+        apply(userId, true, System.nanoTime());
+    }
+
+    void offline(String userId) {
+        apply(userId, false, System.nanoTime());
+    }
+
+    private void apply(String userId, boolean isOnline, long now) {
+        //先记录事件再更新索引，保证与全量同步并发时不会丢失
+        journal.put(userId, new Event(isOnline, now));
+        update(online, userId, isOnline);
+    }
+
+    boolean isOnline(String userId) {
+        return online.contains(userId);
+    }
+
+    Set<String> filterOnline(Collection<String> userIds) {
+        Set<String> current = online;
+        Set<String> result = new HashSet<>();
+        for (String userId : userIds) {
+            if (current.contains(userId)) {
+                result.add(userId);
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return online.size();
+    }
+
+    long beginResync() {
+        return System.nanoTime();
+    }
+
+    /**
+     * @param snapshot 从各网关读取的在线用户全量快照
+     * @param begin {@link #beginResync()}的返回值
+     */
+    void completeResync(Collection<String> snapshot, long begin) {
+        Set<String> next = ConcurrentHashMap.newKeySet(snapshot.size());
+        next.addAll(snapshot);
+        long from = begin - replayWindowNanos;
+        replay(next, from);
+        online = next;
+        //替换前读取到旧索引的事件已记录在journal中，再重放一次
+        replay(next, from);
+        journal.values().removeIf(event -> event.nanos - from < 0);
+        lastResyncNanos = begin;
+        synced = true;
+    }
+
+    /**
+     * @return 距离最近一次成功全量同步的时间，从未同步过返回{@link Long#MAX_VALUE}
+     */
+    long getStalenessMs() {
+        if (!synced) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastResyncNanos);
+    }
+
+    private void replay(Set<String> target, long from) {
+        for (Map.Entry<String, Event> entry : journal.entrySet()) {
+            Event event = entry.getValue();
+            if (event.nanos - from >= 0) {
+                update(target, entry.getKey(), event.online);
+            }
+        }
+    }
+
+    private static void update(Set<String> target, String userId, boolean isOnline) {
+        if (isOnline) {
+            target.add(userId);
+        } else {
+            target.remove(userId);
+        }
+    }
+
+    private static final class Event {
+        final boolean online;
+        final long nanos;
+
+        Event(boolean online, long nanos) {
+            this.online = online;
+            this.nanos = nanos;
+        }
+    }
+}
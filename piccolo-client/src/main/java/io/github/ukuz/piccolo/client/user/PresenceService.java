@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.client.user;
+
+import io.github.ukuz.piccolo.api.external.common.Assert;
+import io.github.ukuz.piccolo.api.mq.MQMessageReceiver;
+import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
+import io.github.ukuz.piccolo.client.PiccoloClient;
+import io.github.ukuz.piccolo.client.properties.ClientProperties;
+import io.github.ukuz.piccolo.common.ServiceNames;
+import io.github.ukuz.piccolo.common.cache.CacheKeys;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import io.github.ukuz.piccolo.common.router.RemoteRouter;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.github.ukuz.piccolo.mq.kafka.Topics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量查询用户是否在线:
+ * 1. 广播订阅上下线消息，实时维护本地在线用户索引，查询不需要访问redis
+ * 2. 定时从各网关的在线用户列表全量同步，修正丢失的事件
+ * 3. 超过maxStaleness未能成功同步时，查询退化为按路由信息精确查询
+ *
+ * @author ukuz90
+ */
+public class PresenceService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PresenceService.class);
+    /**
+     * 网关上下线先发送MQ消息，再延迟presence-flush-interval-ms批量写入在线列表，
+     * 全量同步时需要重放的时间窗口为该间隔加上MQ投递与写入redis的余量
+     */
+    private static final long REPLAY_WINDOW_SLACK_MS = 10000;
+    private static final int RESYNC_PAGE_SIZE = 5000;
+
+    private final PiccoloClient piccoloContext;
+    private final long resyncIntervalMs;
+    private final long maxStalenessMs;
+    private final PresenceIndex index;
+    private ScheduledThreadPoolExecutor resyncExecutor;
+
+    public PresenceService() {
+        this.piccoloContext = PiccoloClient.getInstance();
+        ClientProperties properties = piccoloContext.getProperties(ClientProperties.class);
+        this.resyncIntervalMs = properties.getPresenceResyncIntervalMs();
+        this.maxStalenessMs = properties.getPresenceMaxStalenessMs();
+        this.index = new PresenceIndex(replayWindowMs(properties, piccoloContext.getProperties(CoreProperties.class)));
+    }
+
+    static long replayWindowMs(ClientProperties client, CoreProperties core) {
+        if (client.getPresenceReplayWindowMs() > 0) {
+            return client.getPresenceReplayWindowMs();
+        }
+        return core.getPresenceFlushIntervalMs() + REPLAY_WINDOW_SLACK_MS;
+    }
+
+    public void start() {
+        piccoloContext.getMQClient().subscribeBroadcast(Topics.ONLINE_MESSAGE.getTopic(), new PresenceMessageReceiver(true));
+        piccoloContext.getMQClient().subscribeBroadcast(Topics.OFFLINE_MESSAGE.getTopic(), new PresenceMessageReceiver(false));
+        resyncExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(ThreadNames.T_PRESENCE_RESYNC));
+        resyncExecutor.scheduleWithFixedDelay(this::resync, 0, resyncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (resyncExecutor != null) {
+            resyncExecutor.shutdownNow();
+            resyncExecutor = null;
+        }
+    }
+
+    public boolean isOnline(String userId) {
+        Assert.notNull(userId, "userId must not be null");
+        if (isStale()) {
+            return !lookupOnline(Collections.singleton(userId)).isEmpty();
+        }
+        return index.isOnline(userId);
+    }
+
+    /**
+     * 批量查询
+     *
+     * @param userIds
+     * @return 其中在线的用户
+     */
+    public Set<String> filterOnline(Collection<String> userIds) {
+        Assert.notNull(userIds, "userIds must not be null");
+        if (isStale()) {
+            return lookupOnline(userIds);
+        }
+        return index.filterOnline(userIds);
+    }
+
+    /**
+     * @return 本地索引中的在线人数
+     */
+    public int getOnlineUserNum() {
+        return index.size();
+    }
+
+    /**
+     * @return 距离最近一次成功全量同步的时间
+     */
+    public long getStalenessMs() {
+        return index.getStalenessMs();
+    }
+
+    private boolean isStale() {
+        return index.getStalenessMs() > maxStalenessMs;
+    }
+
+    private Set<String> lookupOnline(Collection<String> userIds) {
+        Map<String, Set<RemoteRouter>> routers = piccoloContext.getRemoteRouterManager().lookupAll(userIds);
+        Set<String> result = new HashSet<>();
+        routers.forEach((userId, set) -> {
+            if (set != null && set.stream().anyMatch(RemoteRouter::isOnline)) {
+                result.add(userId);
+            }
+        });
+        return result;
+    }
+
+    void resync() {
+        try {
+            long begin = index.beginResync();
+            List<String> snapshot = new ArrayList<>(Math.max(16, index.size()));
+            List<DefaultServiceInstance> gateways = piccoloContext.getServiceDiscovery().lookup(ServiceNames.S_GATEWAY);
+            for (DefaultServiceInstance instance : gateways) {
+                String key = CacheKeys.getOnlineUserListKey(instance.getHost());
+                for (int start = 0; ; start += RESYNC_PAGE_SIZE) {
+                    List<String> page = piccoloContext.getCacheManager().zrange(key, start, start + RESYNC_PAGE_SIZE - 1, String.class);
+                    snapshot.addAll(page);
+                    if (page.size() < RESYNC_PAGE_SIZE) {
+                        break;
+                    }
+                }
+            }
+            index.completeResync(snapshot, begin);
+            LOGGER.debug("presence resync success, online: {}", index.size());
+        } catch (Exception e) {
+            LOGGER.warn("presence resync failure, staleness: {}ms, cause: {}", index.getStalenessMs(), e);
+        }
+    }
+
+    private class PresenceMessageReceiver implements MQMessageReceiver<byte[]> {
+
+        private final boolean online;
+
+        PresenceMessageReceiver(boolean online) {
+            this.online = online;
+        }
+
+        @Override
+        public void receive(String topic, byte[] message, Object... attachment) {
+            String userId = new String(message, StandardCharsets.UTF_8);
+            if (online) {
+                index.online(userId);
+            } else {
+                index.offline(userId);
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ import org.apache.kafka.common.TopicPartition;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -52,9 +53,10 @@ public class UserManager {
      */
     public long getAllOnlineUserNum() {
         List<String> serverIps = getAllServerIp();
+        Map<String, String> onlineUserNums = getAllOnlineUserNum0();
         long onlineUserNum = 0;
         for (String serverIp : serverIps) {
-            onlineUserNum += getOnlineUserNum(serverIp);
+            onlineUserNum += getOnlineUserNum(onlineUserNums, serverIp);
         }
         return onlineUserNum;
     }
@@ -76,12 +78,13 @@ public class UserManager {
     public List<String> getOnlineUserList(long start, long end) {
         Assert.isTrue(end >= start, "end must great than start, start: " + start + ", end: " + end);
         List<String> serverIps = getAllServerIp();
+        Map<String, String> onlineUserNums = getAllOnlineUserNum0();
         List<String> onlineUserList = new ArrayList<>();
         long offset = 0;
         for (int i = 0; i < serverIps.size(); i++) {
             String ip = serverIps.get(i);
             String onlineUserListKey = CacheKeys.getOnlineUserListKey(ip);
-            long num = getOnlineUserNum(ip);
+            long num = getOnlineUserNum(onlineUserNums, ip);
             if (end > offset && start <= offset
                     || end > offset + num && start <= offset + num) {
                 onlineUserList.addAll(piccoloContext.getCacheManager().zrange(onlineUserListKey, (int)(start - offset), (int)(end - offset), String.class));
@@ -94,10 +97,18 @@ public class UserManager {
         return onlineUserList;
     }
 
-    private long getOnlineUserNum(String ip) {
-        String onlineUserListKey = CacheKeys.getOnlineUserListKey(ip);
-        Long val = piccoloContext.getCacheManager().zCard(onlineUserListKey);
-        return val == null ? 0 : val.longValue();
+    /**
+     * 各网关在线人数由网关增量维护在同一个hash中，一次读取
+     *
+     * @return publicIp -> 在线人数
+     */
+    private Map<String, String> getAllOnlineUserNum0() {
+        return piccoloContext.getCacheManager().hgetAll(CacheKeys.getOnlineUserCountKey());
+    }
+
+    private long getOnlineUserNum(Map<String, String> onlineUserNums, String ip) {
+        String val = onlineUserNums.get(ip);
+        return val == null ? 0 : Math.max(0, Long.parseLong(val));
     }
 
     private List<String> getAllServerIp() {
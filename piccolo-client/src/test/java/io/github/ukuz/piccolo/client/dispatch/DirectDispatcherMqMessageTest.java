@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.client.dispatch;
+
+import io.github.ukuz.piccolo.common.message.DirectDispatchMessage;
+import io.github.ukuz.piccolo.common.message.push.KafkaDispatcherMqMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ukuz90
+ */
+class DirectDispatcherMqMessageTest {
+
+    @DisplayName("test_encode")
+    @Test
+    void testEncode() {
+        DirectDispatchMessage msg = new DirectDispatchMessage(null);
+        msg.topic = "piccolo_dispatch";
+        msg.uid = "u1";
+        msg.xid = 1000L;
+        msg.payload = "你好，piccolo".getBytes(StandardCharsets.UTF_8);
+        byte[] buf = new DirectDispatcherMqMessage(msg).encode();
+
+        DirectDispatcherMqMessage decoded = new DirectDispatcherMqMessage();
+        decoded.decode(buf);
+        assertEquals("piccolo_dispatch", decoded.getTopic());
+        assertEquals("u1", decoded.getUid());
+        assertEquals(1000L, decoded.getXid());
+        assertEquals("你好，piccolo", new String(decoded.getPayload(), StandardCharsets.UTF_8));
+
+        //与经过MQ转发的消息格式兼容
+        KafkaDispatcherMqMessage kafkaMsg = new KafkaDispatcherMqMessage();
+        kafkaMsg.decode(buf);
+        assertEquals(1000L, kafkaMsg.getXid());
+        assertEquals("u1", kafkaMsg.getUid());
+        assertEquals("你好，piccolo", new String(kafkaMsg.getPayload(), StandardCharsets.UTF_8));
+    }
+}
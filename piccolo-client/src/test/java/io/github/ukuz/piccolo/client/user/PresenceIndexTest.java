@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.client.user;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ukuz90
+ */
+class PresenceIndexTest {
+
+    @DisplayName("test_filterOnline")
+    @Test
+    void testFilterOnline() {
+        PresenceIndex index = new PresenceIndex(1000);
+        index.online("u1");
+        index.online("u2");
+        index.offline("u2");
+        index.online("u3");
+        assertEquals(new HashSet<>(Arrays.asList("u1", "u3")), index.filterOnline(Arrays.asList("u1", "u2", "u3", "u4")));
+        assertFalse(index.isOnline("u2"));
+        assertEquals(Long.MAX_VALUE, index.getStalenessMs());
+    }
+
+    @DisplayName("test_resyncReplayEvents")
+    @Test
+    void testResyncReplayEvents() {
+        PresenceIndex index = new PresenceIndex(1000);
+        index.online("u9");
+        long begin = index.beginResync();
+        //同步期间的上下线事件不会被快照覆盖
+        index.online("u1");
+        index.offline("u2");
+        index.completeResync(Arrays.asList("u2", "u3"), begin);
+
+        assertTrue(index.isOnline("u1"));
+        assertFalse(index.isOnline("u2"));
+        assertTrue(index.isOnline("u3"));
+        //窗口内的事件同样会重放
+        assertTrue(index.isOnline("u9"));
+        assertEquals(3, index.size());
+        assertTrue(index.getStalenessMs() < 1000);
+    }
+}
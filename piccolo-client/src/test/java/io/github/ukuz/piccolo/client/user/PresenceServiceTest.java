@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.client.user;
+
+import io.github.ukuz.piccolo.client.properties.ClientProperties;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ukuz90
+ */
+class PresenceServiceTest {
+
+    @DisplayName("test_replayWindowMs")
+    @Test
+    void testReplayWindowMs() {
+        ClientProperties client = new ClientProperties();
+        CoreProperties core = new CoreProperties();
+        assertEquals(10200, PresenceService.replayWindowMs(client, core));
+        //窗口随网关的flush间隔变化
+        core.setPresenceFlushIntervalMs(30000);
+        assertEquals(40000, PresenceService.replayWindowMs(client, core));
+        //显式配置时优先
+        client.setPresenceReplayWindowMs(5000);
+        assertEquals(5000, PresenceService.replayWindowMs(client, core));
+    }
+}
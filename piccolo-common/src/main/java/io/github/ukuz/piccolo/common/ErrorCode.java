@@ -22,6 +22,9 @@ public enum ErrorCode {
     REPEAT_HANDSHAKE(102, "repeat handshake"),
     SESSION_EXPIRED(103, "session expired"),
     INVALID_DEVICE(104, "invalid device"),
+    DISPATCH_FAILURE(105, "dispatch failure"),
+    SERVER_BUSY(106, "server busy"),
+    DISPATCH_TIMEOUT(107, "dispatch timeout"),
     UNKNOWN(-1, "unknown"),
     ;
 
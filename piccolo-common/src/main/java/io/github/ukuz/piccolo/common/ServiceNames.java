@@ -25,5 +25,6 @@ public final class ServiceNames {
     public static final String S_GATEWAY = "/gateway";
     public static final String S_CONNECT = "/connect";
     public static final String S_WS = "/ws";
+    public static final String S_DIRECT_DISPATCH = "/dispatch";
 
 }
@@ -28,6 +28,11 @@ public final class CacheKeys {
 
     private static final String ONLINE_USER_LIST_KEY_PREFIX = "piccolo:oul:";
 
+    /**
+     * 各网关在线人数的hash，field为网关的publicIp
+     */
+    private static final String ONLINE_USER_COUNT_KEY = "piccolo:ouc";
+
     public static String getSessionKey(String sessionId) {
         return SESSION_PREFIX + sessionId;
     }
@@ -43,4 +48,8 @@ public final class CacheKeys {
     public static String getOnlineUserListKey(String publicIP) {
         return ONLINE_USER_LIST_KEY_PREFIX + publicIP;
     }
+
+    public static String getOnlineUserCountKey() {
+        return ONLINE_USER_COUNT_KEY;
+    }
 }
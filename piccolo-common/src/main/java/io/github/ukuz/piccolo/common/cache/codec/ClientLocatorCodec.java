@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.cache.codec;
+
+import io.github.ukuz.piccolo.api.router.ClientLocator;
+
+/**
+ * {@link ClientLocator}的compact格式，v1字段顺序:
+ * host, port, osName, osVersion, clientVersion, deviceId, connId
+ *
+ * connId固定放在最后，便于lua脚本只比较以及替换末尾的connId字段
+ *
+ * @author ukuz90
+ */
+public final class ClientLocatorCodec {
+
+    public static final int VERSION = 1;
+
+    /**
+     * 离线路由末尾的connId字段
+     */
+    public static final String OFFLINE_SUFFIX = CompactWriter.encodeString(null);
+
+    private ClientLocatorCodec() {
+    }
+
+    public static String encode(ClientLocator locator) {
+        return new CompactWriter(VERSION)
+                .writeString(locator.getHost())
+                .writeInt(locator.getPort())
+                .writeString(locator.getOsName())
+                .writeString(locator.getOsVersion())
+                .writeString(locator.getClientVersion())
+                .writeString(locator.getDeviceId())
+                .writeString(locator.getConnId())
+                .toString();
+    }
+
+    public static ClientLocator decode(String value) {
+        CompactReader reader = new CompactReader(value);
+        if (reader.getVersion() != VERSION) {
+            throw new IllegalArgumentException("unsupported client locator version: " + reader.getVersion());
+        }
+        ClientLocator locator = new ClientLocator()
+                .setHost(reader.readString())
+                .setPort(reader.readInt());
+        locator.setOsName(reader.readString());
+        return locator.setOsVersion(reader.readString())
+                .setClientVersion(reader.readString())
+                .setDeviceId(reader.readString())
+                .setConnId(reader.readString());
+    }
+
+    /**
+     * 在线路由末尾的connId字段
+     *
+     * @param connId
+     * @return
+     */
+    public static String connIdSuffix(String connId) {
+        return CompactWriter.encodeString(connId);
+    }
+}
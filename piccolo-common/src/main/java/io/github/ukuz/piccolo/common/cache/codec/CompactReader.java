@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.cache.codec;
+
+import java.util.Base64;
+
+import static io.github.ukuz.piccolo.common.cache.codec.CompactWriter.*;
+
+/**
+ * compact格式的读取，直接在原始字符串上移动下标，除字符串字段外不产生额外的对象
+ *
+ * @author ukuz90
+ * @see CompactWriter
+ */
+public final class CompactReader {
+
+    private final String value;
+    private final int version;
+    private int index;
+
+    public CompactReader(String value) {
+        if (!isCompact(value)) {
+            throw new IllegalArgumentException("not a compact value");
+        }
+        this.value = value;
+        this.index = 1;
+        this.version = readInt();
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isReadable() {
+        return index < value.length();
+    }
+
+    public long readLong() {
+        long result = 0;
+        int shift = 0;
+        char c;
+        do {
+            if (index >= value.length()) {
+                throw new IllegalArgumentException("truncated compact value");
+            }
+            c = value.charAt(index++);
+            result |= (long) (c & PAYLOAD_MASK) << shift;
+            shift += PAYLOAD_BITS;
+        } while ((c & MORE) != 0);
+        return result;
+    }
+
+    public int readInt() {
+        return (int) readLong();
+    }
+
+    public String readString() {
+        long length = readLong();
+        if (length == 0) {
+            return null;
+        }
+        int end = index + (int) (length - 1);
+        if (end > value.length()) {
+            throw new IllegalArgumentException("truncated compact value");
+        }
+        String result = value.substring(index, end);
+        index = end;
+        return result;
+    }
+
+    public byte[] readBytes() {
+        String encoded = readString();
+        return encoded == null ? null : Base64.getDecoder().decode(encoded);
+    }
+}
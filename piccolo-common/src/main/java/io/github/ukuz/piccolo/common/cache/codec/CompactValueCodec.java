@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.cache.codec;
+
+import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.cache.ValueCodec;
+import io.github.ukuz.piccolo.api.router.ClientLocator;
+import io.github.ukuz.piccolo.common.json.Jsons;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+
+/**
+ * 紧凑编码:
+ * 1. 字符串(如在线列表中的userId)、数字原样存储，不再经过json
+ * 2. {@link ClientLocator}使用{@link ClientLocatorCodec}的定长字段顺序格式
+ * 3. 其他类型仍然使用json
+ *
+ * 迁移模式下(默认开启)读取时兼容json格式的旧数据
+ *
+ * @author ukuz90
+ */
+public class CompactValueCodec implements ValueCodec {
+
+    private boolean migration = true;
+
+    @Override
+    public void init(PiccoloContext piccoloContext) {
+        migration = piccoloContext.getProperties(CoreProperties.class).isCacheCodecMigration();
+    }
+
+    @Override
+    public String encode(Object value) {
+        if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        if (value instanceof ClientLocator) {
+            return ClientLocatorCodec.encode((ClientLocator) value);
+        }
+        return Jsons.toJson(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T decode(String value, Class<T> clazz) {
+        if (value == null) {
+            return null;
+        }
+        if (clazz == ClientLocator.class) {
+            if (CompactWriter.isCompact(value)) {
+                return (T) ClientLocatorCodec.decode(value);
+            }
+            return legacy(value, clazz);
+        }
+        if (clazz == String.class) {
+            return (T) (isQuoted(value) ? legacy(value, clazz) : value);
+        }
+        try {
+            if (clazz == Long.class) {
+                return (T) Long.valueOf(value);
+            }
+            if (clazz == Integer.class) {
+                return (T) Integer.valueOf(value);
+            }
+        } catch (NumberFormatException e) {
+            return legacy(value, clazz);
+        }
+        return Jsons.fromJson(value, clazz);
+    }
+
+    private <T> T legacy(String value, Class<T> clazz) {
+        if (!migration) {
+            throw new IllegalArgumentException("unexpected legacy value for " + clazz.getSimpleName());
+        }
+        return Jsons.fromJson(value, clazz);
+    }
+
+    private static boolean isQuoted(String value) {
+        return value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"';
+    }
+}
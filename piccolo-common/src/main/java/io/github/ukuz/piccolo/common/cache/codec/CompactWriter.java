@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.cache.codec;
+
+import java.util.Base64;
+
+/**
+ * compact格式的写入:
+ * 以{@link #MAGIC}开头，紧跟版本号，之后按字段顺序依次写入，不包含字段名
+ * 整数使用变长编码，每个char携带6位数据，0x40表示后面还有数据，所以控制字符都小于0x80，UTF-8下只占一个字节
+ * 字符串写入长度+1(0表示null)之后写入原始字符，二进制写入base64
+ *
+ * 缓存接口是字符串类型的，直接以字符串承载可以同时兼容jedis/redisson/netty客户端
+ *
+ * @author ukuz90
+ */
+public final class CompactWriter {
+
+    public static final char MAGIC = '\u0001';
+
+    static final int PAYLOAD_BITS = 6;
+    static final int PAYLOAD_MASK = (1 << PAYLOAD_BITS) - 1;
+    static final int MORE = 1 << PAYLOAD_BITS;
+
+    private final StringBuilder sb;
+
+    public CompactWriter(int version) {
+        this(version, 64);
+    }
+
+    public CompactWriter(int version, int capacity) {
+        sb = new StringBuilder(capacity);
+        sb.append(MAGIC);
+        writeLong(version);
+    }
+
+    public CompactWriter writeLong(long value) {
+        while ((value & ~PAYLOAD_MASK) != 0) {
+            sb.append((char) ((value & PAYLOAD_MASK) | MORE));
+            value >>>= PAYLOAD_BITS;
+        }
+        sb.append((char) value);
+        return this;
+    }
+
+    public CompactWriter writeInt(int value) {
+        return writeLong(value & 0xFFFFFFFFL);
+    }
+
+    public CompactWriter writeString(String value) {
+        sb.append(encodeString(value));
+        return this;
+    }
+
+    /**
+     * 二进制字段以base64(无padding)写入，避免大于0x7F的字节在UTF-8下膨胀
+     *
+     * @param value
+     * @return
+     */
+    public CompactWriter writeBytes(byte[] value) {
+        return writeString(value == null ? null : Base64.getEncoder().withoutPadding().encodeToString(value));
+    }
+
+    public static boolean isCompact(String value) {
+        return value != null && !value.isEmpty() && value.charAt(0) == MAGIC;
+    }
+
+    /**
+     * 单个字符串字段的编码，可用于lua脚本中按后缀匹配字段
+     *
+     * @param value
+     * @return
+     */
+    public static String encodeString(String value) {
+        StringBuilder sb = new StringBuilder(value == null ? 1 : value.length() + 2);
+        long length = value == null ? 0 : value.length() + 1L;
+        while ((length & ~PAYLOAD_MASK) != 0) {
+            sb.append((char) ((length & PAYLOAD_MASK) | MORE));
+            length >>>= PAYLOAD_BITS;
+        }
+        sb.append((char) length);
+        if (value != null) {
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+}
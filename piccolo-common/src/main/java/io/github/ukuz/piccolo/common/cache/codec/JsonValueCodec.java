@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.cache.codec;
+
+import io.github.ukuz.piccolo.api.cache.ValueCodec;
+import io.github.ukuz.piccolo.api.router.ClientLocator;
+import io.github.ukuz.piccolo.common.json.Jsons;
+
+/**
+ * json编码，与历史数据保持一致，读取时也兼容compact格式的路由以及未加引号的字符串
+ *
+ * @author ukuz90
+ */
+public class JsonValueCodec implements ValueCodec {
+
+    @Override
+    public String encode(Object value) {
+        if (value instanceof ClientLocator) {
+            return ((ClientLocator) value).toJson();
+        }
+        return Jsons.toJson(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T decode(String value, Class<T> clazz) {
+        //滚动升级期间其他节点可能已经写入compact格式的路由
+        if (clazz == ClientLocator.class && CompactWriter.isCompact(value)) {
+            return (T) ClientLocatorCodec.decode(value);
+        }
+        //compact格式的字符串(如在线列表中的userId)原样存储，没有json引号
+        if (clazz == String.class && value != null && !isQuoted(value)) {
+            return (T) value;
+        }
+        return Jsons.fromJson(value, clazz);
+    }
+
+    private static boolean isQuoted(String value) {
+        return value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"';
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.cache.codec;
+
+import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.cache.ValueCodec;
+import io.github.ukuz.piccolo.api.common.utils.StringUtils;
+import io.github.ukuz.piccolo.api.spi.SpiLoader;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+
+/**
+ * 按piccolo.core.cache-codec获取缓存值的编解码，
+ * 绕过{@link io.github.ukuz.piccolo.api.cache.CacheManager}直接拼装缓存值(例如zset成员)时也需要使用同一个codec
+ *
+ * @author ukuz90
+ */
+public final class ValueCodecs {
+
+    private ValueCodecs() {}
+
+    public static ValueCodec of(PiccoloContext piccoloContext) {
+        String name = piccoloContext.getProperties(CoreProperties.class).getCacheCodec();
+        ValueCodec codec = StringUtils.hasText(name)
+                ? SpiLoader.getLoader(ValueCodec.class).getExtension(name)
+                : SpiLoader.getLoader(ValueCodec.class).getExtension();
+        codec.init(piccoloContext);
+        return codec;
+    }
+}
@@ -31,6 +31,15 @@ public enum CommandType {
     KICK(9),
     UNBIND_USER(10),
     ID_GEN(11),
+    GATEWAY_BATCH_PUSH(12),
+    GATEWAY_TAG_PUSH(13),
+    PUSH(14),
+    ACK(15),
+    PUSH_RESULT(16),
+    DIRECT_DISPATCH(17),
+    DIRECT_DISPATCH_RESPONSE(18),
+    CLUSTER_CONTROL(19),
+    REDIRECT(20),
 
     UNKNOWN(-1);
 
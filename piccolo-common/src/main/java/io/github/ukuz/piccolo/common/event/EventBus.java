@@ -15,48 +15,93 @@
  */
 package io.github.ukuz.piccolo.common.event;
 
-import com.google.common.eventbus.AsyncEventBus;
 import io.github.ukuz.piccolo.api.event.ApplicationEvent;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 
 /**
+ * 按事件类型分发的事件总线:
+ * 1. 订阅时确定事件类型，每种事件的订阅者列表在首次发布时解析并缓存，分发时不需要反射
+ * 2. 每个订阅者有独立的环形队列，由事件线程池按批次消费，处理器一次收到一批事件
+ * 3. 环形队列满时事件转入订阅者的溢出队列，仍由事件线程池消费，不丢弃也不在发布线程上处理
+ *
  * @author ukuz90
  */
 public final class EventBus {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(EventBus.class);
+    private static final int DEFAULT_RING_SIZE = 8192;
+    private static final int DEFAULT_BATCH_SIZE = 128;
+    private static final Subscriber<?>[] EMPTY = new Subscriber<?>[0];
+
+    private static final List<Subscriber<?>> SUBSCRIBERS = new CopyOnWriteArrayList<>();
+    private static final ConcurrentMap<Class<?>, Subscriber<?>[]> RESOLVED = new ConcurrentHashMap<>();
+
+    private static volatile Executor executor;
+    private static volatile int ringSize = DEFAULT_RING_SIZE;
+    private static volatile int batchSize = DEFAULT_BATCH_SIZE;
 
-    private static com.google.common.eventbus.EventBus delegate;
+    private EventBus() {}
 
     public static void create(Executor executor) {
-        delegate = new AsyncEventBus(executor, ((exception, context) -> {
-            exception.printStackTrace();
-            LOGGER.error("event bus subscriber failure, cause: {} context: {}", exception, context.toString());
-        }));
+        create(executor, DEFAULT_RING_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    public static void create(Executor executor, int ringSize, int batchSize) {
+        EventBus.ringSize = ringSize > 0 ? ringSize : DEFAULT_RING_SIZE;
+        EventBus.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        EventBus.executor = executor;
     }
 
     public static void post(ApplicationEvent event) throws EventException {
-        if (delegate == null) {
+        Executor current = executor;
+        if (current == null) {
             throw new EventException("eventBus was not initialized");
         }
-        delegate.post(event);
+        Subscriber<?>[] subscribers = RESOLVED.get(event.getClass());
+        if (subscribers == null) {
+            subscribers = RESOLVED.computeIfAbsent(event.getClass(), EventBus::resolve);
+        }
+        for (Subscriber<?> subscriber : subscribers) {
+            subscriber.post(event, current);
+        }
     }
 
-    public static void register(Object obj) {
-        if (delegate == null) {
-            throw new EventException("eventBus was not initialized");
-        }
-        delegate.register(obj);
+    /**
+     * 订阅事件，eventType的子类事件也会被投递
+     *
+     * @param name 订阅者名称，用于监控
+     * @param eventType
+     * @param handler
+     * @param <E>
+     */
+    public static <E extends ApplicationEvent> void subscribe(String name, Class<E> eventType, EventHandler<? super E> handler) {
+        SUBSCRIBERS.add(new Subscriber<>(name, eventType, handler, ringSize, batchSize));
+        RESOLVED.clear();
     }
 
-    public static void unregister(Object obj) {
-        if (delegate == null) {
-            throw new EventException("eventBus was not initialized");
+    /**
+     * 取消该处理器的全部订阅，已经进入队列的事件仍会被处理
+     *
+     * @param handler
+     */
+    public static void unsubscribe(EventHandler<?> handler) {
+        SUBSCRIBERS.removeIf(subscriber -> subscriber.getHandler() == handler);
+        RESOLVED.clear();
+    }
+
+    private static Subscriber<?>[] resolve(Class<?> type) {
+        List<Subscriber<?>> result = new ArrayList<>();
+        for (Subscriber<?> subscriber : SUBSCRIBERS) {
+            if (subscriber.getEventType().isAssignableFrom(type)) {
+                result.add(subscriber);
+            }
         }
-        delegate.unregister(obj);
+        return result.isEmpty() ? EMPTY : result.toArray(EMPTY);
     }
 
 }
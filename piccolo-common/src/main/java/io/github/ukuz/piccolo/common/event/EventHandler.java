@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.event;
+
+import io.github.ukuz.piccolo.api.event.ApplicationEvent;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 事件处理器，同一个处理器的事件按批次串行回调
+ *
+ * @author ukuz90
+ */
+@FunctionalInterface
+public interface EventHandler<E extends ApplicationEvent> {
+
+    /**
+     * 处理单个事件
+     *
+     * @param event
+     */
+    void onEvent(E event);
+
+    /**
+     * 处理一批事件，需要合并IO的处理器可以覆盖该方法
+     *
+     * @param events
+     */
+    default void onEvents(List<E> events) {
+        for (E event : events) {
+            onEvent(event);
+        }
+    }
+
+    /**
+     * 只按批次处理事件的处理器
+     *
+     * @param consumer
+     * @param <E>
+     * @return
+     */
+    static <E extends ApplicationEvent> EventHandler<E> batch(Consumer<List<E>> consumer) {
+        return new EventHandler<E>() {
+            @Override
+            public void onEvent(E event) {
+                consumer.accept(Collections.singletonList(event));
+            }
+
+            @Override
+            public void onEvents(List<E> events) {
+                consumer.accept(events);
+            }
+        };
+    }
+}
@@ -15,13 +15,22 @@
  */
 package io.github.ukuz.piccolo.common.event;
 
+import io.github.ukuz.piccolo.api.event.ApplicationEvent;
+
 /**
  * @author ukuz90
  */
 public abstract class EventObservable {
 
-    public EventObservable() {
-        EventBus.register(this);
+    /**
+     * 订阅事件，订阅者以类名和事件名命名
+     *
+     * @param eventType
+     * @param handler
+     * @param <E>
+     */
+    protected <E extends ApplicationEvent> void subscribe(Class<E> eventType, EventHandler<? super E> handler) {
+        EventBus.subscribe(getClass().getSimpleName() + "." + eventType.getSimpleName(), eventType, handler);
     }
 
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.event;
+
+import io.github.ukuz.piccolo.api.event.ApplicationEvent;
+import io.github.ukuz.piccolo.monitor.MetricsMonitor;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.internal.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个处理器的订阅，事件先进入环形队列，由事件线程池按批次取出后回调处理器
+ * 同一时刻每个订阅最多只占用一个线程
+ * 环形队列满时事件转入无界的溢出队列，仍由订阅自身的批处理消费，不会在发布线程上回调处理器；
+ * 连接关闭、上下线、踢人等事件关系到路由与在线状态的正确性，任何情况下都不丢弃
+ *
+ * @author ukuz90
+ */
+final class Subscriber<E extends ApplicationEvent> implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Subscriber.class);
+
+    private static final String QUEUE_TAG = "piccolo_event_bus_queue";
+    private static final String OVERFLOW_TAG = "piccolo_event_bus_overflow";
+
+    private final String name;
+    private final Class<E> eventType;
+    private final EventHandler<? super E> handler;
+    private final Queue<E> ring;
+    private final Queue<E> spill = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger spillSize = new AtomicInteger();
+    private final int spillWarnSize;
+    private final int batchSize;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong overflow = new AtomicLong();
+    private final Timer latency;
+    private volatile Executor executor;
+
+    Subscriber(String name, Class<E> eventType, EventHandler<? super E> handler, int ringSize, int batchSize) {
+        this.name = name;
+        this.eventType = eventType;
+        this.handler = handler;
+        this.ring = PlatformDependent.newFixedMpscQueue(ringSize);
+        this.spillWarnSize = ringSize;
+        this.batchSize = batchSize;
+        this.latency = MetricsMonitor.getEventHandleTime(name);
+        MetricsMonitor.gaugeWithStrongRef(QUEUE_TAG, null, name, () -> ring.size() + spillSize.get());
+        MetricsMonitor.gaugeWithStrongRef(OVERFLOW_TAG, null, name, overflow::get);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Class<E> getEventType() {
+        return eventType;
+    }
+
+    EventHandler<? super E> getHandler() {
+        return handler;
+    }
+
+    void post(Object event, Executor executor) {
+        E e = eventType.cast(event);
+        this.executor = executor;
+        //溢出队列非空时新事件也进入溢出队列，保证与已溢出的事件顺序一致
+        if (spillSize.get() > 0 || !ring.offer(e)) {
+            spill.offer(e);
+            overflow.incrementAndGet();
+            int size = spillSize.incrementAndGet();
+            if (size % spillWarnSize == 0) {
+                LOGGER.warn("event bus overflow, subscriber: {} spilled: {}", name, size);
+            }
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                run();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        List<E> batch = new ArrayList<>(Math.min(batchSize, ring.size() + 1));
+        E event;
+        while (batch.size() < batchSize && (event = ring.poll()) != null) {
+            batch.add(event);
+        }
+        while (batch.size() < batchSize && (event = spill.poll()) != null) {
+            spillSize.decrementAndGet();
+            batch.add(event);
+        }
+        if (!batch.isEmpty()) {
+            handle(batch);
+        }
+        scheduled.set(false);
+        //释放之后可能有新的事件进入，需要再次调度
+        if (!ring.isEmpty() || !spill.isEmpty()) {
+            schedule();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handle(List<E> batch) {
+        long start = System.nanoTime();
+        try {
+            ((EventHandler<E>) handler).onEvents(batch);
+        } catch (Throwable t) {
+            LOGGER.error("event handler failure, subscriber: {} batch: {} cause: {}", name, batch.size(), t);
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
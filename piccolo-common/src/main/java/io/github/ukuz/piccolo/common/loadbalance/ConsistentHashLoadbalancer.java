@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.loadbalance;
+
+import io.github.ukuz.piccolo.api.loadbalance.AbstractLoadbalancer;
+import io.github.ukuz.piccolo.api.loadbalance.LoadBalancer;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 一致性哈希，同一个key(例如userId)总是落到同一个节点上，节点增减时只影响相邻区间
+ * 未指定key时退化为随机
+ *
+ * @author ukuz90
+ */
+public class ConsistentHashLoadbalancer extends AbstractLoadbalancer implements LoadBalancer {
+
+    private static final int VIRTUAL_NODES = 160;
+
+    /**
+     * 节点集合 -> 哈希环
+     */
+    private final ConcurrentMap<String, Ring> rings = new ConcurrentHashMap<>();
+
+    @Override
+    protected ServiceInstance doChoose(List<? extends ServiceInstance> serviceInstances) {
+        return serviceInstances.get(ThreadLocalRandom.current().nextInt(serviceInstances.size()));
+    }
+
+    @Override
+    protected ServiceInstance doChoose(List<? extends ServiceInstance> serviceInstances, String key) {
+        String members = MemberSet.keyOf(serviceInstances);
+        Ring current = rings.get(members);
+        if (current == null) {
+            if (rings.size() >= MemberSet.MAX_GROUPS) {
+                rings.clear();
+            }
+            current = rings.computeIfAbsent(members, k -> new Ring(serviceInstances));
+        }
+        return current.select(hash(key));
+    }
+
+    static long hash(String key) {
+        //FNV-1a，再经过fmix64打散
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Ring {
+        private final TreeMap<Long, ServiceInstance> nodes = new TreeMap<>();
+
+        Ring(List<? extends ServiceInstance> serviceInstances) {
+            for (ServiceInstance instance : serviceInstances) {
+                String hostAndPort = instance.getHostAndPort();
+                for (int i = 0; i < VIRTUAL_NODES; i++) {
+                    nodes.put(hash(hostAndPort + "#" + i), instance);
+                }
+            }
+        }
+
+        ServiceInstance select(long hash) {
+            Map.Entry<Long, ServiceInstance> entry = nodes.ceilingEntry(hash);
+            return entry != null ? entry.getValue() : nodes.firstEntry().getValue();
+        }
+    }
+}
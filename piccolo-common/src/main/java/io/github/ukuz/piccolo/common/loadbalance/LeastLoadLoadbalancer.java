@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.loadbalance;
+
+import io.github.ukuz.piccolo.api.loadbalance.AbstractLoadbalancer;
+import io.github.ukuz.piccolo.api.loadbalance.LoadBalancer;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 随机选取两个节点，取负载得分较低的一个(power of two choices)
+ * 相比直接取全局最小，不会在元数据刷新之前把流量全部打到同一个节点上
+ * 节点未发布负载信息时退化为随机
+ *
+ * @author ukuz90
+ */
+public class LeastLoadLoadbalancer extends AbstractLoadbalancer implements LoadBalancer {
+
+    @Override
+    protected ServiceInstance doChoose(List<? extends ServiceInstance> serviceInstances) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int size = serviceInstances.size();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = serviceInstances.get(first);
+        ServiceInstance b = serviceInstances.get(second);
+        if (!NodeLoad.isReported(a) || !NodeLoad.isReported(b)) {
+            return a;
+        }
+        return NodeLoad.score(a) <= NodeLoad.score(b) ? a : b;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.loadbalance;
+
+import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 负载均衡器是SPI单例，不同的调用方(例如不同topic分组)传入的节点列表不同，
+ * 有状态的负载均衡器需要按节点集合分别保存状态
+ *
+ * @author ukuz90
+ */
+final class MemberSet {
+
+    /**
+     * 保存的节点集合数上限，超过后清空重建，避免节点频繁变化时无限增长
+     */
+    static final int MAX_GROUPS = 256;
+
+    private MemberSet() {}
+
+    /**
+     * @return 与顺序无关的节点集合标识
+     */
+    static String keyOf(List<? extends ServiceInstance> serviceInstances) {
+        String[] members = new String[serviceInstances.size()];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = serviceInstances.get(i).getHostAndPort();
+        }
+        Arrays.sort(members);
+        return String.join(",", members);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.loadbalance;
+
+import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
+
+/**
+ * 节点通过注册中心元数据发布的负载信息
+ *
+ * @author ukuz90
+ */
+public final class NodeLoad {
+
+    /**
+     * 当前连接数
+     */
+    public static final String META_CONNECTIONS = "load.connections";
+    /**
+     * EventLoop积压的任务数
+     */
+    public static final String META_QUEUE = "load.queue";
+    /**
+     * CPU使用率，[0, 1]
+     */
+    public static final String META_CPU = "load.cpu";
+    /**
+     * 节点的静态权重
+     */
+    public static final String META_WEIGHT = "weight";
+
+    public static final int DEFAULT_WEIGHT = 100;
+
+    /**
+     * 积压任务相对于连接数的放大系数，积压往往意味着节点已经处理不过来
+     */
+    private static final int QUEUE_FACTOR = 10;
+    private static final double MIN_IDLE = 0.05;
+
+    private NodeLoad() {}
+
+    /**
+     * 是否发布了负载信息
+     *
+     * @param instance
+     * @return
+     */
+    public static boolean isReported(ServiceInstance instance) {
+        return instance.getMetaValue(META_CONNECTIONS) != null;
+    }
+
+    /**
+     * 负载得分，越小越空闲
+     *
+     * @param instance
+     * @return
+     */
+    public static double score(ServiceInstance instance) {
+        long connections = parseLong(instance.getMetaValue(META_CONNECTIONS), 0);
+        long queue = parseLong(instance.getMetaValue(META_QUEUE), 0);
+        double idle = Math.max(MIN_IDLE, 1 - cpu(instance));
+        return (connections + queue * QUEUE_FACTOR + 1) / idle;
+    }
+
+    /**
+     * 有效权重，静态权重按CPU空闲比例折算，最小为1
+     *
+     * @param instance
+     * @return
+     */
+    public static int weight(ServiceInstance instance) {
+        long weight = parseLong(instance.getMetaValue(META_WEIGHT), DEFAULT_WEIGHT);
+        if (weight <= 0) {
+            weight = DEFAULT_WEIGHT;
+        }
+        return (int) Math.max(1, Math.round(weight * (1 - cpu(instance))));
+    }
+
+    private static double cpu(ServiceInstance instance) {
+        String value = instance.getMetaValue(META_CPU);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            double cpu = Double.parseDouble(value);
+            return cpu < 0 ? 0 : Math.min(cpu, 1);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -20,7 +20,7 @@ import io.github.ukuz.piccolo.api.loadbalance.LoadBalancer;
 import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
 
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * @author ukuz90
@@ -28,8 +28,7 @@ import java.util.Random;
 public class RandomLoadbalancer extends AbstractLoadbalancer implements LoadBalancer {
     @Override
     protected ServiceInstance doChoose(List<? extends ServiceInstance> serviceInstances) {
-        Random random = new Random();
-        int index = random.nextInt(serviceInstances.size());
+        int index = ThreadLocalRandom.current().nextInt(serviceInstances.size());
         return serviceInstances.get(index);
     }
 }
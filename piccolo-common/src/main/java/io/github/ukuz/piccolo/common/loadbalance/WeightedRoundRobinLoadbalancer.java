@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.loadbalance;
+
+import io.github.ukuz.piccolo.api.loadbalance.AbstractLoadbalancer;
+import io.github.ukuz.piccolo.api.loadbalance.LoadBalancer;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 平滑加权轮询，权重见{@link NodeLoad#weight(ServiceInstance)}
+ *
+ * @author ukuz90
+ */
+public class WeightedRoundRobinLoadbalancer extends AbstractLoadbalancer implements LoadBalancer {
+
+    /**
+     * 节点集合 -> 各节点的当前权重，不同节点集合之间互不影响
+     */
+    private final Map<String, Map<String, long[]>> groups = new HashMap<>();
+
+    @Override
+    protected synchronized ServiceInstance doChoose(List<? extends ServiceInstance> serviceInstances) {
+        String members = MemberSet.keyOf(serviceInstances);
+        Map<String, long[]> currentWeights = groups.get(members);
+        if (currentWeights == null) {
+            //节点集合变化后旧的分组不会再被使用，超过上限时整体清理
+            if (groups.size() >= MemberSet.MAX_GROUPS) {
+                groups.clear();
+            }
+            currentWeights = new HashMap<>(serviceInstances.size() * 2);
+            groups.put(members, currentWeights);
+        }
+        ServiceInstance selected = null;
+        long[] selectedWeight = null;
+        long total = 0;
+        for (ServiceInstance instance : serviceInstances) {
+            int weight = NodeLoad.weight(instance);
+            long[] current = currentWeights.computeIfAbsent(instance.getHostAndPort(), k -> new long[1]);
+            current[0] += weight;
+            total += weight;
+            if (selectedWeight == null || current[0] > selectedWeight[0]) {
+                selected = instance;
+                selectedWeight = current;
+            }
+        }
+        selectedWeight[0] -= total;
+        return selected;
+    }
+}
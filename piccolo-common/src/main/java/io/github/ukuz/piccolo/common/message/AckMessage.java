@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+
+import static io.github.ukuz.piccolo.common.constants.CommandType.ACK;
+
+/**
+ * 客户端的累积ack，表示seq及之前的推送均已收到
+ *
+ * @author ukuz90
+ */
+public class AckMessage extends ByteBufMessage {
+
+    public int seq;
+
+    public AckMessage(Connection connection) {
+        super(connection, ACK.getCmd());
+    }
+
+    @Override
+    protected void decodeBody0(ByteBuf buf) {
+        seq = readInt(buf);
+    }
+
+    @Override
+    protected void encodeBody0(ByteBuf buf) {
+        writeInt(buf, seq);
+    }
+
+    public static AckMessage build(Connection connection) {
+        return new AckMessage(connection);
+    }
+
+    public AckMessage seq(int seq) {
+        this.seq = seq;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "AckMessage{" +
+                "seq=" + seq +
+                '}';
+    }
+}
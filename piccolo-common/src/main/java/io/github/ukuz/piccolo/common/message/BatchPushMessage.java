@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static io.github.ukuz.piccolo.common.constants.CommandType.GATEWAY_BATCH_PUSH;
+
+/**
+ * 同一份内容推送给同一网关上的多个用户，由网关在本地扇出
+ *
+ * @author ukuz90
+ */
+public class BatchPushMessage extends ByteBufMessage {
+
+    public List<String> userIds;
+    public byte[] content;
+
+    public BatchPushMessage(Connection connection) {
+        super(connection, GATEWAY_BATCH_PUSH.getCmd());
+    }
+
+    @Override
+    protected void decodeBody0(ByteBuf buf) {
+        int size = readInt(buf);
+        userIds = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            userIds.add(readString(buf));
+        }
+        content = readBytes(buf);
+    }
+
+    @Override
+    protected void encodeBody0(ByteBuf buf) {
+        writeInt(buf, userIds.size());
+        userIds.forEach(userId -> writeString(buf, userId));
+        writeBytes(buf, content);
+    }
+
+    public static BatchPushMessage build(Connection connection) {
+        return new BatchPushMessage(connection);
+    }
+
+    public BatchPushMessage userIds(Collection<String> userIds) {
+        this.userIds = new ArrayList<>(userIds);
+        return this;
+    }
+
+    public BatchPushMessage content(byte[] content) {
+        this.content = content;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchPushMessage{" +
+                "userIds=" + userIds +
+                ", content=" + Arrays.toString(content) +
+                '}';
+    }
+}
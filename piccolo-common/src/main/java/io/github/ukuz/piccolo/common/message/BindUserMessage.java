@@ -47,6 +47,23 @@ public class BindUserMessage extends ByteBufMessage {
         writeString(buf, data);
     }
 
+    /**
+     * 握手或快速重连中携带的绑定请求，响应与原请求使用相同的sessionId
+     *
+     * @param connection
+     * @param userId
+     * @param tags
+     * @param request
+     * @return
+     */
+    public static BindUserMessage from(Connection connection, String userId, String tags, ByteBufMessage request) {
+        BindUserMessage bindMsg = new BindUserMessage(connection);
+        bindMsg.userId = userId;
+        bindMsg.tags = tags;
+        bindMsg.setSessionId(request.getSessionId());
+        return bindMsg;
+    }
+
     @Override
     public String toString() {
         return "BindUserMessage{" +
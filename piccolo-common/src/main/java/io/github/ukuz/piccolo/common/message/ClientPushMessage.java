@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Arrays;
+
+import static io.github.ukuz.piccolo.common.constants.CommandType.PUSH;
+
+/**
+ * 网关下发给客户端、需要客户端ack的推送，seq在单个连接内递增
+ *
+ * @author ukuz90
+ */
+public class ClientPushMessage extends ByteBufMessage {
+
+    public int seq;
+    public byte ackModel;
+    public byte[] payload;
+
+    public ClientPushMessage(Connection connection) {
+        super(connection, PUSH.getCmd());
+    }
+
+    @Override
+    protected void decodeBody0(ByteBuf buf) {
+        seq = readInt(buf);
+        ackModel = readByte(buf);
+        payload = readBytes(buf);
+    }
+
+    @Override
+    protected void encodeBody0(ByteBuf buf) {
+        writeInt(buf, seq);
+        writeByte(buf, ackModel);
+        writeBytes(buf, payload);
+    }
+
+    public static ClientPushMessage build(Connection connection) {
+        return new ClientPushMessage(connection);
+    }
+
+    public ClientPushMessage seq(int seq) {
+        this.seq = seq;
+        return this;
+    }
+
+    public ClientPushMessage ackModel(byte ackModel) {
+        this.ackModel = ackModel;
+        return this;
+    }
+
+    public ClientPushMessage payload(byte[] payload) {
+        this.payload = payload;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientPushMessage{" +
+                "seq=" + seq +
+                ", ackModel=" + ackModel +
+                ", payload=" + Arrays.toString(payload) +
+                '}';
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.ukuz.piccolo.common.constants.CommandType.CLUSTER_CONTROL;
+
+/**
+ * 网关之间直接发送的集群控制消息，多条控制指令攒批后一次发送
+ *
+ * @author ukuz90
+ */
+public class ClusterControlMessage extends ByteBufMessage {
+
+    /**
+     * 踢掉目标网关上的指定连接
+     */
+    public static final byte TYPE_KICK = 1;
+    /**
+     * 用户在其他网关上线，目标网关把保存的离线消息转发到replyTo网关
+     */
+    public static final byte TYPE_REPLAY_OFFLINE = 2;
+
+    public List<Entry> entries;
+
+    public ClusterControlMessage(Connection connection) {
+        super(connection, CLUSTER_CONTROL.getCmd());
+    }
+
+    @Override
+    protected void decodeBody0(ByteBuf buf) {
+        int size = readInt(buf);
+        entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Entry entry = new Entry();
+            entry.type = readByte(buf);
+            entry.userId = readString(buf);
+            entry.clientType = readByte(buf);
+            entry.connId = readString(buf);
+            entry.deviceId = readString(buf);
+            entry.targetAddress = readString(buf);
+            entry.targetPort = readInt(buf);
+            entry.replyTo = readString(buf);
+            entries.add(entry);
+        }
+    }
+
+    @Override
+    protected void encodeBody0(ByteBuf buf) {
+        writeInt(buf, entries.size());
+        for (Entry entry : entries) {
+            writeByte(buf, entry.type);
+            writeString(buf, entry.userId);
+            writeByte(buf, entry.clientType);
+            writeString(buf, entry.connId);
+            writeString(buf, entry.deviceId);
+            writeString(buf, entry.targetAddress);
+            writeInt(buf, entry.targetPort);
+            writeString(buf, entry.replyTo);
+        }
+    }
+
+    public static ClusterControlMessage build(Connection connection) {
+        return new ClusterControlMessage(connection);
+    }
+
+    public ClusterControlMessage entries(List<Entry> entries) {
+        this.entries = entries;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterControlMessage{" +
+                "entries=" + entries +
+                '}';
+    }
+
+    public static class Entry {
+        public byte type;
+        public String userId;
+        public byte clientType;
+        public String connId;
+        public String deviceId;
+        public String targetAddress;
+        public int targetPort;
+        public String replyTo;
+
+        public static Entry kick(String userId, byte clientType, String connId, String deviceId, String targetAddress, int targetPort) {
+            Entry entry = new Entry();
+            entry.type = TYPE_KICK;
+            entry.userId = userId;
+            entry.clientType = clientType;
+            entry.connId = connId;
+            entry.deviceId = deviceId;
+            entry.targetAddress = targetAddress;
+            entry.targetPort = targetPort;
+            return entry;
+        }
+
+        public static Entry replayOffline(String userId, byte clientType, String targetAddress, int targetPort, String replyTo) {
+            Entry entry = new Entry();
+            entry.type = TYPE_REPLAY_OFFLINE;
+            entry.userId = userId;
+            entry.clientType = clientType;
+            entry.targetAddress = targetAddress;
+            entry.targetPort = targetPort;
+            entry.replyTo = replyTo;
+            return entry;
+        }
+
+        public String getTargetHostAndPort() {
+            return targetAddress + ":" + targetPort;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "type=" + type +
+                    ", userId='" + userId + '\'' +
+                    ", clientType=" + clientType +
+                    ", connId='" + connId + '\'' +
+                    ", deviceId='" + deviceId + '\'' +
+                    ", targetAddress='" + targetAddress + '\'' +
+                    ", targetPort=" + targetPort +
+                    ", replyTo='" + replyTo + '\'' +
+                    '}';
+        }
+    }
+}
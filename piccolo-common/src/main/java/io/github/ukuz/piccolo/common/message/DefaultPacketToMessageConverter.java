@@ -54,6 +54,18 @@ public class DefaultPacketToMessageConverter implements PacketToMessageConverter
                 return new IdGenMessage(connection);
             case GATEWAY_PUSH:
                 return new PushMessage(connection);
+            case GATEWAY_BATCH_PUSH:
+                return new BatchPushMessage(connection);
+            case GATEWAY_TAG_PUSH:
+                return new TagPushMessage(connection);
+            case ACK:
+                return new AckMessage(connection);
+            case DIRECT_DISPATCH:
+                return new DirectDispatchMessage(connection);
+            case DIRECT_DISPATCH_RESPONSE:
+                return new DirectDispatchResponseMessage(connection);
+            case CLUSTER_CONTROL:
+                return new ClusterControlMessage(connection);
             default:
                 LOGGER.error("packet covert failure, not found mapping cmd: {} packet: {} conn: {}", cmd, packet, connection);
                 throw new IllegalArgumentException("unknown command, cmd:" + cmd);
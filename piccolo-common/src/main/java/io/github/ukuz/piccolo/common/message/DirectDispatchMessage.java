@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+
+import static io.github.ukuz.piccolo.common.constants.CommandType.DIRECT_DISPATCH;
+
+/**
+ * 网关直连业务服务转发的上行消息，通过packet的sessionId与响应关联
+ *
+ * @author ukuz90
+ */
+public class DirectDispatchMessage extends ByteBufMessage {
+
+    public String topic;
+    public String uid;
+    public long xid;
+    public byte[] payload;
+
+    public DirectDispatchMessage(Connection connection) {
+        super(connection, DIRECT_DISPATCH.getCmd());
+    }
+
+    @Override
+    protected void decodeBody0(ByteBuf buf) {
+        topic = readString(buf);
+        uid = readString(buf);
+        xid = readLong(buf);
+        payload = readBytes(buf);
+    }
+
+    @Override
+    protected void encodeBody0(ByteBuf buf) {
+        writeString(buf, topic);
+        writeString(buf, uid);
+        writeLong(buf, xid);
+        writeBytes(buf, payload);
+    }
+
+    public static DirectDispatchMessage build(Connection connection) {
+        return new DirectDispatchMessage(connection);
+    }
+
+    public DirectDispatchMessage topic(String topic) {
+        this.topic = topic;
+        return this;
+    }
+
+    public DirectDispatchMessage uid(String uid) {
+        this.uid = uid;
+        return this;
+    }
+
+    public DirectDispatchMessage xid(long xid) {
+        this.xid = xid;
+        return this;
+    }
+
+    public DirectDispatchMessage payload(byte[] payload) {
+        this.payload = payload;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "DirectDispatchMessage{" +
+                "sessionId=" + getSessionId() +
+                ", topic='" + topic + '\'' +
+                ", uid='" + uid + '\'' +
+                ", xid=" + xid +
+                ", payload.length=" + (payload == null ? 0 : payload.length) +
+                '}';
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+
+import static io.github.ukuz.piccolo.common.constants.CommandType.DIRECT_DISPATCH_RESPONSE;
+
+/**
+ * 业务服务对{@link DirectDispatchMessage}的响应，sessionId与请求一致
+ *
+ * @author ukuz90
+ */
+public class DirectDispatchResponseMessage extends ByteBufMessage {
+
+    public static final byte CODE_SUCCESS = 0;
+    public static final byte CODE_FAILURE = 1;
+
+    public byte code;
+    public byte[] payload;
+
+    public DirectDispatchResponseMessage(Connection connection) {
+        super(connection, DIRECT_DISPATCH_RESPONSE.getCmd());
+    }
+
+    @Override
+    protected void decodeBody0(ByteBuf buf) {
+        code = readByte(buf);
+        payload = readBytes(buf);
+    }
+
+    @Override
+    protected void encodeBody0(ByteBuf buf) {
+        writeByte(buf, code);
+        writeBytes(buf, payload);
+    }
+
+    public static DirectDispatchResponseMessage build(DirectDispatchMessage request) {
+        DirectDispatchResponseMessage msg = new DirectDispatchResponseMessage(request.getConnection());
+        msg.setSessionId(request.getSessionId());
+        return msg;
+    }
+
+    public DirectDispatchResponseMessage code(byte code) {
+        this.code = code;
+        return this;
+    }
+
+    public DirectDispatchResponseMessage payload(byte[] payload) {
+        this.payload = payload;
+        return this;
+    }
+
+    public boolean isSuccess() {
+        return code == CODE_SUCCESS;
+    }
+
+    @Override
+    public String toString() {
+        return "DirectDispatchResponseMessage{" +
+                "sessionId=" + getSessionId() +
+                ", code=" + code +
+                ", payload.length=" + (payload == null ? 0 : payload.length) +
+                '}';
+    }
+}
@@ -29,6 +29,11 @@ public class FastConnectMessage extends ByteBufMessage {
     public String deviceId;
     public int minHeartbeat;
     public int maxHeartbeat;
+    /**
+     * 可选，快速重连成功后直接绑定用户，省去一次BindUserMessage的往返
+     */
+    public String userId;
+    public String tags;
 
     public FastConnectMessage(Connection connection) {
         super(connection, FAST_CONNECT.getCmd());
@@ -40,6 +45,10 @@ public class FastConnectMessage extends ByteBufMessage {
         deviceId = readString(buf);
         minHeartbeat = readInt(buf);
         maxHeartbeat = readInt(buf);
+        if (buf.isReadable()) {
+            userId = readString(buf);
+            tags = readString(buf);
+        }
     }
 
     @Override
@@ -48,6 +57,10 @@ public class FastConnectMessage extends ByteBufMessage {
         writeString(buf, deviceId);
         writeInt(buf, minHeartbeat);
         writeInt(buf, maxHeartbeat);
+        if (userId != null && !userId.isEmpty()) {
+            writeString(buf, userId);
+            writeString(buf, tags);
+        }
     }
 
     @Override
@@ -57,6 +70,8 @@ public class FastConnectMessage extends ByteBufMessage {
                 ", deviceId='" + deviceId + '\'' +
                 ", minHeartbeat=" + minHeartbeat +
                 ", maxHeartbeat=" + maxHeartbeat +
+                ", userId='" + userId + '\'' +
+                ", tags='" + tags + '\'' +
                 '}';
     }
 }
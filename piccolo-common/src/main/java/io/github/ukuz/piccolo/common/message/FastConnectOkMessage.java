@@ -41,6 +41,11 @@ public class FastConnectOkMessage extends ByteBufMessage {
         writeInt(buf, heartbeat);
     }
 
+    @Override
+    public boolean isCipherBoundary() {
+        return true;
+    }
+
     public static FastConnectOkMessage build(Connection connection) {
         return new FastConnectOkMessage(connection);
     }
@@ -36,6 +36,11 @@ public class HandshakeMessage extends ByteBufMessage {
     public int minHeartbeat;
     public int maxHeartbeat;
     public long timestamp;
+    /**
+     * 可选，握手成功后直接绑定用户，省去一次BindUserMessage的往返
+     */
+    public String userId;
+    public String tags;
 
     public HandshakeMessage(Connection connection) {
         super(connection, HANDSHAKE.getCmd());
@@ -52,6 +57,10 @@ public class HandshakeMessage extends ByteBufMessage {
         this.minHeartbeat = readInt(buf);
         this.maxHeartbeat = readInt(buf);
         this.timestamp = readLong(buf);
+        if (buf.isReadable()) {
+            this.userId = readString(buf);
+            this.tags = readString(buf);
+        }
     }
 
     @Override
@@ -65,6 +74,10 @@ public class HandshakeMessage extends ByteBufMessage {
         this.writeInt(buf, minHeartbeat);
         this.writeInt(buf, maxHeartbeat);
         this.writeLong(buf, timestamp);
+        if (userId != null && !userId.isEmpty()) {
+            this.writeString(buf, userId);
+            this.writeString(buf, tags);
+        }
     }
 
     @Override
@@ -79,6 +92,8 @@ public class HandshakeMessage extends ByteBufMessage {
                 ", minHeartbeat=" + minHeartbeat +
                 ", maxHeartbeat=" + maxHeartbeat +
                 ", timestamp=" + timestamp +
+                ", userId='" + userId + '\'' +
+                ", tags='" + tags + '\'' +
                 '}';
     }
 }
@@ -54,6 +54,11 @@ public class HandshakeOkMessage extends ByteBufMessage {
         writeString(buf, sessionId);
     }
 
+    @Override
+    public boolean isCipherBoundary() {
+        return true;
+    }
+
     public static HandshakeOkMessage build(Connection connection) {
         return new HandshakeOkMessage(connection);
     }
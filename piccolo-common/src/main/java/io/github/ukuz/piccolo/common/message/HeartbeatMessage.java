@@ -25,22 +25,33 @@ import io.netty.buffer.ByteBuf;
  */
 public class HeartbeatMessage extends ByteBufMessage {
 
+    /**
+     * 可选，服务端下发新的心跳间隔(ms)，0表示不变
+     */
+    public int heartbeat;
+
     public HeartbeatMessage(Connection connection) {
         super(connection, HEARTBEAT.getCmd());
     }
 
     @Override
     protected void decodeBody0(ByteBuf buf) {
-
+        if (buf.isReadable()) {
+            this.heartbeat = readInt(buf);
+        }
     }
 
     @Override
     protected void encodeBody0(ByteBuf buf) {
-
+        if (heartbeat > 0) {
+            this.writeInt(buf, heartbeat);
+        }
     }
 
     @Override
     public String toString() {
-        return "HeartbeatMessage{}";
+        return "HeartbeatMessage{" +
+                "heartbeat=" + heartbeat +
+                '}';
     }
 }
@@ -31,6 +31,16 @@ public class PushMessage extends ByteBufMessage {
     public String userId;
     public boolean broadcast;
     public byte[] content;
+    /**
+     * 以下字段用于ack推送，老版本的消息中不存在
+     */
+    public byte ackModel;
+    public int timeout;
+    public long pushId;
+    /**
+     * ack推送只发给该类型的设备，每个设备有独立的pushId；0表示发给用户在本网关的全部设备
+     */
+    public byte clientType;
 
     public PushMessage(Connection connection) {
         super(connection, GATEWAY_PUSH.getCmd());
@@ -41,7 +51,14 @@ public class PushMessage extends ByteBufMessage {
         userId = readString(buf);
         broadcast = readBoolean(buf);
         content = readBytes(buf);
-
+        if (buf.isReadable()) {
+            ackModel = readByte(buf);
+            timeout = readInt(buf);
+            pushId = readLong(buf);
+        }
+        if (buf.isReadable()) {
+            clientType = readByte(buf);
+        }
     }
 
     @Override
@@ -49,6 +66,10 @@ public class PushMessage extends ByteBufMessage {
         writeString(buf, userId);
         writeBoolean(buf, broadcast);
         writeBytes(buf, content);
+        writeByte(buf, ackModel);
+        writeInt(buf, timeout);
+        writeLong(buf, pushId);
+        writeByte(buf, clientType);
     }
 
     public static PushMessage build(Connection connection) {
@@ -65,6 +86,18 @@ public class PushMessage extends ByteBufMessage {
         return this;
     }
 
+    public PushMessage ack(byte ackModel, int timeout, long pushId) {
+        this.ackModel = ackModel;
+        this.timeout = timeout;
+        this.pushId = pushId;
+        return this;
+    }
+
+    public PushMessage clientType(byte clientType) {
+        this.clientType = clientType;
+        return this;
+    }
+
     public PushMessage userId(String userId) {
         this.userId = userId;
         return this;
@@ -76,6 +109,10 @@ public class PushMessage extends ByteBufMessage {
                 "userId='" + userId + '\'' +
                 ", broadcast=" + broadcast +
                 ", content=" + Arrays.toString(content) +
+                ", ackModel=" + ackModel +
+                ", timeout=" + timeout +
+                ", pushId=" + pushId +
+                ", clientType=" + clientType +
                 '}';
     }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Arrays;
+
+import static io.github.ukuz.piccolo.common.constants.CommandType.PUSH_RESULT;
+
+/**
+ * 网关批量回传给PushClient的推送结果
+ *
+ * @author ukuz90
+ */
+public class PushResultMessage extends ByteBufMessage {
+
+    public long[] pushIds;
+    public byte[] resultCodes;
+
+    public PushResultMessage(Connection connection) {
+        super(connection, PUSH_RESULT.getCmd());
+    }
+
+    @Override
+    protected void decodeBody0(ByteBuf buf) {
+        pushIds = readLongs(buf);
+        resultCodes = readBytes(buf);
+    }
+
+    @Override
+    protected void encodeBody0(ByteBuf buf) {
+        writeLongs(buf, pushIds);
+        writeBytes(buf, resultCodes);
+    }
+
+    public static PushResultMessage build(Connection connection) {
+        return new PushResultMessage(connection);
+    }
+
+    public PushResultMessage results(long[] pushIds, byte[] resultCodes) {
+        this.pushIds = pushIds;
+        this.resultCodes = resultCodes;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "PushResultMessage{" +
+                "pushIds=" + Arrays.toString(pushIds) +
+                ", resultCodes=" + Arrays.toString(resultCodes) +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.ByteBufMessage;
+import static io.github.ukuz.piccolo.common.constants.CommandType.*;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 节点下线时通知客户端断开并重连到其他节点
+ *
+ * @author ukuz90
+ */
+public class RedirectMessage extends ByteBufMessage {
+
+    /**
+     * 用于快速重连的session，为空时需要重新握手
+     */
+    public String sessionId;
+    public long expireTime;
+    /**
+     * 建议重连的节点，为空时由客户端自行选择
+     */
+    public String host;
+    public int port;
+
+    public RedirectMessage(Connection connection) {
+        super(connection, REDIRECT.getCmd());
+    }
+
+    @Override
+    protected void decodeBody0(ByteBuf buf) {
+        sessionId = readString(buf);
+        expireTime = readLong(buf);
+        host = readString(buf);
+        port = readInt(buf);
+    }
+
+    @Override
+    protected void encodeBody0(ByteBuf buf) {
+        writeString(buf, sessionId);
+        writeLong(buf, expireTime);
+        writeString(buf, host);
+        writeInt(buf, port);
+    }
+
+    public static RedirectMessage build(Connection connection) {
+        return new RedirectMessage(connection);
+    }
+
+    public RedirectMessage session(String sessionId, long expireTime) {
+        this.sessionId = sessionId;
+        this.expireTime = expireTime;
+        return this;
+    }
+
+    public RedirectMessage target(String host, int port) {
+        this.host = host;
+        this.port = port;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "RedirectMessage{" +
+                "sessionId='" + sessionId + '\'' +
+                ", expireTime=" + expireTime +
+                ", host='" + host + '\'' +
+                ", port=" + port +
+                '}';
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.ByteBufMessage;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Arrays;
+
+import static io.github.ukuz.piccolo.common.constants.CommandType.GATEWAY_TAG_PUSH;
+
+/**
+ * 按标签表达式推送给网关上满足条件的连接
+ *
+ * @author ukuz90
+ */
+public class TagPushMessage extends ByteBufMessage {
+
+    public String expression;
+    public byte[] content;
+
+    public TagPushMessage(Connection connection) {
+        super(connection, GATEWAY_TAG_PUSH.getCmd());
+    }
+
+    @Override
+    protected void decodeBody0(ByteBuf buf) {
+        expression = readString(buf);
+        content = readBytes(buf);
+    }
+
+    @Override
+    protected void encodeBody0(ByteBuf buf) {
+        writeString(buf, expression);
+        writeBytes(buf, content);
+    }
+
+    public static TagPushMessage build(Connection connection) {
+        return new TagPushMessage(connection);
+    }
+
+    public TagPushMessage expression(String expression) {
+        this.expression = expression;
+        return this;
+    }
+
+    public TagPushMessage content(byte[] content) {
+        this.content = content;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "TagPushMessage{" +
+                "expression='" + expression + '\'' +
+                ", content=" + Arrays.toString(content) +
+                '}';
+    }
+}
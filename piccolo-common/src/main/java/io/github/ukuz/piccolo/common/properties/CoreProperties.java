@@ -30,11 +30,38 @@ public class CoreProperties implements Properties {
      * netty, nio
      */
     private String epollProvider;
+    /**
+     * 心跳间隔的上下限(ms)，自适应心跳的探测间隔不会超过上限
+     */
     private Integer maxHeartbeatTime;
     private Integer minHeartbeatTime;
+    /**
+     * 按客户端类型探测更长的心跳间隔，学习NAT超时时间
+     */
+    private Boolean heartbeatAdaptive;
+    /**
+     * 每多少个新连接中抽取一个连接使用探测间隔
+     */
+    private Integer heartbeatProbeRatio;
+    /**
+     * 探测成功多少次后采用探测间隔
+     */
+    private Integer heartbeatProbeSuccesses;
+    /**
+     * 探测失败多少次后缩小探测间隔
+     */
+    private Integer heartbeatProbeFailures;
     private Integer maxPacketSize;
     private Integer maxHbTimeoutMs;
     private Integer sessionExpireTime;
+    /**
+     * 快速重连使用加密票据代替redis中缓存的session
+     */
+    private Boolean sessionTicketEnabled;
+    /**
+     * 票据密钥，keyId:base64(key)，多个用逗号分隔，第一个用于签发。配置中心中的piccolo.session-ticket-keys优先
+     */
+    private String sessionTicketKeys;
     /**
      * nacos,
      */
@@ -43,11 +70,201 @@ public class CoreProperties implements Properties {
      * nacos, zk
      */
     private String srd;
+    /**
+     * kafka, local
+     */
+    private String mq;
 
     /**
-     * jedis, redisson
+     * jedis, redisson, netty
      */
     private String cache = "jedis";
+    /**
+     * 缓存值的编码: json, compact
+     */
+    private String cacheCodec;
+    /**
+     * compact编码下是否兼容读取json格式的旧数据，迁移完成后可以关闭
+     */
+    private Boolean cacheCodecMigration;
+
+    /**
+     * 单个连接上等待ack的最大推送数
+     */
+    private Integer pushAckWindow;
+    /**
+     * 窗口满后单个连接上允许排队的最大推送数
+     */
+    private Integer pushAckMaxWaiting;
+
+    /**
+     * 上行消息按topic攒批发送到MQ，单批最大消息数
+     */
+    private Integer dispatchBatchSize;
+    /**
+     * 上行消息攒批的最大等待时间
+     */
+    private Integer dispatchLingerMs;
+    /**
+     * 等待MQ确认的上行消息超过该字节数后暂停读取连接
+     */
+    private Integer dispatchMaxPendingBytes;
+    /**
+     * 直连业务服务转发的routeKey，多个用逗号分隔，未配置的routeKey经过MQ
+     */
+    private String directDispatchRoutes;
+    /**
+     * 直连转发等待业务服务响应的超时时间
+     */
+    private Integer directDispatchTimeoutMs;
+    /**
+     * 网关之间直连发送踢人等控制消息，关闭后只通过MQ发送
+     */
+    private Boolean clusterControlEnabled;
+    /**
+     * 发往同一个网关的控制消息攒批的最大条数
+     */
+    private Integer clusterControlBatchSize;
+    /**
+     * 控制消息攒批的最大等待时间
+     */
+    private Integer clusterControlLingerMs;
+    /**
+     * 用户上下线在该时间窗口内合并后批量写入redis
+     */
+    private Integer presenceFlushIntervalMs;
+    /**
+     * 单次写入redis的最大上下线变更数
+     */
+    private Integer presenceBatchSize;
+    /**
+     * 节点下线时先从注册中心注销，再分批通知客户端重连到其他节点
+     */
+    private Boolean drainEnabled;
+    /**
+     * 通知客户端重连的时间窗口
+     */
+    private Integer drainWindowMs;
+    /**
+     * 通知完成后等待客户端主动断开的时间，超时后关闭剩余的连接
+     */
+    private Integer drainGraceMs;
+    /**
+     * 通过注册中心元数据发布本节点负载的间隔，0表示不发布
+     */
+    private Integer loadReportIntervalMs;
+    /**
+     * 本节点的静态权重，供加权负载均衡使用
+     */
+    private Integer nodeWeight;
+    /**
+     * 选择业务节点时使用的负载均衡策略，random/p2c/weighted/hash，不配置时使用默认策略
+     */
+    private String loadBalancer;
+    /**
+     * 事件总线中每个订阅者环形队列的容量，队列满时由发布线程直接处理
+     */
+    private Integer eventBusRingSize;
+    /**
+     * 事件总线每次回调订阅者的最大事件数
+     */
+    private Integer eventBusBatchSize;
+
+    public int getDispatchBatchSize() {
+        return dispatchBatchSize != null && dispatchBatchSize > 0 ? dispatchBatchSize : 128;
+    }
+
+    public int getDispatchLingerMs() {
+        return dispatchLingerMs != null && dispatchLingerMs > 0 ? dispatchLingerMs : 5;
+    }
+
+    public int getDispatchMaxPendingBytes() {
+        return dispatchMaxPendingBytes != null && dispatchMaxPendingBytes > 0 ? dispatchMaxPendingBytes : 32 * 1024 * 1024;
+    }
+
+    public int getDirectDispatchTimeoutMs() {
+        return directDispatchTimeoutMs != null && directDispatchTimeoutMs > 0 ? directDispatchTimeoutMs : 3000;
+    }
+
+    public boolean isClusterControlEnabled() {
+        return clusterControlEnabled == null || clusterControlEnabled;
+    }
+
+    public int getClusterControlBatchSize() {
+        return clusterControlBatchSize != null && clusterControlBatchSize > 0 ? clusterControlBatchSize : 64;
+    }
+
+    public int getClusterControlLingerMs() {
+        return clusterControlLingerMs != null && clusterControlLingerMs >= 0 ? clusterControlLingerMs : 1;
+    }
+
+    public boolean isHeartbeatAdaptive() {
+        return heartbeatAdaptive == null || heartbeatAdaptive;
+    }
+
+    public int getHeartbeatProbeRatio() {
+        return heartbeatProbeRatio != null && heartbeatProbeRatio > 0 ? heartbeatProbeRatio : 20;
+    }
+
+    public int getHeartbeatProbeSuccesses() {
+        return heartbeatProbeSuccesses != null && heartbeatProbeSuccesses > 0 ? heartbeatProbeSuccesses : 20;
+    }
+
+    public int getHeartbeatProbeFailures() {
+        return heartbeatProbeFailures != null && heartbeatProbeFailures > 0 ? heartbeatProbeFailures : 3;
+    }
+
+    public boolean isCacheCodecMigration() {
+        return cacheCodecMigration == null || cacheCodecMigration;
+    }
+
+    public boolean isSessionTicketEnabled() {
+        return sessionTicketEnabled != null && sessionTicketEnabled;
+    }
+
+    public int getPresenceFlushIntervalMs() {
+        return presenceFlushIntervalMs != null && presenceFlushIntervalMs > 0 ? presenceFlushIntervalMs : 200;
+    }
+
+    public int getPresenceBatchSize() {
+        return presenceBatchSize != null && presenceBatchSize > 0 ? presenceBatchSize : 512;
+    }
+
+    public boolean isDrainEnabled() {
+        return drainEnabled == null || drainEnabled;
+    }
+
+    public int getDrainWindowMs() {
+        return drainWindowMs != null && drainWindowMs >= 0 ? drainWindowMs : 30000;
+    }
+
+    public int getDrainGraceMs() {
+        return drainGraceMs != null && drainGraceMs >= 0 ? drainGraceMs : 10000;
+    }
+
+    public int getLoadReportIntervalMs() {
+        return loadReportIntervalMs != null && loadReportIntervalMs >= 0 ? loadReportIntervalMs : 5000;
+    }
+
+    public int getNodeWeight() {
+        return nodeWeight != null && nodeWeight > 0 ? nodeWeight : 100;
+    }
+
+    public int getEventBusRingSize() {
+        return eventBusRingSize != null && eventBusRingSize > 0 ? eventBusRingSize : 8192;
+    }
+
+    public int getEventBusBatchSize() {
+        return eventBusBatchSize != null && eventBusBatchSize > 0 ? eventBusBatchSize : 128;
+    }
+
+    public int getPushAckWindow() {
+        return pushAckWindow != null && pushAckWindow > 0 ? pushAckWindow : 32;
+    }
+
+    public int getPushAckMaxWaiting() {
+        return pushAckMaxWaiting != null && pushAckMaxWaiting >= 0 ? pushAckMaxWaiting : 1024;
+    }
 
     public boolean isUseNettyEpoll() {
         if (!"netty".equals(epollProvider)) {
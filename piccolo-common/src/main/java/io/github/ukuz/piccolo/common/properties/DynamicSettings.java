@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.properties;
+
+import io.github.ukuz.piccolo.api.common.utils.StringUtils;
+import io.github.ukuz.piccolo.api.configcenter.ConfigurationChangeType;
+import io.github.ukuz.piccolo.api.configcenter.DynamicConfiguration;
+import io.github.ukuz.piccolo.api.external.common.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 将启动时读取的配置项绑定到配置中心的同名key上，运行期间修改后立即生效:
+ * 1. 新值先解析和校验，不合法的值直接拒绝
+ * 2. 应用失败时恢复为之前的值
+ * 3. 配置中心删除key时恢复为配置文件中的值
+ * 4. 每次变更(包括拒绝和回滚)都记录审计日志
+ *
+ * @author ukuz90
+ */
+public class DynamicSettings {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DynamicSettings.class);
+    private static final Logger AUDIT = LoggerFactory.getLogger("piccolo.audit");
+
+    private final DynamicConfiguration configuration;
+    private final Map<String, Setting<?>> settings = new ConcurrentHashMap<>();
+
+    public DynamicSettings(DynamicConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    public static Setting<Integer> intSetting(String key, int initial) {
+        return new Setting<>(key, initial, Integer::valueOf);
+    }
+
+    public static Setting<Long> longSetting(String key, long initial) {
+        return new Setting<>(key, initial, Long::valueOf);
+    }
+
+    /**
+     * 绑定配置项，若配置中心中已有值则立即应用
+     *
+     * @param setting
+     */
+    public <T> Setting<T> bind(Setting<T> setting) {
+        Assert.notNull(setting.applier, "applier must not be null, key: " + setting.key);
+        if (settings.putIfAbsent(setting.key, setting) != null) {
+            throw new IllegalArgumentException("duplicate dynamic setting: " + setting.key);
+        }
+        if (configuration == null) {
+            return setting;
+        }
+        String value = configuration.getProperty(setting.key);
+        if (StringUtils.hasText(value)) {
+            setting.change(value, "init");
+        }
+        configuration.addListener(setting.key, event -> {
+            if (event.getType() == ConfigurationChangeType.DELETED || !StringUtils.hasText(event.getValue())) {
+                setting.reset();
+            } else {
+                setting.change(event.getValue(), event.getType().name());
+            }
+        });
+        return setting;
+    }
+
+    public Map<String, Setting<?>> getSettings() {
+        return settings;
+    }
+
+    public static final class Setting<T> {
+        private final String key;
+        private final T initial;
+        private final Function<String, T> parser;
+        private Predicate<T> validator = v -> true;
+        private String constraint = "";
+        private Consumer<T> applier;
+        private volatile T value;
+
+        private Setting(String key, T initial, Function<String, T> parser) {
+            this.key = key;
+            this.initial = initial;
+            this.parser = parser;
+            this.value = initial;
+        }
+
+        /**
+         * @param validator 新值需要满足的条件，可以引用其他配置项的当前值
+         * @param constraint 用于日志的条件描述
+         */
+        public Setting<T> validate(Predicate<T> validator, String constraint) {
+            this.validator = this.validator.and(validator);
+            this.constraint = this.constraint.isEmpty() ? constraint : this.constraint + ", " + constraint;
+            return this;
+        }
+
+        public Setting<T> onChange(Consumer<T> applier) {
+            this.applier = applier;
+            return this;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public T get() {
+            return value;
+        }
+
+        synchronized void reset() {
+            apply(initial, "reset");
+        }
+
+        synchronized void change(String raw, String source) {
+            T newValue;
+            try {
+                newValue = parser.apply(raw.trim());
+            } catch (Exception e) {
+                AUDIT.warn("dynamic setting rejected, key: {} value: {} source: {} cause: unparseable", key, raw, source);
+                return;
+            }
+            if (!validator.test(newValue)) {
+                AUDIT.warn("dynamic setting rejected, key: {} value: {} source: {} constraint: {}", key, newValue, source, constraint);
+                return;
+            }
+            apply(newValue, source);
+        }
+
+        private void apply(T newValue, String source) {
+            T old = value;
+            if (Objects.equals(old, newValue)) {
+                return;
+            }
+            value = newValue;
+            try {
+                applier.accept(newValue);
+                AUDIT.info("dynamic setting changed, key: {} old: {} new: {} source: {}", key, old, newValue, source);
+            } catch (Exception e) {
+                value = old;
+                try {
+                    applier.accept(old);
+                } catch (Exception ex) {
+                    LOGGER.error("dynamic setting rollback failure, key: {} value: {} cause: {}", key, old, ex);
+                }
+                AUDIT.error("dynamic setting rolled back, key: {} old: {} new: {} source: {} cause: {}", key, old, newValue, source, e.toString());
+            }
+        }
+    }
+}
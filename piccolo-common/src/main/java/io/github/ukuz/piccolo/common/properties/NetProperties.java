@@ -59,6 +59,22 @@ public class NetProperties implements Properties {
         private int readGlobalLimit;
         private int writeChannelLimit;
         private int readChannelLimit;
+        /**
+         * 开启后写出方向由优先级调度器限流，GlobalChannelTrafficShapingHandler只负责读
+         */
+        private boolean egressScheduling;
+        private long interactiveWriteLimit;
+        private long bulkWriteLimit;
+        private int egressQuantum;
+        private long egressMaxChannelBacklog;
+
+        public int getEgressQuantum() {
+            return egressQuantum > 0 ? egressQuantum : 16 * 1024;
+        }
+
+        public long getEgressMaxChannelBacklog() {
+            return egressMaxChannelBacklog > 0 ? egressMaxChannelBacklog : 4 * 1024 * 1024;
+        }
     }
 
     public String getLocalIp() {
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.properties;
+
+import io.github.ukuz.piccolo.api.common.utils.StringUtils;
+import io.github.ukuz.piccolo.api.config.ConfigurationProperties;
+import io.github.ukuz.piccolo.api.config.Properties;
+import lombok.Data;
+
+/**
+ * 网关本地离线消息存储
+ *
+ * @author ukuz90
+ */
+@ConfigurationProperties(prefix = "piccolo.offline")
+@Data
+public class OfflineProperties implements Properties {
+
+    private boolean enable;
+    /**
+     * 存储目录
+     */
+    private String dir;
+    /**
+     * 单个segment文件大小
+     */
+    private Integer segmentSize;
+    /**
+     * 离线消息的保存时间
+     */
+    private Integer ttlSeconds;
+    /**
+     * 单个用户最多保存的离线消息数，超过后丢弃最早的消息
+     */
+    private Integer maxDepth;
+    /**
+     * 上线后每批重放的消息数
+     */
+    private Integer replayBatchSize;
+    private Integer compactIntervalSeconds;
+    /**
+     * segment中有效数据占比低于该百分比时进行压缩
+     */
+    private Integer compactThreshold;
+
+    public String getDir() {
+        return StringUtils.hasText(dir) ? dir : System.getProperty("user.home") + "/.piccolo/offline";
+    }
+
+    public int getSegmentSize() {
+        return segmentSize != null && segmentSize > 0 ? segmentSize : 64 * 1024 * 1024;
+    }
+
+    public int getTtlSeconds() {
+        return ttlSeconds != null && ttlSeconds > 0 ? ttlSeconds : 7 * 24 * 3600;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth != null && maxDepth > 0 ? maxDepth : 100;
+    }
+
+    public int getReplayBatchSize() {
+        return replayBatchSize != null && replayBatchSize > 0 ? replayBatchSize : 32;
+    }
+
+    public int getCompactIntervalSeconds() {
+        return compactIntervalSeconds != null && compactIntervalSeconds > 0 ? compactIntervalSeconds : 60;
+    }
+
+    public int getCompactThreshold() {
+        return compactThreshold != null && compactThreshold > 0 ? compactThreshold : 50;
+    }
+}
@@ -15,8 +15,6 @@
  */
 package io.github.ukuz.piccolo.common.router;
 
-import com.google.common.eventbus.AllowConcurrentEvents;
-import com.google.common.eventbus.Subscribe;
 import io.github.ukuz.piccolo.api.cache.CacheManager;
 import io.github.ukuz.piccolo.api.connection.Connection;
 import io.github.ukuz.piccolo.api.connection.SessionContext;
@@ -24,12 +22,19 @@ import io.github.ukuz.piccolo.api.event.ConnectionCloseEvent;
 import io.github.ukuz.piccolo.api.router.ClientLocator;
 import io.github.ukuz.piccolo.api.router.RouterManager;
 import io.github.ukuz.piccolo.common.cache.CacheKeys;
+import io.github.ukuz.piccolo.common.cache.codec.ClientLocatorCodec;
+import io.github.ukuz.piccolo.common.event.EventHandler;
 import io.github.ukuz.piccolo.common.event.EventObservable;
 import io.netty.util.internal.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -39,12 +44,32 @@ import java.util.stream.Collectors;
  */
 public class RemoteRouterManager extends EventObservable implements RouterManager<RemoteRouter> {
 
+    /**
+     * KEYS[1]: 路由key, ARGV[1]: clientType, ARGV[2]: connId,
+     * ARGV[3]/ARGV[4]: compact格式下在线/离线路由末尾的connId字段
+     * 路由的connId与ARGV[2]相同时删除connId(置为离线)，重复执行结果不变，json与compact两种格式都支持
+     */
+    private static final String OFFLINE_IF_MATCH_SCRIPT =
+            "local v = redis.call('hget', KEYS[1], ARGV[1]) " +
+            "if not v then return '0' end " +
+            "if string.sub(v, 1, 1) == '{' then " +
+            "  local locator = cjson.decode(v) " +
+            "  if locator['connId'] ~= ARGV[2] then return '0' end " +
+            "  locator['connId'] = nil " +
+            "  redis.call('hset', KEYS[1], ARGV[1], cjson.encode(locator)) " +
+            "  return '1' " +
+            "end " +
+            "local n = string.len(ARGV[3]) " +
+            "if string.sub(v, -n) ~= ARGV[3] then return '0' end " +
+            "redis.call('hset', KEYS[1], ARGV[1], string.sub(v, 1, -n - 1) .. ARGV[4]) " +
+            "return '1'";
+
     private final Logger logger = LoggerFactory.getLogger(RemoteRouterManager.class);
     private CacheManager cacheManager;
 
     public RemoteRouterManager(CacheManager cacheManager) {
-        super();
         this.cacheManager = cacheManager;
+        subscribe(ConnectionCloseEvent.class, EventHandler.batch(this::on));
     }
 
     @Override
@@ -53,7 +78,7 @@ public class RemoteRouterManager extends EventObservable implements RouterManage
         String field = String.valueOf(router.getClientType());
         //TODO need atomic?
         ClientLocator old = cacheManager.hget(key, field, ClientLocator.class);
-        cacheManager.hset(key, field, router.getRouterValue().toJson());
+        cacheManager.hset(key, field, router.getRouterValue());
         logger.info("register userId: {} clientType: {} router: {} old: {}", userId, router.getClientType(), router, old);
         return old == null ? null : new RemoteRouter(old);
     }
@@ -68,7 +93,7 @@ public class RemoteRouterManager extends EventObservable implements RouterManage
             if (old == null || old.isOffline()) {
                 return true;
             }
-            cacheManager.hset(key, field, old.offline().toJson());
+            cacheManager.hset(key, field, old.offline());
             logger.info("unRegister remote router success,  userId: {} router: {}", userId, old);
             return true;
         } catch (Exception e) {
@@ -96,30 +121,54 @@ public class RemoteRouterManager extends EventObservable implements RouterManage
         return map.values().stream().map(RemoteRouter::new).collect(Collectors.toSet());
     }
 
-    @Subscribe
-    @AllowConcurrentEvents
-    public void on(ConnectionCloseEvent event) {
-        Connection connection = event.getConnection();
-        if (connection == null) {
-            return;
+    /**
+     * 批量查询多个用户的路由，一次pipeline完成
+     *
+     * @param userIds
+     * @return userId -> routers, 没有路由的用户不会出现在结果中
+     */
+    public Map<String, Set<RemoteRouter>> lookupAll(Collection<String> userIds) {
+        Map<String, String> keys = new HashMap<>(userIds.size());
+        userIds.forEach(userId -> keys.put(CacheKeys.getUserRouteKey(userId), userId));
+        Map<String, Map<String, ClientLocator>> map = cacheManager.hgetAll(keys.keySet(), ClientLocator.class);
+        if (map == null || map.isEmpty()) {
+            return Collections.emptyMap();
         }
-        SessionContext context = connection.getSessionContext();
-        if (StringUtil.isNullOrEmpty(context.getUserId())) {
-            return;
+        Map<String, Set<RemoteRouter>> result = new HashMap<>(map.size());
+        map.forEach((key, locators) -> result.put(keys.get(key),
+                locators.values().stream().map(RemoteRouter::new).collect(Collectors.toSet())));
+        return result;
+    }
+
+    /**
+     * 连接关闭时批量清理路由，只有路由中的connId仍是该连接时才置为离线，客户端已经重连的不受影响
+     *
+     * @param events
+     */
+    public void on(List<ConnectionCloseEvent> events) {
+        List<String> keys = new ArrayList<>(events.size());
+        List<List<String>> args = new ArrayList<>(events.size());
+        for (ConnectionCloseEvent event : events) {
+            Connection connection = event.getConnection();
+            if (connection == null) {
+                continue;
+            }
+            SessionContext context = connection.getSessionContext();
+            if (context == null || StringUtil.isNullOrEmpty(context.getUserId())) {
+                continue;
+            }
+            keys.add(CacheKeys.getUserRouteKey(context.getUserId()));
+            args.add(Arrays.asList(String.valueOf(context.getClientType()), connection.getId(),
+                    ClientLocatorCodec.connIdSuffix(connection.getId()), ClientLocatorCodec.OFFLINE_SUFFIX));
         }
-        String key = CacheKeys.getUserRouteKey(context.getUserId());
-        String field = String.valueOf(context.getClientType());
-        ClientLocator clientLocator = cacheManager.hget(key, field, ClientLocator.class);
-        if (clientLocator == null || clientLocator.isOffline()) {
+        if (keys.isEmpty()) {
             return;
         }
-        //检测是否同一个链接，
-        if (connection.getId().equals(clientLocator.getConnId())) {
-            cacheManager.hset(key, field, clientLocator.offline().toJson());
-            logger.info("clean disconnected remote route, userId: {}, route: {}", context.getUserId(), clientLocator);
-        } else {
-            logger.info("clean disconnected remote route, not clean, userId: {}, route: {}", context.getUserId(), clientLocator);
+        try {
+            long cleaned = cacheManager.evalEach(OFFLINE_IF_MATCH_SCRIPT, keys, args);
+            logger.info("clean disconnected remote routes, closed: {} cleaned: {}", keys.size(), cleaned);
+        } catch (Exception e) {
+            logger.error("clean disconnected remote routes failure, closed: {} cause: {}", keys.size(), e);
         }
-
     }
 }
@@ -104,7 +104,7 @@ public class AESCipher implements Cipher {
     }
 
     public static byte[] toArray(String str) {
-        String[] arr = str.split("|");
+        String[] arr = str.split("\\|");
         byte[] bytes = new byte[arr.length];
         for (int i = 0; i < bytes.length; i++) {
             bytes[i] = Byte.parseByte(arr[i]);
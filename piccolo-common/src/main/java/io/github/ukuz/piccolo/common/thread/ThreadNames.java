@@ -38,6 +38,8 @@ public final class ThreadNames {
     public static final String T_TRAFFIC_SHAPING = NS + "-traffic-shaping";
     public static final String T_TCP_CLIENT = NS + "-tcp-client";
     public static final String T_HTTP_CLIENT = NS + "-http-client-work";
+    public static final String T_REDIS_CLIENT = NS + "-redis-client";
+    public static final String T_CACHE_INVALIDATE = NS + "-cache-invalidate";
     public static final String T_EVENT_BUS = NS + "-event";
     public static final String T_MQ = NS + "-mq";
     public static final String T_ARK_REQ_TIMER = NS + "-ack-timer";
@@ -48,6 +50,19 @@ public final class ThreadNames {
     public static final String T_HTTP_DNS_TIMER = NS + "-http-dns-timer";
     public static final String T_MONITOR = "monitor";
     public static final String T_ZK = NS + "-zk";
+    public static final String T_DISCOVERY_NOTIFY = NS + "-discovery-notify";
     public static final String T_ID_GEN = NS + "-id-gen";
+    public static final String T_OFFLINE_COMPACT = NS + "-offline-compact";
+    public static final String T_DISPATCH_PUBLISHER = NS + "-dispatch-publisher";
+    public static final String T_DIRECT_DISPATCH_BOSS = NS + "-direct-dispatch-boss";
+    public static final String T_DIRECT_DISPATCH_WORKER = NS + "-direct-dispatch-work";
+    public static final String T_DIRECT_DISPATCH_CLIENT = NS + "-direct-dispatch-client";
+    public static final String T_DIRECT_DISPATCH_TIMER = NS + "-direct-dispatch-timer";
+    public static final String T_DIRECT_DISPATCH_SYNC = NS + "-direct-dispatch-sync";
+    public static final String T_CLUSTER_CONTROL_CLIENT = NS + "-cluster-control-client";
+    public static final String T_CLUSTER_CONTROL_TIMER = NS + "-cluster-control-timer";
+    public static final String T_NODE_LOAD_REPORT = NS + "-node-load-report";
+    public static final String T_PRESENCE_FLUSH = NS + "-presence-flush";
+    public static final String T_PRESENCE_RESYNC = NS + "-presence-resync";
 
 }
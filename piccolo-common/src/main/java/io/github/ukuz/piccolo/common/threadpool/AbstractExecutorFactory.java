@@ -21,6 +21,8 @@ import io.github.ukuz.piccolo.api.external.common.Assert;
 import io.github.ukuz.piccolo.common.properties.ThreadPoolProperties;
 import io.github.ukuz.piccolo.common.thread.ThreadNames;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -32,6 +34,49 @@ import java.util.concurrent.TimeUnit;
  */
 public class AbstractExecutorFactory implements ExecutorFactory {
 
+    /**
+     * 已创建的线程池，用于运行期间调整大小
+     */
+    private final ConcurrentMap<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+    /**
+     * 记录创建的线程池
+     *
+     * @param name
+     * @param executor
+     * @return
+     */
+    protected Executor register(String name, Executor executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            executors.put(name, (ThreadPoolExecutor) executor);
+        }
+        return executor;
+    }
+
+    @Override
+    public boolean resize(String name, int coreSize, int maxSize) {
+        ThreadPoolExecutor executor = executors.get(name);
+        if (executor == null) {
+            return false;
+        }
+        Assert.isTrue(coreSize > 0, "coreSize must great than 0");
+        if (executor instanceof ScheduledThreadPoolExecutor) {
+            //ScheduledThreadPoolExecutor只使用核心线程
+            executor.setCorePoolSize(coreSize);
+            return true;
+        }
+        Assert.isTrue(maxSize >= coreSize, "maxSize must not less than coreSize");
+        //先调整的一方不能违反 core <= max
+        if (coreSize > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(maxSize);
+            executor.setCorePoolSize(coreSize);
+        } else {
+            executor.setCorePoolSize(coreSize);
+            executor.setMaximumPoolSize(maxSize);
+        }
+        return true;
+    }
+
     protected Executor createExecutor(ThreadPoolConfig config) {
         Assert.notNull(config, "config must not be null");
         return new ThreadPoolExecutor(
@@ -68,7 +113,7 @@ public class AbstractExecutorFactory implements ExecutorFactory {
                         .keepAliveSeconds(tp.getEventBus().getKeepAliveSeconds())
                         .build();
 
-                return createExecutor(config);
+                return register(name, createExecutor(config));
             case MQ:
                 config = ThreadPoolConfig.builder()
                         .name(ThreadNames.T_MQ)
@@ -77,7 +122,7 @@ public class AbstractExecutorFactory implements ExecutorFactory {
                         .queueCapacity(tp.getMq().getQueueSize())
                         .keepAliveSeconds(tp.getMq().getKeepAliveSeconds())
                         .build();
-                return createExecutor(config);
+                return register(name, createExecutor(config));
             default:
                 throw new IllegalArgumentException("invalid name: " + name);
         }
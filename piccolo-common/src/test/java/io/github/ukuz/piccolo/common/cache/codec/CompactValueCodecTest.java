@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.cache.codec;
+
+import io.github.ukuz.piccolo.api.router.ClientLocator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ukuz90
+ */
+public class CompactValueCodecTest {
+
+    private final CompactValueCodec codec = new CompactValueCodec();
+
+    private static ClientLocator locator() {
+        ClientLocator locator = new ClientLocator()
+                .setHost("10.0.0.12")
+                .setPort(8080)
+                .setOsVersion("14.2")
+                .setClientVersion("1.0.3")
+                .setDeviceId("d41d8cd98f00b204e9800998ecf8427e")
+                .setConnId("0a1b2c3d");
+        locator.setOsName("ios");
+        return locator;
+    }
+
+    @Test
+    @DisplayName("test_clientLocator")
+    void testClientLocator() {
+        ClientLocator locator = locator();
+        String value = codec.encode(locator);
+        ClientLocator decoded = codec.decode(value, ClientLocator.class);
+
+        assertEquals(locator.toString(), decoded.toString());
+        assertTrue(value.getBytes(StandardCharsets.UTF_8).length * 3 < locator.toJson().getBytes(StandardCharsets.UTF_8).length * 2);
+        //lua脚本依赖connId位于末尾
+        assertTrue(value.endsWith(ClientLocatorCodec.connIdSuffix("0a1b2c3d")));
+        String offline = value.substring(0, value.length() - ClientLocatorCodec.connIdSuffix("0a1b2c3d").length())
+                + ClientLocatorCodec.OFFLINE_SUFFIX;
+        assertEquals(codec.encode(locator.offline()), offline);
+        assertTrue(codec.decode(offline, ClientLocator.class).isOffline());
+    }
+
+    @Test
+    @DisplayName("test_legacy")
+    void testLegacy() {
+        ClientLocator locator = locator();
+        assertEquals(locator.toString(), codec.decode(locator.toJson(), ClientLocator.class).toString());
+        assertEquals(locator.toString(), new JsonValueCodec().decode(codec.encode(locator), ClientLocator.class).toString());
+        assertEquals("user1", codec.decode("user1", String.class));
+        assertEquals("user1", codec.decode("\"user1\"", String.class));
+        assertEquals(Long.valueOf(12), codec.decode("12", Long.class));
+        assertEquals("12", codec.encode(12L));
+    }
+
+    @Test
+    @DisplayName("test_crossCodec")
+    void testCrossCodec() {
+        JsonValueCodec json = new JsonValueCodec();
+        //compact写入，json读取
+        assertEquals("u1", json.decode(codec.encode("u1"), String.class));
+        assertEquals(Long.valueOf(12), json.decode(codec.encode(12L), Long.class));
+        assertEquals(locator().toString(), json.decode(codec.encode(locator()), ClientLocator.class).toString());
+        //json写入，compact读取
+        assertEquals("u1", codec.decode(json.encode("u1"), String.class));
+        assertEquals(Long.valueOf(12), codec.decode(json.encode(12L), Long.class));
+        assertEquals(locator().toString(), codec.decode(json.encode(locator()), ClientLocator.class).toString());
+    }
+
+    @Test
+    @DisplayName("test_varint")
+    void testVarint() {
+        String value = new CompactWriter(3).writeLong(Long.MAX_VALUE).writeInt(-1).writeString("").writeString(null)
+                .writeBytes(new byte[]{-1, 0, 127}).toString();
+        for (int i = 0; i < value.length(); i++) {
+            assertTrue(value.charAt(i) < 0x80);
+        }
+        CompactReader reader = new CompactReader(value);
+        assertEquals(3, reader.getVersion());
+        assertEquals(Long.MAX_VALUE, reader.readLong());
+        assertEquals(-1, reader.readInt());
+        assertEquals("", reader.readString());
+        assertNull(reader.readString());
+        assertArrayEquals(new byte[]{-1, 0, 127}, reader.readBytes());
+        assertFalse(reader.isReadable());
+    }
+}
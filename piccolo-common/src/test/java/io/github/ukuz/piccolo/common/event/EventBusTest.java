@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.event;
+
+import io.github.ukuz.piccolo.api.event.ApplicationEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventBusTest {
+
+    @DisplayName("test_post_Batch")
+    @Test
+    void testPostBatch() {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        EventBus.create(tasks::offer, 16, 4);
+        List<Integer> batchSizes = new ArrayList<>();
+        List<Integer> received = new ArrayList<>();
+        EventHandler<TestEvent> handler = new EventHandler<TestEvent>() {
+            @Override
+            public void onEvent(TestEvent event) {
+                received.add(event.value);
+            }
+
+            @Override
+            public void onEvents(List<TestEvent> events) {
+                batchSizes.add(events.size());
+                EventHandler.super.onEvents(events);
+            }
+        };
+        EventBus.subscribe("test_batch", TestEvent.class, handler);
+        try {
+            for (int i = 0; i < 10; i++) {
+                EventBus.post(new TestEvent(i));
+            }
+            //同一个订阅者只会有一个待执行的任务
+            assertEquals(1, tasks.size());
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+            assertEquals(10, received.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i, received.get(i));
+            }
+            assertEquals(4, batchSizes.get(0));
+            assertEquals(3, batchSizes.size());
+        } finally {
+            EventBus.unsubscribe(handler);
+        }
+    }
+
+    @DisplayName("test_post_Overflow")
+    @Test
+    void testPostOverflow() {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        EventBus.create(tasks::offer, 2, 128);
+        List<Integer> received = new ArrayList<>();
+        EventHandler<ApplicationEvent> handler = event -> received.add(((TestEvent) event).value);
+        //订阅父类型同样能收到子类事件
+        EventBus.subscribe("test_overflow", ApplicationEvent.class, handler);
+        try {
+            for (int i = 0; i < 5; i++) {
+                EventBus.post(new TestEvent(i));
+            }
+            //发布线程不回调处理器，超出环形队列的事件进入溢出队列，不丢弃
+            assertTrue(received.isEmpty());
+            assertEquals(1, tasks.size());
+            tasks.poll().run();
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4), received);
+            assertTrue(tasks.isEmpty());
+        } finally {
+            EventBus.unsubscribe(handler);
+        }
+    }
+
+    private static final class TestEvent implements ApplicationEvent {
+        final int value;
+
+        TestEvent(int value) {
+            this.value = value;
+        }
+    }
+}
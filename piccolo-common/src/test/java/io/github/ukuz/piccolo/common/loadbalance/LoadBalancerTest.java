@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.loadbalance;
+
+import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadBalancerTest {
+
+    @DisplayName("test_p2c_PreferLessLoaded")
+    @Test
+    void testP2cPreferLessLoaded() {
+        LeastLoadLoadbalancer loadbalancer = new LeastLoadLoadbalancer();
+        ServiceInstance idle = newInstance(1, "10", "0", "0.10", "100");
+        ServiceInstance busy = newInstance(2, "5000", "20", "0.90", "100");
+        List<ServiceInstance> list = Arrays.asList(idle, busy);
+        for (int i = 0; i < 100; i++) {
+            assertSame(idle, loadbalancer.choose(list));
+        }
+    }
+
+    @DisplayName("test_weighted_Smooth")
+    @Test
+    void testWeightedSmooth() {
+        WeightedRoundRobinLoadbalancer loadbalancer = new WeightedRoundRobinLoadbalancer();
+        ServiceInstance a = newInstance(1, "0", "0", "0", "300");
+        ServiceInstance b = newInstance(2, "0", "0", "0", "100");
+        List<ServiceInstance> list = Arrays.asList(a, b);
+        int countA = 0;
+        ServiceInstance last = null;
+        int run = 0;
+        for (int i = 0; i < 400; i++) {
+            ServiceInstance chosen = loadbalancer.choose(list);
+            if (chosen == a) {
+                countA++;
+            }
+            run = chosen == last ? run + 1 : 1;
+            last = chosen;
+            assertTrue(run <= 3);
+        }
+        assertEquals(300, countA);
+    }
+
+    @DisplayName("test_hash_Sticky")
+    @Test
+    void testHashSticky() {
+        ConsistentHashLoadbalancer loadbalancer = new ConsistentHashLoadbalancer();
+        List<ServiceInstance> list = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            list.add(newInstance(i, null, null, null, null));
+        }
+        Map<String, ServiceInstance> chosen = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            chosen.put("u" + i, loadbalancer.choose(list, "u" + i));
+        }
+        //顺序变化不影响结果
+        List<ServiceInstance> shuffled = new ArrayList<>(list);
+        Collections.reverse(shuffled);
+        //下线一个节点只影响落在该节点上的key
+        ServiceInstance removed = list.get(0);
+        shuffled.remove(removed);
+        int moved = 0;
+        for (Map.Entry<String, ServiceInstance> entry : chosen.entrySet()) {
+            ServiceInstance now = loadbalancer.choose(shuffled, entry.getKey());
+            if (entry.getValue() != removed) {
+                assertEquals(entry.getValue(), now);
+            } else {
+                moved++;
+            }
+        }
+        assertTrue(moved > 0 && moved < 500);
+    }
+
+    @DisplayName("test_alternateGroups")
+    @Test
+    void testAlternateGroups() {
+        //同一个负载均衡器交替服务两个节点集合，各自的状态互不影响
+        WeightedRoundRobinLoadbalancer weighted = new WeightedRoundRobinLoadbalancer();
+        ConsistentHashLoadbalancer hash = new ConsistentHashLoadbalancer();
+        ServiceInstance a = newInstance(1, "0", "0", "0", "300");
+        ServiceInstance b = newInstance(2, "0", "0", "0", "100");
+        ServiceInstance c = newInstance(3, "0", "0", "0", "100");
+        ServiceInstance d = newInstance(4, "0", "0", "0", "100");
+        List<ServiceInstance> group1 = Arrays.asList(a, b);
+        List<ServiceInstance> group2 = Arrays.asList(c, d);
+        int countA = 0;
+        int countC = 0;
+        ServiceInstance last = null;
+        int run = 0;
+        for (int i = 0; i < 400; i++) {
+            ServiceInstance chosen = weighted.choose(group1);
+            countA += chosen == a ? 1 : 0;
+            run = chosen == last ? run + 1 : 1;
+            last = chosen;
+            assertTrue(run <= 3);
+            countC += weighted.choose(group2) == c ? 1 : 0;
+        }
+        assertEquals(300, countA);
+        assertEquals(200, countC);
+
+        Map<String, ServiceInstance> chosen1 = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            chosen1.put("u" + i, hash.choose(group1, "u" + i));
+            assertTrue(group2.contains(hash.choose(group2, "u" + i)));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertSame(chosen1.get("u" + i), hash.choose(group1, "u" + i));
+        }
+    }
+
+    private ServiceInstance newInstance(int index, String connections, String queue, String cpu, String weight) {
+        Map<String, String> metaData = new HashMap<>();
+        if (connections != null) {
+            metaData.put(NodeLoad.META_CONNECTIONS, connections);
+            metaData.put(NodeLoad.META_QUEUE, queue);
+            metaData.put(NodeLoad.META_CPU, cpu);
+            metaData.put(NodeLoad.META_WEIGHT, weight);
+        }
+        return DefaultServiceInstance.build()
+                .serviceId("/gateway")
+                .host("10.0.0." + index)
+                .port(8087)
+                .metaData(metaData);
+    }
+}
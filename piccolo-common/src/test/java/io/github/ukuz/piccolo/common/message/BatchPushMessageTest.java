@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.connection.SessionContext;
+import io.github.ukuz.piccolo.api.exchange.protocol.Packet;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BatchPushMessageTest {
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Channel channel;
+
+    @Mock
+    private SessionContext sessionContext;
+
+    @DisplayName("test_decode")
+    @Test
+    void testDecode() {
+        when(connection.getChannel()).thenReturn(channel);
+        when(connection.getChannel().alloc()).thenReturn(PooledByteBufAllocator.DEFAULT);
+        when(connection.getSessionContext()).thenReturn(sessionContext);
+        when(connection.getSessionContext().getCipher()).thenReturn(null);
+
+        BatchPushMessage out = BatchPushMessage.build(connection)
+                .userIds(Arrays.asList("u1", "u2", "u3"))
+                .content("hello".getBytes());
+        Packet packet = out.encodeBody();
+
+        BatchPushMessage in = new BatchPushMessage(connection);
+        in.decodeBody(packet);
+        assertEquals(Arrays.asList("u1", "u2", "u3"), in.userIds);
+        assertArrayEquals("hello".getBytes(), in.content);
+    }
+
+}
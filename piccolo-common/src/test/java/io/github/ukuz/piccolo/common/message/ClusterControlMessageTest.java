@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.connection.SessionContext;
+import io.github.ukuz.piccolo.api.exchange.protocol.Packet;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterControlMessageTest {
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Channel channel;
+
+    @Mock
+    private SessionContext sessionContext;
+
+    @BeforeEach
+    void setUp() {
+        when(connection.getChannel()).thenReturn(channel);
+        when(connection.getChannel().alloc()).thenReturn(PooledByteBufAllocator.DEFAULT);
+        when(connection.getSessionContext()).thenReturn(sessionContext);
+        when(connection.getSessionContext().getCipher()).thenReturn(null);
+    }
+
+    @DisplayName("test_batchedKickEntries")
+    @Test
+    void testBatchedKickEntries() {
+        Packet packet = ClusterControlMessage.build(connection).entries(Arrays.asList(
+                ClusterControlMessage.Entry.kick("u1", (byte) 1, "c1", "d1", "10.0.0.1", 3000),
+                ClusterControlMessage.Entry.kick("u2", (byte) 2, "c2", "d2", "10.0.0.1", 3000))).encodeBody();
+
+        ClusterControlMessage in = (ClusterControlMessage) new DefaultPacketToMessageConverter().convert(packet, connection);
+        in.decodeBody(packet);
+        assertEquals(2, in.entries.size());
+        ClusterControlMessage.Entry entry = in.entries.get(1);
+        assertEquals(ClusterControlMessage.TYPE_KICK, entry.type);
+        assertEquals("u2", entry.userId);
+        assertEquals(2, entry.clientType);
+        assertEquals("c2", entry.connId);
+        assertEquals("d2", entry.deviceId);
+        assertEquals("10.0.0.1:3000", entry.getTargetHostAndPort());
+    }
+
+    @DisplayName("test_replayOfflineEntry")
+    @Test
+    void testReplayOfflineEntry() {
+        Packet packet = ClusterControlMessage.build(connection).entries(Arrays.asList(
+                ClusterControlMessage.Entry.kick("u1", (byte) 1, "c1", "d1", "10.0.0.1", 3000),
+                ClusterControlMessage.Entry.replayOffline("u1", (byte) 1, "10.0.0.1", 3000, "10.0.0.2:3000"))).encodeBody();
+
+        ClusterControlMessage in = (ClusterControlMessage) new DefaultPacketToMessageConverter().convert(packet, connection);
+        in.decodeBody(packet);
+        assertEquals(2, in.entries.size());
+        assertEquals(ClusterControlMessage.TYPE_KICK, in.entries.get(0).type);
+        ClusterControlMessage.Entry entry = in.entries.get(1);
+        assertEquals(ClusterControlMessage.TYPE_REPLAY_OFFLINE, entry.type);
+        assertEquals("u1", entry.userId);
+        assertEquals("10.0.0.1:3000", entry.getTargetHostAndPort());
+        assertEquals("10.0.0.2:3000", entry.replyTo);
+    }
+
+}
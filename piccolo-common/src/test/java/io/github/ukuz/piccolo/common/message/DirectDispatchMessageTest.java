@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.connection.SessionContext;
+import io.github.ukuz.piccolo.api.exchange.protocol.Packet;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DirectDispatchMessageTest {
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Channel channel;
+
+    @Mock
+    private SessionContext sessionContext;
+
+    @BeforeEach
+    void setUp() {
+        when(connection.getChannel()).thenReturn(channel);
+        when(connection.getChannel().alloc()).thenReturn(PooledByteBufAllocator.DEFAULT);
+        when(connection.getSessionContext()).thenReturn(sessionContext);
+        when(connection.getSessionContext().getCipher()).thenReturn(null);
+    }
+
+    @DisplayName("test_responseCorrelatedBySessionId")
+    @Test
+    void testResponseCorrelatedBySessionId() {
+        DirectDispatchMessage out = DirectDispatchMessage.build(connection).topic("t1").uid("u1").xid(7L).payload("req".getBytes());
+        out.setSessionId(42);
+        Packet packet = out.encodeBody();
+
+        DirectDispatchMessage in = (DirectDispatchMessage) new DefaultPacketToMessageConverter().convert(packet, connection);
+        in.decodeBody(packet);
+        assertEquals(42, in.getSessionId());
+        assertEquals("t1", in.topic);
+        assertEquals("u1", in.uid);
+        assertEquals(7L, in.xid);
+        assertArrayEquals("req".getBytes(), in.payload);
+
+        Packet responsePacket = DirectDispatchResponseMessage.build(in)
+                .code(DirectDispatchResponseMessage.CODE_SUCCESS).payload("resp".getBytes()).encodeBody();
+        DirectDispatchResponseMessage response = (DirectDispatchResponseMessage) new DefaultPacketToMessageConverter().convert(responsePacket, connection);
+        response.decodeBody(responsePacket);
+        assertEquals(42, response.getSessionId());
+        assertTrue(response.isSuccess());
+        assertArrayEquals("resp".getBytes(), response.payload);
+    }
+
+}
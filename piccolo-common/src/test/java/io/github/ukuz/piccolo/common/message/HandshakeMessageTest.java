@@ -66,6 +66,32 @@ class HandshakeMessageTest {
         assertEquals("11", in.osVersion);
         assertEquals("1.0.0", in.clientVersion);
         assertEquals("1w3ex3sd2d3cex2sfw44ew", in.deviceId);
+        assertNull(in.userId);
+    }
+
+    @DisplayName("test_decode_WithBindUser")
+    @Test
+    void testDecodeWithBindUser() {
+        when(connection.getChannel()).thenReturn(channel);
+        when(connection.getChannel().alloc()).thenReturn(PooledByteBufAllocator.DEFAULT);
+        when(connection.getSessionContext()).thenReturn(sessionContext);
+        when(connection.getSessionContext().getCipher()).thenReturn(null);
+
+        HandshakeMessage out = new HandshakeMessage(connection);
+        out.timestamp = System.currentTimeMillis();
+        out.osName = "Android";
+        out.osVersion = "11";
+        out.clientVersion = "1.0.0";
+        out.deviceId = "1w3ex3sd2d3cex2sfw44ew";
+        out.userId = "user-1";
+        out.tags = "vip";
+        Packet packet = out.encodeBody();
+
+        HandshakeMessage in = new HandshakeMessage(connection);
+        in.decodeBody(packet);
+        assertEquals("1w3ex3sd2d3cex2sfw44ew", in.deviceId);
+        assertEquals("user-1", in.userId);
+        assertEquals("vip", in.tags);
     }
 
 }
\ No newline at end of file
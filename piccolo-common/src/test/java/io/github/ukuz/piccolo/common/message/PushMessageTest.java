@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.message;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.connection.SessionContext;
+import io.github.ukuz.piccolo.api.exchange.protocol.Packet;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PushMessageTest {
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Channel channel;
+
+    @Mock
+    private SessionContext sessionContext;
+
+    @BeforeEach
+    void setUp() {
+        when(connection.getChannel()).thenReturn(channel);
+        when(connection.getChannel().alloc()).thenReturn(PooledByteBufAllocator.DEFAULT);
+        when(connection.getSessionContext()).thenReturn(sessionContext);
+        when(connection.getSessionContext().getCipher()).thenReturn(null);
+    }
+
+    @DisplayName("test_decodeWithAck")
+    @Test
+    void testDecodeWithAck() {
+        PushMessage out = PushMessage.build(connection).userId("u1").content("hello".getBytes())
+                .ack((byte) 1, 3000, 42L).clientType((byte) 2);
+        Packet packet = out.encodeBody();
+
+        PushMessage in = new PushMessage(connection);
+        in.decodeBody(packet);
+        assertEquals("u1", in.userId);
+        assertArrayEquals("hello".getBytes(), in.content);
+        assertEquals(1, in.ackModel);
+        assertEquals(3000, in.timeout);
+        assertEquals(42L, in.pushId);
+        assertEquals(2, in.clientType);
+    }
+
+    @DisplayName("test_decodeWithoutAck")
+    @Test
+    void testDecodeWithoutAck() {
+        //老版本的PushMessage不包含ack相关字段
+        PushMessage out = new PushMessage(connection) {
+            @Override
+            protected void encodeBody0(ByteBuf buf) {
+                writeString(buf, userId);
+                writeBoolean(buf, broadcast);
+                writeBytes(buf, content);
+            }
+        }.userId("u1").content("hello".getBytes());
+        Packet packet = out.encodeBody();
+
+        PushMessage in = new PushMessage(connection);
+        in.decodeBody(packet);
+        assertEquals("u1", in.userId);
+        assertArrayEquals("hello".getBytes(), in.content);
+        assertEquals(0, in.ackModel);
+        assertEquals(0L, in.pushId);
+        assertEquals(0, in.clientType);
+    }
+
+}
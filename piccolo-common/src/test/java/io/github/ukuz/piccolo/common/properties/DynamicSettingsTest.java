@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.properties;
+
+import io.github.ukuz.piccolo.api.configcenter.ConfigurationChangeType;
+import io.github.ukuz.piccolo.api.configcenter.ConfigurationChangedEvent;
+import io.github.ukuz.piccolo.api.configcenter.ConfigurationListener;
+import io.github.ukuz.piccolo.api.configcenter.DynamicConfiguration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DynamicSettingsTest {
+
+    private static final String KEY = "piccolo.net.connect-server.write-buffer-water-mark-high";
+
+    @Mock
+    private DynamicConfiguration configuration;
+
+    @DisplayName("test_bind")
+    @Test
+    void testBind() {
+        when(configuration.getProperty(KEY)).thenReturn("2048");
+        List<Integer> applied = new ArrayList<>();
+        DynamicSettings settings = new DynamicSettings(configuration);
+        DynamicSettings.Setting<Integer> setting = settings.bind(DynamicSettings.intSetting(KEY, 1024)
+                .validate(v -> v > 0, "> 0")
+                .onChange(applied::add));
+
+        assertEquals(2048, setting.get());
+        ConfigurationListener listener = captureListener();
+
+        listener.onConfigurationChanged(new ConfigurationChangedEvent(KEY, "4096", ConfigurationChangeType.MODIFIED));
+        assertEquals(4096, setting.get());
+
+        listener.onConfigurationChanged(new ConfigurationChangedEvent(KEY, "-1", ConfigurationChangeType.MODIFIED));
+        listener.onConfigurationChanged(new ConfigurationChangedEvent(KEY, "abc", ConfigurationChangeType.MODIFIED));
+        assertEquals(4096, setting.get());
+
+        listener.onConfigurationChanged(new ConfigurationChangedEvent(KEY, null, ConfigurationChangeType.DELETED));
+        assertEquals(1024, setting.get());
+        assertEquals(Arrays.asList(2048, 4096, 1024), applied);
+
+        assertThrows(IllegalArgumentException.class, () -> settings.bind(DynamicSettings.intSetting(KEY, 1).onChange(v -> {})));
+    }
+
+    @DisplayName("test_rollback")
+    @Test
+    void testRollback() {
+        List<Long> applied = new ArrayList<>();
+        DynamicSettings.Setting<Long> setting = new DynamicSettings(configuration).bind(DynamicSettings.longSetting(KEY, 10L)
+                .onChange(v -> {
+                    applied.add(v);
+                    if (v > 100) {
+                        throw new IllegalStateException("too large");
+                    }
+                }));
+
+        ConfigurationListener listener = captureListener();
+        listener.onConfigurationChanged(new ConfigurationChangedEvent(KEY, "1000", ConfigurationChangeType.MODIFIED));
+
+        assertEquals(10L, setting.get());
+        assertEquals(Arrays.asList(1000L, 10L), applied);
+    }
+
+    private ConfigurationListener captureListener() {
+        ArgumentCaptor<ConfigurationListener> captor = ArgumentCaptor.forClass(ConfigurationListener.class);
+        verify(configuration).addListener(eq(KEY), captor.capture());
+        return captor.getValue();
+    }
+}
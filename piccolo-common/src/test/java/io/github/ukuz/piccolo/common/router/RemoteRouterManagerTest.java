@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.common.router;
+
+import io.github.ukuz.piccolo.api.cache.CacheManager;
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.connection.SessionContext;
+import io.github.ukuz.piccolo.api.event.ConnectionCloseEvent;
+import io.github.ukuz.piccolo.common.cache.CacheKeys;
+import io.github.ukuz.piccolo.common.cache.codec.ClientLocatorCodec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RemoteRouterManagerTest {
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @SuppressWarnings("unchecked")
+    @DisplayName("test_on_BatchCleanup")
+    @Test
+    void testOnBatchCleanup() {
+        RemoteRouterManager manager = new RemoteRouterManager(cacheManager);
+        when(cacheManager.evalEach(anyString(), anyList(), anyList())).thenReturn(2L);
+
+        manager.on(Arrays.asList(
+                new ConnectionCloseEvent(mockConnection("c1", "u1", (byte) 1)),
+                new ConnectionCloseEvent(mockConnection("c2", null, (byte) 1)),
+                new ConnectionCloseEvent(mockConnection("c3", "u3", (byte) 2))));
+
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<List<String>>> args = ArgumentCaptor.forClass(List.class);
+        verify(cacheManager).evalEach(anyString(), keys.capture(), args.capture());
+        assertEquals(Arrays.asList(CacheKeys.getUserRouteKey("u1"), CacheKeys.getUserRouteKey("u3")), keys.getValue());
+        assertEquals(Arrays.asList(
+                Arrays.asList("1", "c1", ClientLocatorCodec.connIdSuffix("c1"), ClientLocatorCodec.OFFLINE_SUFFIX),
+                Arrays.asList("2", "c3", ClientLocatorCodec.connIdSuffix("c3"), ClientLocatorCodec.OFFLINE_SUFFIX)), args.getValue());
+        verify(cacheManager, never()).hset(anyString(), anyString(), anyString());
+    }
+
+    @DisplayName("test_on_NoUser")
+    @Test
+    void testOnNoUser() {
+        RemoteRouterManager manager = new RemoteRouterManager(cacheManager);
+        manager.on(Collections.singletonList(new ConnectionCloseEvent(mockConnection("c1", null, (byte) 1))));
+        verifyNoMoreInteractions(cacheManager);
+    }
+
+    private Connection mockConnection(String id, String userId, byte clientType) {
+        Connection connection = mock(Connection.class);
+        SessionContext context = mock(SessionContext.class);
+        lenient().when(connection.getId()).thenReturn(id);
+        when(connection.getSessionContext()).thenReturn(context);
+        when(context.getUserId()).thenReturn(userId);
+        lenient().when(context.getClientType()).thenReturn(clientType);
+        return connection;
+    }
+}
@@ -17,6 +17,7 @@ package io.github.ukuz.piccolo.config.properties;
 
 
 import io.github.ukuz.piccolo.api.annotation.AnnotationTypeFilter;
+import io.github.ukuz.piccolo.api.common.ClassIndex;
 import io.github.ukuz.piccolo.api.common.ClassPathScanner;
 import io.github.ukuz.piccolo.api.common.Holder;
 import io.github.ukuz.piccolo.api.config.ConfigurationProperties;
@@ -33,6 +34,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.net.URL;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -73,13 +75,17 @@ public class PropertiesEnvironment implements Environment {
         }
 
         logger.info("scanAllProperties begin.");
-        // 只扫描@ConfigurationProperties的类
-        ClassPathScanner scanner = new ClassPathScanner();
-        AnnotationTypeFilter filter = new AnnotationTypeFilter(ConfigurationProperties.class);
-        scanner.addIncludeFilter(filter);
-
         try {
-            Set<Class> classes = scanner.scan(new String[]{"io.github.ukuz.piccolo"});
+            Set<Class> classes = loadIndexedProperties();
+            // 只扫描@ConfigurationProperties的类，有编译期索引时跳过带索引的jar包(目录)，
+            // 未经过piccolo-index编译的扩展jar包仍然通过扫描合并
+            ClassPathScanner scanner = new ClassPathScanner();
+            AnnotationTypeFilter filter = new AnnotationTypeFilter(ConfigurationProperties.class);
+            scanner.addIncludeFilter(filter);
+            if (!classes.isEmpty()) {
+                scanner.setRootFilter(root -> !ClassIndex.hasIndex(root, ClassIndex.PROPERTIES_INDEX));
+            }
+            classes.addAll(scanner.scan(new String[]{"io.github.ukuz.piccolo"}));
             logger.info("scanAllProperties, scan class: " + classes);
             /**
              * 找到所有的类并过滤出Properties类型
@@ -93,6 +99,19 @@ public class PropertiesEnvironment implements Environment {
 
     }
 
+    /**
+     * 从编译期生成的索引中加载配置类
+     * @return
+     * @throws ClassNotFoundException
+     */
+    private Set<Class> loadIndexedProperties() throws ClassNotFoundException {
+        Set<Class> classes = new HashSet<>();
+        for (String className : ClassIndex.getProperties()) {
+            classes.add(findClassLoader().loadClass(className));
+        }
+        return classes;
+    }
+
     /**
      * 初始化配置类的容器configMap
      * @param clazz
@@ -31,14 +31,23 @@ import io.github.ukuz.piccolo.api.service.discovery.ServiceDiscovery;
 import io.github.ukuz.piccolo.api.service.registry.Registration;
 import io.github.ukuz.piccolo.api.service.registry.ServiceRegistry;
 import io.github.ukuz.piccolo.api.spi.SpiLoader;
+import io.github.ukuz.piccolo.cache.local.TwoTierCacheManager;
 import io.github.ukuz.piccolo.common.event.EventBus;
 import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import io.github.ukuz.piccolo.common.properties.OfflineProperties;
+import io.github.ukuz.piccolo.core.cluster.ClusterControlChannel;
+import io.github.ukuz.piccolo.core.dispatch.DirectDispatcher;
+import io.github.ukuz.piccolo.core.dispatch.UpstreamPublisher;
 import io.github.ukuz.piccolo.core.endpoint.SpringConfiguration;
+import io.github.ukuz.piccolo.core.heartbeat.HeartbeatTuner;
 import io.github.ukuz.piccolo.core.id.snowflake.SnowflakeIdGen;
 import io.github.ukuz.piccolo.core.id.snowflake.ZooKeeperWorkerIdHolder;
+import io.github.ukuz.piccolo.core.offline.OfflineMessageStore;
+import io.github.ukuz.piccolo.core.push.PushAckManager;
 import io.github.ukuz.piccolo.core.router.RouterCenter;
 import io.github.ukuz.piccolo.core.server.ConnectServer;
 import io.github.ukuz.piccolo.core.server.GatewayServer;
+import io.github.ukuz.piccolo.core.server.NodeLoadReporter;
 import io.github.ukuz.piccolo.core.server.WebSocketServer;
 import io.github.ukuz.piccolo.core.session.ReusableSessionManager;
 import io.github.ukuz.piccolo.core.threadpool.ServerExecutorFactory;
@@ -60,6 +69,7 @@ public class PiccoloServer implements PiccoloContext {
     private final ConnectServer connectServer;
     private final WebSocketServer webSocketServer;
     private final ReusableSessionManager reusableSessionManager;
+    private final HeartbeatTuner heartbeatTuner;
     private final CacheManager cacheManager;
     private final MonitorExecutorFactory executorFactory;
     private final MQClient mqClient;
@@ -68,6 +78,12 @@ public class PiccoloServer implements PiccoloContext {
     private final Monitor monitor;
 
     private final RouterCenter routerCenter;
+    private final PushAckManager pushAckManager;
+    private final OfflineMessageStore offlineMessageStore;
+    private final UpstreamPublisher upstreamPublisher;
+    private final DirectDispatcher directDispatcher;
+    private final ClusterControlChannel clusterControlChannel;
+    private final NodeLoadReporter nodeLoadReporter;
     private final RouteLocator routeLocator;
     private final IdGen idGen;
 
@@ -85,21 +101,37 @@ public class PiccoloServer implements PiccoloContext {
         CoreProperties core = environment.getProperties(CoreProperties.class);
         //initialize eventBus
         executorFactory = new MonitorExecutorFactory(new ServerExecutorFactory());
-        EventBus.create(executorFactory.create(ExecutorFactory.EVENT_BUS, environment));
+        EventBus.create(executorFactory.create(ExecutorFactory.EVENT_BUS, environment),
+                core.getEventBusRingSize(), core.getEventBusBatchSize());
         //处理注册中心
         String srdChooser = StringUtils.hasText(core.getSrd()) ? core.getSrd() : ServiceRegistryAndDiscovery.DEFAULT;
         srd = SpiLoader.getLoader(ServiceRegistryAndDiscovery.class).getExtension(srdChooser);
         //处理MQ客户端
-        mqClient = SpiLoader.getLoader(MQClient.class).getExtension();
+        mqClient = StringUtils.hasText(core.getMq()) ? SpiLoader.getLoader(MQClient.class).getExtension(core.getMq())
+                : SpiLoader.getLoader(MQClient.class).getExtension();
         //处理配置中心
         String configCenterChooser = StringUtils.hasText(core.getConfigCenter()) ? core.getConfigCenter() : DynamicConfiguration.DEFAULT;
         configCenter = SpiLoader.getLoader(DynamicConfiguration.class).getExtension(configCenterChooser);
         //session管理器
         reusableSessionManager = new ReusableSessionManager(this);
+        //自适应心跳
+        heartbeatTuner = new HeartbeatTuner(core);
         //缓存管理器
-        cacheManager = SpiLoader.getLoader(CacheManager.class).getExtension();
+        cacheManager = new TwoTierCacheManager(SpiLoader.getLoader(CacheManager.class).getExtension());
         //路由中心
         routerCenter = new RouterCenter(this);
+        //ack推送管理
+        pushAckManager = new PushAckManager(core);
+        //离线消息存储
+        offlineMessageStore = new OfflineMessageStore(environment.getProperties(OfflineProperties.class));
+        //上行消息发布
+        upstreamPublisher = new UpstreamPublisher(this, core);
+        //上行消息直连转发
+        directDispatcher = new DirectDispatcher(this, core);
+        //网关之间的控制通道
+        clusterControlChannel = new ClusterControlChannel(this, core);
+        //通过注册中心发布节点负载
+        nodeLoadReporter = new NodeLoadReporter(this, core);
 
         routeLocator = SpiLoader.getLoader(RouteLocator.class).getExtension();
 
@@ -195,10 +227,38 @@ public class PiccoloServer implements PiccoloContext {
         return reusableSessionManager;
     }
 
+    public HeartbeatTuner getHeartbeatTuner() {
+        return heartbeatTuner;
+    }
+
     public RouterCenter getRouterCenter() {
         return routerCenter;
     }
 
+    public PushAckManager getPushAckManager() {
+        return pushAckManager;
+    }
+
+    public OfflineMessageStore getOfflineMessageStore() {
+        return offlineMessageStore;
+    }
+
+    public UpstreamPublisher getUpstreamPublisher() {
+        return upstreamPublisher;
+    }
+
+    public DirectDispatcher getDirectDispatcher() {
+        return directDispatcher;
+    }
+
+    public ClusterControlChannel getClusterControlChannel() {
+        return clusterControlChannel;
+    }
+
+    public NodeLoadReporter getNodeLoadReporter() {
+        return nodeLoadReporter;
+    }
+
     public RouteLocator getRouteLocator() {
         return routeLocator;
     }
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.cluster;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.ExchangeException;
+import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
+import io.github.ukuz.piccolo.api.exchange.handler.MultiMessageHandler;
+import io.github.ukuz.piccolo.api.service.AbstractService;
+import io.github.ukuz.piccolo.api.service.ServiceException;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceListener;
+import io.github.ukuz.piccolo.common.ServiceNames;
+import io.github.ukuz.piccolo.common.message.ClusterControlMessage;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.github.ukuz.piccolo.core.PiccoloServer;
+import io.netty.channel.ChannelFuture;
+import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 网关之间的控制通道:
+ * 1. 通过服务发现找到其他网关，复用gateway server的TCP协议，每个网关保持一个连接
+ * 2. 发往同一个网关的控制消息在连接所在的EventLoop上攒批发送
+ * 3. 目标网关未连接或者发送失败时交给fallback，通过MQ发送
+ *
+ * @author ukuz90
+ */
+public class ClusterControlChannel extends AbstractService implements ServiceListener<ServiceInstance> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterControlChannel.class);
+    private static final AttributeKey<String> HOST_AND_PORT = AttributeKey.valueOf("cluster_control_host_port");
+    private static final long RETRY_DELAY_MS = 3000;
+
+    private final PiccoloServer piccoloServer;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int lingerMs;
+    private final ConcurrentMap<String, Peer> peers = new ConcurrentHashMap<>();
+    private volatile Consumer<ClusterControlMessage.Entry> fallback = entry ->
+            LOGGER.warn("cluster control fallback not set, drop entry: {}", entry);
+    private volatile ClusterControlClient client;
+    private volatile boolean subscribed;
+    private HashedWheelTimer timer;
+    private String self;
+
+    public ClusterControlChannel(PiccoloServer piccoloServer, CoreProperties core) {
+        this.piccoloServer = piccoloServer;
+        this.enabled = core.isClusterControlEnabled();
+        this.batchSize = core.getClusterControlBatchSize();
+        this.lingerMs = core.getClusterControlLingerMs();
+    }
+
+    @Override
+    public void init() throws ServiceException {
+        if (!enabled) {
+            return;
+        }
+        self = piccoloServer.getGatewayServer().getRegistration().getHostAndPort();
+        timer = new HashedWheelTimer(new NamedThreadFactory(ThreadNames.T_CLUSTER_CONTROL_TIMER), 100, TimeUnit.MILLISECONDS);
+        ClusterControlClient clusterControlClient = new ClusterControlClient(piccoloServer.getEnvironment(),
+                new MultiMessageHandler(piccoloServer, new PeerHandler()));
+        clusterControlClient.start();
+        client = clusterControlClient;
+        //服务发现可能会阻塞，不在启动线程上重试
+        timer.newTimeout(t -> sync(), 0, TimeUnit.MILLISECONDS);
+        LOGGER.info("cluster control channel enabled, self: {}", self);
+    }
+
+    @Override
+    public void destroy() throws ServiceException {
+        ClusterControlClient clusterControlClient = client;
+        if (clusterControlClient == null) {
+            return;
+        }
+        client = null;
+        peers.values().forEach(Peer::close);
+        peers.clear();
+        clusterControlClient.stop();
+        timer.stop();
+    }
+
+    /**
+     * 目标网关未连接或发送失败的控制消息交给fallback处理
+     *
+     * @param fallback
+     */
+    public void setFallback(Consumer<ClusterControlMessage.Entry> fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * 发送控制消息到目标网关
+     *
+     * @param entry
+     */
+    public void send(ClusterControlMessage.Entry entry) {
+        Peer peer = client == null ? null : peers.get(entry.getTargetHostAndPort());
+        Connection connection = peer == null ? null : peer.connection;
+        if (connection == null || !connection.isConnected()) {
+            fallback.accept(entry);
+            return;
+        }
+        peer.offer(entry);
+    }
+
+    /**
+     * 到目标网关的已连接的控制通道，可用于直接发送网关之间的消息
+     *
+     * @param hostAndPort
+     * @return 未连接时返回null
+     */
+    public Connection connectionOf(String hostAndPort) {
+        Peer peer = client == null ? null : peers.get(hostAndPort);
+        Connection connection = peer == null ? null : peer.connection;
+        return connection != null && connection.isConnected() ? connection : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void sync() {
+        try {
+            if (!subscribed) {
+                piccoloServer.getServiceDiscovery().subscribe(ServiceNames.S_GATEWAY, this);
+                subscribed = true;
+            }
+            List<ServiceInstance> list = piccoloServer.getServiceDiscovery().lookup(ServiceNames.S_GATEWAY);
+            list.forEach(this::onServiceAdded);
+        } catch (Exception e) {
+            LOGGER.warn("cluster control sync gateways failure, cause: {}", e.getMessage());
+            if (!subscribed && client != null) {
+                timer.newTimeout(t -> sync(), RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private boolean accept(ServiceInstance instance) {
+        return instance != null
+                && (instance.getServiceId() == null || ServiceNames.S_GATEWAY.equals(instance.getServiceId()))
+                && !self.equals(instance.getHostAndPort());
+    }
+
+    @Override
+    public void onServiceAdded(ServiceInstance instance) {
+        if (!accept(instance)) {
+            return;
+        }
+        Peer peer = peers.computeIfAbsent(instance.getHostAndPort(), k -> new Peer(instance));
+        peer.connect();
+    }
+
+    @Override
+    public void onServiceUpdated(ServiceInstance instance) {
+        onServiceAdded(instance);
+    }
+
+    @Override
+    public void onServiceDeleted(ServiceInstance instance) {
+        if (!accept(instance)) {
+            return;
+        }
+        Peer peer = peers.remove(instance.getHostAndPort());
+        if (peer != null) {
+            peer.close();
+        }
+    }
+
+    private Peer peerOf(Connection connection) {
+        String hostAndPort = connection.getChannel().attr(HOST_AND_PORT).get();
+        if (hostAndPort == null) {
+            InetSocketAddress remoteAddress = (InetSocketAddress) connection.getChannel().remoteAddress();
+            hostAndPort = remoteAddress.getAddress().getHostAddress() + ":" + remoteAddress.getPort();
+        }
+        return peers.get(hostAndPort);
+    }
+
+    /**
+     * 一个目标网关
+     */
+    private final class Peer {
+        private final ServiceInstance instance;
+        private final Queue<ClusterControlMessage.Entry> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final AtomicBoolean connecting = new AtomicBoolean();
+        private volatile Connection connection;
+        private volatile boolean closed;
+
+        Peer(ServiceInstance instance) {
+            this.instance = instance;
+        }
+
+        void connect() {
+            ClusterControlClient clusterControlClient = client;
+            if (closed || clusterControlClient == null || connection != null || !connecting.compareAndSet(false, true)) {
+                return;
+            }
+            //属性需要在channelActive之前设置，否则会按远端地址查找，与注册的地址不一致时连接被当作未知连接关闭
+            ChannelFuture future = clusterControlClient.connect(instance.getHost(), instance.getPort(),
+                    HOST_AND_PORT, instance.getHostAndPort());
+            future.addListener(f -> {
+                if (!f.isSuccess()) {
+                    connecting.set(false);
+                    LOGGER.error("cluster control connect failure, peer: {} cause: {}", instance.getHostAndPort(), f.cause().getMessage());
+                    scheduleReconnect();
+                }
+            });
+        }
+
+        void scheduleReconnect() {
+            if (!closed && client != null) {
+                timer.newTimeout(t -> connect(), RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void offer(ClusterControlMessage.Entry entry) {
+            queue.offer(entry);
+            Connection conn = connection;
+            if (conn == null) {
+                failPending();
+                return;
+            }
+            if (size.incrementAndGet() >= batchSize || lingerMs == 0) {
+                conn.getChannel().eventLoop().execute(this::flush);
+            } else if (flushScheduled.compareAndSet(false, true)) {
+                conn.getChannel().eventLoop().schedule(this::flush, lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * 在连接所在的EventLoop上执行
+         */
+        void flush() {
+            flushScheduled.set(false);
+            Connection conn = connection;
+            if (conn == null) {
+                failPending();
+                return;
+            }
+            while (!queue.isEmpty()) {
+                List<ClusterControlMessage.Entry> batch = new ArrayList<>(Math.min(size.get(), batchSize));
+                ClusterControlMessage.Entry entry;
+                while (batch.size() < batchSize && (entry = queue.poll()) != null) {
+                    batch.add(entry);
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                size.addAndGet(-batch.size());
+                conn.sendAsync(ClusterControlMessage.build(conn).entries(batch), future -> {
+                    if (!future.isSuccess()) {
+                        LOGGER.error("cluster control send failure, peer: {} entries: {} cause: {}",
+                                instance.getHostAndPort(), batch.size(), future.cause().getMessage());
+                        batch.forEach(fallback);
+                    }
+                });
+            }
+        }
+
+        void connected(Connection conn) {
+            connection = conn;
+            connecting.set(false);
+            LOGGER.info("cluster control connected, peer: {} conn: {}", instance.getHostAndPort(), conn);
+        }
+
+        void disconnected(Connection conn) {
+            if (connection != conn) {
+                if (connection == null && connecting.compareAndSet(true, false)) {
+                    //连接建立后未能匹配就被关闭，需要重新连接
+                    scheduleReconnect();
+                }
+                return;
+            }
+            connection = null;
+            failPending();
+            scheduleReconnect();
+        }
+
+        void close() {
+            closed = true;
+            Connection conn = connection;
+            connection = null;
+            if (conn != null) {
+                conn.close();
+            }
+            failPending();
+        }
+
+        private void failPending() {
+            ClusterControlMessage.Entry entry;
+            while ((entry = queue.poll()) != null) {
+                size.decrementAndGet();
+                fallback.accept(entry);
+            }
+        }
+    }
+
+    private final class PeerHandler implements ChannelHandler {
+
+        @Override
+        public void connected(Connection connection) throws ExchangeException {
+            Peer peer = peerOf(connection);
+            if (peer == null) {
+                //目标网关已经下线
+                connection.close();
+                return;
+            }
+            peer.connected(connection);
+        }
+
+        @Override
+        public void disconnected(Connection connection) throws ExchangeException {
+            if (connection == null) {
+                return;
+            }
+            Peer peer = peerOf(connection);
+            if (peer != null) {
+                peer.disconnected(connection);
+            }
+        }
+
+        @Override
+        public void sent(Connection connection, Object message) throws ExchangeException {
+        }
+
+        @Override
+        public void received(Connection connection, Object message) throws ExchangeException {
+            LOGGER.warn("cluster control received unexpected message, message: {} conn: {}", message, connection);
+        }
+
+        @Override
+        public void caught(Connection connection, Throwable exception) throws ExchangeException {
+            LOGGER.error("cluster control connection caught exception, conn: {}", connection, exception);
+            if (connection != null) {
+                //连接已经从ConnectionManager中移除，channelInactive时拿不到连接，这里提前清理
+                disconnected(connection);
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.cluster;
+
+import io.github.ukuz.piccolo.api.config.Environment;
+import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
+import io.github.ukuz.piccolo.api.exchange.support.PacketToMessageConverter;
+import io.github.ukuz.piccolo.api.spi.SpiLoader;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.github.ukuz.piccolo.transport.client.NettyClient;
+import io.github.ukuz.piccolo.transport.codec.Codec;
+import io.github.ukuz.piccolo.transport.codec.MultiPacketCodec;
+import io.github.ukuz.piccolo.transport.connection.NettyConnectionManager;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 连接其他网关的gateway server，每个网关只保持一个连接
+ *
+ * @author ukuz90
+ */
+public class ClusterControlClient extends NettyClient {
+
+    public ClusterControlClient(Environment environment, ChannelHandler handler) {
+        super(environment, new NettyConnectionManager(), handler);
+    }
+
+    @Override
+    protected InetSocketAddress getInetSocketAddress() {
+        return null;
+    }
+
+    @Override
+    protected String getWorkerThreadName() {
+        return ThreadNames.T_CLUSTER_CONTROL_CLIENT;
+    }
+
+    @Override
+    protected Codec newCodec() {
+        return new MultiPacketCodec(SpiLoader.getLoader(PacketToMessageConverter.class).getExtension());
+    }
+
+    @Override
+    public void destroy() {
+        cxnxManager.destroy();
+        super.destroy();
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.dispatch;
+
+import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.common.utils.StringUtils;
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.ExchangeException;
+import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
+import io.github.ukuz.piccolo.api.exchange.handler.MultiMessageHandler;
+import io.github.ukuz.piccolo.api.loadbalance.LoadBalancer;
+import io.github.ukuz.piccolo.api.service.AbstractService;
+import io.github.ukuz.piccolo.api.service.ServiceException;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceListener;
+import io.github.ukuz.piccolo.api.spi.SpiLoader;
+import io.github.ukuz.piccolo.common.ErrorCode;
+import io.github.ukuz.piccolo.common.ServiceNames;
+import io.github.ukuz.piccolo.common.message.DirectDispatchMessage;
+import io.github.ukuz.piccolo.common.message.DirectDispatchResponseMessage;
+import io.github.ukuz.piccolo.common.message.DispatcherMessage;
+import io.github.ukuz.piccolo.common.message.DispatcherResponseMessage;
+import io.github.ukuz.piccolo.common.message.ErrorMessage;
+import io.github.ukuz.piccolo.common.message.OkMessage;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.netty.channel.ChannelFuture;
+import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 上行消息直连转发:
+ * 1. 对配置的routeKey，网关直接把消息转发给通过服务发现找到的业务服务实例，不经过MQ
+ * 2. 每个业务服务实例只保持一个连接，请求通过packet的sessionId关联响应，可以pipeline发送
+ * 3. 按LoadBalancer选择实例，超时由时间轮检测，服务发现在单独的线程上执行，不影响超时检测
+ * 4. 没有可用实例时由调用方回退到MQ
+ *
+ * @author ukuz90
+ */
+public class DirectDispatcher extends AbstractService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectDispatcher.class);
+    private static final AttributeKey<String> HOST_AND_PORT = AttributeKey.valueOf("direct_dispatch_host_port");
+    private static final long RETRY_DELAY_MS = 3000;
+
+    private final PiccoloContext piccoloContext;
+    private final Set<String> routeKeys;
+    private final int timeoutMs;
+    private final LoadBalancer loadBalancer;
+    private final AtomicInteger sessionIdGen = new AtomicInteger();
+    private final ConcurrentMap<Integer, Pending> pendings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, InstanceGroup> groups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Connection> connections = new ConcurrentHashMap<>();
+    private final Set<String> connecting = ConcurrentHashMap.newKeySet();
+    private volatile DirectDispatchClient client;
+    private HashedWheelTimer timer;
+    private ScheduledThreadPoolExecutor syncExecutor;
+
+    public DirectDispatcher(PiccoloContext piccoloContext, CoreProperties core) {
+        this.piccoloContext = piccoloContext;
+        this.routeKeys = StringUtils.hasText(core.getDirectDispatchRoutes()) ?
+                Arrays.stream(core.getDirectDispatchRoutes().split(","))
+                        .map(String::trim)
+                        .filter(StringUtils::hasText)
+                        .collect(Collectors.toSet()) :
+                Collections.emptySet();
+        this.timeoutMs = core.getDirectDispatchTimeoutMs();
+        this.loadBalancer = StringUtils.hasText(core.getLoadBalancer()) ?
+                SpiLoader.getLoader(LoadBalancer.class).getExtension(core.getLoadBalancer()) :
+                SpiLoader.getLoader(LoadBalancer.class).getExtension();
+    }
+
+    @Override
+    public void init() throws ServiceException {
+        if (routeKeys.isEmpty()) {
+            return;
+        }
+        timer = new HashedWheelTimer(new NamedThreadFactory(ThreadNames.T_DIRECT_DISPATCH_TIMER), 10, TimeUnit.MILLISECONDS);
+        syncExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(ThreadNames.T_DIRECT_DISPATCH_SYNC));
+        DirectDispatchClient directDispatchClient = new DirectDispatchClient(piccoloContext.getEnvironment(),
+                new MultiMessageHandler(piccoloContext, new ResponseHandler()));
+        directDispatchClient.start();
+        client = directDispatchClient;
+        LOGGER.info("direct dispatch enabled, routeKeys: {}", routeKeys);
+    }
+
+    @Override
+    public void destroy() throws ServiceException {
+        DirectDispatchClient directDispatchClient = client;
+        if (directDispatchClient == null) {
+            return;
+        }
+        client = null;
+        pendings.keySet().forEach(sessionId -> fail(sessionId, ErrorCode.DISPATCH_FAILURE));
+        connections.values().forEach(Connection::close);
+        directDispatchClient.stop();
+        syncExecutor.shutdownNow();
+        timer.stop();
+    }
+
+    /**
+     * 判断routeKey是否需要直连转发
+     *
+     * @param routeKey
+     * @return
+     */
+    public boolean isDirect(String routeKey) {
+        return client != null && routeKey != null && routeKeys.contains(routeKey);
+    }
+
+    /**
+     * 直连转发上行消息，在I/O线程上调用
+     *
+     * @param connection 客户端连接
+     * @param request 客户端的原始消息
+     * @param topic
+     * @param uid
+     * @param xid
+     * @return false表示没有可用的业务服务实例，需要回退到MQ
+     */
+    public boolean dispatch(Connection connection, DispatcherMessage request, String topic, String uid, long xid) {
+        if (client == null) {
+            return false;
+        }
+        Connection upstream = groups.computeIfAbsent(topic, this::newGroup).choose(uid);
+        if (upstream == null) {
+            return false;
+        }
+        int sessionId = sessionIdGen.incrementAndGet();
+        Pending pending = new Pending(connection, request, upstream);
+        pending.timeout = timer.newTimeout(t -> fail(sessionId, ErrorCode.DISPATCH_TIMEOUT), timeoutMs, TimeUnit.MILLISECONDS);
+        pendings.put(sessionId, pending);
+
+        DirectDispatchMessage msg = DirectDispatchMessage.build(upstream).topic(topic).uid(uid).xid(xid).payload(request.payload);
+        msg.setSessionId(sessionId);
+        upstream.sendAsync(msg, future -> {
+            if (!future.isSuccess()) {
+                LOGGER.error("direct dispatch send failure, upstream: {} cause: {}", upstream, future.cause().getMessage());
+                fail(sessionId, ErrorCode.DISPATCH_FAILURE);
+            }
+        });
+        return true;
+    }
+
+    public int pendingRequests() {
+        return pendings.size();
+    }
+
+    private InstanceGroup newGroup(String topic) {
+        InstanceGroup group = new InstanceGroup(ServiceNames.S_DIRECT_DISPATCH + "/" + topic);
+        //服务发现可能会阻塞，不在I/O线程以及超时检测的时间轮上执行
+        syncExecutor.execute(group::sync);
+        return group;
+    }
+
+    private void complete(int sessionId, DirectDispatchResponseMessage response) {
+        Pending pending = pendings.remove(sessionId);
+        if (pending == null) {
+            //已经超时
+            return;
+        }
+        pending.timeout.cancel();
+        Connection connection = pending.connection;
+        if (response.isSuccess()) {
+            connection.sendAsync(OkMessage.build(pending.request));
+            if (response.payload != null && response.payload.length > 0) {
+                connection.sendAsync(DispatcherResponseMessage.build(connection).payload(response.payload));
+            }
+        } else {
+            connection.sendAsync(ErrorMessage.build(pending.request).code(ErrorCode.DISPATCH_FAILURE).reason("dispatch failure"));
+        }
+    }
+
+    private void fail(int sessionId, ErrorCode code) {
+        Pending pending = pendings.remove(sessionId);
+        if (pending == null) {
+            return;
+        }
+        pending.timeout.cancel();
+        pending.connection.sendAsync(ErrorMessage.build(pending.request).code(code).reason(code.msg));
+        if (code == ErrorCode.DISPATCH_TIMEOUT) {
+            LOGGER.warn("direct dispatch timeout, sessionId: {} upstream: {}", sessionId, pending.upstream);
+        }
+    }
+
+    private void connect(ServiceInstance instance) {
+        String hostAndPort = instance.getHostAndPort();
+        DirectDispatchClient directDispatchClient = client;
+        if (directDispatchClient == null || connections.containsKey(hostAndPort) || !connecting.add(hostAndPort)) {
+            return;
+        }
+        ChannelFuture future = directDispatchClient.connect(instance.getHost(), instance.getPort());
+        future.channel().attr(HOST_AND_PORT).set(hostAndPort);
+        future.addListener(f -> {
+            if (!f.isSuccess()) {
+                connecting.remove(hostAndPort);
+                LOGGER.error("direct dispatch connect failure, hostAndPort: {} cause: {}", hostAndPort, f.cause().getMessage());
+                scheduleReconnect(hostAndPort);
+            }
+        });
+    }
+
+    private void scheduleReconnect(String hostAndPort) {
+        if (client == null) {
+            return;
+        }
+        timer.newTimeout(t -> groups.values().stream()
+                .map(group -> group.instances.get(hostAndPort))
+                .filter(instance -> instance != null)
+                .findFirst()
+                .ifPresent(this::connect), RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean isReferenced(String hostAndPort) {
+        return groups.values().stream().anyMatch(group -> group.instances.containsKey(hostAndPort));
+    }
+
+    private void refreshAll() {
+        groups.values().forEach(InstanceGroup::refresh);
+    }
+
+    private static String hostAndPortOf(Connection connection) {
+        String hostAndPort = connection.getChannel().attr(HOST_AND_PORT).get();
+        if (hostAndPort == null) {
+            InetSocketAddress remoteAddress = (InetSocketAddress) connection.getChannel().remoteAddress();
+            hostAndPort = remoteAddress.getAddress().getHostAddress() + ":" + remoteAddress.getPort();
+        }
+        return hostAndPort;
+    }
+
+    /**
+     * 一个topic对应的业务服务实例
+     */
+    private final class InstanceGroup implements ServiceListener<ServiceInstance> {
+        private final String serviceId;
+        private final Map<String, ServiceInstance> instances = new ConcurrentHashMap<>();
+        private volatile List<ServiceInstance> available = Collections.emptyList();
+        private volatile boolean subscribed;
+
+        InstanceGroup(String serviceId) {
+            this.serviceId = serviceId;
+        }
+
+        @SuppressWarnings("unchecked")
+        void sync() {
+            try {
+                if (!subscribed) {
+                    piccoloContext.getServiceDiscovery().subscribe(serviceId, this);
+                    subscribed = true;
+                }
+                List<ServiceInstance> list = piccoloContext.getServiceDiscovery().lookup(serviceId);
+                list.forEach(this::onServiceAdded);
+            } catch (Exception e) {
+                LOGGER.warn("direct dispatch sync service failure, serviceId: {} cause: {}", serviceId, e.getMessage());
+                if (!subscribed && client != null) {
+                    syncExecutor.schedule(this::sync, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        Connection choose(String uid) {
+            List<ServiceInstance> list = available;
+            if (list.isEmpty()) {
+                return null;
+            }
+            ServiceInstance instance = loadBalancer.choose(list, uid);
+            Connection connection = instance == null ? null : connections.get(instance.getHostAndPort());
+            return connection != null && connection.isConnected() ? connection : null;
+        }
+
+        void refresh() {
+            available = instances.values().stream()
+                    .filter(instance -> connections.containsKey(instance.getHostAndPort()))
+                    .collect(Collectors.toList());
+        }
+
+        private boolean accept(ServiceInstance instance) {
+            return instance != null && (instance.getServiceId() == null || serviceId.equals(instance.getServiceId()));
+        }
+
+        @Override
+        public void onServiceAdded(ServiceInstance instance) {
+            if (!accept(instance)) {
+                return;
+            }
+            instances.put(instance.getHostAndPort(), instance);
+            refresh();
+            connect(instance);
+        }
+
+        @Override
+        public void onServiceUpdated(ServiceInstance instance) {
+            onServiceAdded(instance);
+        }
+
+        @Override
+        public void onServiceDeleted(ServiceInstance instance) {
+            if (!accept(instance) || instances.remove(instance.getHostAndPort()) == null) {
+                return;
+            }
+            refresh();
+            if (!isReferenced(instance.getHostAndPort())) {
+                Connection connection = connections.remove(instance.getHostAndPort());
+                if (connection != null) {
+                    connection.close();
+                }
+                refreshAll();
+            }
+        }
+    }
+
+    private final class ResponseHandler implements ChannelHandler {
+
+        @Override
+        public void connected(Connection connection) throws ExchangeException {
+            String hostAndPort = hostAndPortOf(connection);
+            connections.put(hostAndPort, connection);
+            connecting.remove(hostAndPort);
+            refreshAll();
+            LOGGER.info("direct dispatch connected, hostAndPort: {} conn: {}", hostAndPort, connection);
+        }
+
+        @Override
+        public void disconnected(Connection connection) throws ExchangeException {
+            if (connection == null) {
+                return;
+            }
+            String hostAndPort = hostAndPortOf(connection);
+            if (connections.remove(hostAndPort, connection)) {
+                refreshAll();
+            }
+            //连接上等待响应的请求直接失败，不等待超时
+            pendings.forEach((sessionId, pending) -> {
+                if (pending.upstream == connection) {
+                    fail(sessionId, ErrorCode.DISPATCH_FAILURE);
+                }
+            });
+            if (isReferenced(hostAndPort)) {
+                scheduleReconnect(hostAndPort);
+            }
+        }
+
+        @Override
+        public void sent(Connection connection, Object message) throws ExchangeException {
+        }
+
+        @Override
+        public void received(Connection connection, Object message) throws ExchangeException {
+            if (message instanceof DirectDispatchResponseMessage) {
+                DirectDispatchResponseMessage response = (DirectDispatchResponseMessage) message;
+                complete(response.getSessionId(), response);
+            } else {
+                LOGGER.error("direct dispatch received unknown message, message: {} conn: {}", message, connection);
+            }
+        }
+
+        @Override
+        public void caught(Connection connection, Throwable exception) throws ExchangeException {
+            LOGGER.error("direct dispatch connection caught exception, conn: {}", connection, exception);
+            if (connection != null) {
+                //连接已经从ConnectionManager中移除，channelInactive时拿不到连接，这里提前清理
+                disconnected(connection);
+                connection.close();
+            }
+        }
+    }
+
+    private static final class Pending {
+        final Connection connection;
+        final DispatcherMessage request;
+        final Connection upstream;
+        Timeout timeout;
+
+        Pending(Connection connection, DispatcherMessage request, Connection upstream) {
+            this.connection = connection;
+            this.request = request;
+            this.upstream = upstream;
+        }
+    }
+}
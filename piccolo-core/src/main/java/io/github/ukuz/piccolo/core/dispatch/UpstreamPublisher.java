@@ -0,0 +1,257 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.dispatch;
+
+import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.ByteBufMessage;
+import io.github.ukuz.piccolo.api.mq.MQBusyException;
+import io.github.ukuz.piccolo.common.ErrorCode;
+import io.github.ukuz.piccolo.common.message.ErrorMessage;
+import io.github.ukuz.piccolo.common.message.OkMessage;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.github.ukuz.piccolo.monitor.MetricsMonitor;
+import io.netty.channel.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上行消息发布:
+ * 1. I/O线程只负责把消息放入对应topic的批次，攒够batchSize或者等待超过linger后由发布线程异步发送到MQ
+ * 2. MQ确认后给客户端回OK，失败回ERROR
+ * 3. 等待确认的字节数超过上限，或者MQ缓冲区已满时，暂停读取对应的连接，回落到一半以下后恢复
+ *
+ * @author ukuz90
+ */
+public class UpstreamPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpstreamPublisher.class);
+    private static final String PENDING_TAG = "piccolo_dispatch_pending_bytes";
+    private static final long SHUTDOWN_TIMEOUT_MS = 3000;
+
+    private final PiccoloContext piccoloContext;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long highWaterMark;
+    private final long lowWaterMark;
+    private final Map<String, TopicBatch> batches = new HashMap<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final Set<Channel> paused = ConcurrentHashMap.newKeySet();
+    private final ScheduledThreadPoolExecutor executor;
+
+    public UpstreamPublisher(PiccoloContext piccoloContext, CoreProperties core) {
+        this.piccoloContext = piccoloContext;
+        this.batchSize = core.getDispatchBatchSize();
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(core.getDispatchLingerMs());
+        this.highWaterMark = core.getDispatchMaxPendingBytes();
+        this.lowWaterMark = highWaterMark / 2;
+        this.executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(ThreadNames.T_DISPATCH_PUBLISHER));
+        this.executor.scheduleWithFixedDelay(this::tick, core.getDispatchLingerMs(), core.getDispatchLingerMs(), TimeUnit.MILLISECONDS);
+        MetricsMonitor.gaugeWithStrongRef(PENDING_TAG, null, "dispatch", pendingBytes::get);
+    }
+
+    /**
+     * 提交一条上行消息，在I/O线程上调用
+     *
+     * @param connection 客户端连接
+     * @param request 客户端的原始消息，用于回复OK/ERROR
+     * @param topic
+     * @param key
+     * @param content 编码后的MQ消息
+     */
+    public void publish(Connection connection, ByteBufMessage request, String topic, String key, byte[] content) {
+        Record record = new Record(connection, request, key, content);
+        if (pendingBytes.addAndGet(content.length) > highWaterMark) {
+            pause(connection);
+        }
+        List<Record> full = null;
+        synchronized (this) {
+            TopicBatch batch = batches.computeIfAbsent(topic, TopicBatch::new);
+            if (batch.records.isEmpty()) {
+                batch.createdNanos = System.nanoTime();
+            }
+            batch.records.add(record);
+            if (batch.records.size() >= batchSize) {
+                full = batch.drain();
+            }
+        }
+        if (full != null) {
+            List<Record> records = full;
+            try {
+                executor.execute(() -> send(topic, records));
+            } catch (RejectedExecutionException e) {
+                //发布线程已关闭，直接在当前线程发送
+                send(topic, records);
+            }
+        }
+    }
+
+    public int pausedConnections() {
+        return paused.size();
+    }
+
+    public long pendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * 发送全部未满的批次后关闭发布线程，并等待已发送的消息得到MQ确认，需要在MQ客户端关闭之前调用
+     */
+    public void shutdown() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MS);
+        executor.execute(() -> drainExpired(true));
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("upstream publisher shutdown timeout, pending: {}", pendingBytes.get());
+                executor.shutdownNow();
+                return;
+            }
+            while (pendingBytes.get() > 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (pendingBytes.get() > 0) {
+            LOGGER.warn("upstream publisher shutdown with unacknowledged messages, pending: {}", pendingBytes.get());
+        }
+    }
+
+    private void tick() {
+        try {
+            drainExpired(false);
+            resumeIfNeeded();
+        } catch (Exception e) {
+            LOGGER.error("upstream publisher tick failure", e);
+        }
+    }
+
+    private void drainExpired(boolean force) {
+        long now = System.nanoTime();
+        Map<String, List<Record>> expired = new HashMap<>();
+        synchronized (this) {
+            Iterator<TopicBatch> it = batches.values().iterator();
+            while (it.hasNext()) {
+                TopicBatch batch = it.next();
+                if (batch.records.isEmpty()) {
+                    //长时间没有消息的topic不再保留
+                    it.remove();
+                } else if (force || now - batch.createdNanos >= lingerNanos) {
+                    expired.put(batch.topic, batch.drain());
+                }
+            }
+        }
+        expired.forEach(this::send);
+    }
+
+    private void send(String topic, List<Record> records) {
+        for (Record record : records) {
+            try {
+                piccoloContext.getMQClient().publishAsync(topic, record.key, record.content)
+                        .whenComplete((v, e) -> complete(record, e));
+            } catch (Exception e) {
+                complete(record, e);
+            }
+        }
+    }
+
+    private void complete(Record record, Throwable cause) {
+        pendingBytes.addAndGet(-record.content.length);
+        Connection connection = record.connection;
+        if (cause == null) {
+            connection.sendAsync(OkMessage.build(record.request));
+        } else {
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof MQBusyException) {
+                pause(connection);
+                connection.sendAsync(ErrorMessage.build(record.request).code(ErrorCode.SERVER_BUSY).reason("server busy"));
+            } else {
+                connection.sendAsync(ErrorMessage.build(record.request).code(ErrorCode.DISPATCH_FAILURE).reason("dispatch failure"));
+            }
+            LOGGER.error("dispatch failure, conn: {} cause: {}", connection, cause.getMessage());
+        }
+        resumeIfNeeded();
+    }
+
+    private void pause(Connection connection) {
+        Channel channel = connection.getChannel();
+        if (channel.config().isAutoRead()) {
+            channel.config().setAutoRead(false);
+            paused.add(channel);
+            LOGGER.warn("pause reading because of upstream backpressure, conn: {} pending: {}", connection, pendingBytes.get());
+        }
+    }
+
+    private void resumeIfNeeded() {
+        if (paused.isEmpty() || pendingBytes.get() > lowWaterMark) {
+            return;
+        }
+        Iterator<Channel> it = paused.iterator();
+        while (it.hasNext()) {
+            Channel channel = it.next();
+            it.remove();
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    private static final class TopicBatch {
+        final String topic;
+        List<Record> records = new ArrayList<>();
+        long createdNanos;
+
+        TopicBatch(String topic) {
+            this.topic = topic;
+        }
+
+        List<Record> drain() {
+            List<Record> drained = records;
+            records = new ArrayList<>();
+            return drained;
+        }
+    }
+
+    private static final class Record {
+        final Connection connection;
+        final ByteBufMessage request;
+        final String key;
+        final byte[] content;
+
+        Record(Connection connection, ByteBufMessage request, String key, byte[] content) {
+            this.connection = connection;
+            this.request = request;
+            this.key = key;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.egress;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 某一优先级在所有EventLoop之间共享的带宽预算(令牌桶)
+ *
+ * @author ukuz90
+ */
+public class EgressBudget {
+
+    private final AtomicLong tokens = new AtomicLong();
+    private volatile long limit;
+    private final long checkIntervalMs;
+
+    /**
+     * @param limit bytes/s, 0表示不限制
+     * @param checkIntervalMs 令牌补充间隔
+     */
+    public EgressBudget(long limit, long checkIntervalMs) {
+        this.checkIntervalMs = checkIntervalMs;
+        setLimit(limit);
+    }
+
+    public boolean isUnlimited() {
+        return limit <= 0;
+    }
+
+    /**
+     * 尝试获取写出size字节的额度，允许最后一次透支，透支部分在下次补充时扣除
+     *
+     * @param size
+     * @return
+     */
+    public boolean tryAcquire(int size) {
+        if (isUnlimited()) {
+            return true;
+        }
+        if (tokens.get() <= 0) {
+            return false;
+        }
+        tokens.addAndGet(-size);
+        return true;
+    }
+
+    public void refill() {
+        if (isUnlimited()) {
+            return;
+        }
+        long burst = getBurst();
+        long current;
+        long next;
+        do {
+            current = tokens.get();
+            next = Math.min(current + burst, burst);
+        } while (!tokens.compareAndSet(current, next));
+    }
+
+    public void setLimit(long limit) {
+        this.limit = limit;
+        tokens.set(getBurst());
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getCheckIntervalMs() {
+        return checkIntervalMs;
+    }
+
+    private long getBurst() {
+        return Math.max(1, limit * checkIntervalMs / 1000);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.egress;
+
+import io.github.ukuz.piccolo.api.exchange.protocol.Packet;
+import io.github.ukuz.piccolo.common.constants.CommandType;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelPromise;
+
+/**
+ * 出站流量的优先级分类
+ *
+ * @author ukuz90
+ */
+public enum EgressClass {
+
+    /**
+     * 握手、快速重连、踢人、OK/ERROR、心跳等控制消息，不排队直接写出
+     */
+    CONTROL,
+    /**
+     * 点对点的推送以及业务请求响应
+     */
+    INTERACTIVE,
+    /**
+     * 广播等批量推送
+     */
+    BULK;
+
+    /**
+     * cmd在二进制帧头中的偏移量: magic(2)
+     */
+    private static final int CMD_OFFSET = 2;
+
+    private static final EgressClass[] CLASSES = values();
+
+    public static EgressClass[] classes() {
+        return CLASSES;
+    }
+
+    public static EgressClass of(CommandType cmd) {
+        switch (cmd) {
+            case ERROR:
+            case HANDSHAKE:
+            case HEARTBEAT:
+            case FAST_CONNECT:
+            case BIND_USER:
+            case UNBIND_USER:
+            case OK:
+            case KICK:
+            case ACK:
+            case PUSH_RESULT:
+            case CLUSTER_CONTROL:
+            case REDIRECT:
+                return CONTROL;
+            case DISPATCH:
+            case PUSH:
+            case ID_GEN:
+                return INTERACTIVE;
+            default:
+                return BULK;
+        }
+    }
+
+    /**
+     * 根据编码后的帧以及写出时的promise进行分类
+     *
+     * @param frame
+     * @param promise
+     * @return
+     */
+    public static EgressClass of(ByteBuf frame, ChannelPromise promise) {
+        if (promise instanceof BulkChannelPromise) {
+            return BULK;
+        }
+        if (frame.readableBytes() < Packet.HEADER_LENGTH) {
+            return BULK;
+        }
+        return of(CommandType.toCMD(frame.getByte(frame.readerIndex() + CMD_OFFSET)));
+    }
+
+    /**
+     * 用于广播等批量写出，写出的消息会被归类为{@link #BULK}
+     *
+     * @param channel
+     * @return
+     */
+    public static ChannelPromise newBulkPromise(Channel channel) {
+        return new BulkChannelPromise(channel);
+    }
+
+    private static final class BulkChannelPromise extends DefaultChannelPromise {
+
+        BulkChannelPromise(Channel channel) {
+            super(channel);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.egress;
+
+import io.github.ukuz.piccolo.common.properties.NetProperties;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.github.ukuz.piccolo.monitor.MetricsMonitor;
+import io.micrometer.core.instrument.Timer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.EventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 出站调度器:
+ * 1. CONTROL类消息不排队直接写出
+ * 2. INTERACTIVE优先于BULK(严格优先级)
+ * 3. 同一优先级内，同一个EventLoop上的连接之间按DRR(Deficit Round Robin)公平调度
+ * 4. 每个优先级有全局的带宽预算，预算耗尽后等待下一次补充
+ *
+ * 所有排队状态都只在所属EventLoop内访问，无需加锁
+ *
+ * @author ukuz90
+ */
+public class EgressScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EgressScheduler.class);
+
+    private static final String BACKLOG_TAG = "piccolo_egress_backlog_bytes";
+    private static final long DEFAULT_CHECK_INTERVAL_MS = 1000;
+
+    private final int quantum;
+    private final int maxBytesPerPass;
+    private final long maxChannelBacklog;
+    private final long checkIntervalMs;
+    private final EgressBudget[] budgets;
+    private final AtomicLong[] backlogs;
+    private final Timer[] latencies;
+    private final ConcurrentMap<EventExecutor, LoopQueue> loopQueues = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor refillExecutor;
+
+    public EgressScheduler(String name, NetProperties.TrafficNestedProperties traffic) {
+        this.quantum = traffic.getEgressQuantum();
+        this.maxBytesPerPass = quantum * 16;
+        this.maxChannelBacklog = traffic.getEgressMaxChannelBacklog();
+        this.checkIntervalMs = traffic.getCheckIntervalMs() > 0 ? traffic.getCheckIntervalMs() : DEFAULT_CHECK_INTERVAL_MS;
+
+        EgressClass[] classes = EgressClass.classes();
+        this.budgets = new EgressBudget[classes.length];
+        this.backlogs = new AtomicLong[classes.length];
+        this.latencies = new Timer[classes.length];
+        budgets[EgressClass.CONTROL.ordinal()] = new EgressBudget(0, checkIntervalMs);
+        budgets[EgressClass.INTERACTIVE.ordinal()] = new EgressBudget(traffic.getInteractiveWriteLimit(), checkIntervalMs);
+        budgets[EgressClass.BULK.ordinal()] = new EgressBudget(traffic.getBulkWriteLimit(), checkIntervalMs);
+        for (EgressClass cls : classes) {
+            AtomicLong backlog = new AtomicLong();
+            backlogs[cls.ordinal()] = backlog;
+            latencies[cls.ordinal()] = MetricsMonitor.getEgressLatency(name, cls.name());
+            MetricsMonitor.gaugeWithStrongRef(BACKLOG_TAG, name, cls.name(), backlog::get);
+        }
+
+        refillExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(ThreadNames.T_TRAFFIC_SHAPING));
+        refillExecutor.scheduleAtFixedRate(this::refill, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public EgressBudget getBudget(EgressClass cls) {
+        return budgets[cls.ordinal()];
+    }
+
+    public void shutdown() {
+        refillExecutor.shutdownNow();
+    }
+
+    void enqueue(ChannelQueue queue, EgressClass cls, ByteBuf frame, ChannelPromise promise) {
+        int size = frame.readableBytes();
+        if (queue.backlog + size > maxChannelBacklog) {
+            frame.release();
+            LOGGER.warn("egress backlog overflow, drop frame, channel: {} backlog: {}", queue.ctx.channel(), queue.backlog);
+            promise.tryFailure(new EgressOverflowException("channel egress backlog overflow, backlog: " + queue.backlog));
+            return;
+        }
+        queue.entries[cls.ordinal()].offer(new Entry(frame, promise, System.nanoTime()));
+        queue.backlog += size;
+        backlogs[cls.ordinal()].addAndGet(size);
+
+        LoopQueue loopQueue = loopQueueOf(queue.ctx.executor());
+        loopQueue.activate(queue, cls);
+        loopQueue.scheduleDrain();
+    }
+
+    void resume(ChannelQueue queue) {
+        LoopQueue loopQueue = loopQueueOf(queue.ctx.executor());
+        for (EgressClass cls : EgressClass.classes()) {
+            if (!queue.entries[cls.ordinal()].isEmpty()) {
+                loopQueue.activate(queue, cls);
+            }
+        }
+        loopQueue.scheduleDrain();
+    }
+
+    void discard(ChannelQueue queue) {
+        ClosedChannelException cause = null;
+        for (EgressClass cls : EgressClass.classes()) {
+            ArrayDeque<Entry> entries = queue.entries[cls.ordinal()];
+            Entry entry;
+            while ((entry = entries.poll()) != null) {
+                int size = entry.frame.readableBytes();
+                backlogs[cls.ordinal()].addAndGet(-size);
+                queue.backlog -= size;
+                entry.frame.release();
+                if (cause == null) {
+                    cause = new ClosedChannelException();
+                }
+                entry.promise.tryFailure(cause);
+            }
+        }
+        queue.discarded = true;
+    }
+
+    private LoopQueue loopQueueOf(EventExecutor executor) {
+        return loopQueues.computeIfAbsent(executor, LoopQueue::new);
+    }
+
+    private void refill() {
+        for (EgressBudget budget : budgets) {
+            budget.refill();
+        }
+    }
+
+    static final class Entry {
+        final ByteBuf frame;
+        final ChannelPromise promise;
+        final long enqueueNanos;
+
+        Entry(ByteBuf frame, ChannelPromise promise, long enqueueNanos) {
+            this.frame = frame;
+            this.promise = promise;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+
+    /**
+     * 单个连接的出站队列
+     */
+    static final class ChannelQueue {
+        final ChannelHandlerContext ctx;
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<Entry>[] entries = new ArrayDeque[EgressClass.classes().length];
+        final int[] deficits = new int[EgressClass.classes().length];
+        final boolean[] active = new boolean[EgressClass.classes().length];
+        long backlog;
+        boolean discarded;
+        boolean pendingFlush;
+
+        ChannelQueue(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = new ArrayDeque<>();
+            }
+        }
+
+        boolean isEmpty() {
+            return backlog == 0;
+        }
+    }
+
+    /**
+     * 单个EventLoop上所有活跃连接的轮转队列
+     */
+    final class LoopQueue implements Runnable {
+        private final EventExecutor executor;
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<ChannelQueue>[] rings = new ArrayDeque[EgressClass.classes().length];
+        private final List<ChannelQueue> written = new ArrayList<>();
+        private final Runnable timer = this::onTimer;
+        private boolean drainScheduled;
+        /**
+         * 预算不足时等待补充的定时任务，与drainScheduled分开，等待期间新入队的消息仍能立即调度
+         */
+        private boolean timerScheduled;
+
+        LoopQueue(EventExecutor executor) {
+            this.executor = executor;
+            for (int i = 0; i < rings.length; i++) {
+                rings[i] = new ArrayDeque<>();
+            }
+        }
+
+        void activate(ChannelQueue queue, EgressClass cls) {
+            if (!queue.active[cls.ordinal()]) {
+                queue.active[cls.ordinal()] = true;
+                rings[cls.ordinal()].offer(queue);
+            }
+        }
+
+        void scheduleDrain() {
+            if (!drainScheduled) {
+                drainScheduled = true;
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            drainScheduled = false;
+            boolean throttled = false;
+            int remaining = maxBytesPerPass;
+            //1. 按优先级依次排空，高优先级排空(或预算耗尽)后才轮到低优先级
+            for (EgressClass cls : EgressClass.classes()) {
+                if (cls == EgressClass.CONTROL) {
+                    continue;
+                }
+                int written = drain(cls, remaining);
+                if (written < 0) {
+                    throttled = true;
+                    remaining += written + 1;
+                } else {
+                    remaining -= written;
+                }
+                if (remaining <= 0) {
+                    break;
+                }
+            }
+            //2. 统一flush
+            for (ChannelQueue queue : written) {
+                queue.pendingFlush = false;
+                queue.ctx.flush();
+            }
+            written.clear();
+            //3. 仍有积压则继续调度，预算不足则等待下一次补充
+            if (hasBacklog()) {
+                if (throttled && remaining > 0) {
+                    if (!timerScheduled) {
+                        timerScheduled = true;
+                        executor.schedule(timer, checkIntervalMs, TimeUnit.MILLISECONDS);
+                    }
+                } else {
+                    scheduleDrain();
+                }
+            }
+        }
+
+        private void onTimer() {
+            timerScheduled = false;
+            if (!drainScheduled) {
+                run();
+            }
+        }
+
+        /**
+         * @return 写出的字节数，若因预算耗尽而中止返回 -(written + 1)
+         */
+        private int drain(EgressClass cls, int limit) {
+            ArrayDeque<ChannelQueue> ring = rings[cls.ordinal()];
+            EgressBudget budget = budgets[cls.ordinal()];
+            int bytes = 0;
+            while (bytes < limit && !ring.isEmpty()) {
+                ChannelQueue queue = ring.poll();
+                ArrayDeque<Entry> entries = queue.entries[cls.ordinal()];
+                if (queue.discarded || entries.isEmpty() || !queue.ctx.channel().isWritable()) {
+                    //不可写的连接暂停调度，等待channelWritabilityChanged后恢复
+                    queue.active[cls.ordinal()] = false;
+                    queue.deficits[cls.ordinal()] = 0;
+                    continue;
+                }
+                queue.deficits[cls.ordinal()] += quantum;
+                Entry entry;
+                while ((entry = entries.peek()) != null) {
+                    int size = entry.frame.readableBytes();
+                    if (size > queue.deficits[cls.ordinal()]) {
+                        break;
+                    }
+                    if (!budget.tryAcquire(size)) {
+                        //本轮未用完的额度留到下一轮，撤销本轮追加的quantum，避免积累后突发
+                        queue.deficits[cls.ordinal()] -= quantum;
+                        ring.offerFirst(queue);
+                        return -(bytes + 1);
+                    }
+                    entries.poll();
+                    queue.deficits[cls.ordinal()] -= size;
+                    queue.backlog -= size;
+                    backlogs[cls.ordinal()].addAndGet(-size);
+                    latencies[cls.ordinal()].record(System.nanoTime() - entry.enqueueNanos, TimeUnit.NANOSECONDS);
+                    queue.ctx.write(entry.frame, entry.promise);
+                    bytes += size;
+                    //预算耗尽中止时已写出的帧同样需要flush
+                    if (!queue.pendingFlush) {
+                        queue.pendingFlush = true;
+                        written.add(queue);
+                    }
+                }
+                if (entries.isEmpty()) {
+                    queue.active[cls.ordinal()] = false;
+                    queue.deficits[cls.ordinal()] = 0;
+                } else {
+                    ring.offer(queue);
+                }
+            }
+            return bytes;
+        }
+
+        private boolean hasBacklog() {
+            for (ArrayDeque<ChannelQueue> ring : rings) {
+                if (!ring.isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 单个连接积压超过上限时写出失败
+     */
+    public static class EgressOverflowException extends RuntimeException {
+
+        public EgressOverflowException(String message) {
+            super(message);
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.egress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+
+/**
+ * 位于pipeline头部，对编码后的帧按优先级排队写出
+ *
+ * @author ukuz90
+ */
+@ChannelHandler.Sharable
+public class EgressSchedulerHandler extends ChannelDuplexHandler {
+
+    private static final AttributeKey<EgressScheduler.ChannelQueue> QUEUE_KEY = AttributeKey.valueOf("egressQueue");
+
+    private final EgressScheduler scheduler;
+
+    public EgressSchedulerHandler(EgressScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof ByteBuf)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        EgressClass cls = EgressClass.of((ByteBuf) msg, promise);
+        EgressScheduler.ChannelQueue queue = ctx.channel().attr(QUEUE_KEY).get();
+        if (cls == EgressClass.CONTROL || queue == null || queue.discarded) {
+            ctx.write(msg, promise);
+            return;
+        }
+        scheduler.enqueue(queue, cls, (ByteBuf) msg, promise);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        ctx.channel().attr(QUEUE_KEY).set(new EgressScheduler.ChannelQueue(ctx));
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        EgressScheduler.ChannelQueue queue = ctx.channel().attr(QUEUE_KEY).getAndSet(null);
+        if (queue != null) {
+            scheduler.discard(queue);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        EgressScheduler.ChannelQueue queue = ctx.channel().attr(QUEUE_KEY).getAndSet(null);
+        if (queue != null) {
+            scheduler.discard(queue);
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        EgressScheduler.ChannelQueue queue = ctx.channel().attr(QUEUE_KEY).get();
+        if (queue != null && !queue.isEmpty() && ctx.channel().isWritable()) {
+            scheduler.resume(queue);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+}
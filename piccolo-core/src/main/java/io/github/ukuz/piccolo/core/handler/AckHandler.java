@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.handler;
+
+import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.ExchangeException;
+import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
+import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandlerDelegateAdapter;
+import io.github.ukuz.piccolo.common.message.AckMessage;
+import io.github.ukuz.piccolo.core.PiccoloServer;
+
+/**
+ * @author ukuz90
+ */
+public class AckHandler extends ChannelHandlerDelegateAdapter {
+
+    public AckHandler(PiccoloContext piccoloContext, ChannelHandler handler) {
+        super(piccoloContext, handler);
+    }
+
+    @Override
+    public void received(Connection connection, Object message) throws ExchangeException {
+        if (message instanceof AckMessage) {
+            ((PiccoloServer) piccoloContext).getPushAckManager().ack(connection, ((AckMessage) message).seq);
+        } else {
+            super.received(connection, message);
+        }
+    }
+}
@@ -80,6 +80,7 @@ public class BindUserHandler extends ChannelHandlerDelegateAdapter {
             if (context.getUserId() != null) {
                 if (context.getUserId().equals(msg.userId)) {
                     context.setTags(msg.tags);
+                    ((PiccoloServer) piccoloContext).getRouterCenter().getTagIndex().index(connection, msg.tags);
                     connection.sendAsync(OkMessage.build(msg));
                     logger.info("bind user success, userId: {} conn: {}", msg.userId, connection);
                     return;
@@ -99,9 +100,12 @@ public class BindUserHandler extends ChannelHandlerDelegateAdapter {
             if (success) {
                 context.setUserId(msg.userId);
                 context.setTags(msg.tags);
+                routerCenter.getTagIndex().index(connection, msg.tags);
                 EventBus.post(new UserOnlineEvent(msg.userId, connection));
                 connection.sendAsync(OkMessage.build(msg).data("bind success"));
                 logger.info("bind success, userId: {} conn: {}", msg.userId, connection);
+                //重放本网关保存的离线消息
+                ((PiccoloServer) piccoloContext).getOfflineMessageStore().replay(connection, msg.userId);
             } else {
                 //若注册失败，则注销用户
                 routerCenter.unRegister(msg.userId, context.getClientType());
@@ -153,6 +157,7 @@ public class BindUserHandler extends ChannelHandlerDelegateAdapter {
             if (success) {
                 context.setUserId(null);
                 context.setTags(null);
+                routerCenter.getTagIndex().remove(connection);
                 connection.sendAsync(OkMessage.build(msg).data("unbind success"));
                 EventBus.post(new UserOfflineEvent(userId, connection));
                 logger.info("unbind success, userId: {} conn: {}", userId, connection);
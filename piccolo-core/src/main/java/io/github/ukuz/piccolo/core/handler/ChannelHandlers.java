@@ -32,13 +32,15 @@ public class ChannelHandlers {
         BindUserHandler bindUserHandler = new BindUserHandler(piccoloContext, dispatcherHandler);
         FastConnectHandler fastConnectHandler = new FastConnectHandler(piccoloContext, bindUserHandler);
         HandshakeServerHandler handshakeServerHandler = new HandshakeServerHandler(piccoloContext, fastConnectHandler);
-        HeartbeatHandler heartbeatHandler = new HeartbeatHandler(piccoloContext, handshakeServerHandler);
+        AckHandler ackHandler = new AckHandler(piccoloContext, handshakeServerHandler);
+        HeartbeatHandler heartbeatHandler = new HeartbeatHandler(piccoloContext, ackHandler);
         return new MultiMessageHandler(piccoloContext, heartbeatHandler);
     }
 
     public static ChannelHandler newGatewayChannelHandler(PiccoloContext piccoloContext) {
         PushHandler pushHandler = new PushHandler(piccoloContext);
-        return new MultiMessageHandler(piccoloContext, new IdGenHandler(piccoloContext, pushHandler));
+        ClusterControlHandler clusterControlHandler = new ClusterControlHandler(piccoloContext, pushHandler);
+        return new MultiMessageHandler(piccoloContext, new IdGenHandler(piccoloContext, clusterControlHandler));
     }
 
 }
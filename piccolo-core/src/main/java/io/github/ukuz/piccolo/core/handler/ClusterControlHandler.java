@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.handler;
+
+import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.ExchangeException;
+import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
+import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandlerDelegateAdapter;
+import io.github.ukuz.piccolo.common.message.ClusterControlMessage;
+import io.github.ukuz.piccolo.core.PiccoloServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 处理其他网关直接发来的集群控制消息
+ *
+ * @author ukuz90
+ */
+public class ClusterControlHandler extends ChannelHandlerDelegateAdapter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterControlHandler.class);
+
+    public ClusterControlHandler(PiccoloContext piccoloContext, ChannelHandler handler) {
+        super(piccoloContext, handler);
+    }
+
+    @Override
+    public void received(Connection connection, Object message) throws ExchangeException {
+        if (message instanceof ClusterControlMessage) {
+            ClusterControlMessage msg = (ClusterControlMessage) message;
+            PiccoloServer piccoloServer = (PiccoloServer) piccoloContext;
+            for (ClusterControlMessage.Entry entry : msg.entries) {
+                if (entry.type == ClusterControlMessage.TYPE_KICK) {
+                    piccoloServer.getRouterCenter().kickLocal(entry.userId, entry.clientType, entry.connId,
+                            entry.targetAddress, entry.targetPort);
+                } else if (entry.type == ClusterControlMessage.TYPE_REPLAY_OFFLINE) {
+                    Connection gateway = piccoloServer.getClusterControlChannel().connectionOf(entry.replyTo);
+                    if (gateway != null) {
+                        piccoloServer.getOfflineMessageStore().forward(gateway, entry.userId);
+                    } else {
+                        LOGGER.warn("can not forward offline message, gateway not connected, entry: {}", entry);
+                    }
+                } else {
+                    LOGGER.warn("received unknown cluster control entry, entry: {} conn: {}", entry, connection);
+                }
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("received cluster control message, entries: {} conn: {}", msg.entries.size(), connection);
+            }
+        } else {
+            super.received(connection, message);
+        }
+    }
+}
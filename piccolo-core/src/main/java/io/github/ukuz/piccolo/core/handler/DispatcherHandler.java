@@ -16,19 +16,20 @@
 package io.github.ukuz.piccolo.core.handler;
 
 import io.github.ukuz.piccolo.api.PiccoloContext;
-import io.github.ukuz.piccolo.api.common.remote.FailoverInvoker;
 import io.github.ukuz.piccolo.api.common.utils.StringUtils;
 import io.github.ukuz.piccolo.api.connection.Connection;
 import io.github.ukuz.piccolo.api.connection.SessionContext;
 import io.github.ukuz.piccolo.api.exchange.ExchangeException;
 import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
 import io.github.ukuz.piccolo.api.external.common.Assert;
-import io.github.ukuz.piccolo.api.mq.MQClient;
+import io.github.ukuz.piccolo.api.id.IdGenException;
 import io.github.ukuz.piccolo.api.route.RouteLocator;
 import io.github.ukuz.piccolo.api.spi.SpiLoader;
+import io.github.ukuz.piccolo.common.ErrorCode;
 import io.github.ukuz.piccolo.common.message.DispatcherMessage;
 import io.github.ukuz.piccolo.common.message.ErrorMessage;
 import io.github.ukuz.piccolo.common.message.push.KafkaDispatcherMqMessage;
+import io.github.ukuz.piccolo.core.PiccoloServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,7 +65,6 @@ public class DispatcherHandler implements ChannelHandler {
     public void sent(Connection connection, Object message) throws ExchangeException {
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void received(Connection connection, Object message) throws ExchangeException {
         if (message instanceof DispatcherMessage) {
@@ -78,37 +78,40 @@ public class DispatcherHandler implements ChannelHandler {
             if (context.getUserId() == null) {
                 connection.sendAsyncAndClose(ErrorMessage.build(msg).reason("not bind user"));
                 LOGGER.error("dispatcher failure, cause: not bind user");
+                return;
             }
-            FailoverInvoker invoker = new FailoverInvoker();
+            long xid;
             try {
-                invoker.invoke(() -> {
-                    MQClient client = piccoloContext.getMQClient();
-                    long xid = piccoloContext.getIdGen().get("dispatch");
-                    String uid = connection.getSessionContext().getUserId();
-                    String topic = (String) routeLocator.getRoute(msg.routeKey);
-
-                    KafkaDispatcherMqMessage mqMessage = new KafkaDispatcherMqMessage();
-                    mqMessage.setXid(xid);
-                    mqMessage.setMqClient(client);
-                    mqMessage.setPayload(msg.payload);
-                    mqMessage.setUid(uid);
-
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("dispatcher routeKey: {} topic: {}", msg.routeKey, topic);
-                    }
-                    if (StringUtils.hasText(topic)) {
-                        client.publish(topic, uid, mqMessage.encode());
-                    } else {
-                        //识别不到的路由
-                        LOGGER.warn("dispatcher can not found topic, routeKey: {} topic: {}", msg.routeKey, topic);
-                        client.publish(DISPATCH_MESSAGE.getTopic(), uid, mqMessage.encode());
-                    }
+                xid = piccoloContext.getIdGen().get("dispatch");
+            } catch (IdGenException e) {
+                connection.sendAsync(ErrorMessage.build(msg).code(ErrorCode.DISPATCH_FAILURE).reason("dispatch failure"));
+                LOGGER.error("dispatcher failure, cause: {}", e.getMessage());
+                return;
+            }
+            String uid = context.getUserId();
+            String topic = (String) routeLocator.getRoute(msg.routeKey);
 
-                    return null;
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("dispatcher routeKey: {} topic: {}", msg.routeKey, topic);
+            }
+            if (!StringUtils.hasText(topic)) {
+                //识别不到的路由
+                LOGGER.warn("dispatcher can not found topic, routeKey: {} topic: {}", msg.routeKey, topic);
+                topic = DISPATCH_MESSAGE.getTopic();
+            }
+            PiccoloServer server = (PiccoloServer) piccoloContext;
+            //直连业务服务，没有可用实例时回退到MQ
+            if (server.getDirectDispatcher().isDirect(msg.routeKey)
+                    && server.getDirectDispatcher().dispatch(connection, msg, topic, uid, xid)) {
+                return;
             }
+            KafkaDispatcherMqMessage mqMessage = new KafkaDispatcherMqMessage();
+            mqMessage.setXid(xid);
+            mqMessage.setMqClient(piccoloContext.getMQClient());
+            mqMessage.setPayload(msg.payload);
+            mqMessage.setUid(uid);
+            //攒批后异步发送，MQ确认后回复客户端
+            server.getUpstreamPublisher().publish(connection, msg, topic, uid, mqMessage.encode());
         } else {
             connection.close();
             LOGGER.error("handler unknown message, message: {} conn: {}", message, connection);
@@ -21,13 +21,14 @@ import io.github.ukuz.piccolo.api.exchange.ExchangeException;
 import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
 import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandlerDelegateAdapter;
 import io.github.ukuz.piccolo.common.ErrorCode;
+import io.github.ukuz.piccolo.common.message.BindUserMessage;
 import io.github.ukuz.piccolo.common.message.ErrorMessage;
 import io.github.ukuz.piccolo.common.message.FastConnectMessage;
 import io.github.ukuz.piccolo.common.message.FastConnectOkMessage;
-import io.github.ukuz.piccolo.common.properties.CoreProperties;
 import io.github.ukuz.piccolo.core.PiccoloServer;
 import io.github.ukuz.piccolo.core.session.ReusableSession;
 import io.github.ukuz.piccolo.core.session.ReusableSessionManager;
+import io.netty.util.internal.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,8 +66,8 @@ public class FastConnectHandler extends ChannelHandlerDelegateAdapter {
             } else {
 
                 //3.校验成功，重新计算心跳，完成快速重连
-                CoreProperties core = piccoloContext.getProperties(CoreProperties.class);
-                int heartbeat = Math.max(core.getMinHeartbeatTime(), Math.min(msg.maxHeartbeat, core.getMaxHeartbeatTime()));
+                int heartbeat = ((PiccoloServer) piccoloContext).getHeartbeatTuner()
+                        .assign(connection, session.getContext().getOsName(), msg.maxHeartbeat);
 
                 FastConnectOkMessage okMessage = FastConnectOkMessage.build(connection)
                         .heartbeat(heartbeat);
@@ -75,8 +76,10 @@ public class FastConnectHandler extends ChannelHandlerDelegateAdapter {
                 connection.sendRawAsync(okMessage, future -> {
                     if (future.isSuccess()) {
                         //4. 恢复缓存的会话信息(包含会话密钥等)
-                        connection.setSessionContext(session.getContext());
+                        connection.setSessionContext(session.getContext().setHeartbeat(heartbeat));
                         logger.info("fast connect success, session: {} conn: {}", session.getContext(), connection);
+                        //5. 快速重连中携带了绑定信息，直接绑定用户
+                        bindIfNeeded(connection, msg);
                     } else {
                         logger.warn("fast connect failure, session: {} conn: {} cause: {}", session.getContext(), connection, future.cause());
                     }
@@ -87,4 +90,15 @@ public class FastConnectHandler extends ChannelHandlerDelegateAdapter {
             super.received(connection, message);
         }
     }
+
+    private void bindIfNeeded(Connection connection, FastConnectMessage msg) {
+        if (StringUtil.isNullOrEmpty(msg.userId)) {
+            return;
+        }
+        try {
+            super.received(connection, BindUserMessage.from(connection, msg.userId, msg.tags, msg));
+        } catch (ExchangeException e) {
+            logger.error("bind user with fast connect failure, userId: {} conn: {}", msg.userId, connection, e);
+        }
+    }
 }
@@ -22,6 +22,7 @@ import io.github.ukuz.piccolo.api.exchange.ExchangeException;
 import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
 import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandlerDelegateAdapter;
 import io.github.ukuz.piccolo.common.ErrorCode;
+import io.github.ukuz.piccolo.common.message.BindUserMessage;
 import io.github.ukuz.piccolo.common.message.ErrorMessage;
 import io.github.ukuz.piccolo.common.message.HandshakeMessage;
 import io.github.ukuz.piccolo.common.message.HandshakeOkMessage;
@@ -96,13 +97,18 @@ public class HandshakeServerHandler extends ChannelHandlerDelegateAdapter {
         //3. 更换为对称加密算法 RSA=>AES(clientKey)
         context.changeCipher(new AESCipher(clientKey, iv));
 
-        //4. 生成可复用的session, 用于快速重连
+        //4. 生成可复用的session, 用于快速重连，票据模式下会话信息需要在响应前确定
+        SessionContext reusableContext = new SessionContext()
+                .setDeviceId(msg.deviceId)
+                .setClientVersion(msg.clientVersion)
+                .setOsName(msg.osName)
+                .setOsVersion(msg.osVersion);
+        reusableContext.changeCipher(new AESCipher(sessionKey, iv));
         ReusableSessionManager reusableSessionManager = ((PiccoloServer)piccoloContext).getReusableSessionManager();
-        ReusableSession session = reusableSessionManager.genSession(context);
+        ReusableSession session = reusableSessionManager.genSession(reusableContext);
 
         //5. 计算心跳时间
-        CoreProperties core = piccoloContext.getProperties(CoreProperties.class);
-        int heartbeat = Math.max(core.getMinHeartbeatTime(), Math.min(msg.maxHeartbeat, core.getMaxHeartbeatTime()));
+        int heartbeat = ((PiccoloServer) piccoloContext).getHeartbeatTuner().assign(connection, msg.osName, msg.maxHeartbeat);
 
         //6. 响应握手成功信息
         HandshakeOkMessage okMessage = HandshakeOkMessage.build(connection)
@@ -127,6 +133,8 @@ public class HandshakeServerHandler extends ChannelHandlerDelegateAdapter {
                 reusableSessionManager.cacheSession(session);
 
                 logger.info("handshake success, conn: {}", connection);
+                //10. 握手中携带了绑定信息，直接绑定用户
+                bindIfNeeded(connection, msg);
             } else {
                 logger.info("handshake failure, conn: {}, cause: {}", connection, future.cause());
             }
@@ -172,6 +180,18 @@ public class HandshakeServerHandler extends ChannelHandlerDelegateAdapter {
                 .setHeartbeat(Integer.MAX_VALUE);
 
         logger.info("handshake success, conn: {}", connection);
+        bindIfNeeded(connection, msg);
+    }
+
+    private void bindIfNeeded(Connection connection, HandshakeMessage msg) {
+        if (StringUtil.isNullOrEmpty(msg.userId)) {
+            return;
+        }
+        try {
+            super.received(connection, BindUserMessage.from(connection, msg.userId, msg.tags, msg));
+        } catch (ExchangeException e) {
+            logger.error("bind user with handshake failure, userId: {} conn: {}", msg.userId, connection, e);
+        }
     }
 
 }
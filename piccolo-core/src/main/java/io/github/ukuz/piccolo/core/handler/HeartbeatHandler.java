@@ -21,8 +21,14 @@ import io.github.ukuz.piccolo.api.exchange.ExchangeException;
 import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
 import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandlerDelegateAdapter;
 import io.github.ukuz.piccolo.common.message.HeartbeatMessage;
+import io.github.ukuz.piccolo.core.PiccoloServer;
+import io.github.ukuz.piccolo.core.heartbeat.HeartbeatTuner;
 
 /**
+ * 任意读写都视为连接存活:
+ * 1. 客户端只在连接空闲时发送心跳
+ * 2. 最近有写出的连接不再回复心跳，除非需要下发新的心跳间隔
+ *
  * @author ukuz90
  */
 public class HeartbeatHandler extends ChannelHandlerDelegateAdapter {
@@ -34,8 +40,19 @@ public class HeartbeatHandler extends ChannelHandlerDelegateAdapter {
 
     @Override
     public void received(Connection connection, Object message) throws ExchangeException {
+        HeartbeatTuner tuner = ((PiccoloServer) piccoloContext).getHeartbeatTuner();
+        tuner.onRead(connection);
         if (message instanceof HeartbeatMessage) {
-            connection.sendAsync((HeartbeatMessage)message);
+            HeartbeatMessage msg = (HeartbeatMessage) message;
+            int heartbeat = tuner.recommend(connection);
+            if (heartbeat > 0) {
+                connection.getSessionContext().setHeartbeat(heartbeat);
+                msg.heartbeat = heartbeat;
+                connection.sendAsync(msg);
+            } else if (!tuner.isRecentlyWritten(connection)) {
+                msg.heartbeat = 0;
+                connection.sendAsync(msg);
+            }
         } else {
             super.received(connection, message);
         }
@@ -20,14 +20,22 @@ import io.github.ukuz.piccolo.api.common.utils.StringUtils;
 import io.github.ukuz.piccolo.api.connection.Connection;
 import io.github.ukuz.piccolo.api.exchange.ExchangeException;
 import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
+import io.github.ukuz.piccolo.api.push.AckModel;
+import io.github.ukuz.piccolo.common.message.BatchPushMessage;
 import io.github.ukuz.piccolo.common.message.DispatcherResponseMessage;
 import io.github.ukuz.piccolo.common.message.PushMessage;
+import io.github.ukuz.piccolo.common.message.TagPushMessage;
 import io.github.ukuz.piccolo.core.PiccoloServer;
+import io.github.ukuz.piccolo.core.egress.EgressClass;
 import io.github.ukuz.piccolo.core.router.LocalRouter;
+import io.github.ukuz.piccolo.core.router.TagExpression;
+import io.netty.channel.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * @author ukuz90
@@ -65,23 +73,38 @@ public class PushHandler implements ChannelHandler {
             PiccoloServer piccoloServer = (PiccoloServer) piccoloContext;
             if (msg.broadcast) {
                 Set<LocalRouter> localRouters = piccoloServer.getRouterCenter().lookupLocalAll();
-                localRouters.forEach(localRouter -> {
-                    Connection conn = localRouter.getRouterValue();
-                    conn.sendAsync(DispatcherResponseMessage.build(connection).payload(msg.content));
-                });
+                localRouters.forEach(localRouter -> sendBulk(localRouter.getRouterValue(), connection, msg.content));
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("broadcast message, msg: {} conn's size: {}", msg, localRouters.size());
                 }
             } else if (StringUtils.hasText(msg.userId)) {
                 Set<LocalRouter> localRouters = piccoloServer.getRouterCenter().lookupLocal(msg.userId);
+                boolean needAck = msg.ackModel != AckModel.NO_ACK.ordinal();
+                if (needAck && msg.clientType != 0 && localRouters != null) {
+                    //ack推送的pushId只对应一个设备，不能扇出到用户的其它设备
+                    localRouters = localRouters.stream()
+                            .filter(localRouter -> localRouter.getClientType() == msg.clientType)
+                            .collect(Collectors.toSet());
+                }
                 if (localRouters != null && !localRouters.isEmpty()) {
                     localRouters.forEach(localRouter -> {
                         Connection conn = localRouter.getRouterValue();
-                        conn.sendAsync(DispatcherResponseMessage.build(connection).payload(msg.content));
+                        if (needAck) {
+                            piccoloServer.getPushAckManager().push(conn, msg);
+                        } else {
+                            conn.sendAsync(DispatcherResponseMessage.build(connection).payload(msg.content));
+                        }
                     });
                     if (LOGGER.isDebugEnabled()) {
                         LOGGER.debug("send a message, msg: {} conn's size: {}", msg, localRouters.size());
                     }
+                } else if (needAck) {
+                    piccoloServer.getPushAckManager().offline(msg);
+                    LOGGER.warn("can not found alive connection, msg: {}", msg);
+                } else if (piccoloServer.getOfflineMessageStore().store(msg.userId, msg.content)) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("store offline message, msg: {}", msg);
+                    }
                 } else {
                     LOGGER.warn("can not found alive connection, msg: {}", msg);
                 }
@@ -89,12 +112,56 @@ public class PushHandler implements ChannelHandler {
                 LOGGER.error("received a invalid message, msg: {} conn: {}", message, connection);
             }
 
+        } else if (message instanceof BatchPushMessage) {
+            BatchPushMessage msg = (BatchPushMessage) message;
+            PiccoloServer piccoloServer = (PiccoloServer) piccoloContext;
+            int sent = 0;
+            for (String userId : msg.userIds) {
+                Set<LocalRouter> localRouters = piccoloServer.getRouterCenter().lookupLocal(userId);
+                if (localRouters == null || localRouters.isEmpty()) {
+                    piccoloServer.getOfflineMessageStore().store(userId, msg.content);
+                    continue;
+                }
+                for (LocalRouter localRouter : localRouters) {
+                    localRouter.getRouterValue().sendAsync(DispatcherResponseMessage.build(connection).payload(msg.content));
+                    sent++;
+                }
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("batch push message, user's size: {} conn's size: {}", msg.userIds.size(), sent);
+            }
+        } else if (message instanceof TagPushMessage) {
+            TagPushMessage msg = (TagPushMessage) message;
+            TagExpression expression;
+            try {
+                expression = TagExpression.parse(msg.expression);
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("received a invalid tag expression, msg: {} conn: {} cause: {}", msg, connection, e.getMessage());
+                return;
+            }
+            PiccoloServer piccoloServer = (PiccoloServer) piccoloContext;
+            List<Connection> connections = piccoloServer.getRouterCenter().getTagIndex().select(expression);
+            connections.forEach(conn -> sendBulk(conn, connection, msg.content));
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("tag push message, expression: {} conn's size: {}", expression, connections.size());
+            }
         } else {
             connection.close();
             LOGGER.error("handler unknown message, message: {} conn: {}", message, connection);
         }
     }
 
+    /**
+     * 广播类推送以BULK优先级写出，不阻塞点对点推送及控制消息
+     */
+    private void sendBulk(Connection conn, Connection gatewayConnection, byte[] content) {
+        Channel channel = conn.getChannel();
+        if (channel.isActive()) {
+            channel.writeAndFlush(DispatcherResponseMessage.build(gatewayConnection).payload(content),
+                    EgressClass.newBulkPromise(channel));
+        }
+    }
+
     @Override
     public void caught(Connection connection, Throwable exception) throws ExchangeException {
 
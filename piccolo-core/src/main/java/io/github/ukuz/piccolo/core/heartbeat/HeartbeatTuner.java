@@ -0,0 +1,286 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.heartbeat;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.router.ClientClassifier;
+import io.github.ukuz.piccolo.api.spi.SpiLoader;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import io.github.ukuz.piccolo.monitor.MetricsMonitor;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自适应心跳:
+ * 1. 按客户端类型分别维护一个已验证安全的心跳间隔，初始为最小心跳间隔
+ * 2. 每N个新连接中抽取一个下发更长的探测间隔
+ * 3. 探测连接在探测间隔内没有任何读写，之后仍收到客户端心跳，说明NAT映射没有被回收，探测成功
+ * 4. 探测连接空闲超过探测间隔的1.5倍仍没有收到心跳，说明NAT映射已被回收，探测失败
+ * 5. 成功次数达到阈值后采用探测间隔并继续向上探测，失败次数达到阈值后缩小探测间隔
+ * 6. 存量连接在下一次心跳时获取新的安全间隔
+ *
+ * @author ukuz90
+ */
+public class HeartbeatTuner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeartbeatTuner.class);
+
+    private static final String INTERVAL_TAG = "piccolo_heartbeat_interval_ms";
+    private static final AttributeKey<Probe> PROBE_KEY = AttributeKey.valueOf("heartbeatProbe");
+    private static final AttributeKey<Integer> CEILING_KEY = AttributeKey.valueOf("heartbeatCeiling");
+    /**
+     * 每次向上探测时放大的倍数
+     */
+    private static final double PROBE_FACTOR = 1.5;
+    /**
+     * 探测间隔与安全间隔相差小于该值时停止探测
+     */
+    private static final int MIN_PROBE_STEP_MS = 5000;
+
+    private final boolean adaptive;
+    private volatile int minHeartbeat;
+    private volatile int maxHeartbeat;
+    private final int probeRatio;
+    private final int probeSuccesses;
+    private final int probeFailures;
+    private final ConcurrentMap<Byte, NetworkClass> classes = new ConcurrentHashMap<>();
+
+    public HeartbeatTuner(CoreProperties core) {
+        this.adaptive = core.isHeartbeatAdaptive();
+        this.minHeartbeat = core.getMinHeartbeatTime();
+        this.maxHeartbeat = core.getMaxHeartbeatTime();
+        this.probeRatio = core.getHeartbeatProbeRatio();
+        this.probeSuccesses = core.getHeartbeatProbeSuccesses();
+        this.probeFailures = core.getHeartbeatProbeFailures();
+    }
+
+    /**
+     * 握手或快速重连成功时为连接分配心跳间隔
+     *
+     * @param connection
+     * @param osName
+     * @param clientMaxHeartbeat 客户端能接受的最大心跳间隔，<=0表示不限制
+     * @return
+     */
+    public int assign(Connection connection, String osName, int clientMaxHeartbeat) {
+        if (!adaptive) {
+            return Math.max(minHeartbeat, Math.min(clientMaxHeartbeat, maxHeartbeat));
+        }
+        int ceiling = clientMaxHeartbeat > 0 ? Math.max(minHeartbeat, Math.min(clientMaxHeartbeat, maxHeartbeat)) : maxHeartbeat;
+        Channel channel = connection.getChannel();
+        channel.attr(CEILING_KEY).set(ceiling);
+
+        byte clientType = SpiLoader.getLoader(ClientClassifier.class).getExtension().getClientType(osName);
+        NetworkClass cls = classOf(clientType);
+        int probe = cls.probe;
+        if (probe > cls.safe && probe <= ceiling && cls.assigned.getAndIncrement() % probeRatio == 0) {
+            Probe p = new Probe(cls, probe);
+            Probe old = channel.attr(PROBE_KEY).getAndSet(p);
+            if (old == null) {
+                scheduleCheck(connection, p, probe + probe / 2);
+            }
+            return probe;
+        }
+        channel.attr(PROBE_KEY).set(null);
+        return Math.min(cls.safe, ceiling);
+    }
+
+    /**
+     * 连接收到心跳时检查是否需要下发新的心跳间隔
+     *
+     * @param connection
+     * @return 新的心跳间隔，不需要更新时返回0
+     */
+    public int recommend(Connection connection) {
+        if (!adaptive) {
+            return 0;
+        }
+        Channel channel = connection.getChannel();
+        Integer ceiling = channel.attr(CEILING_KEY).get();
+        if (ceiling == null || channel.attr(PROBE_KEY).get() != null) {
+            return 0;
+        }
+        NetworkClass cls = classes.get(connection.getSessionContext().getClientType());
+        if (cls == null) {
+            return 0;
+        }
+        int heartbeat = Math.min(cls.safe, ceiling);
+        return heartbeat > connection.getSessionContext().getHeartbeat() ? heartbeat : 0;
+    }
+
+    /**
+     * 连接上收到任意消息时调用，任意读写都视为连接存活
+     *
+     * @param connection
+     */
+    public void onRead(Connection connection) {
+        Probe probe = connection.getChannel().attr(PROBE_KEY).get();
+        if (probe == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long idle = now - Math.max(probe.lastActive, connection.getLastWriteTime());
+        probe.lastActive = now;
+        if (idle >= probe.interval * 9L / 10) {
+            finishProbe(connection, probe, true);
+        }
+    }
+
+    /**
+     * 运行期间调整心跳间隔的上下限，已学习到的安全间隔收敛到新的范围内并重新探测
+     *
+     * @param min
+     * @param max
+     */
+    public void updateBounds(int min, int max) {
+        if (min <= 0 || min > max) {
+            throw new IllegalArgumentException("invalid heartbeat bounds, min: " + min + " max: " + max);
+        }
+        this.minHeartbeat = min;
+        this.maxHeartbeat = max;
+        classes.values().forEach(NetworkClass::reset);
+    }
+
+    /**
+     * 最近半个心跳间隔内有过写出，对端已经可以据此判断连接存活，不需要再回复心跳
+     *
+     * @param connection
+     * @return
+     */
+    public boolean isRecentlyWritten(Connection connection) {
+        int heartbeat = Math.min(connection.getSessionContext().getHeartbeat(), maxHeartbeat);
+        return System.currentTimeMillis() - connection.getLastWriteTime() < heartbeat / 2;
+    }
+
+    private void scheduleCheck(Connection connection, Probe probe, long delayMs) {
+        connection.getChannel().eventLoop().schedule(() -> check(connection, probe), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void check(Connection connection, Probe probe) {
+        Channel channel = connection.getChannel();
+        if (channel.attr(PROBE_KEY).get() != probe) {
+            return;
+        }
+        if (!channel.isActive()) {
+            //连接主动关闭，无法得出结论
+            channel.attr(PROBE_KEY).compareAndSet(probe, null);
+            return;
+        }
+        long deadline = Math.max(probe.lastActive, connection.getLastWriteTime()) + probe.interval + probe.interval / 2;
+        long now = System.currentTimeMillis();
+        if (now < deadline) {
+            scheduleCheck(connection, probe, deadline - now);
+            return;
+        }
+        LOGGER.debug("heartbeat probe missed, interval: {} conn: {}", probe.interval, connection);
+        finishProbe(connection, probe, false);
+    }
+
+    private void finishProbe(Connection connection, Probe probe, boolean success) {
+        if (!connection.getChannel().attr(PROBE_KEY).compareAndSet(probe, null)) {
+            return;
+        }
+        if (success) {
+            probe.cls.onSuccess(probe.interval);
+        } else {
+            probe.cls.onFailure(probe.interval);
+        }
+    }
+
+    NetworkClass classOf(byte clientType) {
+        return classes.computeIfAbsent(clientType, type -> {
+            NetworkClass cls = new NetworkClass(type);
+            MetricsMonitor.gaugeWithStrongRef(INTERVAL_TAG, null, String.valueOf(type), () -> cls.safe);
+            return cls;
+        });
+    }
+
+    /**
+     * 同一类客户端的心跳间隔学习状态
+     */
+    final class NetworkClass {
+        final byte clientType;
+        final AtomicInteger assigned = new AtomicInteger();
+        volatile int safe;
+        volatile int probe;
+        private int ceiling;
+        private int successes;
+        private int failures;
+
+        NetworkClass(byte clientType) {
+            this.clientType = clientType;
+            this.safe = minHeartbeat;
+            this.ceiling = maxHeartbeat;
+            this.probe = nextProbe();
+        }
+
+        synchronized void onSuccess(int interval) {
+            //忽略过期的探测结果
+            if (interval != probe || probe <= safe || ++successes < probeSuccesses) {
+                return;
+            }
+            safe = probe;
+            probe = nextProbe();
+            successes = 0;
+            failures = 0;
+            LOGGER.info("heartbeat probe succeeded, clientType: {} safe: {} next probe: {}", clientType, safe, probe);
+        }
+
+        synchronized void onFailure(int interval) {
+            if (interval != probe || probe <= safe || ++failures < probeFailures) {
+                return;
+            }
+            //NAT超时介于safe与probe之间，向下折半继续探测
+            ceiling = probe - 1;
+            int next = safe + (probe - safe) / 2;
+            probe = next - safe < MIN_PROBE_STEP_MS ? safe : next;
+            successes = 0;
+            failures = 0;
+            LOGGER.info("heartbeat probe failed, clientType: {} safe: {} next probe: {}", clientType, safe, probe);
+        }
+
+        synchronized void reset() {
+            safe = Math.max(minHeartbeat, Math.min(safe, maxHeartbeat));
+            ceiling = maxHeartbeat;
+            probe = nextProbe();
+            successes = 0;
+            failures = 0;
+        }
+
+        private int nextProbe() {
+            int next = (int) Math.min((long) (safe * PROBE_FACTOR), ceiling);
+            return next - safe < MIN_PROBE_STEP_MS ? safe : next;
+        }
+    }
+
+    private static final class Probe {
+        final NetworkClass cls;
+        final int interval;
+        volatile long lastActive = System.currentTimeMillis();
+
+        Probe(NetworkClass cls, int interval) {
+            this.cls = cls;
+            this.interval = interval;
+        }
+    }
+}
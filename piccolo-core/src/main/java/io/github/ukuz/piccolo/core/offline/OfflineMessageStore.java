@@ -0,0 +1,526 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.offline;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.BaseMessage;
+import io.github.ukuz.piccolo.api.service.AbstractService;
+import io.github.ukuz.piccolo.api.service.ServiceException;
+import io.github.ukuz.piccolo.common.message.DispatcherResponseMessage;
+import io.github.ukuz.piccolo.common.message.PushMessage;
+import io.github.ukuz.piccolo.common.properties.OfflineProperties;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.github.ukuz.piccolo.monitor.MetricsMonitor;
+import io.micrometer.core.instrument.Counter;
+import io.netty.channel.ChannelFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 网关本地的离线消息存储:
+ * 1. 消息按到达顺序追加写入内存映射的segment文件，内存中按userId维护索引
+ * 2. 用户重新绑定到本网关后按批重放，重放过的消息原地标记为已消费；绑定到其他网关时由该网关通知本网关转发过去
+ * 3. 后台定时清理过期消息，删除没有有效数据的segment，并把有效数据占比过低的segment在锁外搬迁到压缩专用的segment后删除
+ *
+ * @author ukuz90
+ */
+public class OfflineMessageStore extends AbstractService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OfflineMessageStore.class);
+    private static final String STORE_TAG = "piccolo_offline_store";
+    private static final String MODULE = "offline";
+
+    private final OfflineProperties properties;
+    private final File dir;
+    private final TreeMap<Long, OfflineSegment> segments = new TreeMap<>();
+    private final Map<String, ArrayDeque<Location>> index = new HashMap<>();
+    private final Counter writeBytes = MetricsMonitor.getOfflineIoBytes("write");
+    private final Counter readBytes = MetricsMonitor.getOfflineIoBytes("read");
+    private final Counter compactBytes = MetricsMonitor.getOfflineIoBytes("compact");
+    private OfflineSegment active;
+    private long nextSegmentId;
+    /**
+     * 压缩时搬迁数据的目标segment，只由压缩线程写入，写满后再创建新的
+     */
+    private OfflineSegment compactTarget;
+    private int messages;
+    private ScheduledThreadPoolExecutor compactExecutor;
+
+    public OfflineMessageStore(OfflineProperties properties) {
+        this.properties = properties;
+        this.dir = new File(properties.getDir());
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnable();
+    }
+
+    @Override
+    public void init() throws ServiceException {
+        if (!isEnabled()) {
+            return;
+        }
+        LOGGER.info("offline message store init, dir: {}", dir);
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new ServiceException("offline message store recover failure, dir: " + dir, e);
+        }
+        MetricsMonitor.gaugeWithStrongRef(STORE_TAG, MODULE, "diskBytes", this::diskBytes);
+        MetricsMonitor.gaugeWithStrongRef(STORE_TAG, MODULE, "segments", this::segments);
+        MetricsMonitor.gaugeWithStrongRef(STORE_TAG, MODULE, "messages", this::messages);
+        MetricsMonitor.gaugeWithStrongRef(STORE_TAG, MODULE, "users", this::users);
+
+        int interval = properties.getCompactIntervalSeconds();
+        compactExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(ThreadNames.T_OFFLINE_COMPACT));
+        compactExecutor.scheduleWithFixedDelay(this::compactQuietly, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void destroy() throws ServiceException {
+        if (!isEnabled()) {
+            return;
+        }
+        if (compactExecutor != null) {
+            compactExecutor.shutdownNow();
+            try {
+                //压缩在锁外读写segment，需要等待结束后才能释放内存映射
+                compactExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            segments.values().forEach(OfflineSegment::close);
+            segments.clear();
+            index.clear();
+            active = null;
+        }
+    }
+
+    /**
+     * 保存一条离线消息
+     *
+     * @param userId
+     * @param content
+     * @return 是否保存成功
+     */
+    public boolean store(String userId, byte[] content) {
+        return store(userId, content, false);
+    }
+
+    private boolean store(String userId, byte[] content, boolean first) {
+        if (!isEnabled()) {
+            return false;
+        }
+        byte[] uid = userId.getBytes(StandardCharsets.UTF_8);
+        int size = OfflineSegment.recordSize(uid, content);
+        if (size > properties.getSegmentSize()) {
+            LOGGER.warn("offline message too large, drop it, userId: {} size: {}", userId, size);
+            return false;
+        }
+        long expireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(properties.getTtlSeconds());
+        synchronized (this) {
+            if (active == null) {
+                return false;
+            }
+            int offset = active.append(uid, content, expireAt);
+            if (offset < 0) {
+                if (!roll()) {
+                    return false;
+                }
+                offset = active.append(uid, content, expireAt);
+            }
+            addIndex(userId, new Location(active, offset, size, expireAt), first);
+        }
+        writeBytes.increment(size);
+        return true;
+    }
+
+    /**
+     * 取出用户全部未过期的离线消息，取出后即标记为已消费
+     *
+     * @param userId
+     * @return
+     */
+    public List<byte[]> drain(String userId) {
+        if (!isEnabled()) {
+            return Collections.emptyList();
+        }
+        List<byte[]> result;
+        long bytes = 0;
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            ArrayDeque<Location> locations = index.remove(userId);
+            if (locations == null) {
+                return Collections.emptyList();
+            }
+            result = new ArrayList<>(locations.size());
+            for (Location location : locations) {
+                if (location.expireAt > now) {
+                    result.add(location.segment.readContent(location.offset));
+                    bytes += location.size;
+                }
+                release(location);
+            }
+        }
+        readBytes.increment(bytes);
+        return result;
+    }
+
+    /**
+     * 用户绑定成功后重放离线消息，上一批写出成功后才写下一批
+     *
+     * @param connection
+     * @param userId
+     */
+    public void replay(Connection connection, String userId) {
+        List<byte[]> contents = drain(userId);
+        if (contents.isEmpty()) {
+            return;
+        }
+        LOGGER.info("replay offline message, userId: {} size: {} conn: {}", userId, contents.size(), connection);
+        replay(connection, userId, contents, 0, content -> DispatcherResponseMessage.build(connection).payload(content));
+    }
+
+    /**
+     * 用户已在其他网关上线，把离线消息作为普通推送转发给该网关，由其投递或保存
+     *
+     * @param gateway 到用户当前所在网关的连接
+     * @param userId
+     */
+    public void forward(Connection gateway, String userId) {
+        List<byte[]> contents = drain(userId);
+        if (contents.isEmpty()) {
+            return;
+        }
+        LOGGER.info("forward offline message, userId: {} size: {} gateway: {}", userId, contents.size(), gateway);
+        replay(gateway, userId, contents, 0, content -> PushMessage.build(gateway).userId(userId).content(content));
+    }
+
+    private void replay(Connection connection, String userId, List<byte[]> contents, int from,
+                        Function<byte[], BaseMessage> builder) {
+        int to = Math.min(from + properties.getReplayBatchSize(), contents.size());
+        ChannelFuture future = null;
+        for (int i = from; i < to; i++) {
+            future = connection.sendAsync(builder.apply(contents.get(i)));
+        }
+        future.addListener(f -> {
+            if (!f.isSuccess()) {
+                //连接已断开，无法确认当前批次是否写出，从当前批次开始重新保存到队首，可能重复但不丢失
+                restore(userId, contents.subList(from, contents.size()));
+                LOGGER.warn("replay offline message interrupted, userId: {} remaining: {} conn: {}",
+                        userId, contents.size() - from, connection);
+            } else if (to < contents.size()) {
+                replay(connection, userId, contents, to, builder);
+            }
+        });
+    }
+
+    /**
+     * 把未重放成功的消息按原顺序放回用户队列的头部
+     *
+     * @param userId
+     * @param contents
+     */
+    void restore(String userId, List<byte[]> contents) {
+        for (int i = contents.size() - 1; i >= 0; i--) {
+            store(userId, contents.get(i), true);
+        }
+    }
+
+    public synchronized int depth(String userId) {
+        ArrayDeque<Location> locations = index.get(userId);
+        return locations == null ? 0 : locations.size();
+    }
+
+    /**
+     * 1. 清理过期消息
+     * 2. 删除没有有效数据的segment
+     * 3. 有效数据占比低于阈值的segment，将有效数据搬迁到新的segment后删除
+     *
+     * 只在锁内挑选segment和切换索引，数据复制在锁外进行，不阻塞{@link #store(String, byte[])}
+     */
+    void compact() {
+        List<OfflineSegment> empty = new ArrayList<>();
+        List<OfflineSegment> candidates = new ArrayList<>();
+        synchronized (this) {
+            if (active == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<String, ArrayDeque<Location>>> it = index.entrySet().iterator();
+            while (it.hasNext()) {
+                ArrayDeque<Location> locations = it.next().getValue();
+                Location head;
+                while ((head = locations.peek()) != null && head.expireAt <= now) {
+                    release(locations.poll());
+                }
+                if (locations.isEmpty()) {
+                    it.remove();
+                }
+            }
+
+            for (OfflineSegment segment : segments.values()) {
+                if (segment == active || segment == compactTarget) {
+                    continue;
+                }
+                if (segment.getLiveCount() == 0) {
+                    empty.add(segment);
+                } else if (segment.getLiveBytes() * 100 < (long) segment.getWritePosition() * properties.getCompactThreshold()) {
+                    candidates.add(segment);
+                }
+            }
+            empty.forEach(segment -> segments.remove(segment.id));
+        }
+        empty.forEach(this::delete);
+        if (!candidates.isEmpty()) {
+            relocate(candidates);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            LOGGER.error("compact offline store failure", e);
+        }
+    }
+
+    /**
+     * 把候选segment中的有效数据复制到新的segment，复制完成后在锁内切换索引，期间被消费的记录在新segment中标记为已消费
+     *
+     * @param candidates
+     */
+    private void relocate(List<OfflineSegment> candidates) {
+        Map<OfflineSegment, List<Location>> moving = new LinkedHashMap<>();
+        synchronized (this) {
+            candidates.forEach(segment -> moving.put(segment, new ArrayList<>()));
+            for (ArrayDeque<Location> locations : index.values()) {
+                for (Location location : locations) {
+                    List<Location> list = moving.get(location.segment);
+                    if (list != null) {
+                        list.add(location);
+                    }
+                }
+            }
+        }
+
+        OfflineSegment target = compactTarget;
+        for (Map.Entry<OfflineSegment, List<Location>> entry : moving.entrySet()) {
+            OfflineSegment segment = entry.getKey();
+            List<Location> locations = entry.getValue();
+            int[] offsets = new int[locations.size()];
+            int copied = 0;
+            while (copied < locations.size()) {
+                if (target == null && (target = compactTarget = newSegment()) == null) {
+                    break;
+                }
+                Location location = locations.get(copied);
+                int offset = target.append(segment, location.offset, location.size);
+                if (offset < 0) {
+                    //新segment已满，先切换已复制的部分
+                    swap(segment, target, locations.subList(0, copied), offsets);
+                    locations = locations.subList(copied, locations.size());
+                    offsets = new int[locations.size()];
+                    copied = 0;
+                    target = compactTarget = null;
+                    continue;
+                }
+                offsets[copied++] = offset;
+                compactBytes.increment(location.size);
+            }
+            if (copied < locations.size()) {
+                //无法创建新的segment，下次再压缩
+                return;
+            }
+            if (swap(segment, target, locations, offsets)) {
+                delete(segment);
+            }
+        }
+    }
+
+    /**
+     * 在锁内把已复制的记录切换到新segment
+     *
+     * @return 原segment是否已经没有有效数据
+     */
+    private synchronized boolean swap(OfflineSegment segment, OfflineSegment target, List<Location> locations, int[] offsets) {
+        if (target != null) {
+            segments.putIfAbsent(target.id, target);
+        }
+        for (int i = 0; i < locations.size(); i++) {
+            Location location = locations.get(i);
+            if (location.released) {
+                target.markConsumed(offsets[i], location.size);
+                continue;
+            }
+            segment.markConsumed(location.offset, location.size);
+            location.segment = target;
+            location.offset = offsets[i];
+        }
+        if (segment.getLiveCount() > 0) {
+            return false;
+        }
+        segments.remove(segment.id);
+        return true;
+    }
+
+    private OfflineSegment newSegment() {
+        long id;
+        synchronized (this) {
+            if (active == null) {
+                return null;
+            }
+            id = nextSegmentId++;
+        }
+        try {
+            return OfflineSegment.create(dir, id, properties.getSegmentSize());
+        } catch (IOException e) {
+            LOGGER.error("create offline segment failure, dir: {} id: {}", dir, id, e);
+            return null;
+        }
+    }
+
+    private void delete(OfflineSegment segment) {
+        if (!segment.delete()) {
+            LOGGER.warn("delete offline segment failure, segment: {}", segment);
+        }
+        LOGGER.info("offline segment compacted, segment: {}", segment);
+    }
+
+    private void recover() throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("can not create directory: " + dir);
+        }
+        File[] files = dir.listFiles((d, name) -> name.endsWith(OfflineSegment.SUFFIX));
+        if (files != null) {
+            Arrays.sort(files);
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                for (File file : files) {
+                    OfflineSegment segment = OfflineSegment.open(file, properties.getSegmentSize());
+                    int offset = 0;
+                    int size;
+                    while ((size = segment.recordSizeAt(offset)) > 0) {
+                        long expireAt = segment.expireAt(offset);
+                        if (segment.stateAt(offset) == OfflineSegment.STATE_LIVE && expireAt > now) {
+                            segment.retain(size);
+                            addIndex(segment.readUserId(offset), new Location(segment, offset, size, expireAt));
+                        }
+                        offset += size;
+                    }
+                    segment.setWritePosition(offset);
+                    segments.put(segment.id, segment);
+                    active = segment;
+                    nextSegmentId = segment.id + 1;
+                }
+            }
+        }
+        synchronized (this) {
+            if (active == null && !roll()) {
+                throw new IOException("can not create offline segment, dir: " + dir);
+            }
+        }
+        LOGGER.info("offline message store recovered, segments: {} messages: {} users: {}",
+                segments.size(), messages, index.size());
+    }
+
+    private boolean roll() {
+        long id = nextSegmentId++;
+        try {
+            active = OfflineSegment.create(dir, id, properties.getSegmentSize());
+            segments.put(id, active);
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("create offline segment failure, dir: {} id: {}", dir, id, e);
+            return false;
+        }
+    }
+
+    private void addIndex(String userId, Location location) {
+        addIndex(userId, location, false);
+    }
+
+    private void addIndex(String userId, Location location, boolean first) {
+        ArrayDeque<Location> locations = index.computeIfAbsent(userId, k -> new ArrayDeque<>());
+        if (first) {
+            locations.offerFirst(location);
+        } else {
+            locations.offer(location);
+        }
+        messages++;
+        //超过单个用户的上限，丢弃最早的消息
+        while (locations.size() > properties.getMaxDepth()) {
+            release(locations.poll());
+        }
+    }
+
+    private void release(Location location) {
+        location.released = true;
+        location.segment.markConsumed(location.offset, location.size);
+        messages--;
+    }
+
+    private synchronized long diskBytes() {
+        return segments.values().stream().mapToLong(OfflineSegment::getCapacity).sum();
+    }
+
+    private synchronized int segments() {
+        return segments.size();
+    }
+
+    private synchronized int messages() {
+        return messages;
+    }
+
+    private synchronized int users() {
+        return index.size();
+    }
+
+    private static final class Location {
+        OfflineSegment segment;
+        int offset;
+        final int size;
+        final long expireAt;
+        boolean released;
+
+        Location(OfflineSegment segment, int offset, int size, long expireAt) {
+            this.segment = segment;
+            this.offset = offset;
+            this.size = size;
+            this.expireAt = expireAt;
+        }
+    }
+}
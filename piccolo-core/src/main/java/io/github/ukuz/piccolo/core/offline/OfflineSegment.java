@@ -0,0 +1,225 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.offline;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 离线消息的一个segment文件，整个文件映射到内存，只追加写
+ *
+ * 记录格式: length(4) | state(1) | expireAt(8) | userIdLength(2) | userId | contentLength(4) | content
+ * length为0表示后面没有数据，length在记录体写完后才写入，避免宕机时读到写了一半的记录
+ *
+ * @author ukuz90
+ */
+final class OfflineSegment {
+
+    static final String SUFFIX = ".log";
+
+    static final byte STATE_LIVE = 1;
+    static final byte STATE_CONSUMED = 2;
+
+    private static final int LENGTH_SIZE = 4;
+    private static final int STATE_OFFSET = LENGTH_SIZE;
+    private static final int EXPIRE_OFFSET = STATE_OFFSET + 1;
+    private static final int USER_ID_OFFSET = EXPIRE_OFFSET + 8;
+
+    final long id;
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int writePosition;
+    private int liveCount;
+    private long liveBytes;
+
+    private OfflineSegment(long id, File file, int capacity) throws IOException {
+        this.id = id;
+        this.file = file;
+        this.capacity = capacity;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    static OfflineSegment create(File dir, long id, int capacity) throws IOException {
+        return new OfflineSegment(id, new File(dir, String.format("%020d%s", id, SUFFIX)), capacity);
+    }
+
+    static OfflineSegment open(File file, int capacity) throws IOException {
+        String name = file.getName();
+        long id = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        return new OfflineSegment(id, file, (int) Math.max(file.length(), capacity));
+    }
+
+    static int recordSize(byte[] userId, byte[] content) {
+        return USER_ID_OFFSET + 2 + userId.length + 4 + content.length;
+    }
+
+    /**
+     * @return 写入的位置，空间不足时返回-1
+     */
+    int append(byte[] userId, byte[] content, long expireAt) {
+        int size = recordSize(userId, content);
+        if (writePosition + size > capacity) {
+            return -1;
+        }
+        int offset = writePosition;
+        buffer.put(offset + STATE_OFFSET, STATE_LIVE);
+        buffer.putLong(offset + EXPIRE_OFFSET, expireAt);
+        int pos = offset + USER_ID_OFFSET;
+        buffer.putShort(pos, (short) userId.length);
+        pos += 2;
+        put(pos, userId);
+        pos += userId.length;
+        buffer.putInt(pos, content.length);
+        pos += 4;
+        put(pos, content);
+        buffer.putInt(offset, size - LENGTH_SIZE);
+        writePosition += size;
+        retain(size);
+        return offset;
+    }
+
+    /**
+     * 复制另一个segment中的一条记录
+     */
+    int append(OfflineSegment src, int srcOffset, int size) {
+        if (writePosition + size > capacity) {
+            return -1;
+        }
+        int offset = writePosition;
+        ByteBuffer record = src.buffer.duplicate();
+        record.limit(srcOffset + size).position(srcOffset + LENGTH_SIZE);
+        ByteBuffer dst = buffer.duplicate();
+        dst.position(offset + LENGTH_SIZE);
+        dst.put(record);
+        buffer.putInt(offset, size - LENGTH_SIZE);
+        writePosition += size;
+        retain(size);
+        return offset;
+    }
+
+    byte[] readContent(int offset) {
+        int pos = offset + USER_ID_OFFSET;
+        pos += 2 + buffer.getShort(pos);
+        byte[] content = new byte[buffer.getInt(pos)];
+        get(pos + 4, content);
+        return content;
+    }
+
+    String readUserId(int offset) {
+        int pos = offset + USER_ID_OFFSET;
+        byte[] userId = new byte[buffer.getShort(pos)];
+        get(pos + 2, userId);
+        return new String(userId, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return 记录的总长度，0表示已到末尾
+     */
+    int recordSizeAt(int offset) {
+        if (offset + USER_ID_OFFSET > capacity) {
+            return 0;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + LENGTH_SIZE + length > capacity) {
+            return 0;
+        }
+        return length + LENGTH_SIZE;
+    }
+
+    byte stateAt(int offset) {
+        return buffer.get(offset + STATE_OFFSET);
+    }
+
+    long expireAt(int offset) {
+        return buffer.getLong(offset + EXPIRE_OFFSET);
+    }
+
+    /**
+     * 原地标记为已消费，重启后不会再被加载
+     */
+    void markConsumed(int offset, int size) {
+        buffer.put(offset + STATE_OFFSET, STATE_CONSUMED);
+        liveCount--;
+        liveBytes -= size;
+    }
+
+    void retain(int size) {
+        liveCount++;
+        liveBytes += size;
+    }
+
+    void setWritePosition(int writePosition) {
+        this.writePosition = writePosition;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    int getLiveCount() {
+        return liveCount;
+    }
+
+    long getLiveBytes() {
+        return liveBytes;
+    }
+
+    long getCapacity() {
+        return capacity;
+    }
+
+    void close() {
+        buffer.force();
+        PlatformDependent.freeDirectBuffer(buffer);
+    }
+
+    boolean delete() {
+        PlatformDependent.freeDirectBuffer(buffer);
+        return file.delete();
+    }
+
+    private void put(int pos, byte[] bytes) {
+        ByteBuffer dst = buffer.duplicate();
+        dst.position(pos);
+        dst.put(bytes);
+    }
+
+    private void get(int pos, byte[] bytes) {
+        ByteBuffer src = buffer.duplicate();
+        src.position(pos);
+        src.get(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "OfflineSegment{" +
+                "file=" + file +
+                ", writePosition=" + writePosition +
+                ", liveCount=" + liveCount +
+                ", liveBytes=" + liveBytes +
+                '}';
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.properties;
+
+import io.github.ukuz.piccolo.api.common.threadpool.ExecutorFactory;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import io.github.ukuz.piccolo.common.properties.DynamicSettings;
+import io.github.ukuz.piccolo.common.properties.DynamicSettings.Setting;
+import io.github.ukuz.piccolo.common.properties.NetProperties;
+import io.github.ukuz.piccolo.common.properties.ThreadPoolProperties;
+import io.github.ukuz.piccolo.core.PiccoloServer;
+import io.github.ukuz.piccolo.transport.server.NettyServer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+import static io.github.ukuz.piccolo.common.properties.DynamicSettings.intSetting;
+import static io.github.ukuz.piccolo.common.properties.DynamicSettings.longSetting;
+
+/**
+ * 可以通过配置中心在运行期间调整的服务端配置，key与配置文件中的key相同:
+ * 1. piccolo.net.{connect,gateway,ws}-server.{write-water-mark-low,write-water-mark-high,snd-buf,rcv-buf}，作用于存量连接
+ * 2. piccolo.net.{connect,gateway}-server-traffic.{write,read}-{global,channel}-limit 以及 interactive/bulk-write-limit，需要启动时开启限流
+ * 3. piccolo.core.{min,max}-heartbeat-time，存量连接在下一次心跳时生效
+ * 4. piccolo.thread-pool.{event-bus,mq,id-gen,monitor}.{core-size,max-size}
+ *
+ * @author ukuz90
+ */
+public class ServerDynamicSettings {
+
+    private final PiccoloServer server;
+    private final DynamicSettings settings;
+
+    public ServerDynamicSettings(PiccoloServer server) {
+        this.server = server;
+        this.settings = new DynamicSettings(server.getDynamicConfiguration());
+    }
+
+    public void bind() {
+        NetProperties net = server.getProperties(NetProperties.class);
+        bindServer("piccolo.net.connect-server", net.getConnectServer(), server.getConnectServer());
+        bindServer("piccolo.net.gateway-server", net.getGatewayServer(), server.getGatewayServer());
+        bindServer("piccolo.net.ws-server", net.getWsServer(), server.getWebSocketServer());
+        bindTraffic("piccolo.net.connect-server-traffic", net.getConnectServerTraffic(), server.getConnectServer()::updateTraffic);
+        bindTraffic("piccolo.net.gateway-server-traffic", net.getGatewayServerTraffic(), server.getGatewayServer()::updateTraffic);
+        bindHeartbeat(server.getProperties(CoreProperties.class));
+
+        ThreadPoolProperties tp = server.getProperties(ThreadPoolProperties.class);
+        bindThreadPool(ExecutorFactory.EVENT_BUS, tp.getEventBus());
+        bindThreadPool(ExecutorFactory.MQ, tp.getMq());
+        bindThreadPool(ExecutorFactory.ID_GEN, tp.getIdGen());
+        bindThreadPool(ExecutorFactory.MONITOR, tp.getMonitor());
+    }
+
+    public DynamicSettings getSettings() {
+        return settings;
+    }
+
+    private void bindServer(String prefix, NetProperties.ServerNestedProperties prop, NettyServer nettyServer) {
+        if (prop == null || nettyServer == null) {
+            return;
+        }
+        Setting<Integer> low = intSetting(prefix + ".write-water-mark-low", prop.getWriteWaterMarkLow());
+        Setting<Integer> high = intSetting(prefix + ".write-water-mark-high", prop.getWriteWaterMarkHigh());
+        low.validate(v -> v > 0 && v <= high.get(), "0 < low <= high")
+                .onChange(v -> {
+                    prop.setWriteWaterMarkLow(v);
+                    nettyServer.updateChildOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(v, high.get()));
+                });
+        high.validate(v -> v > 0 && v >= low.get(), "high >= low")
+                .onChange(v -> {
+                    prop.setWriteWaterMarkHigh(v);
+                    nettyServer.updateChildOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(low.get(), v));
+                });
+        settings.bind(low);
+        settings.bind(high);
+
+        settings.bind(intSetting(prefix + ".snd-buf", prop.getSndBuf())
+                .validate(v -> v > 0, "> 0")
+                .onChange(v -> {
+                    prop.setSndBuf(v);
+                    nettyServer.updateChildOption(ChannelOption.SO_SNDBUF, v);
+                }));
+        settings.bind(intSetting(prefix + ".rcv-buf", prop.getRcvBuf())
+                .validate(v -> v > 0, "> 0")
+                .onChange(v -> {
+                    prop.setRcvBuf(v);
+                    nettyServer.updateChildOption(ChannelOption.SO_RCVBUF, v);
+                }));
+    }
+
+    private void bindTraffic(String prefix, NetProperties.TrafficNestedProperties traffic,
+                             Consumer<NetProperties.TrafficNestedProperties> updater) {
+        if (traffic == null || !traffic.isEnabled()) {
+            return;
+        }
+        bindLimit(prefix + ".write-global-limit", traffic.getWriteGlobalLimit(), traffic, (t, v) -> t.setWriteGlobalLimit((int) v), updater);
+        bindLimit(prefix + ".read-global-limit", traffic.getReadGlobalLimit(), traffic, (t, v) -> t.setReadGlobalLimit((int) v), updater);
+        bindLimit(prefix + ".write-channel-limit", traffic.getWriteChannelLimit(), traffic, (t, v) -> t.setWriteChannelLimit((int) v), updater);
+        bindLimit(prefix + ".read-channel-limit", traffic.getReadChannelLimit(), traffic, (t, v) -> t.setReadChannelLimit((int) v), updater);
+        bindLimit(prefix + ".interactive-write-limit", traffic.getInteractiveWriteLimit(), traffic, NetProperties.TrafficNestedProperties::setInteractiveWriteLimit, updater);
+        bindLimit(prefix + ".bulk-write-limit", traffic.getBulkWriteLimit(), traffic, NetProperties.TrafficNestedProperties::setBulkWriteLimit, updater);
+    }
+
+    private void bindLimit(String key, long initial, NetProperties.TrafficNestedProperties traffic,
+                           ObjLongConsumer<NetProperties.TrafficNestedProperties> setter,
+                           Consumer<NetProperties.TrafficNestedProperties> updater) {
+        settings.bind(longSetting(key, initial)
+                .validate(v -> v >= 0 && v <= Integer.MAX_VALUE, "0 <= limit <= " + Integer.MAX_VALUE)
+                .onChange(v -> {
+                    setter.accept(traffic, v);
+                    updater.accept(traffic);
+                }));
+    }
+
+    private void bindHeartbeat(CoreProperties core) {
+        Setting<Integer> min = intSetting("piccolo.core.min-heartbeat-time", core.getMinHeartbeatTime());
+        Setting<Integer> max = intSetting("piccolo.core.max-heartbeat-time", core.getMaxHeartbeatTime());
+        min.validate(v -> v >= 1000 && v <= max.get(), "1000 <= min <= max")
+                .onChange(v -> {
+                    server.getHeartbeatTuner().updateBounds(v, max.get());
+                    core.setMinHeartbeatTime(v);
+                });
+        max.validate(v -> v >= min.get(), "max >= min")
+                .onChange(v -> {
+                    server.getHeartbeatTuner().updateBounds(min.get(), v);
+                    core.setMaxHeartbeatTime(v);
+                });
+        settings.bind(min);
+        settings.bind(max);
+    }
+
+    private void bindThreadPool(String name, ThreadPoolProperties.ThreadPoolNestedProperties prop) {
+        if (prop == null) {
+            return;
+        }
+        String prefix = "piccolo.thread-pool." + name;
+        Setting<Integer> coreSize = intSetting(prefix + ".core-size", prop.getCoreSize());
+        Setting<Integer> maxSize = intSetting(prefix + ".max-size", prop.getMaxSize());
+        coreSize.validate(v -> v > 0 && v <= maxSize.get(), "0 < core-size <= max-size")
+                .onChange(v -> {
+                    resize(name, v, maxSize.get());
+                    prop.setCoreSize(v);
+                });
+        maxSize.validate(v -> v >= coreSize.get(), "max-size >= core-size")
+                .onChange(v -> {
+                    resize(name, coreSize.get(), v);
+                    prop.setMaxSize(v);
+                });
+        settings.bind(coreSize);
+        settings.bind(maxSize);
+    }
+
+    private void resize(String name, int coreSize, int maxSize) {
+        if (!server.getExecutorFactory().resize(name, coreSize, maxSize)) {
+            throw new IllegalStateException("thread pool not created: " + name);
+        }
+    }
+}
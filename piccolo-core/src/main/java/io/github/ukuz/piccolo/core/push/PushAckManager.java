@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.push;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.event.ConnectionCloseEvent;
+import io.github.ukuz.piccolo.api.push.PushResult;
+import io.github.ukuz.piccolo.common.event.EventObservable;
+import io.github.ukuz.piccolo.common.message.ClientPushMessage;
+import io.github.ukuz.piccolo.common.message.PushMessage;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网关侧的ack推送管理:
+ * 1. 每个客户端连接一个发送窗口，窗口内的推送等待客户端的累积ack，超出窗口的推送排队
+ * 2. 超时由时间轮检测
+ * 3. 推送结果通过{@link PushResultReporter}批量回传给PushClient
+ *
+ * @author ukuz90
+ */
+public class PushAckManager extends EventObservable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PushAckManager.class);
+
+    private final ConcurrentMap<String, AckWindow> windows = new ConcurrentHashMap<>();
+    private final HashedWheelTimer timer;
+    private final PushResultReporter reporter;
+    private final int windowSize;
+    private final int maxWaiting;
+
+    public PushAckManager(CoreProperties core) {
+        this.windowSize = core.getPushAckWindow();
+        this.maxWaiting = core.getPushAckMaxWaiting();
+        this.timer = new HashedWheelTimer(new NamedThreadFactory(ThreadNames.T_ARK_REQ_TIMER), 10, TimeUnit.MILLISECONDS);
+        this.reporter = new PushResultReporter();
+        subscribe(ConnectionCloseEvent.class, this::on);
+    }
+
+    /**
+     * 发送需要ack的推送
+     *
+     * @param connection 客户端连接
+     * @param msg 来自PushClient的推送
+     */
+    public void push(Connection connection, PushMessage msg) {
+        AckWindow window = windows.computeIfAbsent(connection.getId(), id -> new AckWindow(connection));
+        Pending pending = new Pending(msg.getConnection(), msg.pushId, msg.ackModel, msg.content, msg.timeout);
+        if (!window.offer(pending)) {
+            reporter.report(msg.getConnection(), msg.pushId, PushResult.CODE_FAILURE);
+        }
+    }
+
+    /**
+     * 客户端累积ack
+     *
+     * @param connection
+     * @param seq
+     */
+    public void ack(Connection connection, int seq) {
+        AckWindow window = windows.get(connection.getId());
+        if (window != null) {
+            window.ack(seq);
+        }
+    }
+
+    /**
+     * 用户不在本网关，直接回传离线
+     *
+     * @param msg
+     */
+    public void offline(PushMessage msg) {
+        reporter.report(msg.getConnection(), msg.pushId, PushResult.CODE_OFFLINE);
+    }
+
+    public int inflight() {
+        return windows.values().stream().mapToInt(AckWindow::size).sum();
+    }
+
+    public void destroy() {
+        timer.stop();
+        reporter.clear();
+    }
+
+    public void on(ConnectionCloseEvent event) {
+        Connection connection = event.getConnection();
+        if (connection == null) {
+            return;
+        }
+        AckWindow window = windows.remove(connection.getId());
+        if (window != null) {
+            window.close();
+        }
+        //断开的也可能是PushClient到网关的连接
+        reporter.evict(connection);
+    }
+
+    private static final class Pending {
+        final Connection gateway;
+        final long pushId;
+        final byte ackModel;
+        final byte[] content;
+        final int timeoutMs;
+        int seq;
+        Timeout timeout;
+
+        Pending(Connection gateway, long pushId, byte ackModel, byte[] content, int timeoutMs) {
+            this.gateway = gateway;
+            this.pushId = pushId;
+            this.ackModel = ackModel;
+            this.content = content;
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    /**
+     * 单个客户端连接的发送窗口，inflight按seq有序
+     */
+    private final class AckWindow {
+        private final Connection connection;
+        private final ArrayDeque<Pending> inflight = new ArrayDeque<>();
+        private final ArrayDeque<Pending> waiting = new ArrayDeque<>();
+        private int nextSeq;
+        private boolean closed;
+
+        AckWindow(Connection connection) {
+            this.connection = connection;
+        }
+
+        synchronized boolean offer(Pending pending) {
+            if (closed) {
+                return false;
+            }
+            if (inflight.size() < windowSize) {
+                send(pending);
+                return true;
+            }
+            if (waiting.size() >= maxWaiting) {
+                LOGGER.warn("push ack window overflow, conn: {} inflight: {} waiting: {}", connection, inflight.size(), waiting.size());
+                return false;
+            }
+            waiting.offer(pending);
+            return true;
+        }
+
+        void ack(int seq) {
+            List<Pending> acked = new ArrayList<>();
+            synchronized (this) {
+                Pending head;
+                while ((head = inflight.peek()) != null && seq - head.seq >= 0) {
+                    inflight.poll();
+                    head.timeout.cancel();
+                    acked.add(head);
+                }
+                fill();
+            }
+            acked.forEach(p -> reporter.report(p.gateway, p.pushId, PushResult.CODE_SUCCESS));
+        }
+
+        void expire(Pending pending) {
+            synchronized (this) {
+                if (!inflight.remove(pending)) {
+                    return;
+                }
+                fill();
+            }
+            reporter.report(pending.gateway, pending.pushId, PushResult.CODE_TIMEOUT);
+        }
+
+        void close() {
+            List<Pending> failed;
+            synchronized (this) {
+                closed = true;
+                failed = new ArrayList<>(inflight.size() + waiting.size());
+                inflight.forEach(p -> p.timeout.cancel());
+                failed.addAll(inflight);
+                failed.addAll(waiting);
+                inflight.clear();
+                waiting.clear();
+            }
+            failed.forEach(p -> reporter.report(p.gateway, p.pushId, PushResult.CODE_OFFLINE));
+        }
+
+        synchronized int size() {
+            return inflight.size() + waiting.size();
+        }
+
+        private void fill() {
+            while (inflight.size() < windowSize && !waiting.isEmpty()) {
+                send(waiting.poll());
+            }
+        }
+
+        private void send(Pending pending) {
+            pending.seq = nextSeq++;
+            inflight.offer(pending);
+            pending.timeout = timer.newTimeout(t -> expire(pending), pending.timeoutMs, TimeUnit.MILLISECONDS);
+            connection.sendAsync(ClientPushMessage.build(connection)
+                    .seq(pending.seq)
+                    .ackModel(pending.ackModel)
+                    .payload(pending.content));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.push;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.common.message.PushResultMessage;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按网关连接聚合推送结果，在连接所属EventLoop上延迟一小段时间后批量回传
+ *
+ * @author ukuz90
+ */
+class PushResultReporter {
+
+    private static final long FLUSH_DELAY_MS = 5;
+    private static final int MAX_BATCH = 256;
+
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+    void report(Connection gateway, long pushId, byte resultCode) {
+        if (gateway == null || !gateway.isConnected()) {
+            return;
+        }
+        Batch batch = batches.computeIfAbsent(gateway.getId(), id -> new Batch(gateway));
+        batch.add(pushId, resultCode);
+    }
+
+    /**
+     * 网关连接断开后丢弃其未发送的结果，PushClient侧会按超时处理
+     *
+     * @param gateway
+     */
+    void evict(Connection gateway) {
+        batches.remove(gateway.getId());
+    }
+
+    void clear() {
+        batches.clear();
+    }
+
+    private final class Batch {
+        private final Connection gateway;
+        private long[] pushIds = new long[MAX_BATCH];
+        private byte[] resultCodes = new byte[MAX_BATCH];
+        private int size;
+        private boolean scheduled;
+
+        Batch(Connection gateway) {
+            this.gateway = gateway;
+        }
+
+        void add(long pushId, byte resultCode) {
+            long[] ids = null;
+            byte[] codes = null;
+            boolean schedule = false;
+            synchronized (this) {
+                pushIds[size] = pushId;
+                resultCodes[size] = resultCode;
+                size++;
+                if (size == MAX_BATCH) {
+                    //批次已满，在锁内取出整批，锁外发送
+                    ids = Arrays.copyOf(pushIds, size);
+                    codes = Arrays.copyOf(resultCodes, size);
+                    size = 0;
+                } else if (!scheduled) {
+                    scheduled = schedule = true;
+                }
+            }
+            if (ids != null) {
+                send(ids, codes);
+            } else if (schedule) {
+                gateway.getChannel().eventLoop().schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void flush() {
+            long[] ids;
+            byte[] codes;
+            synchronized (this) {
+                scheduled = false;
+                if (size == 0) {
+                    return;
+                }
+                ids = Arrays.copyOf(pushIds, size);
+                codes = Arrays.copyOf(resultCodes, size);
+                size = 0;
+            }
+            send(ids, codes);
+        }
+
+        private void send(long[] ids, byte[] codes) {
+            if (gateway.isConnected()) {
+                gateway.sendAsync(PushResultMessage.build(gateway).results(ids, codes));
+            } else {
+                batches.remove(gateway.getId(), this);
+            }
+        }
+    }
+}
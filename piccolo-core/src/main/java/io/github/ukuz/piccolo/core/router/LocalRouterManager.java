@@ -15,8 +15,6 @@
  */
 package io.github.ukuz.piccolo.core.router;
 
-import com.google.common.eventbus.AllowConcurrentEvents;
-import com.google.common.eventbus.Subscribe;
 import io.github.ukuz.piccolo.api.connection.Connection;
 import io.github.ukuz.piccolo.api.connection.SessionContext;
 import io.github.ukuz.piccolo.api.event.ConnectionCloseEvent;
@@ -43,6 +41,10 @@ public class LocalRouterManager extends EventObservable implements RouterManager
 
     private ConcurrentMap<String, Map<Byte, LocalRouter>> routers = new ConcurrentHashMap<>();
 
+    public LocalRouterManager() {
+        subscribe(ConnectionCloseEvent.class, this::on);
+    }
+
     @Override
     public LocalRouter register(String userId, LocalRouter router) {
         logger.info("register userId: {} clientType: {} router: {}", userId, router.getClientType(), router);
@@ -78,8 +80,6 @@ public class LocalRouterManager extends EventObservable implements RouterManager
         return result;
     }
 
-    @Subscribe
-    @AllowConcurrentEvents
     public void on(ConnectionCloseEvent event) {
         Connection connection = event.getConnection();
         if (connection == null) {
@@ -21,6 +21,7 @@ import io.github.ukuz.piccolo.api.router.ClientLocator;
 import io.github.ukuz.piccolo.api.service.AbstractService;
 import io.github.ukuz.piccolo.api.service.ServiceException;
 import io.github.ukuz.piccolo.common.event.EventBus;
+import io.github.ukuz.piccolo.common.message.ClusterControlMessage;
 import io.github.ukuz.piccolo.common.router.RemoteRouter;
 import io.github.ukuz.piccolo.common.router.RemoteRouterManager;
 import io.github.ukuz.piccolo.core.PiccoloServer;
@@ -40,6 +41,7 @@ public final class RouterCenter extends AbstractService {
     private RemoteRouterManager remoteRouterManager;
     private RouterChangeListener routerChangeListener;
     private UserEventListener userEventListener;
+    private TagIndex tagIndex;
 
     private PiccoloServer piccoloServer;
 
@@ -49,6 +51,7 @@ public final class RouterCenter extends AbstractService {
         remoteRouterManager = new RemoteRouterManager(piccoloServer.getCacheManager());
         routerChangeListener = new RouterChangeListener(piccoloServer);
         userEventListener = new UserEventListener(piccoloServer);
+        tagIndex = new TagIndex();
     }
 
     @Override
@@ -56,6 +59,7 @@ public final class RouterCenter extends AbstractService {
         LOGGER.info("router center init.");
         routerChangeListener.init();
         userEventListener.getUserManager().clearOnlineList();
+        userEventListener.getUserManager().start();
     }
 
     /**
@@ -90,13 +94,31 @@ public final class RouterCenter extends AbstractService {
         if (oldRemoteRouter != null && oldRemoteRouter.isOnline()) {
             EventBus.post(new RouterChangeEvent(userId, oldRemoteRouter));
             LOGGER.info("register router success, userId: {}, oldRemoteRouter: {}", oldRemoteRouter);
+        } else if (oldRemoteRouter != null) {
+            requestOfflineReplay(userId, oldRemoteRouter);
         }
 
         return true;
     }
 
+    /**
+     * 离线消息保存在用户下线前所在的网关，用户在其他网关上线时通知其转发到本网关
+     *
+     * @param userId
+     * @param oldRemoteRouter
+     */
+    private void requestOfflineReplay(String userId, RemoteRouter oldRemoteRouter) {
+        ClientLocator locator = oldRemoteRouter.getRouterValue();
+        if (!piccoloServer.getOfflineMessageStore().isEnabled() || piccoloServer.isTargetMachine(locator.getHost(), locator.getPort())) {
+            return;
+        }
+        piccoloServer.getClusterControlChannel().send(ClusterControlMessage.Entry.replayOffline(userId, locator.getClientType(),
+                locator.getHost(), locator.getPort(), piccoloServer.getGatewayServer().getRegistration().getHostAndPort()));
+    }
+
     @Override
     public void destroy() throws ServiceException {
+        userEventListener.getUserManager().stop();
         userEventListener.getUserManager().clearOnlineList();
     }
 
@@ -135,6 +157,23 @@ public final class RouterCenter extends AbstractService {
         return localRouterManager.unregister(userId, clientType);
     }
 
+    /**
+     * 踢掉本机上的指定连接
+     *
+     * @param userId
+     * @param clientType
+     * @param connId
+     * @param targetAddress
+     * @param targetPort
+     */
+    public void kickLocal(String userId, byte clientType, String connId, String targetAddress, int targetPort) {
+        routerChangeListener.kickLocal(userId, clientType, connId, targetAddress, targetPort);
+    }
+
+    public TagIndex getTagIndex() {
+        return tagIndex;
+    }
+
     public boolean unRegisterRemote(String userId, byte clientType) {
         return remoteRouterManager.unregister(userId, clientType);
     }
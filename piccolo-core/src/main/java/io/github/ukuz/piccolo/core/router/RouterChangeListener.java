@@ -15,8 +15,6 @@
  */
 package io.github.ukuz.piccolo.core.router;
 
-import com.google.common.eventbus.AllowConcurrentEvents;
-import com.google.common.eventbus.Subscribe;
 import io.github.ukuz.piccolo.api.common.remote.FailoverInvoker;
 import io.github.ukuz.piccolo.api.common.utils.StringUtils;
 import io.github.ukuz.piccolo.api.connection.Connection;
@@ -29,18 +27,14 @@ import io.github.ukuz.piccolo.api.mq.MQTopic;
 import io.github.ukuz.piccolo.api.router.ClientLocator;
 import io.github.ukuz.piccolo.api.router.Router;
 import io.github.ukuz.piccolo.common.event.EventObservable;
-import io.github.ukuz.piccolo.common.json.Jsons;
+import io.github.ukuz.piccolo.common.message.ClusterControlMessage;
 import io.github.ukuz.piccolo.common.message.KickUserMessage;
 import io.github.ukuz.piccolo.common.router.KafkaKickMqMessage;
-import io.github.ukuz.piccolo.common.router.KickMqMessage;
 import io.github.ukuz.piccolo.common.router.RemoteRouter;
 import io.github.ukuz.piccolo.core.PiccoloServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
-
-
 /**
  * @author ukuz90
  */
@@ -55,32 +49,24 @@ public class RouterChangeListener extends EventObservable implements MQMessageRe
     public RouterChangeListener(PiccoloServer piccoloServer) {
         this.piccoloServer = piccoloServer;
         this.mqClient = piccoloServer.getMQClient();
+        subscribe(RouterChangeEvent.class, this::on);
     }
 
     public void init() {
-        LOGGER.info("subscribe topic: {}", kickUserTopic);
-        //订阅踢人
+        //订阅踢人，网关之间直连不可用时通过MQ踢人
         String topic = getKickUserTopic(piccoloServer.getGatewayServer().getRegistration().getHostAndPort());
         this.kickUserTopic = new MQTopic(topic);
+        LOGGER.info("subscribe topic: {}", kickUserTopic);
         mqClient.addTopicIfNeeded(kickUserTopic);
         mqClient.subscribe(kickUserTopic.getTopic(), this);
+        piccoloServer.getClusterControlChannel().setFallback(this::sendKickUserMessageToMQClient);
     }
 
-    @Subscribe
-    @AllowConcurrentEvents
     public void on(RouterChangeEvent event) {
         if (event.getRouter().getRouterType() == Router.RouterType.LOCAL) {
             sendKickUserMessageToClient(event.getUserId(), (LocalRouter) event.getRouter());
         } else {
-            FailoverInvoker invoker = new FailoverInvoker();
-            try {
-                invoker.invoke(() -> {
-                    sendKickUserMessageToMQClient(event.getUserId(), (RemoteRouter) event.getRouter());
-                    return null;
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            sendKickUserMessageToRemote(event.getUserId(), (RemoteRouter) event.getRouter());
         }
     }
 
@@ -99,50 +85,83 @@ public class RouterChangeListener extends EventObservable implements MQMessageRe
         });
     }
 
-    private void sendKickUserMessageToMQClient(String userId, RemoteRouter remoteRouter) throws IdGenException {
+    private void sendKickUserMessageToRemote(String userId, RemoteRouter remoteRouter) {
+        ClientLocator locator = remoteRouter.getRouterValue();
+        if (piccoloServer.isTargetMachine(locator.getHost(), locator.getPort())) {
+            kickLocal(userId, locator.getClientType(), locator.getConnId(), locator.getHost(), locator.getPort());
+            return;
+        }
+        piccoloServer.getClusterControlChannel().send(ClusterControlMessage.Entry.kick(userId, locator.getClientType(),
+                locator.getConnId(), locator.getDeviceId(), locator.getHost(), locator.getPort()));
+    }
+
+    private void sendKickUserMessageToMQClient(ClusterControlMessage.Entry entry) {
+        if (entry.type != ClusterControlMessage.TYPE_KICK) {
+            //离线消息转发没有MQ通道，消息仍保存在原网关，用户重新连接到原网关时重放
+            LOGGER.warn("cluster control unavailable, drop entry: {}", entry);
+            return;
+        }
+        FailoverInvoker invoker = new FailoverInvoker();
+        try {
+            invoker.invoke(() -> {
+                publishKickUserMessage(entry);
+                return null;
+            });
+        } catch (Exception e) {
+            LOGGER.error("send kick message to mq failure, entry: {}", entry, e);
+        }
+    }
+
+    private void publishKickUserMessage(ClusterControlMessage.Entry entry) throws IdGenException {
         long xid = piccoloServer.getIdGen().get("kick");
         KafkaKickMqMessage msg = new KafkaKickMqMessage();
         msg.setXid(xid);
         msg.setMqClient(piccoloServer.getMQClient());
-        ClientLocator locator = remoteRouter.getRouterValue();
-        msg.setConnId(locator.getConnId());
-        msg.setClientType(locator.getClientType());
-        msg.setDeviceId(locator.getDeviceId());
-        msg.setTargetAddress(locator.getHost());
-        msg.setTargetPort(locator.getPort());
-        msg.setUserId(userId);
-
-        mqClient.publish(getKickUserTopic(locator.getHostAndPort()), msg.encode());
+        msg.setConnId(entry.connId);
+        msg.setClientType(entry.clientType);
+        msg.setDeviceId(entry.deviceId);
+        msg.setTargetAddress(entry.targetAddress);
+        msg.setTargetPort(entry.targetPort);
+        msg.setUserId(entry.userId);
+
+        mqClient.publish(getKickUserTopic(entry.getTargetHostAndPort()), msg.encode());
     }
 
-    private void receiveKickRemoteMsg(KickMqMessage msg) {
-        if (!piccoloServer.isTargetMachine(msg.getTargetAddress(), msg.getTargetPort())) {
-            LOGGER.error("receive kick remote msg, target server error, address: {} port: {}", msg.getTargetAddress(), msg.getTargetPort());
+    /**
+     * 踢掉本机上的指定连接，连接id不一致说明用户已经重新连接，不处理
+     *
+     * @param userId
+     * @param clientType
+     * @param connId
+     * @param targetAddress
+     * @param targetPort
+     */
+    public void kickLocal(String userId, byte clientType, String connId, String targetAddress, int targetPort) {
+        if (!piccoloServer.isTargetMachine(targetAddress, targetPort)) {
+            LOGGER.error("receive kick remote msg, target server error, address: {} port: {}", targetAddress, targetPort);
             return;
         }
 
         RouterCenter routerCenter = piccoloServer.getRouterCenter();
-        LocalRouter localRouter = routerCenter.lookupLocal(msg.getUserId(), msg.getClientType());
+        LocalRouter localRouter = routerCenter.lookupLocal(userId, clientType);
         if (localRouter != null) {
-            LOGGER.info("receive kick remote msg, msg: {}", msg);
-            if (StringUtils.equals(localRouter.getRouterValue().getId(), msg.getConnId())) {
-                sendKickUserMessageToClient(msg.getUserId(), localRouter);
+            LOGGER.info("receive kick remote msg, userId: {} clientType: {} connId: {}", userId, clientType, connId);
+            if (StringUtils.equals(localRouter.getRouterValue().getId(), connId)) {
+                sendKickUserMessageToClient(userId, localRouter);
             } else {
-                LOGGER.warn("kick router failure target connId not match, localRouter: {}, msg: {}", localRouter, msg);
+                LOGGER.warn("kick router failure target connId not match, localRouter: {}, connId: {}", localRouter, connId);
             }
         } else {
-            LOGGER.error("kick router failure can not found local router, msg: {}", msg);
+            LOGGER.error("kick router failure can not found local router, userId: {} clientType: {}", userId, clientType);
         }
     }
 
     @Override
     public void receive(String topic, Object message, Object... attachment) {
-        if (kickUserTopic.equals(topic)) {
-            byte[] data = (byte[]) message;
-            KickMqMessage kickRemoteMsg = Jsons.fromJson(new String(data, StandardCharsets.UTF_8), KickMqMessage.class);
-            if (kickRemoteMsg != null) {
-                receiveKickRemoteMsg(kickRemoteMsg);
-            }
+        if (kickUserTopic.getTopic().equals(topic)) {
+            KafkaKickMqMessage msg = new KafkaKickMqMessage();
+            msg.decode((byte[]) message);
+            kickLocal(msg.getUserId(), msg.getClientType(), msg.getConnId(), msg.getTargetAddress(), msg.getTargetPort());
         }
     }
 
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.router;
+
+import io.github.ukuz.piccolo.api.external.common.Assert;
+
+import java.util.BitSet;
+import java.util.function.Function;
+
+/**
+ * 标签表达式，支持 &amp;(AND) |(OR) !(NOT) 以及括号，例如: vip &amp; (beijing | shanghai) &amp; !android
+ *
+ * @author ukuz90
+ */
+public abstract class TagExpression {
+
+    /**
+     * 在位图上求值
+     *
+     * @param lookup 标签对应的连接位图，返回值只读
+     * @param universe 所有连接的位图，只读
+     * @return 新的位图
+     */
+    public abstract BitSet evaluate(Function<String, BitSet> lookup, BitSet universe);
+
+    public static TagExpression parse(String expression) {
+        Assert.notEmptyString(expression, "expression must not be empty");
+        Parser parser = new Parser(expression);
+        TagExpression result = parser.parseOr();
+        parser.skipWhitespace();
+        if (parser.pos != expression.length()) {
+            throw new IllegalArgumentException("invalid tag expression: " + expression + " at " + parser.pos);
+        }
+        return result;
+    }
+
+    private static final class Tag extends TagExpression {
+        private final String name;
+
+        Tag(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public BitSet evaluate(Function<String, BitSet> lookup, BitSet universe) {
+            BitSet bits = lookup.apply(name);
+            return bits == null ? new BitSet() : (BitSet) bits.clone();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final class Not extends TagExpression {
+        private final TagExpression operand;
+
+        Not(TagExpression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public BitSet evaluate(Function<String, BitSet> lookup, BitSet universe) {
+            BitSet result = (BitSet) universe.clone();
+            result.andNot(operand.evaluate(lookup, universe));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "!" + operand;
+        }
+    }
+
+    private static final class And extends TagExpression {
+        private final TagExpression left;
+        private final TagExpression right;
+
+        And(TagExpression left, TagExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public BitSet evaluate(Function<String, BitSet> lookup, BitSet universe) {
+            BitSet result = left.evaluate(lookup, universe);
+            if (result.isEmpty()) {
+                return result;
+            }
+            result.and(right.evaluate(lookup, universe));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " & " + right + ")";
+        }
+    }
+
+    private static final class Or extends TagExpression {
+        private final TagExpression left;
+        private final TagExpression right;
+
+        Or(TagExpression left, TagExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public BitSet evaluate(Function<String, BitSet> lookup, BitSet universe) {
+            BitSet result = left.evaluate(lookup, universe);
+            result.or(right.evaluate(lookup, universe));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " | " + right + ")";
+        }
+    }
+
+    /**
+     * or  := and ('|' and)*
+     * and := not ('&' not)*
+     * not := '!' not | '(' or ')' | tag
+     */
+    private static final class Parser {
+        private final String expression;
+        private int pos;
+
+        Parser(String expression) {
+            this.expression = expression;
+        }
+
+        TagExpression parseOr() {
+            TagExpression left = parseAnd();
+            while (accept('|')) {
+                left = new Or(left, parseAnd());
+            }
+            return left;
+        }
+
+        TagExpression parseAnd() {
+            TagExpression left = parseNot();
+            while (accept('&')) {
+                left = new And(left, parseNot());
+            }
+            return left;
+        }
+
+        TagExpression parseNot() {
+            if (accept('!')) {
+                return new Not(parseNot());
+            }
+            if (accept('(')) {
+                TagExpression inner = parseOr();
+                if (!accept(')')) {
+                    throw new IllegalArgumentException("invalid tag expression, missing ')': " + expression);
+                }
+                return inner;
+            }
+            skipWhitespace();
+            int start = pos;
+            while (pos < expression.length() && isTagChar(expression.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("invalid tag expression: " + expression + " at " + pos);
+            }
+            return new Tag(expression.substring(start, pos));
+        }
+
+        boolean accept(char c) {
+            skipWhitespace();
+            if (pos < expression.length() && expression.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void skipWhitespace() {
+            while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean isTagChar(char c) {
+            return !Character.isWhitespace(c) && c != '&' && c != '|' && c != '!' && c != '(' && c != ')';
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.router;
+
+import io.github.ukuz.piccolo.api.common.utils.StringUtils;
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.event.ConnectionCloseEvent;
+import io.github.ukuz.piccolo.common.event.EventObservable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 网关本地的标签倒排索引: tag -> 本地连接位图
+ * 每个已绑定标签的连接分配一个本地下标，标签表达式在位图上求值
+ *
+ * @author ukuz90
+ */
+public class TagIndex extends EventObservable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TagIndex.class);
+    private static final String TAG_SEPARATOR = ",";
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, BitSet> tagBits = new HashMap<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private final BitSet universe = new BitSet();
+    private Connection[] connections = new Connection[1024];
+    private String[][] connectionTags = new String[1024][];
+    private int nextSlot;
+
+    public TagIndex() {
+        subscribe(ConnectionCloseEvent.class, this::on);
+    }
+
+    /**
+     * 建立或更新连接的标签
+     *
+     * @param connection
+     * @param tags 逗号分隔
+     */
+    public void index(Connection connection, String tags) {
+        String[] parsed = parseTags(tags);
+        lock.writeLock().lock();
+        try {
+            removeLocked(connection.getId());
+            if (parsed.length == 0) {
+                return;
+            }
+            int slot = allocateLocked();
+            slots.put(connection.getId(), slot);
+            connections[slot] = connection;
+            connectionTags[slot] = parsed;
+            universe.set(slot);
+            for (String tag : parsed) {
+                tagBits.computeIfAbsent(tag, t -> new BitSet()).set(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Connection connection) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(connection.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询满足标签表达式的本地连接
+     *
+     * @param expression
+     * @return
+     */
+    public List<Connection> select(TagExpression expression) {
+        lock.readLock().lock();
+        try {
+            BitSet bits = expression.evaluate(tagBits::get, universe);
+            if (bits.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<Connection> result = new ArrayList<>(bits.cardinality());
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                result.add(connections[i]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void on(ConnectionCloseEvent event) {
+        Connection connection = event.getConnection();
+        if (connection != null) {
+            remove(connection);
+        }
+    }
+
+    private void removeLocked(String connId) {
+        Integer slot = slots.remove(connId);
+        if (slot == null) {
+            return;
+        }
+        for (String tag : connectionTags[slot]) {
+            BitSet bits = tagBits.get(tag);
+            if (bits != null) {
+                bits.clear(slot);
+                if (bits.isEmpty()) {
+                    tagBits.remove(tag);
+                }
+            }
+        }
+        universe.clear(slot);
+        connections[slot] = null;
+        connectionTags[slot] = null;
+        freeSlots.push(slot);
+    }
+
+    private int allocateLocked() {
+        Integer slot = freeSlots.poll();
+        if (slot != null) {
+            return slot;
+        }
+        if (nextSlot == connections.length) {
+            int capacity = connections.length << 1;
+            connections = Arrays.copyOf(connections, capacity);
+            connectionTags = Arrays.copyOf(connectionTags, capacity);
+            LOGGER.info("tag index grow, capacity: {}", capacity);
+        }
+        return nextSlot++;
+    }
+
+    private String[] parseTags(String tags) {
+        if (!StringUtils.hasText(tags)) {
+            return new String[0];
+        }
+        return Arrays.stream(tags.split(TAG_SEPARATOR))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .distinct()
+                .toArray(String[]::new);
+    }
+}
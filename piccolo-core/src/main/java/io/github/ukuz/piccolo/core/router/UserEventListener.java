@@ -15,8 +15,6 @@
  */
 package io.github.ukuz.piccolo.core.router;
 
-import com.google.common.eventbus.AllowConcurrentEvents;
-import com.google.common.eventbus.Subscribe;
 import io.github.ukuz.piccolo.api.event.UserOfflineEvent;
 import io.github.ukuz.piccolo.api.event.UserOnlineEvent;
 import io.github.ukuz.piccolo.api.mq.MQClient;
@@ -38,17 +36,15 @@ public class UserEventListener extends EventObservable {
     public UserEventListener(PiccoloServer piccoloServer) {
         this.mqClient = piccoloServer.getMQClient();
         this.userManager = new UserManager(piccoloServer);
+        subscribe(UserOnlineEvent.class, this::on);
+        subscribe(UserOfflineEvent.class, this::on);
     }
 
-    @Subscribe
-    @AllowConcurrentEvents
     public void on(UserOnlineEvent event) {
         userManager.addToOnlineList(event.getUserId());
         mqClient.publish(ONLINE_MESSAGE.getTopic(), event.getUserId());
     }
 
-    @Subscribe
-    @AllowConcurrentEvents
     public void on(UserOfflineEvent event) {
         userManager.removeFromOnlineList(event.getUserId());
         mqClient.publish(OFFLINE_MESSAGE.getTopic(), event.getUserId());
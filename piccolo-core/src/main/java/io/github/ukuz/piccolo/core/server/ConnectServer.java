@@ -25,9 +25,14 @@ import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
 import io.github.ukuz.piccolo.api.service.registry.Registration;
 import io.github.ukuz.piccolo.api.spi.SpiLoader;
 import io.github.ukuz.piccolo.common.ServiceNames;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
 import io.github.ukuz.piccolo.common.properties.NetProperties;
 import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
 import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.github.ukuz.piccolo.core.PiccoloServer;
+import io.github.ukuz.piccolo.core.egress.EgressClass;
+import io.github.ukuz.piccolo.core.egress.EgressScheduler;
+import io.github.ukuz.piccolo.core.egress.EgressSchedulerHandler;
 import io.github.ukuz.piccolo.core.handler.ChannelHandlers;
 import io.github.ukuz.piccolo.core.handler.MonitorBytesHandler;
 import io.github.ukuz.piccolo.core.handler.MonitorQpsHandler;
@@ -54,6 +59,8 @@ public class ConnectServer extends NettyServer {
 
     private InetSocketAddress address;
     private GlobalChannelTrafficShapingHandler channelTrafficShapingHandler;
+    private EgressScheduler egressScheduler;
+    private EgressSchedulerHandler egressSchedulerHandler;
     private MonitorBytesHandler monitorBytesHandler;
     private MonitorQpsHandler monitorQpsHandler;
     private DefaultServiceInstance serviceInstance;
@@ -87,15 +94,44 @@ public class ConnectServer extends NettyServer {
         NetProperties.TrafficNestedProperties traffic = piccoloContext.getProperties(NetProperties.class).getConnectServerTraffic();
         if (traffic.isEnabled()) {
             ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(ThreadNames.T_TRAFFIC_SHAPING));
-            channelTrafficShapingHandler = new GlobalChannelTrafficShapingHandler(executor,
-                    traffic.getWriteGlobalLimit(), traffic.getReadGlobalLimit(),
-                    traffic.getWriteChannelLimit(), traffic.getReadChannelLimit());
+            if (traffic.isEgressScheduling()) {
+                //写出方向交给优先级调度器，这里只限制读
+                egressScheduler = new EgressScheduler(getName(), traffic);
+                egressSchedulerHandler = new EgressSchedulerHandler(egressScheduler);
+                channelTrafficShapingHandler = new GlobalChannelTrafficShapingHandler(executor,
+                        0, traffic.getReadGlobalLimit(),
+                        0, traffic.getReadChannelLimit());
+            } else {
+                channelTrafficShapingHandler = new GlobalChannelTrafficShapingHandler(executor,
+                        traffic.getWriteGlobalLimit(), traffic.getReadGlobalLimit(),
+                        traffic.getWriteChannelLimit(), traffic.getReadChannelLimit());
+            }
         }
 
         monitorBytesHandler = new MonitorBytesHandler(getName());
         monitorQpsHandler = new MonitorQpsHandler(getName());
     }
 
+    /**
+     * 运行期间调整限流，需要在启动时开启限流
+     *
+     * @param traffic 调整后的配置
+     */
+    public void updateTraffic(NetProperties.TrafficNestedProperties traffic) {
+        if (channelTrafficShapingHandler == null) {
+            throw new IllegalStateException(getName() + " traffic shaping is not enabled");
+        }
+        if (egressScheduler != null) {
+            channelTrafficShapingHandler.configure(0, traffic.getReadGlobalLimit());
+            channelTrafficShapingHandler.configureChannel(0, traffic.getReadChannelLimit());
+            egressScheduler.getBudget(EgressClass.INTERACTIVE).setLimit(traffic.getInteractiveWriteLimit());
+            egressScheduler.getBudget(EgressClass.BULK).setLimit(traffic.getBulkWriteLimit());
+        } else {
+            channelTrafficShapingHandler.configure(traffic.getWriteGlobalLimit(), traffic.getReadGlobalLimit());
+            channelTrafficShapingHandler.configureChannel(traffic.getWriteChannelLimit(), traffic.getReadChannelLimit());
+        }
+    }
+
     @Override
     protected void doStartComplete(ServerSocketChannel channel) {
         serviceInstance = DefaultServiceInstance.build()
@@ -127,14 +163,36 @@ public class ConnectServer extends NettyServer {
         }
     }
 
+    @Override
+    public boolean isDrainable() {
+        return piccoloContext.getProperties(CoreProperties.class).isDrainEnabled() && serviceInstance != null;
+    }
+
+    @Override
+    public void drain() {
+        //1. 不再接受新连接
+        stopAccept();
+        //2. 分批通知客户端重连到其他节点，剩余的连接在destroy时关闭
+        CoreProperties core = piccoloContext.getProperties(CoreProperties.class);
+        ConnectionDrainer drainer = new ConnectionDrainer((PiccoloServer) piccoloContext, cxnxManager,
+                getName(), serviceInstance.getHostAndPort());
+        drainer.drain(core.getDrainWindowMs(), core.getDrainGraceMs());
+    }
+
     @Override
     protected void doDestroy() {
         cxnxManager.destroy();
+        if (egressScheduler != null) {
+            egressScheduler.shutdown();
+        }
     }
 
     @Override
     protected void initPipeline(ChannelPipeline pipeline) {
         super.initPipeline(pipeline);
+        if (egressSchedulerHandler != null) {
+            pipeline.addFirst("egress_scheduler", egressSchedulerHandler);
+        }
         if (channelTrafficShapingHandler != null) {
             pipeline.addFirst(channelTrafficShapingHandler);
         }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.server;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.connection.ConnectionManager;
+import io.github.ukuz.piccolo.api.connection.SessionContext;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
+import io.github.ukuz.piccolo.common.ServiceNames;
+import io.github.ukuz.piccolo.common.message.RedirectMessage;
+import io.github.ukuz.piccolo.core.PiccoloServer;
+import io.github.ukuz.piccolo.core.session.ReusableSession;
+import io.github.ukuz.piccolo.core.session.ReusableSessionManager;
+import io.github.ukuz.piccolo.monitor.MetricsMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 节点下线时排空连接:
+ * 1. 在时间窗口内按固定节奏分批向客户端发送RedirectMessage，携带快速重连的session以及建议重连的节点
+ * 2. 客户端收到后主动断开并快速重连到其他节点，避免所有客户端同时重连、重新握手
+ * 3. 窗口结束后等待客户端断开，超时后由调用方关闭剩余的连接
+ *
+ * @author ukuz90
+ */
+public class ConnectionDrainer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionDrainer.class);
+
+    private static final String DRAIN_TAG = "piccolo_drain_connections";
+    private static final long TICK_MS = 100;
+    private static final long PROGRESS_LOG_INTERVAL_MS = 1000;
+
+    private final PiccoloServer piccoloServer;
+    private final ConnectionManager cxnxManager;
+    private final String self;
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger redirected = new AtomicInteger();
+
+    public ConnectionDrainer(PiccoloServer piccoloServer, ConnectionManager cxnxManager, String name, String self) {
+        this.piccoloServer = piccoloServer;
+        this.cxnxManager = cxnxManager;
+        this.self = self;
+        MetricsMonitor.gaugeWithStrongRef(DRAIN_TAG, name, "total", total::get);
+        MetricsMonitor.gaugeWithStrongRef(DRAIN_TAG, name, "redirected", redirected::get);
+        MetricsMonitor.gaugeWithStrongRef(DRAIN_TAG, name, "remaining", cxnxManager::getConnectionNum);
+    }
+
+    /**
+     * 阻塞直到所有连接都已通知且断开，或者超过windowMs + graceMs
+     *
+     * @param windowMs
+     * @param graceMs
+     * @return 仍未断开的连接数
+     */
+    public int drain(long windowMs, long graceMs) {
+        List<Connection> connections = cxnxManager.getConnections();
+        List<ServiceInstance> targets = lookupTargets();
+        total.set(connections.size());
+        redirected.set(0);
+        LOGGER.info("drain start, connections: {} targets: {} window: {}ms", connections.size(), targets.size(), windowMs);
+
+        long ticks = Math.max(1, windowMs / TICK_MS);
+        int perTick = (int) Math.max(1, (connections.size() + ticks - 1) / ticks);
+        long start = System.currentTimeMillis();
+        long lastLog = start;
+        try {
+            for (int i = 0, tick = 1; i < connections.size(); tick++) {
+                for (int end = Math.min(i + perTick, connections.size()); i < end; i++) {
+                    redirect(connections.get(i), targets.isEmpty() ? null : targets.get(i % targets.size()));
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastLog >= PROGRESS_LOG_INTERVAL_MS) {
+                    lastLog = now;
+                    LOGGER.info("drain progress, redirected: {}/{} remaining: {}", redirected.get(), total.get(), cxnxManager.getConnectionNum());
+                }
+                long wait = start + tick * TICK_MS - now;
+                if (wait > 0) {
+                    TimeUnit.MILLISECONDS.sleep(wait);
+                }
+            }
+            //等待客户端主动断开
+            long deadline = System.currentTimeMillis() + graceMs;
+            while (cxnxManager.getConnectionNum() > 0 && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(TICK_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("drain interrupted, redirected: {}/{}", redirected.get(), total.get());
+        }
+        int remaining = cxnxManager.getConnectionNum();
+        LOGGER.info("drain finish, redirected: {}/{} remaining: {} cost: {}ms",
+                redirected.get(), total.get(), remaining, System.currentTimeMillis() - start);
+        return remaining;
+    }
+
+    private void redirect(Connection connection, ServiceInstance target) {
+        if (!connection.isConnected()) {
+            return;
+        }
+        RedirectMessage message = RedirectMessage.build(connection);
+        SessionContext context = connection.getSessionContext();
+        if (context.handshakeOk() && context.isSecurity()) {
+            try {
+                ReusableSessionManager reusableSessionManager = piccoloServer.getReusableSessionManager();
+                ReusableSession session = reusableSessionManager.genSession(context);
+                reusableSessionManager.cacheSession(session);
+                message.session(session.getSessionId(), session.getExpireTime());
+            } catch (Exception e) {
+                //拿不到session时客户端重新握手
+                LOGGER.warn("drain gen session failure, conn: {}", connection, e);
+            }
+        }
+        if (target != null) {
+            message.target(target.getHost(), target.getPort());
+        }
+        connection.sendAsync(message);
+        redirected.incrementAndGet();
+    }
+
+    private List<ServiceInstance> lookupTargets() {
+        List<ServiceInstance> targets = new ArrayList<>();
+        try {
+            List<ServiceInstance> instances = piccoloServer.getServiceDiscovery().lookup(ServiceNames.S_CONNECT);
+            if (instances != null) {
+                for (ServiceInstance instance : instances) {
+                    if (!self.equals(instance.getHostAndPort())) {
+                        targets.add(instance);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("drain lookup connect servers failure", e);
+        }
+        Collections.shuffle(targets);
+        return targets;
+    }
+}
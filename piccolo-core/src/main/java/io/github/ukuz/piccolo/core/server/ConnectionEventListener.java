@@ -15,8 +15,6 @@
  */
 package io.github.ukuz.piccolo.core.server;
 
-import com.google.common.eventbus.AllowConcurrentEvents;
-import com.google.common.eventbus.Subscribe;
 import io.github.ukuz.piccolo.api.common.utils.StringUtils;
 import io.github.ukuz.piccolo.api.connection.Connection;
 import io.github.ukuz.piccolo.api.connection.SessionContext;
@@ -35,10 +33,9 @@ public class ConnectionEventListener extends EventObservable {
 
     public ConnectionEventListener(NetProperties netProperties) {
         this.netProperties = netProperties;
+        subscribe(ConnectionCloseEvent.class, this::on);
     }
 
-    @Subscribe
-    @AllowConcurrentEvents
     public void on(ConnectionCloseEvent event) {
         if (!netProperties.isUserOfflineOnConnectionClose()) {
             return;
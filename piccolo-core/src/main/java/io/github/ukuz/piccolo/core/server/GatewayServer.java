@@ -28,6 +28,9 @@ import io.github.ukuz.piccolo.common.ServiceNames;
 import io.github.ukuz.piccolo.common.properties.NetProperties;
 import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
 import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.github.ukuz.piccolo.core.egress.EgressClass;
+import io.github.ukuz.piccolo.core.egress.EgressScheduler;
+import io.github.ukuz.piccolo.core.egress.EgressSchedulerHandler;
 import io.github.ukuz.piccolo.core.handler.ChannelHandlers;
 import io.github.ukuz.piccolo.core.handler.MonitorBytesHandler;
 import io.github.ukuz.piccolo.core.handler.MonitorQpsHandler;
@@ -56,6 +59,8 @@ public class GatewayServer extends NettyServer {
     private final ConnectionManager cxnxManager;
     private DefaultServiceInstance serviceInstance;
     private GlobalChannelTrafficShapingHandler trafficShapingHandler;
+    private EgressScheduler egressScheduler;
+    private EgressSchedulerHandler egressSchedulerHandler;
     private MonitorBytesHandler monitorBytesHandler;
     private MonitorQpsHandler monitorQpsHandler;
 
@@ -88,15 +93,44 @@ public class GatewayServer extends NettyServer {
         NetProperties.TrafficNestedProperties traffic = piccoloContext.getProperties(NetProperties.class).getGatewayServerTraffic();
         if (traffic.isEnabled()) {
             ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(ThreadNames.T_TRAFFIC_SHAPING));
-            trafficShapingHandler = new GlobalChannelTrafficShapingHandler(executor,
-                    traffic.getWriteGlobalLimit(), traffic.getReadGlobalLimit(),
-                    traffic.getWriteChannelLimit(), traffic.getReadChannelLimit());
+            if (traffic.isEgressScheduling()) {
+                //写出方向交给优先级调度器，这里只限制读
+                egressScheduler = new EgressScheduler(getName(), traffic);
+                egressSchedulerHandler = new EgressSchedulerHandler(egressScheduler);
+                trafficShapingHandler = new GlobalChannelTrafficShapingHandler(executor,
+                        0, traffic.getReadGlobalLimit(),
+                        0, traffic.getReadChannelLimit());
+            } else {
+                trafficShapingHandler = new GlobalChannelTrafficShapingHandler(executor,
+                        traffic.getWriteGlobalLimit(), traffic.getReadGlobalLimit(),
+                        traffic.getWriteChannelLimit(), traffic.getReadChannelLimit());
+            }
         }
 
         monitorBytesHandler = new MonitorBytesHandler(getName());
         monitorQpsHandler = new MonitorQpsHandler(getName());
     }
 
+    /**
+     * 运行期间调整限流，需要在启动时开启限流
+     *
+     * @param traffic 调整后的配置
+     */
+    public void updateTraffic(NetProperties.TrafficNestedProperties traffic) {
+        if (trafficShapingHandler == null) {
+            throw new IllegalStateException(getName() + " traffic shaping is not enabled");
+        }
+        if (egressScheduler != null) {
+            trafficShapingHandler.configure(0, traffic.getReadGlobalLimit());
+            trafficShapingHandler.configureChannel(0, traffic.getReadChannelLimit());
+            egressScheduler.getBudget(EgressClass.INTERACTIVE).setLimit(traffic.getInteractiveWriteLimit());
+            egressScheduler.getBudget(EgressClass.BULK).setLimit(traffic.getBulkWriteLimit());
+        } else {
+            trafficShapingHandler.configure(traffic.getWriteGlobalLimit(), traffic.getReadGlobalLimit());
+            trafficShapingHandler.configureChannel(traffic.getWriteChannelLimit(), traffic.getReadChannelLimit());
+        }
+    }
+
     @Override
     protected void doStartComplete(ServerSocketChannel channel) {
         serviceInstance = DefaultServiceInstance.build()
@@ -129,6 +163,9 @@ public class GatewayServer extends NettyServer {
     @Override
     protected void initPipeline(ChannelPipeline pipeline) {
         super.initPipeline(pipeline);
+        if (egressSchedulerHandler != null) {
+            pipeline.addFirst("egress_scheduler", egressSchedulerHandler);
+        }
         if (trafficShapingHandler != null) {
             pipeline.addFirst(trafficShapingHandler);
         }
@@ -140,6 +177,9 @@ public class GatewayServer extends NettyServer {
     @Override
     protected void doDestroy() {
         cxnxManager.destroy();
+        if (egressScheduler != null) {
+            egressScheduler.shutdown();
+        }
     }
 
     @Override
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.server;
+
+import io.github.ukuz.piccolo.api.service.AbstractService;
+import io.github.ukuz.piccolo.api.service.ServiceException;
+import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
+import io.github.ukuz.piccolo.common.loadbalance.NodeLoad;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import io.github.ukuz.piccolo.core.PiccoloServer;
+import io.github.ukuz.piccolo.transport.server.NettyServer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期把本节点的负载(连接数、EventLoop积压、CPU)写入gateway、connect注册实例的元数据，
+ * 供客户端的负载均衡使用，见{@link NodeLoad}
+ *
+ * 负载变化不明显时不刷新注册中心，避免频繁写入
+ *
+ * @author ukuz90
+ */
+public class NodeLoadReporter extends AbstractService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeLoadReporter.class);
+
+    /**
+     * 即使负载没有明显变化，每隔该次数也会刷新一次
+     */
+    private static final int FORCE_REPORT_ROUNDS = 12;
+    private static final double CONNECTIONS_CHANGE_RATIO = 0.05;
+    private static final double CPU_CHANGE = 0.05;
+
+    private final PiccoloServer piccoloServer;
+    private final int intervalMs;
+    private final int nodeWeight;
+    private final OperatingSystemMXBean operatingSystemMXBean = ManagementFactory.getOperatingSystemMXBean();
+    private ScheduledThreadPoolExecutor executor;
+    private long lastConnections = -1;
+    private long lastQueue = -1;
+    private double lastCpu = -1;
+    private int rounds;
+
+    public NodeLoadReporter(PiccoloServer piccoloServer, CoreProperties core) {
+        this.piccoloServer = piccoloServer;
+        this.intervalMs = core.getLoadReportIntervalMs();
+        this.nodeWeight = core.getNodeWeight();
+    }
+
+    @Override
+    public void init() throws ServiceException {
+        if (intervalMs <= 0) {
+            return;
+        }
+        executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(ThreadNames.T_NODE_LOAD_REPORT));
+        executor.scheduleWithFixedDelay(this::report, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() throws ServiceException {
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                //等待进行中的刷新结束，避免摘除之后又被重新注册
+                executor.awaitTermination(intervalMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    private void report() {
+        try {
+            long connections = piccoloServer.getConnectServer().getConnectionManager().getConnectionNum();
+            long queue = pendingTasks(piccoloServer.getConnectServer().getWorkerGroup())
+                    + pendingTasks(piccoloServer.getGatewayServer().getWorkerGroup());
+            double cpu = cpu();
+            if (!changed(connections, queue, cpu) && ++rounds < FORCE_REPORT_ROUNDS) {
+                return;
+            }
+            rounds = 0;
+            lastConnections = connections;
+            lastQueue = queue;
+            lastCpu = cpu;
+
+            Map<String, String> metaData = new HashMap<>(8);
+            metaData.put(NodeLoad.META_CONNECTIONS, String.valueOf(connections));
+            metaData.put(NodeLoad.META_QUEUE, String.valueOf(queue));
+            metaData.put(NodeLoad.META_CPU, String.format(Locale.ROOT, "%.2f", cpu));
+            metaData.put(NodeLoad.META_WEIGHT, String.valueOf(nodeWeight));
+            update(piccoloServer.getGatewayServer(), metaData);
+            update(piccoloServer.getConnectServer(), metaData);
+        } catch (Exception e) {
+            LOGGER.warn("report node load failure, cause: {}", e);
+        }
+    }
+
+    private boolean changed(long connections, long queue, double cpu) {
+        long threshold = Math.max(10, (long) (lastConnections * CONNECTIONS_CHANGE_RATIO));
+        return Math.abs(connections - lastConnections) >= threshold
+                || (queue > 0) != (lastQueue > 0)
+                || Math.abs(cpu - lastCpu) >= CPU_CHANGE;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void update(NettyServer server, Map<String, String> metaData) {
+        if (!(server.getRegistration() instanceof DefaultServiceInstance)) {
+            return;
+        }
+        DefaultServiceInstance registration = (DefaultServiceInstance) server.getRegistration();
+        //整体替换，避免序列化时并发修改
+        registration.setMetaData(new HashMap<>(metaData));
+        piccoloServer.getServiceRegistry().update(registration);
+    }
+
+    private long pendingTasks(EventLoopGroup group) {
+        if (group == null) {
+            return 0;
+        }
+        long pending = 0;
+        for (EventExecutor e : group) {
+            if (e instanceof SingleThreadEventExecutor) {
+                pending += ((SingleThreadEventExecutor) e).pendingTasks();
+            }
+        }
+        return pending;
+    }
+
+    private double cpu() {
+        double load = operatingSystemMXBean.getSystemLoadAverage();
+        if (load < 0) {
+            return 0;
+        }
+        return Math.min(1, load / operatingSystemMXBean.getAvailableProcessors());
+    }
+}
@@ -16,6 +16,8 @@
 package io.github.ukuz.piccolo.core.session;
 
 import io.github.ukuz.piccolo.api.connection.SessionContext;
+import io.github.ukuz.piccolo.common.cache.codec.CompactReader;
+import io.github.ukuz.piccolo.common.cache.codec.CompactWriter;
 import io.github.ukuz.piccolo.common.security.AESCipher;
 import lombok.Data;
 
@@ -29,6 +31,26 @@ public final class ReusableSession {
     private long expireTime;
     private SessionContext context;
 
+    /**
+     * compact格式的版本，字段顺序: osName, osVersion, clientVersion, deviceId, aesKey, aesIv
+     */
+    private static final int COMPACT_VERSION = 1;
+
+    public static String encode(SessionContext context, boolean compact) {
+        if (!compact) {
+            return encode(context);
+        }
+        AESCipher cipher = (AESCipher) context.getCipher();
+        return new CompactWriter(COMPACT_VERSION, 96)
+                .writeString(context.getOsName())
+                .writeString(context.getOsVersion())
+                .writeString(context.getClientVersion())
+                .writeString(context.getDeviceId())
+                .writeBytes(cipher.keyB)
+                .writeBytes(cipher.ivB)
+                .toString();
+    }
+
     public static String encode(SessionContext context) {
         StringBuilder sb = new StringBuilder();
         sb.append(context.getOsName()).append(',');
@@ -40,7 +62,16 @@ public final class ReusableSession {
         return sb.toString();
     }
 
+    /**
+     * 同时支持compact格式以及逗号分隔的旧格式
+     *
+     * @param encodeValue
+     * @return
+     */
     public static ReusableSession decode(String encodeValue) {
+        if (CompactWriter.isCompact(encodeValue)) {
+            return decodeCompact(encodeValue);
+        }
         String[] arr = encodeValue.split(",");
         if (arr.length != 6) {
             return null;
@@ -59,4 +90,20 @@ public final class ReusableSession {
         return session;
     }
 
+    private static ReusableSession decodeCompact(String encodeValue) {
+        CompactReader reader = new CompactReader(encodeValue);
+        if (reader.getVersion() != COMPACT_VERSION) {
+            return null;
+        }
+        SessionContext context = new SessionContext();
+        context.setOsName(reader.readString());
+        context.setOsVersion(reader.readString());
+        context.setClientVersion(reader.readString());
+        context.setDeviceId(reader.readString());
+        context.changeCipher(new AESCipher(reader.readBytes(), reader.readBytes()));
+        ReusableSession session = new ReusableSession();
+        session.setContext(context);
+        return session;
+    }
+
 }
@@ -16,11 +16,15 @@
 package io.github.ukuz.piccolo.core.session;
 
 import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.configcenter.ConfigurationChangeType;
+import io.github.ukuz.piccolo.api.configcenter.DynamicConfiguration;
 import io.github.ukuz.piccolo.api.connection.SessionContext;
 import io.github.ukuz.piccolo.common.cache.CacheKeys;
 import io.github.ukuz.piccolo.common.properties.CoreProperties;
 import io.github.ukuz.piccolo.common.security.MD5Utils;
 import io.netty.util.internal.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * @author ukuz90
@@ -28,23 +32,80 @@ import io.netty.util.internal.StringUtil;
  */
 public final class ReusableSessionManager {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReusableSessionManager.class);
+    /**
+     * 配置中心中票据密钥的key，格式见{@link SessionTicketCodec}
+     */
+    private static final String TICKET_KEYS_KEY = "piccolo.session-ticket-keys";
+    private static final String COMPACT_CODEC = "compact";
+
     private PiccoloContext piccoloContext;
     private final int expireTime;
+    private final boolean ticketEnabled;
+    private final boolean compact;
+    private final SessionTicketCodec ticketCodec = new SessionTicketCodec();
 
     public ReusableSessionManager(PiccoloContext piccoloContext) {
         this.piccoloContext = piccoloContext;
-        this.expireTime = piccoloContext.getProperties(CoreProperties.class).getSessionExpireTime();
+        CoreProperties core = piccoloContext.getProperties(CoreProperties.class);
+        this.expireTime = core.getSessionExpireTime();
+        this.ticketEnabled = core.isSessionTicketEnabled();
+        this.compact = COMPACT_CODEC.equals(core.getCacheCodec());
+    }
+
+    /**
+     * 加载票据密钥，配置中心中的密钥优先，需要在配置中心启动之后调用
+     */
+    public void init() {
+        if (!ticketEnabled) {
+            return;
+        }
+        ticketCodec.updateKeys(piccoloContext.getProperties(CoreProperties.class).getSessionTicketKeys());
+        DynamicConfiguration configuration = piccoloContext.getDynamicConfiguration();
+        if (configuration == null) {
+            return;
+        }
+        String keys = configuration.getProperty(TICKET_KEYS_KEY);
+        if (!StringUtil.isNullOrEmpty(keys)) {
+            ticketCodec.updateKeys(keys);
+        }
+        configuration.addListener(TICKET_KEYS_KEY, event -> {
+            if (event.getType() != ConfigurationChangeType.DELETED && !StringUtil.isNullOrEmpty(event.getValue())) {
+                try {
+                    ticketCodec.updateKeys(event.getValue());
+                } catch (Exception e) {
+                    LOGGER.error("update session ticket keys failure, cause: {}", e.getMessage());
+                }
+            }
+        });
+        if (!ticketCodec.isAvailable()) {
+            LOGGER.warn("session ticket enabled but no key configured, fall back to cached session");
+        }
+    }
+
+    private boolean useTicket() {
+        return ticketEnabled && ticketCodec.isAvailable();
     }
 
     public void cacheSession(ReusableSession session) {
+        if (session.getSessionId().startsWith(SessionTicketCodec.PREFIX)) {
+            //票据自身携带会话信息，不需要缓存
+            return;
+        }
         String key = CacheKeys.getSessionKey(session.getSessionId());
-        String encodeValue = ReusableSession.encode(session.getContext());
+        String encodeValue = ReusableSession.encode(session.getContext(), compact);
         piccoloContext.getCacheManager().set(key, encodeValue, expireTime);
     }
 
     public ReusableSession querySession(String sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        if (sessionId.startsWith(SessionTicketCodec.PREFIX)) {
+            return ticketCodec.decode(sessionId);
+        }
         String key = CacheKeys.getSessionKey(sessionId);
-        String content = piccoloContext.getCacheManager().get(key, String.class);
+        String content = piccoloContext.getCacheManager().get(key);
         if (StringUtil.isNullOrEmpty(content)) {
             return null;
         }
@@ -55,8 +116,12 @@ public final class ReusableSessionManager {
         long now = System.currentTimeMillis();
         ReusableSession session = new ReusableSession();
         session.setContext(context);
-        session.setSessionId(MD5Utils.encrypt(context.getDeviceId() + now));
-        session.setExpireTime(now + expireTime * 1000);
+        session.setExpireTime(now + expireTime * 1000L);
+        if (useTicket()) {
+            session.setSessionId(ticketCodec.encode(context, session.getExpireTime()));
+        } else {
+            session.setSessionId(MD5Utils.encrypt(context.getDeviceId() + now));
+        }
         return session;
     }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.session;
+
+import io.github.ukuz.piccolo.api.connection.SessionContext;
+import io.github.ukuz.piccolo.common.security.AESCipher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 无状态的快速重连票据，类似TLS的session ticket:
+ * 会话信息和会话密钥使用服务端密钥通过AES-GCM加密并认证后下发给客户端，快速重连时本地解密校验，不需要访问redis
+ *
+ * 票据格式: version(1) | keyId(1) | nonce(12) | AES-GCM(expireTime(8) | osName | osVersion | clientVersion | deviceId | key | iv)
+ *
+ * 服务端密钥的格式为 keyId:base64(key)，多个用逗号分隔，第一个用于签发，其余的只用于校验，便于轮换
+ *
+ * @author ukuz90
+ */
+public final class SessionTicketCodec {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionTicketCodec.class);
+
+    public static final String PREFIX = "T1.";
+    private static final byte VERSION = 1;
+    private static final int HEADER_LENGTH = 2;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final String TRANSFORM = "AES/GCM/NoPadding";
+
+    private final SecureRandom random = new SecureRandom();
+    private volatile TicketKeys keys = TicketKeys.EMPTY;
+
+    public boolean isAvailable() {
+        return keys.current != null;
+    }
+
+    /**
+     * @param config keyId:base64(key)[,keyId:base64(key)...]
+     */
+    public void updateKeys(String config) {
+        this.keys = TicketKeys.parse(config);
+        LOGGER.info("session ticket keys updated, current: {} all: {}", keys.currentId, keys.keys.keySet());
+    }
+
+    public String encode(SessionContext context, long expireTime) {
+        TicketKeys current = this.keys;
+        if (current.current == null) {
+            throw new IllegalStateException("session ticket key not configured");
+        }
+        AESCipher cipher = (AESCipher) context.getCipher();
+        byte[][] fields = {
+                bytes(context.getOsName()), bytes(context.getOsVersion()), bytes(context.getClientVersion()),
+                bytes(context.getDeviceId()), cipher.keyB, cipher.ivB
+        };
+        int length = 8;
+        for (byte[] field : fields) {
+            length += 2 + field.length;
+        }
+        ByteBuffer plain = ByteBuffer.allocate(length);
+        plain.putLong(expireTime);
+        for (byte[] field : fields) {
+            plain.putShort((short) field.length).put(field);
+        }
+
+        byte[] header = {VERSION, (byte) current.currentId};
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        try {
+            byte[] encrypted = newCipher(Cipher.ENCRYPT_MODE, current.current, nonce, header).doFinal(plain.array());
+            ByteBuffer ticket = ByteBuffer.allocate(HEADER_LENGTH + NONCE_LENGTH + encrypted.length);
+            ticket.put(header).put(nonce).put(encrypted);
+            return PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(ticket.array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("encode session ticket failure", e);
+        }
+    }
+
+    /**
+     * @param ticket
+     * @return 票据无效或已过期时返回null
+     */
+    public ReusableSession decode(String ticket) {
+        if (ticket == null || !ticket.startsWith(PREFIX)) {
+            return null;
+        }
+        try {
+            byte[] raw = Base64.getUrlDecoder().decode(ticket.substring(PREFIX.length()));
+            if (raw.length <= HEADER_LENGTH + NONCE_LENGTH || raw[0] != VERSION) {
+                return null;
+            }
+            SecretKeySpec key = keys.keys.get(raw[1] & 0xFF);
+            if (key == null) {
+                //签发的密钥已被轮换下线
+                return null;
+            }
+            byte[] header = {raw[0], raw[1]};
+            byte[] nonce = new byte[NONCE_LENGTH];
+            System.arraycopy(raw, HEADER_LENGTH, nonce, 0, NONCE_LENGTH);
+            int offset = HEADER_LENGTH + NONCE_LENGTH;
+            ByteBuffer plain = ByteBuffer.wrap(newCipher(Cipher.DECRYPT_MODE, key, nonce, header).doFinal(raw, offset, raw.length - offset));
+
+            long expireTime = plain.getLong();
+            if (expireTime < System.currentTimeMillis()) {
+                return null;
+            }
+            SessionContext context = new SessionContext()
+                    .setOsName(string(plain))
+                    .setOsVersion(string(plain))
+                    .setClientVersion(string(plain))
+                    .setDeviceId(string(plain));
+            byte[] aesKey = field(plain);
+            byte[] aesIv = field(plain);
+            context.changeCipher(new AESCipher(aesKey, aesIv));
+
+            ReusableSession session = new ReusableSession();
+            session.setSessionId(ticket);
+            session.setExpireTime(expireTime);
+            session.setContext(context);
+            return session;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            //密文被篡改或格式错误
+            LOGGER.warn("decode session ticket failure, cause: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static Cipher newCipher(int mode, SecretKeySpec key, byte[] nonce, byte[] aad) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORM);
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, nonce));
+        cipher.updateAAD(aad);
+        return cipher;
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] field(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = field(buffer);
+        return bytes.length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class TicketKeys {
+
+        static final TicketKeys EMPTY = new TicketKeys(-1, null, Collections.emptyMap());
+
+        final int currentId;
+        final SecretKeySpec current;
+        final Map<Integer, SecretKeySpec> keys;
+
+        TicketKeys(int currentId, SecretKeySpec current, Map<Integer, SecretKeySpec> keys) {
+            this.currentId = currentId;
+            this.current = current;
+            this.keys = keys;
+        }
+
+        static TicketKeys parse(String config) {
+            if (config == null || config.trim().isEmpty()) {
+                return EMPTY;
+            }
+            int currentId = -1;
+            Map<Integer, SecretKeySpec> keys = new HashMap<>();
+            for (String item : config.split(",")) {
+                String[] pair = item.trim().split(":", 2);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("invalid session ticket key: " + item);
+                }
+                int id = Integer.parseInt(pair[0].trim());
+                byte[] key = Base64.getDecoder().decode(pair[1].trim());
+                if (id < 0 || id > 255 || (key.length != 16 && key.length != 24 && key.length != 32)) {
+                    throw new IllegalArgumentException("invalid session ticket key, id: " + id + " length: " + key.length);
+                }
+                keys.put(id, new SecretKeySpec(key, AESCipher.KEY_ALGORITHM));
+                if (currentId < 0) {
+                    currentId = id;
+                }
+            }
+            return new TicketKeys(currentId, keys.get(currentId), keys);
+        }
+    }
+}
@@ -41,7 +41,7 @@ public class ServerExecutorFactory extends AbstractExecutorFactory {
                         .queueCapacity(tp.getIdGen().getQueueSize())
                         .keepAliveSeconds(tp.getIdGen().getKeepAliveSeconds())
                         .build();
-                return createScheduledExecutor(config);
+                return register(name, createScheduledExecutor(config));
             case MONITOR:
                 config = ThreadPoolConfig.builder()
                         .name(ThreadNames.T_MONITOR)
@@ -51,7 +51,7 @@ public class ServerExecutorFactory extends AbstractExecutorFactory {
                         .keepAliveSeconds(tp.getMonitor().getKeepAliveSeconds())
                         .build();
 
-                return createScheduledExecutor(config);
+                return register(name, createScheduledExecutor(config));
             default:
                 return super.create(name, environment);
         }
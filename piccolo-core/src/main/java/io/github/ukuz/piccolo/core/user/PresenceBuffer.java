@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.user;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 合并同一时间窗口内的用户上下线变更，同一用户只保留最后一次变更
+ *
+ * @author ukuz90
+ */
+class PresenceBuffer {
+
+    private final ConcurrentHashMap<String, Boolean> pending = new ConcurrentHashMap<>();
+
+    void online(String userId) {
+        pending.put(userId, Boolean.TRUE);
+    }
+
+    void offline(String userId) {
+        pending.put(userId, Boolean.FALSE);
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    /**
+     * 取出最多max条变更
+     *
+     * @param max
+     * @return
+     */
+    Batch drain(int max) {
+        Batch batch = new Batch();
+        Iterator<String> it = pending.keySet().iterator();
+        while (it.hasNext() && batch.size() < max) {
+            String userId = it.next();
+            Boolean online = pending.remove(userId);
+            if (online == null) {
+                continue;
+            }
+            if (online) {
+                batch.onlines.add(userId);
+            } else {
+                batch.offlines.add(userId);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 写入失败时放回，期间产生的新变更优先
+     *
+     * @param batch
+     */
+    void requeue(Batch batch) {
+        batch.onlines.forEach(userId -> pending.putIfAbsent(userId, Boolean.TRUE));
+        batch.offlines.forEach(userId -> pending.putIfAbsent(userId, Boolean.FALSE));
+    }
+
+    void clear() {
+        pending.clear();
+    }
+
+    static final class Batch {
+        final List<String> onlines = new ArrayList<>();
+        final List<String> offlines = new ArrayList<>();
+
+        int size() {
+            return onlines.size() + offlines.size();
+        }
+
+        boolean isEmpty() {
+            return onlines.isEmpty() && offlines.isEmpty();
+        }
+    }
+}
@@ -15,29 +15,84 @@
  */
 package io.github.ukuz.piccolo.core.user;
 
+import io.github.ukuz.piccolo.api.cache.ValueCodec;
 import io.github.ukuz.piccolo.common.cache.CacheKeys;
+import io.github.ukuz.piccolo.common.cache.codec.ValueCodecs;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
 import io.github.ukuz.piccolo.common.properties.NetProperties;
 import io.github.ukuz.piccolo.common.router.RemoteRouter;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
 import io.github.ukuz.piccolo.core.PiccoloServer;
+import io.github.ukuz.piccolo.monitor.MetricsMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * 在线用户列表的维护:
+ * 1. 上下线变更先在本地合并，同一用户只保留最后一次变更
+ * 2. 定时将合并后的变更通过pipeline批量写入本节点的在线用户zset
+ * 3. 按写入后zset的实际变化量增量维护各节点的在线人数，查询人数只需读取一个hash，
+ *    人数更新失败时只保留未提交的变化量，下次写入时一起提交，不会重放zset的变更
+ *
  * @author ukuz90
  */
 public class UserManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(UserManager.class);
+    private static final String PENDING_TAG = "piccolo_presence_pending";
+    private static final long STOP_TIMEOUT_MS = 3000;
     private final String onlineUserListKey;
+    private final String publicIp;
+    private final int flushIntervalMs;
+    private final int batchSize;
+    private final PresenceBuffer buffer = new PresenceBuffer();
+    private final ValueCodec codec;
     private PiccoloServer piccoloContext;
+    private ScheduledThreadPoolExecutor flushExecutor;
+    /**
+     * 已写入zset但还未计入在线人数的变化量，只在flush中访问
+     */
+    private long pendingCountDelta;
 
     public UserManager(PiccoloServer piccoloServer) {
         this.piccoloContext = piccoloServer;
         NetProperties net = piccoloContext.getProperties(NetProperties.class);
-        this.onlineUserListKey = CacheKeys.getOnlineUserListKey(net.getPublicIp());
+        CoreProperties core = piccoloContext.getProperties(CoreProperties.class);
+        this.publicIp = net.getPublicIp();
+        this.onlineUserListKey = CacheKeys.getOnlineUserListKey(publicIp);
+        this.flushIntervalMs = core.getPresenceFlushIntervalMs();
+        this.batchSize = core.getPresenceBatchSize();
+        this.codec = ValueCodecs.of(piccoloServer);
+    }
+
+    public void start() {
+        MetricsMonitor.gaugeWithStrongRef(PENDING_TAG, null, "pending", buffer::size);
+        flushExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(ThreadNames.T_PRESENCE_FLUSH));
+        flushExecutor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (flushExecutor != null) {
+            //等待进行中的flush结束后，同步写入剩余的变更
+            flushExecutor.shutdown();
+            try {
+                if (!flushExecutor.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    LOGGER.warn("wait presence flush timeout, pending: {}", buffer.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flushExecutor = null;
+            flush();
+        }
+        buffer.clear();
     }
 
     public void kickUser(String userId, byte clientType) {
@@ -52,26 +107,76 @@ public class UserManager {
 
     public void clearOnlineList() {
         piccoloContext.getCacheManager().del(onlineUserListKey);
+        piccoloContext.getCacheManager().hdel(CacheKeys.getOnlineUserCountKey(), publicIp);
     }
 
     public void addToOnlineList(String userId) {
-        piccoloContext.getCacheManager().zAdd(onlineUserListKey, "\"" + userId + "\"", 0);
-        LOGGER.info("user online, userId: {}", userId);
+        buffer.online(userId);
     }
 
     public void removeFromOnlineList(String userId) {
-        piccoloContext.getCacheManager().zRem(onlineUserListKey, "\"" + userId + "\"");
-        LOGGER.info("user offline, userId: {}", userId);
+        buffer.offline(userId);
+    }
+
+    /**
+     * 将合并后的上下线变更写入redis
+     */
+    synchronized void flush() {
+        if (!flushCount()) {
+            return;
+        }
+        PresenceBuffer.Batch batch;
+        while (!(batch = buffer.drain(batchSize)).isEmpty()) {
+            long delta;
+            try {
+                //zrange读取时会经过codec解码，成员也需要经过同一个codec编码
+                delta = piccoloContext.getCacheManager().zUpdate(onlineUserListKey,
+                        toMembers(batch.onlines), 0, toMembers(batch.offlines));
+            } catch (Exception e) {
+                //zadd/zrem是幂等的，并且变化量按实际结果计算，可以整批重放
+                buffer.requeue(batch);
+                LOGGER.warn("flush presence failure, pending: {}, cause: {}", buffer.size(), e);
+                return;
+            }
+            pendingCountDelta += delta;
+            LOGGER.debug("flush presence, online: {} offline: {} delta: {}", batch.onlines.size(), batch.offlines.size(), delta);
+            if (!flushCount()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 提交在线人数的变化量
+     *
+     * @return 是否提交成功
+     */
+    private boolean flushCount() {
+        if (pendingCountDelta == 0) {
+            return true;
+        }
+        try {
+            piccoloContext.getCacheManager().hincrBy(CacheKeys.getOnlineUserCountKey(), publicIp, pendingCountDelta);
+            pendingCountDelta = 0;
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn("flush online count failure, delta: {}, cause: {}", pendingCountDelta, e);
+            return false;
+        }
+    }
+
+    private List<String> toMembers(List<String> userIds) {
+        List<String> members = new ArrayList<>(userIds.size());
+        userIds.forEach(userId -> members.add(codec.encode(userId)));
+        return members;
     }
 
     public long getOnlineUserNum() {
-        Long val = piccoloContext.getCacheManager().zCard(onlineUserListKey);
-        return val == null ? 0 : val;
+        return getOnlineUserNum(publicIp);
     }
 
     public long getOnlineUserNum(String publicIp) {
-        String key = CacheKeys.getOnlineUserListKey(publicIp);
-        Long val = piccoloContext.getCacheManager().zCard(key);
+        Long val = piccoloContext.getCacheManager().hget(CacheKeys.getOnlineUserCountKey(), publicIp, Long.class);
         return val == null ? 0 : val;
     }
 
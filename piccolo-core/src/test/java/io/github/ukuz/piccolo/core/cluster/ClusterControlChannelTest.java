@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.cluster;
+
+import io.github.ukuz.piccolo.api.config.Environment;
+import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceDiscovery;
+import io.github.ukuz.piccolo.common.ServiceNames;
+import io.github.ukuz.piccolo.common.event.EventBus;
+import io.github.ukuz.piccolo.common.message.ClusterControlMessage;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import io.github.ukuz.piccolo.core.PiccoloServer;
+import io.github.ukuz.piccolo.core.server.GatewayServer;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author ukuz90
+ */
+class ClusterControlChannelTest {
+
+    private NioEventLoopGroup group;
+    private Channel serverChannel;
+    private final Queue<Channel> accepted = new ConcurrentLinkedQueue<>();
+    private ClusterControlChannel controlChannel;
+    private String peer;
+
+    @BeforeAll
+    static void init() {
+        EventBus.create(Runnable::run);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        group = new NioEventLoopGroup(1);
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new AcceptHandler())
+                .bind(new InetSocketAddress("localhost", 0)).sync().channel();
+        int port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+        //注册的地址是主机名，与连接的远端IP不同
+        DefaultServiceInstance instance = DefaultServiceInstance.build()
+                .serviceId(ServiceNames.S_GATEWAY).host("localhost").port(port);
+        peer = instance.getHostAndPort();
+
+        Environment environment = mock(Environment.class);
+        when(environment.getProperties(CoreProperties.class)).thenReturn(new CoreProperties());
+        GatewayServer gatewayServer = mock(GatewayServer.class);
+        when(gatewayServer.getRegistration()).thenReturn(DefaultServiceInstance.build().host("127.0.0.1").port(1));
+        ServiceDiscovery serviceDiscovery = mock(ServiceDiscovery.class);
+        when(serviceDiscovery.lookup(ServiceNames.S_GATEWAY)).thenReturn(Collections.singletonList(instance));
+        PiccoloServer piccoloServer = mock(PiccoloServer.class);
+        when(piccoloServer.getEnvironment()).thenReturn(environment);
+        when(piccoloServer.getGatewayServer()).thenReturn(gatewayServer);
+        when(piccoloServer.getServiceDiscovery()).thenReturn(serviceDiscovery);
+
+        controlChannel = new ClusterControlChannel(piccoloServer, new CoreProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        controlChannel.stop();
+        serverChannel.close();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    @DisplayName("test_connectByRegisteredHostAndPort")
+    @Test
+    void testConnectByRegisteredHostAndPort() {
+        controlChannel.start();
+        assertTrue(await(() -> controlChannel.connectionOf(peer) != null, 5000));
+    }
+
+    @DisplayName("test_reconnectAfterPeerClosed")
+    @Test
+    void testReconnectAfterPeerClosed() {
+        controlChannel.start();
+        assertTrue(await(() -> controlChannel.connectionOf(peer) != null, 5000));
+
+        accepted.poll().close();
+        assertTrue(await(() -> controlChannel.connectionOf(peer) == null, 5000));
+        assertTrue(await(() -> controlChannel.connectionOf(peer) != null, 10000));
+        assertEquals(1, accepted.size());
+    }
+
+    @DisplayName("test_send_fallbackWhenNotConnected")
+    @Test
+    void testSendFallbackWhenNotConnected() {
+        List<ClusterControlMessage.Entry> fallback = new CopyOnWriteArrayList<>();
+        controlChannel.setFallback(fallback::add);
+        controlChannel.start();
+
+        ClusterControlMessage.Entry entry = ClusterControlMessage.Entry.kick("u1", (byte) 1, "c1", "d1", "10.0.0.1", 3000);
+        controlChannel.send(entry);
+        assertEquals(Collections.singletonList(entry), fallback);
+    }
+
+    @ChannelHandler.Sharable
+    private final class AcceptHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            accepted.add(ctx.channel());
+        }
+    }
+
+    private static boolean await(BooleanSupplier condition, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
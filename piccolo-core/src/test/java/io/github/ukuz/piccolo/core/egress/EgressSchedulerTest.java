@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.egress;
+
+import io.github.ukuz.piccolo.api.exchange.protocol.Packet;
+import io.github.ukuz.piccolo.common.constants.CommandType;
+import io.github.ukuz.piccolo.common.properties.NetProperties;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.ClosedChannelException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ukuz90
+ */
+class EgressSchedulerTest {
+
+    private EgressScheduler scheduler;
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        NetProperties.TrafficNestedProperties traffic = new NetProperties().new TrafficNestedProperties();
+        traffic.setCheckIntervalMs(1000);
+        scheduler = new EgressScheduler("test", traffic);
+        channel = new EmbeddedChannel(new EgressSchedulerHandler(scheduler));
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.finishAndReleaseAll();
+        scheduler.shutdown();
+    }
+
+    @DisplayName("test_write_PriorityOrder")
+    @Test
+    void testWritePriorityOrder() {
+        channel.write(frame(CommandType.GATEWAY_PUSH), EgressClass.newBulkPromise(channel));
+        channel.write(frame(CommandType.PUSH));
+        channel.write(frame(CommandType.HANDSHAKE));
+        channel.runPendingTasks();
+        //CONTROL不排队，INTERACTIVE优先于BULK
+        assertCmd(CommandType.HANDSHAKE, channel.readOutbound());
+        assertCmd(CommandType.PUSH, channel.readOutbound());
+        assertCmd(CommandType.GATEWAY_PUSH, channel.readOutbound());
+        assertNull(channel.readOutbound());
+    }
+
+    @DisplayName("test_write_ResumeOnWritable")
+    @Test
+    void testWriteResumeOnWritable() {
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        channel.runPendingTasks();
+        assertFalse(channel.isWritable());
+
+        ChannelPromise promise = channel.newPromise();
+        channel.write(frame(CommandType.PUSH), promise);
+        channel.runPendingTasks();
+        //不可写时暂停调度
+        assertNull(channel.readOutbound());
+        assertFalse(promise.isDone());
+
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        channel.runPendingTasks();
+        assertCmd(CommandType.PUSH, channel.readOutbound());
+        assertTrue(promise.isSuccess());
+    }
+
+    @DisplayName("test_write_InteractiveWhileBulkThrottled")
+    @Test
+    void testWriteInteractiveWhileBulkThrottled() {
+        scheduler.getBudget(EgressClass.BULK).setLimit(1);
+        channel.write(frame(CommandType.GATEWAY_PUSH), EgressClass.newBulkPromise(channel));
+        channel.write(frame(CommandType.GATEWAY_PUSH), EgressClass.newBulkPromise(channel));
+        channel.runPendingTasks();
+        //第二个BULK帧等待预算补充
+        assertCmd(CommandType.GATEWAY_PUSH, channel.readOutbound());
+        assertNull(channel.readOutbound());
+
+        //等待补充期间INTERACTIVE立即写出
+        channel.write(frame(CommandType.PUSH));
+        channel.runPendingTasks();
+        assertCmd(CommandType.PUSH, channel.readOutbound());
+        assertNull(channel.readOutbound());
+    }
+
+    @DisplayName("test_close_DiscardBacklog")
+    @Test
+    void testCloseDiscardBacklog() {
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        ChannelPromise promise = channel.newPromise();
+        channel.write(frame(CommandType.PUSH), promise);
+
+        channel.close();
+        channel.runPendingTasks();
+        assertTrue(promise.cause() instanceof ClosedChannelException);
+    }
+
+    private static ByteBuf frame(CommandType cmd) {
+        ByteBuf frame = Unpooled.buffer(Packet.HEADER_LENGTH + 4);
+        frame.writeZero(Packet.HEADER_LENGTH + 4);
+        frame.setByte(2, cmd.getCmd());
+        return frame;
+    }
+
+    private static void assertCmd(CommandType expected, Object frame) {
+        assertNotNull(frame);
+        ByteBuf buf = (ByteBuf) frame;
+        try {
+            assertEquals(expected, CommandType.toCMD(buf.getByte(2)));
+        } finally {
+            buf.release();
+        }
+    }
+}
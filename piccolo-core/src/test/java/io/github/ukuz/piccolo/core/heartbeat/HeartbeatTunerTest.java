@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.heartbeat;
+
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ukuz90
+ */
+class HeartbeatTunerTest {
+
+    private HeartbeatTuner tuner;
+
+    @BeforeEach
+    void setUp() {
+        CoreProperties core = new CoreProperties();
+        core.setMinHeartbeatTime(30000);
+        core.setMaxHeartbeatTime(300000);
+        core.setHeartbeatProbeSuccesses(2);
+        core.setHeartbeatProbeFailures(1);
+        tuner = new HeartbeatTuner(core);
+    }
+
+    @DisplayName("test_probeSuccess")
+    @Test
+    void testProbeSuccess() {
+        HeartbeatTuner.NetworkClass cls = tuner.classOf((byte) 1);
+        assertEquals(30000, cls.safe);
+        assertEquals(45000, cls.probe);
+
+        cls.onSuccess(45000);
+        assertEquals(30000, cls.safe);
+        cls.onSuccess(45000);
+        assertEquals(45000, cls.safe);
+        assertEquals(67500, cls.probe);
+
+        //过期的探测结果
+        cls.onSuccess(45000);
+        cls.onFailure(45000);
+        assertEquals(45000, cls.safe);
+        assertEquals(67500, cls.probe);
+    }
+
+    @DisplayName("test_probeFailure")
+    @Test
+    void testProbeFailure() {
+        HeartbeatTuner.NetworkClass cls = tuner.classOf((byte) 2);
+        cls.onSuccess(45000);
+        cls.onSuccess(45000);
+
+        cls.onFailure(67500);
+        assertEquals(45000, cls.safe);
+        assertEquals(56250, cls.probe);
+        cls.onFailure(56250);
+        assertEquals(50625, cls.probe);
+        cls.onFailure(50625);
+        //步长过小，停止探测
+        assertEquals(45000, cls.probe);
+
+        cls.onSuccess(45000);
+        cls.onSuccess(45000);
+        assertEquals(45000, cls.safe);
+        assertEquals(45000, cls.probe);
+    }
+}
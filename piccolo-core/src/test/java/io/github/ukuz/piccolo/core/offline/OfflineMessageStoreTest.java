@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.offline;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.common.properties.OfflineProperties;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author ukuz90
+ */
+class OfflineMessageStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private OfflineMessageStore newStore(int segmentSize, int maxDepth) {
+        return newStore(segmentSize, maxDepth, 32);
+    }
+
+    private OfflineMessageStore newStore(int segmentSize, int maxDepth, int replayBatchSize) {
+        OfflineProperties properties = new OfflineProperties();
+        properties.setEnable(true);
+        properties.setDir(dir.toString());
+        properties.setSegmentSize(segmentSize);
+        properties.setMaxDepth(maxDepth);
+        properties.setReplayBatchSize(replayBatchSize);
+        OfflineMessageStore store = new OfflineMessageStore(properties);
+        store.start();
+        return store;
+    }
+
+    @DisplayName("test_storeAndDrain")
+    @Test
+    void testStoreAndDrain() {
+        OfflineMessageStore store = newStore(4096, 100);
+        assertTrue(store.store("u1", "a".getBytes()));
+        assertTrue(store.store("u1", "b".getBytes()));
+        assertTrue(store.store("u2", "c".getBytes()));
+        assertEquals(2, store.depth("u1"));
+
+        List<byte[]> contents = store.drain("u1");
+        assertEquals(2, contents.size());
+        assertArrayEquals("a".getBytes(), contents.get(0));
+        assertArrayEquals("b".getBytes(), contents.get(1));
+        assertEquals(0, store.depth("u1"));
+        assertTrue(store.drain("u1").isEmpty());
+        store.stop();
+    }
+
+    @DisplayName("test_maxDepth")
+    @Test
+    void testMaxDepth() {
+        OfflineMessageStore store = newStore(4096, 2);
+        store.store("u1", "a".getBytes());
+        store.store("u1", "b".getBytes());
+        store.store("u1", "c".getBytes());
+
+        List<byte[]> contents = store.drain("u1");
+        assertEquals(2, contents.size());
+        assertArrayEquals("b".getBytes(), contents.get(0));
+        assertArrayEquals("c".getBytes(), contents.get(1));
+        store.stop();
+    }
+
+    @DisplayName("test_recover")
+    @Test
+    void testRecover() {
+        OfflineMessageStore store = newStore(4096, 100);
+        store.store("u1", "a".getBytes());
+        store.store("u2", "b".getBytes());
+        store.drain("u2");
+        store.stop();
+
+        store = newStore(4096, 100);
+        assertEquals(1, store.depth("u1"));
+        assertEquals(0, store.depth("u2"));
+        assertArrayEquals("a".getBytes(), store.drain("u1").get(0));
+        store.stop();
+    }
+
+    @DisplayName("test_compact")
+    @Test
+    void testCompact() {
+        OfflineMessageStore store = newStore(256, 100);
+        //每个segment保存3条消息，消费u1后第1、3个segment只剩1条有效消息，搬迁到同一个新segment
+        byte[] content = new byte[64];
+        for (int i = 0; i < 12; i++) {
+            store.store(i % 2 == 0 ? "u1" : "u2", content);
+        }
+        int before = segmentFiles();
+        assertEquals(4, before);
+
+        store.drain("u1");
+        store.compact();
+        assertTrue(segmentFiles() < before);
+        assertEquals(6, store.drain("u2").size());
+        store.stop();
+    }
+
+    @DisplayName("test_replayInterrupted")
+    @Test
+    void testReplayInterrupted() {
+        OfflineMessageStore store = newStore(4096, 100, 2);
+        for (String s : new String[]{"a", "b", "c", "d", "e"}) {
+            store.store("u1", s.getBytes());
+        }
+        //第一批写出成功，第二批写出失败
+        EmbeddedChannel channel = new EmbeddedChannel();
+        AtomicInteger sent = new AtomicInteger();
+        Connection connection = mock(Connection.class);
+        when(connection.sendAsync(any())).thenAnswer(invocation -> sent.incrementAndGet() <= 2 ?
+                channel.newSucceededFuture() : channel.newFailedFuture(new IOException("closed")));
+
+        store.replay(connection, "u1");
+        assertEquals(4, sent.get());
+        List<byte[]> contents = store.drain("u1");
+        assertEquals(3, contents.size());
+        assertArrayEquals("c".getBytes(), contents.get(0));
+        assertArrayEquals("d".getBytes(), contents.get(1));
+        assertArrayEquals("e".getBytes(), contents.get(2));
+        store.stop();
+    }
+
+    private int segmentFiles() {
+        File[] files = dir.toFile().listFiles((d, name) -> name.endsWith(OfflineSegment.SUFFIX));
+        return files == null ? 0 : files.length;
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.router;
+
+import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.common.event.EventBus;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TagIndexTest {
+
+    private TagIndex tagIndex;
+    private Connection c1;
+    private Connection c2;
+    private Connection c3;
+
+    @BeforeAll
+    static void init() {
+        EventBus.create(Runnable::run);
+    }
+
+    @BeforeEach
+    void setUp() {
+        tagIndex = new TagIndex();
+        c1 = mockConnection("c1");
+        c2 = mockConnection("c2");
+        c3 = mockConnection("c3");
+        tagIndex.index(c1, "vip,beijing,android");
+        tagIndex.index(c2, "vip,shanghai,ios");
+        tagIndex.index(c3, "beijing, ios");
+    }
+
+    @DisplayName("test_select")
+    @Test
+    void testSelect() {
+        assertEquals(2, tagIndex.select(TagExpression.parse("vip")).size());
+        assertEquals(3, tagIndex.select(TagExpression.parse("beijing | shanghai")).size());
+
+        List<Connection> result = tagIndex.select(TagExpression.parse("vip & (beijing | shanghai) & !android"));
+        assertEquals(1, result.size());
+        assertSame(c2, result.get(0));
+
+        assertTrue(tagIndex.select(TagExpression.parse("unknown")).isEmpty());
+    }
+
+    @DisplayName("test_reindex_and_remove")
+    @Test
+    void testReindexAndRemove() {
+        tagIndex.index(c1, "shanghai");
+        assertEquals(1, tagIndex.select(TagExpression.parse("vip")).size());
+        assertEquals(2, tagIndex.select(TagExpression.parse("shanghai")).size());
+
+        tagIndex.remove(c2);
+        List<Connection> result = tagIndex.select(TagExpression.parse("shanghai"));
+        assertEquals(1, result.size());
+        assertSame(c1, result.get(0));
+        assertEquals(2, tagIndex.size());
+    }
+
+    @DisplayName("test_invalid_expression")
+    @Test
+    void testInvalidExpression() {
+        assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("vip & (beijing"));
+        assertThrows(IllegalArgumentException.class, () -> TagExpression.parse("vip &"));
+    }
+
+    private Connection mockConnection(String id) {
+        Connection connection = mock(Connection.class);
+        when(connection.getId()).thenReturn(id);
+        return connection;
+    }
+
+}
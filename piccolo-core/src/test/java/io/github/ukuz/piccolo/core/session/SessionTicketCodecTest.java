@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.session;
+
+import io.github.ukuz.piccolo.api.connection.SessionContext;
+import io.github.ukuz.piccolo.common.security.AESCipher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ukuz90
+ */
+class SessionTicketCodecTest {
+
+    private static final String KEY1 = "1:" + Base64.getEncoder().encodeToString("0123456789abcdef".getBytes());
+    private static final String KEY2 = "2:" + Base64.getEncoder().encodeToString("fedcba9876543210".getBytes());
+
+    private SessionContext newContext() {
+        SessionContext context = new SessionContext()
+                .setOsName("android")
+                .setOsVersion("10")
+                .setClientVersion("1.0.0")
+                .setDeviceId("device-1");
+        context.changeCipher(new AESCipher("aaaabbbbccccdddd".getBytes(), "1111222233334444".getBytes()));
+        return context;
+    }
+
+    @DisplayName("test_encodeAndDecode")
+    @Test
+    void testEncodeAndDecode() {
+        SessionTicketCodec codec = new SessionTicketCodec();
+        codec.updateKeys(KEY1);
+        long expireTime = System.currentTimeMillis() + 60000;
+        String ticket = codec.encode(newContext(), expireTime);
+        assertTrue(ticket.startsWith(SessionTicketCodec.PREFIX));
+
+        ReusableSession session = codec.decode(ticket);
+        assertNotNull(session);
+        assertEquals(expireTime, session.getExpireTime());
+        assertEquals("device-1", session.getContext().getDeviceId());
+        assertEquals("android", session.getContext().getOsName());
+        AESCipher cipher = (AESCipher) session.getContext().getCipher();
+        assertArrayEquals("aaaabbbbccccdddd".getBytes(), cipher.keyB);
+        assertArrayEquals("1111222233334444".getBytes(), cipher.ivB);
+
+        //过期
+        assertNull(codec.decode(codec.encode(newContext(), System.currentTimeMillis() - 1)));
+        //篡改
+        char[] chars = ticket.toCharArray();
+        chars[chars.length - 5] = chars[chars.length - 5] == 'A' ? 'B' : 'A';
+        assertNull(codec.decode(new String(chars)));
+    }
+
+    @DisplayName("test_keyRotation")
+    @Test
+    void testKeyRotation() {
+        SessionTicketCodec codec = new SessionTicketCodec();
+        codec.updateKeys(KEY1);
+        String ticket = codec.encode(newContext(), System.currentTimeMillis() + 60000);
+
+        //新密钥签发，旧密钥仍可校验
+        codec.updateKeys(KEY2 + "," + KEY1);
+        assertNotNull(codec.decode(ticket));
+        //旧密钥下线后票据失效
+        codec.updateKeys(KEY2);
+        assertNull(codec.decode(ticket));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.user;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ukuz90
+ */
+class PresenceBufferTest {
+
+    @DisplayName("test_lastWriterWins")
+    @Test
+    void testLastWriterWins() {
+        PresenceBuffer buffer = new PresenceBuffer();
+        buffer.online("u1");
+        buffer.offline("u1");
+        buffer.online("u2");
+        buffer.offline("u3");
+        buffer.online("u3");
+        assertEquals(3, buffer.size());
+
+        PresenceBuffer.Batch batch = buffer.drain(10);
+        Collections.sort(batch.onlines);
+        assertEquals(Arrays.asList("u2", "u3"), batch.onlines);
+        assertEquals(Collections.singletonList("u1"), batch.offlines);
+        assertEquals(0, buffer.size());
+        assertTrue(buffer.drain(10).isEmpty());
+    }
+
+    @DisplayName("test_drainAndRequeue")
+    @Test
+    void testDrainAndRequeue() {
+        PresenceBuffer buffer = new PresenceBuffer();
+        for (int i = 0; i < 5; i++) {
+            buffer.online("u" + i);
+        }
+        PresenceBuffer.Batch batch = buffer.drain(3);
+        assertEquals(3, batch.size());
+        assertEquals(2, buffer.size());
+
+        //写入失败后放回，期间的新变更不会被覆盖
+        String userId = batch.onlines.get(0);
+        buffer.offline(userId);
+        buffer.requeue(batch);
+        assertEquals(5, buffer.size());
+        PresenceBuffer.Batch all = buffer.drain(10);
+        assertEquals(Collections.singletonList(userId), all.offlines);
+        assertEquals(4, all.onlines.size());
+    }
+}
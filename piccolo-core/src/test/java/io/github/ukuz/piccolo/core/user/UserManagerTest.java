@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.core.user;
+
+import io.github.ukuz.piccolo.api.cache.CacheManager;
+import io.github.ukuz.piccolo.api.cache.ValueCodec;
+import io.github.ukuz.piccolo.api.spi.SpiLoader;
+import io.github.ukuz.piccolo.common.cache.CacheKeys;
+import io.github.ukuz.piccolo.common.properties.CoreProperties;
+import io.github.ukuz.piccolo.common.properties.NetProperties;
+import io.github.ukuz.piccolo.core.PiccoloServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author ukuz90
+ */
+class UserManagerTest {
+
+    private static final String IP = "10.0.0.1";
+
+    private PiccoloServer server;
+    private CacheManager cacheManager;
+    private CoreProperties core;
+
+    @BeforeEach
+    void setUp() {
+        server = mock(PiccoloServer.class);
+        cacheManager = mock(CacheManager.class);
+        NetProperties net = new NetProperties();
+        net.setPublicIp(IP);
+        core = new CoreProperties();
+        when(server.getProperties(NetProperties.class)).thenReturn(net);
+        when(server.getProperties(CoreProperties.class)).thenReturn(core);
+        when(server.getCacheManager()).thenReturn(cacheManager);
+    }
+
+    @DisplayName("test_flush_RetryCountOnly")
+    @Test
+    void testFlushRetryCountOnly() {
+        UserManager userManager = new UserManager(server);
+        String countKey = CacheKeys.getOnlineUserCountKey();
+        when(cacheManager.zUpdate(anyString(), anyCollection(), anyDouble(), anyCollection())).thenReturn(1L);
+        when(cacheManager.hincrBy(countKey, IP, 1L))
+                .thenThrow(new IllegalStateException("redis unavailable"))
+                .thenReturn(1L);
+
+        userManager.addToOnlineList("u1");
+        userManager.flush();
+        //人数更新失败后只重试变化量，不会重放zset的变更
+        userManager.flush();
+
+        verify(cacheManager, times(1)).zUpdate(anyString(), anyCollection(), anyDouble(), anyCollection());
+        verify(cacheManager, times(2)).hincrBy(countKey, IP, 1L);
+    }
+
+    @DisplayName("test_members_CompactWithoutMigration")
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMembersCompactWithoutMigration() {
+        core.setCacheCodec("compact");
+        core.setCacheCodecMigration(false);
+        UserManager userManager = new UserManager(server);
+        ArgumentCaptor<Collection<String>> captor = ArgumentCaptor.forClass(Collection.class);
+        when(cacheManager.zUpdate(anyString(), captor.capture(), anyDouble(), anyCollection())).thenReturn(1L);
+
+        userManager.addToOnlineList("u1");
+        userManager.flush();
+
+        //写入的成员能被关闭迁移模式的compact codec读取
+        ValueCodec codec = SpiLoader.getLoader(ValueCodec.class).getExtension("compact");
+        assertEquals(Collections.singletonList("u1"), new ArrayList<>(captor.getValue()));
+        assertEquals("u1", codec.decode(captor.getValue().iterator().next(), String.class));
+    }
+
+    @DisplayName("test_stop_FlushPending")
+    @Test
+    void testStopFlushPending() {
+        UserManager userManager = new UserManager(server);
+        when(cacheManager.zUpdate(anyString(), anyCollection(), anyDouble(), anyCollection())).thenReturn(1L);
+        userManager.start();
+        userManager.addToOnlineList("u1");
+        userManager.stop();
+
+        verify(cacheManager).zUpdate(eq(CacheKeys.getOnlineUserListKey(IP)), eq(Collections.singletonList("\"u1\"")),
+                eq(0D), eq(Collections.emptyList()));
+        verify(cacheManager).hincrBy(CacheKeys.getOnlineUserCountKey(), IP, 1L);
+    }
+}
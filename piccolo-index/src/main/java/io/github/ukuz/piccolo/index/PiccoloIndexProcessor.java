@@ -0,0 +1,244 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 编译期生成索引，启动时无需再扫描classpath:
+ * 1. META-INF/piccolo/properties.index 记录所有@ConfigurationProperties的类
+ * 2. META-INF/piccolo/spi.index 记录当前模块META-INF/piccolo下声明的SPI扩展，格式为 接口:key=实现类
+ *
+ * 增量编译时会合并上一次生成的索引，并剔除已经不存在的类
+ *
+ * @author ukuz90
+ */
+@SupportedAnnotationTypes("*")
+public class PiccoloIndexProcessor extends AbstractProcessor {
+
+    static final String PROPERTIES_INDEX = "META-INF/piccolo/properties.index";
+    static final String SPI_INDEX = "META-INF/piccolo/spi.index";
+    private static final String SPI_DIR = "META-INF/piccolo/";
+    private static final String CONFIGURATION_PROPERTIES = "io.github.ukuz.piccolo.api.config.ConfigurationProperties";
+    private static final String SPI = "io.github.ukuz.piccolo.api.spi.Spi";
+
+    private final Set<String> properties = new TreeSet<>();
+    /**
+     * SPI接口 -> 本次编译中实现了该接口的类
+     */
+    private final Map<String, Set<String>> extensions = new TreeMap<>();
+    /**
+     * 上一次编译已经生成过的索引，即使本次为空也需要覆盖
+     */
+    private final Set<String> existing = new HashSet<>();
+    private boolean loaded;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (!loaded) {
+            loaded = true;
+            readExistingIndex();
+        }
+        for (Element element : roundEnv.getRootElements()) {
+            collect(element);
+        }
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void collect(Element element) {
+        if (!(element.getKind() == ElementKind.CLASS && element instanceof TypeElement)) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        for (Element enclosed : type.getEnclosedElements()) {
+            collect(enclosed);
+        }
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return;
+        }
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        if (isAnnotated(type, CONFIGURATION_PROPERTIES)) {
+            properties.add(className);
+        }
+        for (String spi : findSpiInterfaces(type.asType(), new HashSet<>())) {
+            extensions.computeIfAbsent(spi, k -> new TreeSet<>()).add(className);
+        }
+    }
+
+    private Set<String> findSpiInterfaces(TypeMirror type, Set<String> result) {
+        for (TypeMirror superType : processingEnv.getTypeUtils().directSupertypes(type)) {
+            if (superType.getKind() != TypeKind.DECLARED) {
+                continue;
+            }
+            TypeElement element = (TypeElement) ((DeclaredType) superType).asElement();
+            if (element.getKind() == ElementKind.INTERFACE && isAnnotated(element, SPI)) {
+                result.add(processingEnv.getElementUtils().getBinaryName(element).toString());
+            }
+            findSpiInterfaces(superType, result);
+        }
+        return result;
+    }
+
+    private boolean isAnnotated(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 合并上一次编译生成的索引，只保留仍然存在的类
+     */
+    private void readExistingIndex() {
+        List<String> propertiesLines = readResource(PROPERTIES_INDEX);
+        List<String> spiLines = readResource(SPI_INDEX);
+        if (!propertiesLines.isEmpty()) {
+            existing.add(PROPERTIES_INDEX);
+        }
+        if (!spiLines.isEmpty()) {
+            existing.add(SPI_INDEX);
+        }
+        for (String line : propertiesLines) {
+            if (exists(line)) {
+                properties.add(line);
+            }
+        }
+        for (String line : spiLines) {
+            int keyIndex = line.indexOf(':');
+            int classIndex = line.indexOf('=');
+            if (keyIndex == -1 || classIndex < keyIndex) {
+                continue;
+            }
+            String spi = line.substring(0, keyIndex);
+            String className = line.substring(classIndex + 1);
+            if (exists(spi) && exists(className)) {
+                extensions.computeIfAbsent(spi, k -> new TreeSet<>()).add(className);
+            }
+        }
+    }
+
+    private void writeIndex() {
+        List<String> spiLines = new ArrayList<>();
+        extensions.forEach((spi, classes) -> {
+            //以SPI配置文件中的声明为准，实现了SPI接口但未声明的类不是扩展
+            Map<String, String> declared = readDeclaration(spi);
+            declared.forEach((className, key) -> {
+                if (classes.contains(className) || exists(className)) {
+                    spiLines.add(spi + ":" + key + "=" + className);
+                }
+            });
+        });
+        writeResource(PROPERTIES_INDEX, properties);
+        writeResource(SPI_INDEX, spiLines);
+    }
+
+    /**
+     * 解析SPI配置文件，与SpiLoader的解析规则保持一致
+     *
+     * @return 实现类 -> key
+     */
+    private Map<String, String> readDeclaration(String spi) {
+        Map<String, String> declared = new LinkedHashMap<>();
+        String spiSimpleName = spi.substring(Math.max(spi.lastIndexOf('.'), spi.lastIndexOf('$')) + 1);
+        for (String line : readResource(SPI_DIR + spi)) {
+            String key = null;
+            int index = line.indexOf('=');
+            if (index != -1) {
+                key = line.substring(0, index).trim();
+                line = line.substring(index + 1).trim();
+            }
+            if (key == null || key.isEmpty()) {
+                String simpleName = line.substring(Math.max(line.lastIndexOf('.'), line.lastIndexOf('$')) + 1);
+                index = simpleName.indexOf(spiSimpleName);
+                key = (index != -1 ? simpleName.substring(0, index) : simpleName).toLowerCase();
+            }
+            declared.putIfAbsent(line, key);
+        }
+        return declared;
+    }
+
+    private boolean exists(String className) {
+        return processingEnv.getElementUtils().getTypeElement(className.replace('$', '.')) != null;
+    }
+
+    private List<String> readResource(String name) {
+        List<String> lines = new ArrayList<>();
+        try {
+            FileObject resource = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", name);
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(resource.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    int index = line.indexOf('#');
+                    line = index == -1 ? line.trim() : line.substring(0, index).trim();
+                    if (!line.isEmpty()) {
+                        lines.add(line);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            //不存在
+        }
+        return lines;
+    }
+
+    private void writeResource(String name, Collection<String> lines) {
+        if (lines.isEmpty() && !existing.contains(name)) {
+            return;
+        }
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", name);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "write " + name + " failure, cause: " + e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ukuz90
+ */
+class PiccoloIndexProcessorTest {
+
+    private static final String SPI_ANNOTATION = "package io.github.ukuz.piccolo.api.spi;\n"
+            + "public @interface Spi {}";
+    private static final String PROPERTIES_ANNOTATION = "package io.github.ukuz.piccolo.api.config;\n"
+            + "public @interface ConfigurationProperties { String prefix(); }";
+    private static final String CODEC = "package demo;\n"
+            + "@io.github.ukuz.piccolo.api.spi.Spi public interface Codec {}";
+    private static final String JSON_CODEC = "package demo;\n"
+            + "public class JsonCodec implements Codec {}";
+    private static final String PLAIN_CODEC = "package demo;\n"
+            + "public class PlainCodec implements Codec {}";
+    private static final String UNDECLARED_CODEC = "package demo;\n"
+            + "public class UndeclaredCodec implements Codec {}";
+    private static final String DEMO_PROPERTIES = "package demo;\n"
+            + "@io.github.ukuz.piccolo.api.config.ConfigurationProperties(prefix = \"demo\") public class DemoProperties {}";
+
+    @TempDir
+    Path output;
+
+    @DisplayName("test_process_Index")
+    @Test
+    void testProcessIndex() throws IOException {
+        declare("json=demo.JsonCodec", "demo.PlainCodec");
+        compile(source("io.github.ukuz.piccolo.api.spi.Spi", SPI_ANNOTATION),
+                source("io.github.ukuz.piccolo.api.config.ConfigurationProperties", PROPERTIES_ANNOTATION),
+                source("demo.Codec", CODEC),
+                source("demo.JsonCodec", JSON_CODEC),
+                source("demo.PlainCodec", PLAIN_CODEC),
+                source("demo.UndeclaredCodec", UNDECLARED_CODEC),
+                source("demo.DemoProperties", DEMO_PROPERTIES));
+
+        assertEquals(Collections.singletonList("demo.DemoProperties"), read(PiccoloIndexProcessor.PROPERTIES_INDEX));
+        //未在配置文件中声明的实现类不是扩展
+        assertEquals(Arrays.asList("demo.Codec:json=demo.JsonCodec", "demo.Codec:plain=demo.PlainCodec"),
+                read(PiccoloIndexProcessor.SPI_INDEX));
+    }
+
+    @DisplayName("test_process_IncrementalDropDeleted")
+    @Test
+    void testProcessIncrementalDropDeleted() throws IOException {
+        declare("json=demo.JsonCodec", "demo.PlainCodec");
+        compile(source("io.github.ukuz.piccolo.api.spi.Spi", SPI_ANNOTATION),
+                source("io.github.ukuz.piccolo.api.config.ConfigurationProperties", PROPERTIES_ANNOTATION),
+                source("demo.Codec", CODEC),
+                source("demo.JsonCodec", JSON_CODEC),
+                source("demo.PlainCodec", PLAIN_CODEC),
+                source("demo.DemoProperties", DEMO_PROPERTIES));
+
+        //增量编译: 删除JsonCodec与DemoProperties，只重新编译PlainCodec
+        Files.delete(output.resolve("demo/JsonCodec.class"));
+        Files.delete(output.resolve("demo/DemoProperties.class"));
+        compile(source("demo.PlainCodec", PLAIN_CODEC));
+
+        assertEquals(Collections.emptyList(), read(PiccoloIndexProcessor.PROPERTIES_INDEX));
+        assertEquals(Collections.singletonList("demo.Codec:plain=demo.PlainCodec"), read(PiccoloIndexProcessor.SPI_INDEX));
+    }
+
+    private void declare(String... lines) throws IOException {
+        Path declaration = output.resolve("META-INF/piccolo/demo.Codec");
+        Files.createDirectories(declaration.getParent());
+        Files.write(declaration, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private List<String> read(String index) throws IOException {
+        return Files.readAllLines(output.resolve(index), StandardCharsets.UTF_8);
+    }
+
+    private void compile(JavaFileObject... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            List<String> options = new ArrayList<>();
+            options.add("-d");
+            options.add(output.toString());
+            options.add("-classpath");
+            options.add(output.toString());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, Arrays.asList(sources));
+            task.setProcessors(Collections.singletonList(new PiccoloIndexProcessor()));
+            assertTrue(task.call(), () -> diagnostics.getDiagnostics().toString());
+        }
+    }
+
+    private static JavaFileObject source(String className, String code) {
+        URI uri = URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
@@ -36,6 +36,10 @@ public class MetricsMonitor {
     private static final String REQUEST_BYTES_TAG = "piccolo_recv_bytes";
     private static final String RESPONSE_CNT_TAG = "piccolo_send_count";
     private static final String RESPONSE_BYTES_TAG = "piccolo_send_bytes";
+    private static final String EGRESS_LATENCY_TAG = "piccolo_egress_latency";
+    private static final String OFFLINE_IO_BYTES_TAG = "piccolo_offline_io_bytes";
+    private static final String MQ_CONSUME_TIME_TAG = "piccolo_mq_consume_time";
+    private static final String EVENT_HANDLE_TIME_TAG = "piccolo_event_handle_time";
 
     public static void gauge(String tag, String module, String name, Number value) {
         if (StringUtils.hasText(module)) {
@@ -55,6 +59,10 @@ public class MetricsMonitor {
         Gauge.builder(tag, supplier).tags(labelSets).register(Metrics.globalRegistry);
     }
 
+    private static Timer timer(String metricName, String ...label) {
+        return Metrics.timer(metricName, wrapLabelSet(label));
+    }
+
     private static Counter counter(String metricName, String ...label) {
         return Metrics.counter(metricName, wrapLabelSet(label));
     }
@@ -98,6 +106,22 @@ public class MetricsMonitor {
         return counter(RESPONSE_BYTES_TAG, "name", name);
     }
 
+    public static final Timer getEgressLatency(String name, String egressClass) {
+        return timer(EGRESS_LATENCY_TAG, "name", name, "class", egressClass);
+    }
+
+    public static final Counter getOfflineIoBytes(String op) {
+        return counter(OFFLINE_IO_BYTES_TAG, "op", op);
+    }
+
+    public static final Timer getMqConsumeTime(String topic) {
+        return timer(MQ_CONSUME_TIME_TAG, "topic", topic);
+    }
+
+    public static final Timer getEventHandleTime(String subscriber) {
+        return timer(EVENT_HANDLE_TIME_TAG, "subscriber", subscriber);
+    }
+
     public static final void monitorDisk() {
         if (!PlatformDependent.isWindows()) {
             new DiskSpaceMetrics(new File("/")).bindTo(Metrics.globalRegistry);
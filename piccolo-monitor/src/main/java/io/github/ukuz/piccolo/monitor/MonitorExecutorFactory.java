@@ -44,6 +44,11 @@ public class MonitorExecutorFactory implements ExecutorFactory {
         return executors.computeIfAbsent(name, k -> InternalExecutorServiceMetrics.monitor(Metrics.globalRegistry, delegate.create(k, environment), k));
     }
 
+    @Override
+    public boolean resize(String name, int coreSize, int maxSize) {
+        return delegate.resize(name, coreSize, maxSize);
+    }
+
     public void monitor(String name, Executor executor) {
         executors.put(name, InternalExecutorServiceMetrics.monitor(Metrics.globalRegistry, executor, name));
     }
@@ -68,6 +68,11 @@ public class KafkaMQClient extends AbstractService implements MQClient {
         kafkaManager.subscribe(topic, receiver);
     }
 
+    @Override
+    public void subscribeBroadcast(String topic, MQMessageReceiver receiver) {
+        kafkaManager.subscribeBroadcast(topic, receiver);
+    }
+
     @Override
     public void publish(String topic, Object message) {
         publish(topic, null, message);
@@ -84,6 +89,18 @@ public class KafkaMQClient extends AbstractService implements MQClient {
         }
     }
 
+    @Override
+    public CompletableFuture<Void> publishAsync(String topic, String key, Object message) {
+        if (message instanceof String) {
+            return kafkaManager.publishAsync(topic, key, ((String) message).getBytes(StandardCharsets.UTF_8));
+        } else if (message instanceof byte[]) {
+            return kafkaManager.publishAsync(topic, key, (byte[]) message);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalArgumentException("unsupported wire type: " + message));
+        return future;
+    }
+
     @Override
     public void commitMessage(MQMessage message) {
         if (message instanceof KafkaMqMessage) {
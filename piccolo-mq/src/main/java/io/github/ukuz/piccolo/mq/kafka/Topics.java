@@ -24,7 +24,8 @@ public enum Topics {
      */
     DISPATCH_MESSAGE("dispatch"),
     ONLINE_MESSAGE("online"),
-    OFFLINE_MESSAGE("offline")
+    OFFLINE_MESSAGE("offline"),
+    CACHE_INVALIDATE("cache-invalidate")
     ;
 
     private final String topic;
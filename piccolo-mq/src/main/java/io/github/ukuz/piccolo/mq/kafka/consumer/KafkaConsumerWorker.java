@@ -16,9 +16,14 @@
 package io.github.ukuz.piccolo.mq.kafka.consumer;
 
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.github.ukuz.piccolo.api.mq.MQMessageReceiver;
+import io.github.ukuz.piccolo.monitor.MetricsMonitor;
+import io.micrometer.core.instrument.Timer;
 import org.apache.kafka.clients.consumer.*;
 import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,24 +31,64 @@ import org.slf4j.LoggerFactory;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * 消费线程，支持两种模式:
+ * 1. 串行模式(parallelism为0)：在消费线程上逐条调用receiver，由业务调用commit提交位点
+ * 2. 并行模式：按消息key(uid)哈希到固定的处理线程，保证同一个key的顺序；receiver返回即视为处理完成，
+ *    每个分区只提交连续完成的位点，分区未完成的消息超过上限时暂停拉取该分区
+ *
  * @author ukuz90
  */
 public class KafkaConsumerWorker implements Runnable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KafkaConsumerWorker.class);
+    private static final String LAG_TAG = "piccolo_mq_consume_lag";
+    private static final String IN_FLIGHT_TAG = "piccolo_mq_consume_in_flight";
+    private static final String RECORDS_LAG = "records-lag";
+    private static final long LAG_REFRESH_INTERVAL_MS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
     private List<String> topics;
     private volatile boolean running = true;
     private final MQMessageReceiver receiver;
     private final ConcurrentMap<TopicPartition, OffsetAndMetadata> offsetMap;
     private final KafkaConsumer consumer;
 
+    private final int parallelism;
+    private final int maxInFlight;
+    private ExecutorService[] lanes;
+    private final ConcurrentMap<TopicPartition, PartitionOffsetTracker> trackers = Maps.newConcurrentMap();
+    private final ConcurrentMap<TopicPartition, Long> lags = Maps.newConcurrentMap();
+    private final Set<TopicPartition> monitored = new HashSet<>();
+    private final Set<TopicPartition> paused = new HashSet<>();
+    private final Map<String, Timer> processTimers = new HashMap<>();
+    private long lastLagRefresh;
+
     public KafkaConsumerWorker(Map<String, Object> properties, List<String> topics, MQMessageReceiver receiver) {
+        this(properties, topics, receiver, 0, 0);
+    }
+
+    public KafkaConsumerWorker(Map<String, Object> properties, List<String> topics, MQMessageReceiver receiver,
+                               int parallelism, int maxInFlight) {
         this.topics = topics;
         this.receiver = receiver;
         this.offsetMap = Maps.newConcurrentMap();
         this.consumer = new KafkaConsumer(properties);
+        this.parallelism = parallelism;
+        this.maxInFlight = maxInFlight;
+        if (isParallel()) {
+            lanes = new ExecutorService[parallelism];
+            for (int i = 0; i < parallelism; i++) {
+                lanes[i] = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("piccolo-mq-consume-" + topics.get(0) + "-" + i)
+                        .setDaemon(true)
+                        .build());
+            }
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -54,6 +99,11 @@ public class KafkaConsumerWorker implements Runnable {
                 @Override
                 public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
                     commitSync(true);
+                    if (isParallel()) {
+                        //被回收的分区上未完成的消息会由新的消费者重新消费
+                        partitions.forEach(trackers::remove);
+                        paused.removeAll(partitions);
+                    }
                 }
 
                 @Override
@@ -63,23 +113,136 @@ public class KafkaConsumerWorker implements Runnable {
             });
             while (isRunning()) {
                 ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(20));
-                records.forEach(record -> {
-                    LOGGER.info("topic: {} partition: {} offset: {} ", record.topic(), record.partition(), record.offset());
-                    receiver.receive(record.topic(), record.value(),
-                            new TopicPartition(record.topic(), record.partition()),
-                            new OffsetAndMetadata(record.offset() + 1));
-                });
+                if (isParallel()) {
+                    dispatch(records);
+                    resumeIfNeeded();
+                    refreshLags();
+                } else {
+                    for (TopicPartition topicPartition : records.partitions()) {
+                        for (ConsumerRecord<String, byte[]> record : records.records(topicPartition)) {
+                            if (LOGGER.isDebugEnabled()) {
+                                LOGGER.debug("topic: {} partition: {} offset: {} ", record.topic(), record.partition(), record.offset());
+                            }
+                            receiver.receive(record.topic(), record.value(), topicPartition, new OffsetAndMetadata(record.offset() + 1));
+                        }
+                    }
+                }
                 commitSync(false);
             }
 
         } catch (Exception e) {
             LOGGER.error("consume failure, err: {}", e.getCause());
         } finally {
+            if (isParallel()) {
+                awaitLanes();
+            }
             commitSync(true);
             consumer.close();
         }
     }
 
+    private boolean isParallel() {
+        return parallelism > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatch(ConsumerRecords<String, byte[]> records) {
+        for (TopicPartition topicPartition : records.partitions()) {
+            PartitionOffsetTracker tracker = trackers.computeIfAbsent(topicPartition, PartitionOffsetTracker::new);
+            monitor(topicPartition);
+            for (ConsumerRecord<String, byte[]> record : records.records(topicPartition)) {
+                tracker.dispatched(record.offset());
+                Timer timer = processTimers.computeIfAbsent(record.topic(), MetricsMonitor::getMqConsumeTime);
+                int lane = ((record.key() != null ? record.key().hashCode() : record.partition()) & Integer.MAX_VALUE) % parallelism;
+                lanes[lane].execute(() -> process(tracker, record, timer));
+            }
+            if (tracker.inFlight() >= maxInFlight && paused.add(topicPartition)) {
+                consumer.pause(Collections.singleton(topicPartition));
+                LOGGER.warn("pause partition because of too many in-flight records, partition: {} inFlight: {}",
+                        topicPartition, tracker.inFlight());
+            }
+        }
+    }
+
+    private void process(PartitionOffsetTracker tracker, ConsumerRecord<String, byte[]> record, Timer timer) {
+        long start = System.nanoTime();
+        try {
+            receiver.receive(record.topic(), record.value(), tracker.getTopicPartition(), new OffsetAndMetadata(record.offset() + 1));
+        } catch (Exception e) {
+            LOGGER.error("consume record failure, topic: {} partition: {} offset: {}", record.topic(), record.partition(), record.offset(), e);
+        } finally {
+            tracker.complete(record.offset());
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resumeIfNeeded() {
+        if (paused.isEmpty()) {
+            return;
+        }
+        Iterator<TopicPartition> it = paused.iterator();
+        while (it.hasNext()) {
+            TopicPartition topicPartition = it.next();
+            PartitionOffsetTracker tracker = trackers.get(topicPartition);
+            if (tracker == null || tracker.inFlight() <= maxInFlight / 2) {
+                it.remove();
+                consumer.resume(Collections.singleton(topicPartition));
+            }
+        }
+    }
+
+    private void monitor(TopicPartition topicPartition) {
+        if (monitored.add(topicPartition)) {
+            String name = String.valueOf(topicPartition.partition());
+            MetricsMonitor.gaugeWithStrongRef(LAG_TAG, topicPartition.topic(), name,
+                    () -> lags.getOrDefault(topicPartition, 0L));
+            MetricsMonitor.gaugeWithStrongRef(IN_FLIGHT_TAG, topicPartition.topic(), name, () -> {
+                PartitionOffsetTracker tracker = trackers.get(topicPartition);
+                return tracker == null ? 0 : tracker.inFlight();
+            });
+        }
+    }
+
+    /**
+     * 从consumer自带的指标中读取分区的堆积量
+     */
+    private void refreshLags() {
+        long now = System.currentTimeMillis();
+        if (now - lastLagRefresh < LAG_REFRESH_INTERVAL_MS) {
+            return;
+        }
+        lastLagRefresh = now;
+        Map<MetricName, ? extends Metric> metrics = consumer.metrics();
+        metrics.forEach((metricName, metric) -> {
+            if (!RECORDS_LAG.equals(metricName.name())) {
+                return;
+            }
+            String topic = metricName.tags().get("topic");
+            String partition = metricName.tags().get("partition");
+            Object value = metric.metricValue();
+            if (topic != null && partition != null && value instanceof Number) {
+                lags.put(new TopicPartition(topic, Integer.parseInt(partition)), ((Number) value).longValue());
+            }
+        });
+    }
+
+    private void awaitLanes() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ExecutorService lane : lanes) {
+                if (!lane.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("consume lanes did not terminate in {}s", SHUTDOWN_TIMEOUT_SECONDS);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public boolean isRunning() {
         return running;
     }
@@ -88,7 +251,20 @@ public class KafkaConsumerWorker implements Runnable {
         this.running = running;
     }
 
+    /**
+     * 串行模式下由业务提交位点，并行模式下位点由处理完成的水位决定，忽略业务的提交
+     *
+     * @param topicPartition
+     * @param offsetAndMetadata
+     */
     public void commit(TopicPartition topicPartition, OffsetAndMetadata offsetAndMetadata) {
+        if (isParallel()) {
+            return;
+        }
+        putOffset(topicPartition, offsetAndMetadata);
+    }
+
+    private void putOffset(TopicPartition topicPartition, OffsetAndMetadata offsetAndMetadata) {
         synchronized (offsetMap) {
             OffsetAndMetadata offset = offsetMap.get(topicPartition);
             if (offset == null) {
@@ -102,6 +278,14 @@ public class KafkaConsumerWorker implements Runnable {
     }
 
     private void commitSync(boolean sync) {
+        if (isParallel()) {
+            trackers.values().forEach(tracker -> {
+                long offset = tracker.takeCommittable();
+                if (offset >= 0) {
+                    putOffset(tracker.getTopicPartition(), new OffsetAndMetadata(offset));
+                }
+            });
+        }
         Map<TopicPartition, OffsetAndMetadata> unmodifiedMap;
         synchronized (offsetMap) {
             if (offsetMap.isEmpty()) {
@@ -124,7 +308,9 @@ public class KafkaConsumerWorker implements Runnable {
         } else {
             consumer.commitAsync(unmodifiedMap, (offsets, exception) -> {
                 if (exception == null) {
-                    LOGGER.info("async commit success, offsets: {}", offsets);
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("async commit success, offsets: {}", offsets);
+                    }
                 } else {
                     LOGGER.error("async commit error, offsets: {} cause: {}", offsets, exception);
                     backupExceptionOffsets(offsets);
@@ -134,7 +320,7 @@ public class KafkaConsumerWorker implements Runnable {
     }
 
     private void backupExceptionOffsets(Map<TopicPartition, OffsetAndMetadata> offsets) {
-        offsets.forEach(this::commit);
+        offsets.forEach(this::putOffset);
     }
 
     private void clearOffsets() {
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.mq.kafka.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 单个分区的位点跟踪：消息可以乱序完成，但只提交连续完成的最大位点(水位)
+ *
+ * @author ukuz90
+ */
+public class PartitionOffsetTracker {
+
+    private final TopicPartition topicPartition;
+    /**
+     * 按分发顺序(位点递增)排列的未完成消息
+     */
+    private final ArrayDeque<Long> pending = new ArrayDeque<>();
+    private final Set<Long> completed = new HashSet<>();
+    /**
+     * 下一个需要提交的位点，-1表示还没有可以提交的位点
+     */
+    private long watermark = -1;
+    private long committed = -1;
+
+    public PartitionOffsetTracker(TopicPartition topicPartition) {
+        this.topicPartition = topicPartition;
+    }
+
+    public TopicPartition getTopicPartition() {
+        return topicPartition;
+    }
+
+    public synchronized void dispatched(long offset) {
+        pending.offer(offset);
+    }
+
+    public synchronized void complete(long offset) {
+        if (pending.isEmpty() || offset < pending.peek()) {
+            return;
+        }
+        completed.add(offset);
+        Long head;
+        while ((head = pending.peek()) != null && completed.remove(head)) {
+            pending.poll();
+            watermark = head + 1;
+        }
+    }
+
+    public synchronized int inFlight() {
+        return pending.size();
+    }
+
+    /**
+     * 获取自上次提交后推进了的水位
+     *
+     * @return 需要提交的位点，没有推进时返回-1
+     */
+    public synchronized long takeCommittable() {
+        if (watermark <= committed) {
+            return -1;
+        }
+        committed = watermark;
+        return watermark;
+    }
+}
@@ -25,6 +25,7 @@ import io.github.ukuz.piccolo.mq.kafka.consumer.KafkaConsumerWorker;
 import io.github.ukuz.piccolo.mq.kafka.producer.KafkaProducerSender;
 import io.github.ukuz.piccolo.mq.kafka.properties.KafkaProperties;
 import io.github.ukuz.piccolo.mq.properties.MQTopicProperties;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
@@ -35,8 +36,11 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
@@ -52,8 +56,10 @@ public class KafkaManager {
     private PiccoloContext context;
     private KafkaProperties kafkaProperties;
     private KafkaProducerSender sender;
+    private KafkaProducerSender asyncSender;
     private KafkaAdmin admin;
     private ConcurrentMap<String, KafkaConsumerWorker> consumers;
+    private final List<KafkaConsumerWorker> broadcastConsumers = new CopyOnWriteArrayList<>();
 
     public KafkaManager(PiccoloContext context) {
         Assert.notNull(context, "context must not be null");
@@ -69,11 +75,21 @@ public class KafkaManager {
         Map<String, Object> adminClientProps = kafkaProperties.buildAdminClientProperties();
         sender = new KafkaProducerSender(producerProps);
         sender.init();
+        //异步发送配置了独立参数时使用单独的producer，避免影响同步发送的阻塞时间与攒批行为
+        if (kafkaProperties.hasAsyncProducerProperties()) {
+            asyncSender = new KafkaProducerSender(kafkaProperties.buildAsyncProducerProperties());
+            asyncSender.init();
+        } else {
+            asyncSender = sender;
+        }
         admin = new KafkaAdmin(topicProperties, adminClientProps);
         admin.init();
     }
 
     public void destroy() {
+        if (asyncSender != null && asyncSender != sender) {
+            asyncSender.destroy();
+        }
         if (sender != null) {
             sender.destroy();
         }
@@ -81,6 +97,7 @@ public class KafkaManager {
             ((ExecutorService) executor).shutdown();
         }
         consumers.forEach((k, consumer) -> consumer.destroy());
+        broadcastConsumers.forEach(KafkaConsumerWorker::destroy);
     }
 
     public void subscribe(String topic, MQMessageReceiver receiver) {
@@ -89,15 +106,39 @@ public class KafkaManager {
                 .map(MQTopic::getTopic)
                 .collect(Collectors.toList());
         Map<String, Object> properties = kafkaProperties.buildConsumerProperties();
-        KafkaConsumerWorker consumer = new KafkaConsumerWorker(properties, newTopics, receiver);
+        KafkaConsumerWorker consumer = new KafkaConsumerWorker(properties, newTopics, receiver,
+                kafkaProperties.getConsumer().getParallelism(), kafkaProperties.getConsumer().getMaxInFlight());
         newTopics.forEach(t -> consumers.computeIfAbsent(t, k -> consumer));
         executor.execute(consumer);
     }
 
+    /**
+     * 每个广播订阅使用独立的消费组，总是从最新位点开始消费
+     *
+     * @param topic
+     * @param receiver
+     */
+    public void subscribeBroadcast(String topic, MQMessageReceiver receiver) {
+        List<String> newTopics = Arrays.stream(topic.split(","))
+                .map(MQTopic::getTopic)
+                .collect(Collectors.toList());
+        Map<String, Object> properties = kafkaProperties.buildConsumerProperties();
+        properties.put(ConsumerConfig.GROUP_ID_CONFIG, properties.get(ConsumerConfig.GROUP_ID_CONFIG) + "-broadcast-" + UUID.randomUUID());
+        properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        KafkaConsumerWorker consumer = new KafkaConsumerWorker(properties, newTopics, receiver);
+        broadcastConsumers.add(consumer);
+        executor.execute(consumer);
+    }
+
     public void publish(String topic, String key, Object message) {
         sender.send(MQTopic.getTopic(topic), key, (byte[])message, null);
     }
 
+    public CompletableFuture<Void> publishAsync(String topic, String key, byte[] message) {
+        return asyncSender.sendAsync(MQTopic.getTopic(topic), key, message);
+    }
+
     public void addTopicIfNeeded(MQTopic topic) {
         admin.addTopicIfNeeded(topic);
     }
@@ -110,7 +151,9 @@ public class KafkaManager {
         if (consumer == null) {
             LOGGER.error("can not found topic: {}'s consumer", topic);
         } else {
-            LOGGER.info("commitOffset topicPartition: {} offsetAndMetadata: {}", topicPartition, offsetAndMetadata);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("commitOffset topicPartition: {} offsetAndMetadata: {}", topicPartition, offsetAndMetadata);
+            }
             consumer.commit(topicPartition, offsetAndMetadata);
         }
     }
@@ -15,15 +15,18 @@
  */
 package io.github.ukuz.piccolo.mq.kafka.producer;
 
+import io.github.ukuz.piccolo.api.mq.MQBusyException;
 import io.github.ukuz.piccolo.api.service.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author ukuz90
@@ -60,6 +63,36 @@ public class KafkaProducerSender {
         }));
     }
 
+    /**
+     * 异步发送，producer的缓冲区已满(等待超过max.block.ms)时以{@link MQBusyException}失败，不在调用线程上重试
+     *
+     * @param topic
+     * @param key
+     * @param content
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Void> sendAsync(String topic, String key, byte[] content) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, key, content);
+        try {
+            producer.send(record, ((metadata, exception) -> {
+                if (exception == null) {
+                    future.complete(null);
+                } else if (exception instanceof TimeoutException) {
+                    future.completeExceptionally(new MQBusyException(exception.getMessage(), exception));
+                } else {
+                    LOGGER.error("producer send failure, topic: {} cause: {}", topic, exception);
+                    future.completeExceptionally(exception);
+                }
+            }));
+        } catch (Exception e) {
+            LOGGER.error("producer send failure, topic: {} cause: {}", topic, e);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     public void destroy() {
         if (producer != null) {
             producer.close();
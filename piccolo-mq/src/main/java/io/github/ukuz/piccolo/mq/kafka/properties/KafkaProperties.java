@@ -54,8 +54,31 @@ public class KafkaProperties implements Properties {
         private Integer retries;
         private Integer retriesBackoffMs;
         private Integer requestTimeoutMs;
+        private Integer bufferMemory;
+        private Integer maxBlockMs;
+        /**
+         * 异步发送(上行消息批量发布)使用独立的producer，以下参数只作用于该producer，
+         * 同步发送(踢人、上下线等)不受影响
+         */
+        private Integer asyncMaxBlockMs;
+        private Integer asyncLingerMs;
         private final HashMap<String, Object> properties = new HashMap<>();
 
+        public boolean hasAsyncProperties() {
+            return asyncMaxBlockMs != null || asyncLingerMs != null;
+        }
+
+        public Map<String, Object> buildAsyncProperties() {
+            Map<String, Object> props = buildProperties();
+            if (asyncMaxBlockMs != null) {
+                props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, asyncMaxBlockMs);
+            }
+            if (asyncLingerMs != null) {
+                props.put(ProducerConfig.LINGER_MS_CONFIG, asyncLingerMs);
+            }
+            return props;
+        }
+
         public Map<String, Object> buildProperties() {
             NestedProperties props = new NestedProperties();
             PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
@@ -80,6 +103,10 @@ public class KafkaProperties implements Properties {
             map.from(this::getRetriesBackoffMs).to(props.in(ProducerConfig.RETRY_BACKOFF_MS_CONFIG));
             //发送到broker，broker的响应时间上限（默认30秒）
             map.from(this::getRequestTimeoutMs).to(props.in(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG));
+            //producer的缓冲区大小（默认32M）
+            map.from(this::getBufferMemory).to(props.in(ProducerConfig.BUFFER_MEMORY_CONFIG));
+            //缓冲区满或者获取元数据时send的最大阻塞时间（默认60秒）
+            map.from(this::getMaxBlockMs).to(props.in(ProducerConfig.MAX_BLOCK_MS_CONFIG));
 
             return props.with(properties);
         }
@@ -100,9 +127,25 @@ public class KafkaProperties implements Properties {
         private Integer maxPollRecords;
         private Integer heartbeatIntervalMs;
         private Integer connectionsIntervalMs;
+        /**
+         * 并行消费的线程数，相同key的消息在同一个线程上按顺序处理，0表示在消费线程上串行处理
+         */
+        private Integer parallelism;
+        /**
+         * 并行消费时单个分区允许未完成的最大消息数，超过后暂停拉取该分区
+         */
+        private Integer maxInFlight;
 
         private final HashMap<String, Object> properties = new HashMap<>();
 
+        public int getParallelism() {
+            return parallelism != null && parallelism > 0 ? parallelism : 0;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight != null && maxInFlight > 0 ? maxInFlight : 1000;
+        }
+
         public Map<String, Object> buildProperties() {
             NestedProperties props = new NestedProperties();
             PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
@@ -152,6 +195,14 @@ public class KafkaProperties implements Properties {
         return producer.buildProperties();
     }
 
+    public Map<String, Object> buildAsyncProducerProperties() {
+        return producer.buildAsyncProperties();
+    }
+
+    public boolean hasAsyncProducerProperties() {
+        return producer.hasAsyncProperties();
+    }
+
     public Map<String, Object> buildConsumerProperties() {
         return consumer.buildProperties();
     }
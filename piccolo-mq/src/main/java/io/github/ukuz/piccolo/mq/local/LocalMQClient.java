@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.mq.local;
+
+import io.github.ukuz.piccolo.api.PiccoloContext;
+import io.github.ukuz.piccolo.api.mq.MQBusyException;
+import io.github.ukuz.piccolo.api.mq.MQClient;
+import io.github.ukuz.piccolo.api.mq.MQMessage;
+import io.github.ukuz.piccolo.api.mq.MQMessageReceiver;
+import io.github.ukuz.piccolo.api.mq.MQTopic;
+import io.github.ukuz.piccolo.api.service.AbstractService;
+import io.github.ukuz.piccolo.api.service.ServiceException;
+import io.github.ukuz.piccolo.mq.kafka.KafkaMqMessage;
+import io.github.ukuz.piccolo.mq.local.properties.LocalMQProperties;
+import io.github.ukuz.piccolo.mq.properties.MQTopicProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内的MQ实现，用于单节点或者业务服务与网关同进程部署，无需依赖kafka
+ *
+ * 投递给订阅者的attachment与kafka一致(TopicPartition, OffsetAndMetadata)，
+ * 订阅者构造的{@link KafkaMqMessage}消费完成后同样通过{@link #commitMessage(MQMessage)}提交
+ *
+ * @author ukuz90
+ */
+public class LocalMQClient extends AbstractService implements MQClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalMQClient.class);
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final ConcurrentMap<String, LocalTopic> topics = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private LocalMQProperties properties;
+
+    @Override
+    public void init(PiccoloContext context) throws ServiceException {
+        init(context.getProperties(LocalMQProperties.class));
+        MQTopicProperties topicProperties = context.getProperties(MQTopicProperties.class);
+        topicProperties.getAllTopics().forEach(this::addTopicIfNeeded);
+    }
+
+    void init(LocalMQProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void destroy() throws ServiceException {
+        topics.values().forEach(LocalTopic::shutdown);
+        topics.clear();
+    }
+
+    @Override
+    public void addTopicIfNeeded(MQTopic topic) {
+        LocalTopic localTopic = topics.computeIfAbsent(topic.getTopic(), t -> newTopic(t, topic.getNumPartitions()));
+        if (localTopic.numPartitions() != topic.getNumPartitions()) {
+            LOGGER.warn("topic already exists, ignore partitions, topic: {} partitions: {} expect: {}",
+                    topic.getTopic(), localTopic.numPartitions(), topic.getNumPartitions());
+        }
+    }
+
+    @Override
+    public void subscribe(String topic, MQMessageReceiver receiver) {
+        for (String t : topic.split(",")) {
+            topicOf(t).subscribe(receiver);
+        }
+    }
+
+    @Override
+    public void subscribeBroadcast(String topic, MQMessageReceiver receiver) {
+        for (String t : topic.split(",")) {
+            topicOf(t).subscribeBroadcast(receiver);
+        }
+    }
+
+    @Override
+    public void publish(String topic, Object message) {
+        publish(topic, null, message);
+    }
+
+    @Override
+    public void publish(String topic, String key, Object message) {
+        byte[] value = toBytes(message);
+        if (value == null) {
+            LOGGER.warn("publish failure with a unsupported wire type, topic: {}, message: {}", topic, message);
+            return;
+        }
+        LocalTopic localTopic = topicOf(topic);
+        if (localTopic.publish(key, value)) {
+            return;
+        }
+        //与kafka producer的max.block.ms一致，缓冲区满时最多阻塞一段时间
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getMaxBlockMs());
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            if (localTopic.publish(key, value)) {
+                return;
+            }
+        }
+        long count = dropped.getAndIncrement();
+        if (count % 1000 == 0) {
+            LOGGER.warn("topic buffer is full, drop message, topic: {} dropped: {}", topic, count + 1);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> publishAsync(String topic, String key, Object message) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        byte[] value = toBytes(message);
+        if (value == null) {
+            future.completeExceptionally(new IllegalArgumentException("unsupported wire type: " + message));
+        } else if (topicOf(topic).publish(key, value)) {
+            future.complete(null);
+        } else {
+            future.completeExceptionally(new MQBusyException("topic buffer is full, topic: " + topic, null));
+        }
+        return future;
+    }
+
+    @Override
+    public void commitMessage(MQMessage message) {
+        if (message instanceof KafkaMqMessage) {
+            KafkaMqMessage kafkaMqMessage = (KafkaMqMessage) message;
+            LocalTopic localTopic = topics.get(kafkaMqMessage.getTopic());
+            LocalPartition partition = localTopic == null ? null : localTopic.partition(kafkaMqMessage.getPartition());
+            if (partition == null) {
+                LOGGER.error("can not found topic: {} partition: {}", kafkaMqMessage.getTopic(), kafkaMqMessage.getPartition());
+                return;
+            }
+            partition.commit(kafkaMqMessage.getOffset());
+        } else {
+            LOGGER.error("commit unsupported wire type: {}", message);
+        }
+    }
+
+    /**
+     * @param topic
+     * @param partition
+     * @return 已提交的offset，即下一条待消费消息的offset
+     */
+    public long getCommittedOffset(String topic, int partition) {
+        LocalTopic localTopic = topics.get(MQTopic.getTopic(topic));
+        LocalPartition localPartition = localTopic == null ? null : localTopic.partition(partition);
+        return localPartition == null ? 0 : localPartition.getCommittedOffset();
+    }
+
+    private LocalTopic topicOf(String topic) {
+        String name = MQTopic.getTopic(topic);
+        LocalTopic localTopic = topics.get(name);
+        return localTopic != null ? localTopic : topics.computeIfAbsent(name, t -> newTopic(t, properties.getPartitions()));
+    }
+
+    private LocalTopic newTopic(String name, int numPartitions) {
+        LOGGER.info("create local topic: {} partitions: {}", name, numPartitions);
+        return new LocalTopic(name, Math.max(1, numPartitions), properties.getCapacity(),
+                properties.getSpillDir(), properties.getMaxSpillBytes());
+    }
+
+    private static byte[] toBytes(Object message) {
+        if (message instanceof byte[]) {
+            return (byte[]) message;
+        } else if (message instanceof String) {
+            return ((String) message).getBytes(StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    @Override
+    protected String getName() {
+        return "local mq client";
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.mq.local;
+
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 进程内topic的单个分区:
+ * 1. 多生产者单消费者的无锁环形缓冲区，生产者CAS占位后写入槽位，消费者按顺序取出
+ * 2. 缓冲区满且开启溢出时写入溢出文件，溢出期间的新消息都写入文件，消费者取完缓冲区后再读文件，保证顺序
+ * 3. offset在投递时按顺序分配，提交语义与kafka一致: 提交的offset为下一条待消费消息的offset
+ * 4. 溢出文件中的记录提交后才会删除，重启后从已提交的位置继续投递；缓冲区中的消息不落盘，重启后丢失
+ *
+ * @author ukuz90
+ */
+final class LocalPartition {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalPartition.class);
+
+    private final TopicPartition topicPartition;
+    private final AtomicReferenceArray<LocalRecord> buffer;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+    private final AtomicLong committedOffset = new AtomicLong();
+    private final LocalSpillFile spillFile;
+    private final long maxSpillBytes;
+    private final Object spillLock = new Object();
+    private final List<LocalRecord> spillBatch = new ArrayList<>();
+    /**
+     * 已投递的溢出记录区间 {起始offset, 起始序号, 条数}，用于把提交的offset换算为溢出文件的提交位置
+     */
+    private final ArrayDeque<long[]> spillSegments = new ArrayDeque<>();
+    private volatile boolean spilling;
+    /**
+     * 只在消费线程上访问
+     */
+    private long nextOffset;
+
+    LocalPartition(TopicPartition topicPartition, int capacity, LocalSpillFile spillFile, long maxSpillBytes) {
+        this.topicPartition = topicPartition;
+        this.capacity = roundToPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        this.buffer = new AtomicReferenceArray<>(this.capacity);
+        this.spillFile = spillFile;
+        this.maxSpillBytes = maxSpillBytes;
+        if (spillFile != null) {
+            try {
+                long recovered = spillFile.recover();
+                if (recovered > 0) {
+                    LOGGER.info("recover spilled records, partition: {} records: {}", topicPartition, recovered);
+                    spilling = true;
+                }
+            } catch (IOException e) {
+                LOGGER.error("recover spill file failure, partition: {}", topicPartition, e);
+                spillFile.reset();
+            }
+        }
+    }
+
+    TopicPartition getTopicPartition() {
+        return topicPartition;
+    }
+
+    /**
+     * @param record
+     * @return false表示缓冲区已满且无法溢出
+     */
+    boolean offer(LocalRecord record) {
+        if (!spilling && offerRing(record)) {
+            return true;
+        }
+        return spillFile != null && spill(record);
+    }
+
+    /**
+     * 取出最多max条消息投递，只能在消费线程上调用
+     *
+     * @param max
+     * @param consumer
+     * @return 投递的消息数
+     */
+    int drain(int max, RecordConsumer consumer) {
+        int n = 0;
+        while (n < max) {
+            long index = consumerIndex.get();
+            int slot = (int) (index & mask);
+            LocalRecord record = buffer.get(slot);
+            if (record == null) {
+                //缓冲区为空，或者生产者已占位但还未写入
+                break;
+            }
+            buffer.lazySet(slot, null);
+            consumerIndex.lazySet(index + 1);
+            consumer.accept(this, record, nextOffset++);
+            n++;
+        }
+        if (n < max && spilling) {
+            n += drainSpill(max - n, consumer);
+        }
+        return n;
+    }
+
+    boolean hasPending() {
+        return spilling || producerIndex.get() != consumerIndex.get();
+    }
+
+    long backlog() {
+        long backlog = producerIndex.get() - consumerIndex.get();
+        if (spilling) {
+            synchronized (spillLock) {
+                backlog += spillFile.remaining();
+            }
+        }
+        return backlog;
+    }
+
+    void commit(long offset) {
+        committedOffset.accumulateAndGet(offset, Math::max);
+        if (spillFile != null) {
+            synchronized (spillLock) {
+                commitSpill(offset);
+            }
+        }
+    }
+
+    long getCommittedOffset() {
+        return committedOffset.get();
+    }
+
+    void close() {
+        if (spillFile != null) {
+            synchronized (spillLock) {
+                //保留未提交的溢出文件，重启后继续投递
+                spillFile.persistCommit();
+                spillFile.close();
+            }
+        }
+    }
+
+    private boolean offerRing(LocalRecord record) {
+        long index;
+        do {
+            index = producerIndex.get();
+            if (index - consumerIndex.get() >= capacity) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(index, index + 1));
+        buffer.set((int) (index & mask), record);
+        return true;
+    }
+
+    private boolean spill(LocalRecord record) {
+        synchronized (spillLock) {
+            //加锁后再次检查，消费者可能刚好读完溢出文件
+            if (!spilling && offerRing(record)) {
+                return true;
+            }
+            if (spillFile.getWrittenBytes() >= maxSpillBytes) {
+                if (spillFile.hasRemaining()) {
+                    return false;
+                }
+                //已全部投递但未提交的记录超过上限，与kafka的保留策略一样直接丢弃
+                LOGGER.warn("uncommitted spill records exceed limit, discard, partition: {}", topicPartition);
+                spillFile.reset();
+                spillSegments.clear();
+            }
+            try {
+                spillFile.append(record);
+                if (!spilling) {
+                    LOGGER.warn("partition buffer is full, spill to disk, partition: {}", topicPartition);
+                    spilling = true;
+                }
+                return true;
+            } catch (IOException e) {
+                LOGGER.error("spill record failure, partition: {}", topicPartition, e);
+                return false;
+            }
+        }
+    }
+
+    private int drainSpill(int max, RecordConsumer consumer) {
+        synchronized (spillLock) {
+            long seq = spillFile.getReadCount();
+            try {
+                LocalRecord record;
+                while (spillBatch.size() < max && (record = spillFile.read()) != null) {
+                    spillBatch.add(record);
+                }
+            } catch (IOException e) {
+                LOGGER.error("read spill file failure, drop remaining records, partition: {} remaining: {}",
+                        topicPartition, spillFile.remaining(), e);
+                spillFile.reset();
+                spillSegments.clear();
+                seq = -1;
+            }
+            //读取失败时文件已删除，已读出的记录无需再提交
+            if (seq >= 0 && !spillBatch.isEmpty()) {
+                spillSegments.offer(new long[]{nextOffset, seq, spillBatch.size()});
+            }
+            if (!spillFile.hasRemaining()) {
+                //溢出文件已读完，之后的消息重新写入缓冲区，文件在全部提交后删除
+                spilling = false;
+            }
+            spillFile.persistCommit();
+        }
+        int n = spillBatch.size();
+        for (LocalRecord record : spillBatch) {
+            consumer.accept(this, record, nextOffset++);
+        }
+        spillBatch.clear();
+        return n;
+    }
+
+    private void commitSpill(long offset) {
+        long[] segment;
+        while ((segment = spillSegments.peek()) != null && segment[0] < offset) {
+            long count = Math.min(segment[2], offset - segment[0]);
+            spillFile.commit(segment[1] + count);
+            if (count < segment[2]) {
+                break;
+            }
+            spillSegments.poll();
+        }
+        if (!spilling && spillFile.isFullyCommitted()) {
+            spillFile.reset();
+        }
+    }
+
+    private static int roundToPowerOfTwo(int value) {
+        int v = Math.max(2, value);
+        int n = Integer.highestOneBit(v);
+        return n == v ? n : n << 1;
+    }
+
+    @FunctionalInterface
+    interface RecordConsumer {
+
+        void accept(LocalPartition partition, LocalRecord record, long offset);
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.mq.local;
+
+/**
+ * @author ukuz90
+ */
+final class LocalRecord {
+
+    final String key;
+    final byte[] value;
+
+    LocalRecord(String key, byte[] value) {
+        this.key = key;
+        this.value = value;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.mq.local;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 分区缓冲区满时的溢出文件，只追加写、顺序读，全部提交后删除
+ *
+ * 记录格式: keyLen(4, -1表示null) | key | valueLen(4) | value
+ *
+ * 已提交的记录数保存在同名的.commit文件中，重启后从该位置继续读取；
+ * 提交位置并非每次提交都落盘，异常退出时最近提交的记录会被重复投递(at-least-once)；
+ * 已投递但一直未提交的记录在文件达到上限时丢弃
+ *
+ * 非线程安全，由{@link LocalPartition}加锁访问
+ *
+ * @author ukuz90
+ */
+final class LocalSpillFile implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalSpillFile.class);
+
+    private static final String COMMIT_SUFFIX = ".commit";
+
+    private final File file;
+    private final File commitFile;
+    private DataOutputStream writer;
+    private DataInputStream reader;
+    private long writeCount;
+    private long readCount;
+    private long committedCount;
+    private long persistedCount;
+    private long writtenBytes;
+
+    LocalSpillFile(File file) {
+        this.file = file;
+        this.commitFile = new File(file.getPath() + COMMIT_SUFFIX);
+    }
+
+    /**
+     * 恢复上次进程退出时未提交的记录，截断末尾不完整的记录
+     *
+     * @return 可读的记录数
+     * @throws IOException
+     */
+    long recover() throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        long count = 0;
+        long validBytes = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int keyLen = in.readInt();
+                skipFully(in, Math.max(keyLen, 0));
+                int valueLen = in.readInt();
+                skipFully(in, valueLen);
+                count++;
+                validBytes += 8 + Math.max(keyLen, 0) + valueLen;
+            }
+        } catch (EOFException e) {
+            //读到文件末尾
+        }
+        if (validBytes < file.length()) {
+            LOGGER.warn("truncate incomplete spill records, file: {} length: {} valid: {}", file, file.length(), validBytes);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validBytes);
+            }
+        }
+        long committed = Math.min(readCommitted(), count);
+        if (committed == count) {
+            reset();
+            return 0;
+        }
+        writeCount = count;
+        writtenBytes = validBytes;
+        //跳过已提交的记录
+        while (readCount < committed) {
+            read();
+        }
+        committedCount = committed;
+        persistedCount = committed;
+        return count - committed;
+    }
+
+    void append(LocalRecord record) throws IOException {
+        if (writer == null) {
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs() && !dir.exists()) {
+                throw new IOException("can not create spill dir: " + dir);
+            }
+            writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        }
+        if (record.key == null) {
+            writer.writeInt(-1);
+            writtenBytes += 4;
+        } else {
+            byte[] key = record.key.getBytes(StandardCharsets.UTF_8);
+            writer.writeInt(key.length);
+            writer.write(key);
+            writtenBytes += 4 + key.length;
+        }
+        writer.writeInt(record.value.length);
+        writer.write(record.value);
+        //写完整条记录后再flush，读取时不会读到半条记录
+        writer.flush();
+        writtenBytes += 4 + record.value.length;
+        writeCount++;
+    }
+
+    LocalRecord read() throws IOException {
+        if (readCount >= writeCount) {
+            return null;
+        }
+        if (reader == null) {
+            reader = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+        int keyLen = reader.readInt();
+        String key = null;
+        if (keyLen >= 0) {
+            byte[] keyBytes = new byte[keyLen];
+            reader.readFully(keyBytes);
+            key = new String(keyBytes, StandardCharsets.UTF_8);
+        }
+        byte[] value = new byte[reader.readInt()];
+        reader.readFully(value);
+        readCount++;
+        return new LocalRecord(key, value);
+    }
+
+    boolean hasRemaining() {
+        return readCount < writeCount;
+    }
+
+    long remaining() {
+        return writeCount - readCount;
+    }
+
+    long getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * @param count 从文件头开始已提交的记录数，不能超过已读取的记录数
+     */
+    void commit(long count) {
+        committedCount = Math.max(committedCount, Math.min(count, readCount));
+    }
+
+    boolean isFullyCommitted() {
+        return writeCount > 0 && committedCount >= writeCount;
+    }
+
+    /**
+     * 提交位置落盘，写入不完整时重启后从头读取
+     */
+    void persistCommit() {
+        if (committedCount == persistedCount || writeCount == 0) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(commitFile))) {
+            out.writeLong(committedCount);
+            persistedCount = committedCount;
+        } catch (IOException e) {
+            LOGGER.warn("persist spill commit failure, file: {} cause: {}", commitFile, e.getMessage());
+        }
+    }
+
+    long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * 全部提交后删除文件
+     */
+    void reset() {
+        close();
+        if (file.exists() && !file.delete()) {
+            LOGGER.warn("delete spill file failure, file: {}", file);
+        }
+        if (commitFile.exists() && !commitFile.delete()) {
+            LOGGER.warn("delete spill commit file failure, file: {}", commitFile);
+        }
+        writeCount = 0;
+        readCount = 0;
+        committedCount = 0;
+        persistedCount = 0;
+        writtenBytes = 0;
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(writer);
+        closeQuietly(reader);
+        writer = null;
+        reader = null;
+    }
+
+    private long readCommitted() {
+        if (!commitFile.exists()) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(commitFile))) {
+            return Math.max(in.readLong(), 0);
+        } catch (IOException e) {
+            LOGGER.warn("read spill commit failure, replay from start, file: {} cause: {}", commitFile, e.getMessage());
+            return 0;
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int len) throws IOException {
+        int remaining = len;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LOGGER.warn("close spill stream failure, cause: {}", e.getMessage());
+            }
+        }
+    }
+}
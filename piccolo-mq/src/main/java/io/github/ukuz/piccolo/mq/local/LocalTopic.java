@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.mq.local;
+
+import io.github.ukuz.piccolo.api.mq.MQMessageReceiver;
+import io.github.ukuz.piccolo.monitor.MetricsMonitor;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内的topic，所有分区由同一个消费线程按顺序投递，
+ * 有多个订阅者时按分区分配给订阅者，与kafka同一个消费组内的分配方式一致
+ *
+ * @author ukuz90
+ */
+final class LocalTopic implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalTopic.class);
+
+    private static final String BACKLOG_TAG = "piccolo_mq_local_backlog";
+    private static final int MAX_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SHUTDOWN_TIMEOUT_MS = 3000;
+
+    private final String name;
+    private final LocalPartition[] partitions;
+    private final List<MQMessageReceiver> receivers = new CopyOnWriteArrayList<>();
+    private final List<MQMessageReceiver> broadcastReceivers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final Timer consumeTime;
+    private volatile Thread consumer;
+    private volatile boolean waiting;
+    private volatile boolean running;
+
+    LocalTopic(String name, int numPartitions, int capacity, String spillDir, long maxSpillBytes) {
+        this.name = name;
+        this.partitions = new LocalPartition[numPartitions];
+        for (int i = 0; i < numPartitions; i++) {
+            LocalSpillFile spillFile = spillDir == null || spillDir.trim().isEmpty() ? null : new LocalSpillFile(new File(spillDir, name + "-" + i + ".spill"));
+            LocalPartition partition = new LocalPartition(new TopicPartition(name, i), capacity, spillFile, maxSpillBytes);
+            partitions[i] = partition;
+            MetricsMonitor.gaugeWithStrongRef(BACKLOG_TAG, name, String.valueOf(i), partition::backlog);
+        }
+        this.consumeTime = MetricsMonitor.getMqConsumeTime(name);
+    }
+
+    int numPartitions() {
+        return partitions.length;
+    }
+
+    LocalPartition partition(int partition) {
+        return partition >= 0 && partition < partitions.length ? partitions[partition] : null;
+    }
+
+    /**
+     * @param key
+     * @param value
+     * @return false表示分区已满
+     */
+    boolean publish(String key, byte[] value) {
+        if (!partitionOf(key).offer(new LocalRecord(key, value))) {
+            return false;
+        }
+        if (waiting) {
+            Thread t = consumer;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+        return true;
+    }
+
+    synchronized void subscribe(MQMessageReceiver receiver) {
+        receivers.add(receiver);
+        startIfNeeded();
+    }
+
+    synchronized void subscribeBroadcast(MQMessageReceiver receiver) {
+        broadcastReceivers.add(receiver);
+        startIfNeeded();
+    }
+
+    private void startIfNeeded() {
+        if (consumer == null) {
+            running = true;
+            Thread t = new Thread(this, "piccolo-mq-local-" + name);
+            t.setDaemon(true);
+            consumer = t;
+            t.start();
+        }
+    }
+
+    synchronized void shutdown() {
+        running = false;
+        Thread t = consumer;
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join(SHUTDOWN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            consumer = null;
+        }
+        for (LocalPartition partition : partitions) {
+            partition.close();
+        }
+    }
+
+    @Override
+    public void run() {
+        LocalPartition.RecordConsumer deliver = this::deliver;
+        while (running) {
+            int n = 0;
+            for (LocalPartition partition : partitions) {
+                n += partition.drain(MAX_BATCH, deliver);
+            }
+            if (n == 0) {
+                //先声明等待再检查，避免与生产者的唤醒错过
+                waiting = true;
+                if (running && !hasPending()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                waiting = false;
+            }
+        }
+    }
+
+    private void deliver(LocalPartition partition, LocalRecord record, long offset) {
+        TopicPartition topicPartition = partition.getTopicPartition();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("topic: {} partition: {} offset: {} ", name, topicPartition.partition(), offset);
+        }
+        if (!receivers.isEmpty()) {
+            deliver(receivers.get(topicPartition.partition() % receivers.size()), topicPartition, record, offset);
+        }
+        for (MQMessageReceiver receiver : broadcastReceivers) {
+            deliver(receiver, topicPartition, record, offset);
+        }
+    }
+
+    private void deliver(MQMessageReceiver receiver, TopicPartition topicPartition, LocalRecord record, long offset) {
+        long start = System.nanoTime();
+        try {
+            receiver.receive(name, record.value, topicPartition, new OffsetAndMetadata(offset + 1));
+        } catch (Exception e) {
+            LOGGER.error("consume record failure, topic: {} partition: {} offset: {}", name, topicPartition.partition(), offset, e);
+        } finally {
+            consumeTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean hasPending() {
+        for (LocalPartition partition : partitions) {
+            if (partition.hasPending()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private LocalPartition partitionOf(String key) {
+        if (partitions.length == 1) {
+            return partitions[0];
+        }
+        int hash = key == null ? roundRobin.getAndIncrement() : key.hashCode();
+        return partitions[(hash & Integer.MAX_VALUE) % partitions.length];
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.mq.local.properties;
+
+import io.github.ukuz.piccolo.api.config.ConfigurationProperties;
+import io.github.ukuz.piccolo.api.config.Properties;
+import lombok.Data;
+
+/**
+ * 进程内MQ的配置
+ *
+ * @author ukuz90
+ */
+@ConfigurationProperties(prefix = "piccolo.local-mq")
+@Data
+public class LocalMQProperties implements Properties {
+
+    /**
+     * 未通过{@link io.github.ukuz.piccolo.api.mq.MQClient#addTopicIfNeeded}声明的topic的分区数
+     */
+    private Integer partitions;
+    /**
+     * 单个分区环形缓冲区的容量，会向上取整为2的幂
+     */
+    private Integer capacity;
+    /**
+     * 缓冲区满时同步发布的最大阻塞时间
+     */
+    private Integer maxBlockMs;
+    /**
+     * 缓冲区满时溢出到磁盘的目录，为空表示不溢出
+     */
+    private String spillDir;
+    /**
+     * 单个分区溢出文件的最大字节数
+     */
+    private Long maxSpillBytes;
+
+    public int getPartitions() {
+        return partitions != null && partitions > 0 ? partitions : 1;
+    }
+
+    public int getCapacity() {
+        return capacity != null && capacity > 0 ? capacity : 65536;
+    }
+
+    public int getMaxBlockMs() {
+        return maxBlockMs != null && maxBlockMs >= 0 ? maxBlockMs : 100;
+    }
+
+    public long getMaxSpillBytes() {
+        return maxSpillBytes != null && maxSpillBytes > 0 ? maxSpillBytes : 1024L * 1024 * 1024;
+    }
+
+}
@@ -66,9 +66,9 @@ public class MQTopicProperties implements Properties {
 
     public List<MQTopic> getAllTopics() {
         List<MQTopic> list = new ArrayList<>();
-        Optional.of(dispatch.build(DISPATCH_MESSAGE.getTopic())).ifPresent(list::add);
-        Optional.of(online.build(ONLINE_MESSAGE.getTopic())).ifPresent(list::add);
-        Optional.of(offline.build(OFFLINE_MESSAGE.getTopic())).ifPresent(list::add);
+        Optional.ofNullable(dispatch).map(p -> p.build(DISPATCH_MESSAGE.getTopic())).ifPresent(list::add);
+        Optional.ofNullable(online).map(p -> p.build(ONLINE_MESSAGE.getTopic())).ifPresent(list::add);
+        Optional.ofNullable(offline).map(p -> p.build(OFFLINE_MESSAGE.getTopic())).ifPresent(list::add);
         Optional.ofNullable(routes).ifPresent(
                 val -> val.forEach((prop) -> list.add(prop.build()))
         );
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.mq.kafka.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionOffsetTrackerTest {
+
+    @DisplayName("test_commitContiguousWatermark")
+    @Test
+    void testCommitContiguousWatermark() {
+        PartitionOffsetTracker tracker = new PartitionOffsetTracker(new TopicPartition("t", 0));
+        for (long offset = 10; offset < 15; offset++) {
+            tracker.dispatched(offset);
+        }
+        assertEquals(5, tracker.inFlight());
+        assertEquals(-1, tracker.takeCommittable());
+
+        //乱序完成，11完成但10未完成，不能提交
+        tracker.complete(11);
+        tracker.complete(13);
+        assertEquals(-1, tracker.takeCommittable());
+        assertEquals(5, tracker.inFlight());
+
+        tracker.complete(10);
+        assertEquals(12, tracker.takeCommittable());
+        assertEquals(-1, tracker.takeCommittable());
+        assertEquals(3, tracker.inFlight());
+
+        tracker.complete(12);
+        tracker.complete(14);
+        assertEquals(15, tracker.takeCommittable());
+        assertEquals(0, tracker.inFlight());
+    }
+
+}
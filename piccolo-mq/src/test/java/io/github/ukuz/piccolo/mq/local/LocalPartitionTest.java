@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.mq.local;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalPartitionTest {
+
+    @DisplayName("test_offerWhenFullWithoutSpill")
+    @Test
+    void testOfferWhenFullWithoutSpill() {
+        LocalPartition partition = new LocalPartition(new TopicPartition("t", 0), 2, null, 0);
+        assertTrue(partition.offer(record("a")));
+        assertTrue(partition.offer(record("b")));
+        assertFalse(partition.offer(record("c")));
+
+        List<String> values = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        assertEquals(2, partition.drain(10, (p, r, offset) -> {
+            values.add(new String(r.value, StandardCharsets.UTF_8));
+            offsets.add(offset);
+        }));
+        assertEquals(2, values.size());
+        assertEquals("a", values.get(0));
+        assertEquals(1L, (long) offsets.get(1));
+        assertFalse(partition.hasPending());
+        assertTrue(partition.offer(record("c")));
+    }
+
+    @DisplayName("test_spillKeepOrder")
+    @Test
+    void testSpillKeepOrder(@TempDir File dir) {
+        File file = new File(dir, "t-0.spill");
+        LocalPartition partition = new LocalPartition(new TopicPartition("t", 0), 2, new LocalSpillFile(file), 1024);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(partition.offer(record(String.valueOf(i))));
+        }
+        assertTrue(file.exists());
+        assertEquals(5, partition.backlog());
+
+        List<String> values = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        while (partition.hasPending()) {
+            partition.drain(1, (p, r, offset) -> {
+                values.add(new String(r.value, StandardCharsets.UTF_8));
+                offsets.add(offset);
+            });
+        }
+        assertEquals("[0, 1, 2, 3, 4]", values.toString());
+        //溢出文件读完后保留到全部提交，新消息重新写入缓冲区
+        assertTrue(file.exists());
+        assertTrue(partition.offer(record("5")));
+        partition.commit(offsets.get(4) + 1);
+        assertFalse(file.exists());
+    }
+
+    @DisplayName("test_recoverSpill")
+    @Test
+    void testRecoverSpill(@TempDir File dir) {
+        File file = new File(dir, "t-0.spill");
+        LocalPartition partition = new LocalPartition(new TopicPartition("t", 0), 2, new LocalSpillFile(file), 1024);
+        for (int i = 0; i < 4; i++) {
+            partition.offer(record(String.valueOf(i)));
+        }
+        partition.close();
+
+        //重启后缓冲区中的消息丢失，溢出文件中的消息继续投递
+        LocalPartition recovered = new LocalPartition(new TopicPartition("t", 0), 2, new LocalSpillFile(file), 1024);
+        List<String> values = new ArrayList<>();
+        while (recovered.hasPending()) {
+            recovered.drain(10, (p, r, offset) -> values.add(new String(r.value, StandardCharsets.UTF_8)));
+        }
+        assertEquals("[2, 3]", values.toString());
+    }
+
+    @DisplayName("test_recoverFromCommitted")
+    @Test
+    void testRecoverFromCommitted(@TempDir File dir) {
+        File file = new File(dir, "t-0.spill");
+        LocalPartition partition = new LocalPartition(new TopicPartition("t", 0), 2, new LocalSpillFile(file), 1024);
+        for (int i = 0; i < 6; i++) {
+            partition.offer(record(String.valueOf(i)));
+        }
+        List<Long> offsets = new ArrayList<>();
+        while (partition.hasPending()) {
+            partition.drain(10, (p, r, offset) -> offsets.add(offset));
+        }
+        //只提交到3，溢出文件中的2、3已提交，4、5已投递未提交
+        partition.commit(offsets.get(3) + 1);
+        partition.close();
+
+        LocalPartition recovered = new LocalPartition(new TopicPartition("t", 0), 2, new LocalSpillFile(file), 1024);
+        List<String> values = new ArrayList<>();
+        while (recovered.hasPending()) {
+            recovered.drain(10, (p, r, offset) -> values.add(new String(r.value, StandardCharsets.UTF_8)));
+        }
+        assertEquals("[4, 5]", values.toString());
+    }
+
+    @DisplayName("test_spillDiscardUncommittedOverLimit")
+    @Test
+    void testSpillDiscardUncommittedOverLimit(@TempDir File dir) {
+        File file = new File(dir, "t-0.spill");
+        LocalPartition partition = new LocalPartition(new TopicPartition("t", 0), 2, new LocalSpillFile(file), 10);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(partition.offer(record(String.valueOf(i))));
+        }
+        while (partition.hasPending()) {
+            partition.drain(10, (p, r, offset) -> { });
+        }
+        //未提交的记录已全部投递，达到上限后丢弃并重新溢出
+        for (int i = 4; i < 8; i++) {
+            assertTrue(partition.offer(record(String.valueOf(i))));
+        }
+        assertEquals(4, partition.backlog());
+    }
+
+    private static LocalRecord record(String value) {
+        return new LocalRecord(null, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
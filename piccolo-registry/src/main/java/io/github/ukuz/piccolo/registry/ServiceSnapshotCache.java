@@ -0,0 +1,231 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.registry;
+
+import io.github.ukuz.piccolo.api.service.discovery.ServiceInstance;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceListener;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceSnapshot;
+import io.github.ukuz.piccolo.common.thread.NamedThreadFactory;
+import io.github.ukuz.piccolo.common.thread.ThreadNames;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 由注册中心的watch事件增量维护的服务实例快照:
+ * 1. lookup直接读取不可变快照，不再访问注册中心
+ * 2. 每次变化生成新的快照并递增版本号
+ * 3. 通知监听器前先合并一段时间内的变化，监听器看到的是两次通知之间的差异，而不是每一条watch事件
+ *
+ * @author ukuz90
+ */
+public class ServiceSnapshotCache<S extends ServiceInstance> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceSnapshotCache.class);
+
+    private static final long DEFAULT_COALESCE_MS = 50;
+
+    private final ConcurrentMap<String, ServiceState> services = new ConcurrentHashMap<>();
+    private final Function<S, Object> revisionOf;
+    private final long coalesceMs;
+    private final ScheduledThreadPoolExecutor notifier;
+
+    /**
+     * @param revisionOf 实例内容的摘要，用于判断同一实例是否发生了更新
+     */
+    public ServiceSnapshotCache(Function<S, Object> revisionOf) {
+        this(revisionOf, DEFAULT_COALESCE_MS);
+    }
+
+    public ServiceSnapshotCache(Function<S, Object> revisionOf, long coalesceMs) {
+        this.revisionOf = revisionOf;
+        this.coalesceMs = coalesceMs;
+        this.notifier = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(ThreadNames.T_DISCOVERY_NOTIFY));
+    }
+
+    /**
+     * @param serviceId
+     * @return 未收到过该服务的任何事件时返回null
+     */
+    public ServiceSnapshot<S> get(String serviceId) {
+        ServiceState state = services.get(serviceId);
+        return state == null ? null : state.snapshot;
+    }
+
+    public void update(String serviceId, S instance) {
+        ServiceState state = stateOf(serviceId);
+        synchronized (state) {
+            S old = state.instances.put(instance.getHostAndPort(), instance);
+            if (old != null && Objects.equals(revisionOf.apply(old), revisionOf.apply(instance))) {
+                return;
+            }
+            state.publish();
+        }
+    }
+
+    public void remove(String serviceId, String hostAndPort) {
+        ServiceState state = stateOf(serviceId);
+        synchronized (state) {
+            if (state.instances.remove(hostAndPort) == null) {
+                return;
+            }
+            state.publish();
+        }
+    }
+
+    /**
+     * 用全量实例替换
+     *
+     * @param serviceId
+     * @param list
+     */
+    public void replace(String serviceId, Collection<S> list) {
+        Map<String, S> instances = new LinkedHashMap<>(list.size());
+        list.forEach(instance -> instances.put(instance.getHostAndPort(), instance));
+        ServiceState state = stateOf(serviceId);
+        synchronized (state) {
+            if (state.snapshot.getVersion() > 0 && sameInstances(state.instances, instances)) {
+                return;
+            }
+            state.instances.clear();
+            state.instances.putAll(instances);
+            state.publish();
+        }
+    }
+
+    public void subscribe(String serviceId, ServiceListener<S> listener) {
+        stateOf(serviceId).listeners.addIfAbsent(listener);
+    }
+
+    public void unsubscribe(String serviceId, ServiceListener<S> listener) {
+        ServiceState state = services.get(serviceId);
+        if (state != null) {
+            state.listeners.remove(listener);
+        }
+    }
+
+    public void destroy() {
+        notifier.shutdownNow();
+    }
+
+    private ServiceState stateOf(String serviceId) {
+        return services.computeIfAbsent(serviceId, ServiceState::new);
+    }
+
+    private boolean sameInstances(Map<String, S> current, Map<String, S> instances) {
+        if (current.size() != instances.size()) {
+            return false;
+        }
+        for (Map.Entry<String, S> entry : instances.entrySet()) {
+            S old = current.get(entry.getKey());
+            if (old == null || !Objects.equals(revisionOf.apply(old), revisionOf.apply(entry.getValue()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final class ServiceState implements Runnable {
+        private final String serviceId;
+        /**
+         * 当前实例，key为host:port，由this保护
+         */
+        private final Map<String, S> instances = new LinkedHashMap<>();
+        private final CopyOnWriteArrayList<ServiceListener<S>> listeners = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean notifyScheduled = new AtomicBoolean();
+        private volatile ServiceSnapshot<S> snapshot;
+        /**
+         * 上一次通知时的实例及其摘要，只在notifier线程中访问
+         */
+        private Map<String, S> notified = new HashMap<>();
+        private Map<String, Object> notifiedRevisions = new HashMap<>();
+
+        ServiceState(String serviceId) {
+            this.serviceId = serviceId;
+            this.snapshot = new ServiceSnapshot<>(serviceId, 0, null);
+        }
+
+        void publish() {
+            snapshot = new ServiceSnapshot<>(serviceId, snapshot.getVersion() + 1, new ArrayList<>(instances.values()));
+            if (notifyScheduled.compareAndSet(false, true)) {
+                try {
+                    notifier.schedule(this, coalesceMs, TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    notifyScheduled.set(false);
+                    LOGGER.warn("schedule service change notify failure, serviceId: {} cause: {}", serviceId, e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            notifyScheduled.set(false);
+            ServiceSnapshot<S> current = snapshot;
+            Map<String, S> latest = new HashMap<>(current.getInstances().size());
+            Map<String, Object> latestRevisions = new HashMap<>(current.getInstances().size());
+            List<S> added = new ArrayList<>();
+            List<S> updated = new ArrayList<>();
+            for (S instance : current.getInstances()) {
+                String key = instance.getHostAndPort();
+                Object revision = revisionOf.apply(instance);
+                latest.put(key, instance);
+                latestRevisions.put(key, revision);
+                if (!notified.containsKey(key)) {
+                    added.add(instance);
+                } else if (!Objects.equals(notifiedRevisions.get(key), revision)) {
+                    updated.add(instance);
+                }
+            }
+            List<S> deleted = new ArrayList<>();
+            notified.forEach((key, instance) -> {
+                if (!latest.containsKey(key)) {
+                    deleted.add(instance);
+                }
+            });
+            notified = latest;
+            notifiedRevisions = latestRevisions;
+
+            if (added.isEmpty() && updated.isEmpty() && deleted.isEmpty()) {
+                return;
+            }
+            LOGGER.info("service changed, serviceId: {} version: {} added: {} updated: {} deleted: {}",
+                    serviceId, current.getVersion(), added.size(), updated.size(), deleted.size());
+            for (ServiceListener<S> listener : listeners) {
+                try {
+                    deleted.forEach(listener::onServiceDeleted);
+                    updated.forEach(listener::onServiceUpdated);
+                    added.forEach(listener::onServiceAdded);
+                } catch (Exception e) {
+                    LOGGER.error("notify service change failure, serviceId: {} listener: {} cause: {}", serviceId, listener, e);
+                }
+            }
+        }
+    }
+}
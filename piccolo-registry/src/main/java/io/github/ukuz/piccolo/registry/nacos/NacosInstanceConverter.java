@@ -20,6 +20,8 @@ import com.alibaba.nacos.api.naming.utils.NamingUtils;
 import io.github.ukuz.piccolo.api.external.common.Assert;
 import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -35,6 +37,9 @@ public final class NacosInstanceConverter {
         final DefaultServiceInstance result = DefaultServiceInstance.build()
                 .host(toOrigintring(instance.getIp()))
                 .port(instance.getPort());
+        if (instance.getMetadata() != null && !instance.getMetadata().isEmpty()) {
+            result.setMetaData(new HashMap<>(instance.getMetadata()));
+        }
 
         Optional.ofNullable(toOrigintring(instance.getServiceName()))
                 .map(NamingUtils::getServiceName)
@@ -48,6 +53,10 @@ public final class NacosInstanceConverter {
         result.setIp(toNacosString(instance.getHost()));
         result.setPort(instance.getPort());
         result.setWeight(1.0);
+        Map<String, String> metaData = instance.getMetaData();
+        if (metaData != null) {
+            result.setMetadata(new HashMap<>(metaData));
+        }
         return result;
     }
 
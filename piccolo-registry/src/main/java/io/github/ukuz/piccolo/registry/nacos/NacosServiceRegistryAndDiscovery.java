@@ -15,7 +15,6 @@
  */
 package io.github.ukuz.piccolo.registry.nacos;
 
-import com.alibaba.nacos.api.naming.pojo.Instance;
 import io.github.ukuz.piccolo.api.PiccoloContext;
 import io.github.ukuz.piccolo.api.config.properties.NacosProperties;
 import io.github.ukuz.piccolo.api.external.common.Assert;
@@ -24,12 +23,16 @@ import io.github.ukuz.piccolo.api.service.ServiceException;
 import io.github.ukuz.piccolo.api.service.ServiceRegistryAndDiscovery;
 import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
 import io.github.ukuz.piccolo.api.service.discovery.ServiceListener;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceSnapshot;
+import io.github.ukuz.piccolo.common.json.Jsons;
 import io.github.ukuz.piccolo.registry.NoAvailableServiceException;
+import io.github.ukuz.piccolo.registry.ServiceSnapshotCache;
 import io.github.ukuz.piccolo.registry.nacos.listener.NacosCacheListener;
 import io.github.ukuz.piccolo.registry.nacos.manager.NacosManager;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -38,6 +41,8 @@ import java.util.stream.Collectors;
 public class NacosServiceRegistryAndDiscovery extends AbstractService implements ServiceRegistryAndDiscovery<DefaultServiceInstance> {
 
     private NacosManager nacosManager;
+    private final ServiceSnapshotCache<DefaultServiceInstance> cache = new ServiceSnapshotCache<>(Jsons::toJson);
+    private final Set<String> watchedServices = ConcurrentHashMap.newKeySet();
 
     @Override
     public void init(PiccoloContext context) throws ServiceException {
@@ -46,28 +51,36 @@ public class NacosServiceRegistryAndDiscovery extends AbstractService implements
         nacosManager.init();
     }
 
+    @Override
+    public void destroy() throws ServiceException {
+        cache.destroy();
+    }
+
     @Override
     public List<DefaultServiceInstance> lookup(String serviceId) {
-        List<Instance> instanceList = nacosManager.getDirectory().getAllHealthyInstances(serviceId);
-        if (instanceList.isEmpty()) {
+        ServiceSnapshot<DefaultServiceInstance> snapshot = snapshot(serviceId);
+        if (snapshot.isEmpty()) {
             throw new NoAvailableServiceException("can not found any available service " + serviceId);
         }
-        return instanceList.stream()
-                .map(NacosInstanceConverter::covert)
-                .collect(Collectors.toList());
+        return snapshot.getInstances();
+    }
+
+    @Override
+    public ServiceSnapshot<DefaultServiceInstance> snapshot(String serviceId) {
+        Assert.notEmptyString(serviceId, "serviceId must not be empty");
+        watch(serviceId);
+        return cache.get(serviceId);
     }
 
     @Override
     public void subscribe(String serviceId, ServiceListener<DefaultServiceInstance> listener) {
-        NacosCacheListener nacosCacheListener = new NacosCacheListener(listener, WATCH_PATH, serviceId);
-        nacosCacheListener.set(lookup(serviceId));
-        nacosManager.getDirectory().subscribeListener(serviceId, nacosCacheListener);
+        watch(serviceId);
+        cache.subscribe(serviceId, listener);
     }
 
     @Override
     public void unsubcribe(String serviceId, ServiceListener<DefaultServiceInstance> listener) {
-        NacosCacheListener nacosCacheListener = new NacosCacheListener(listener, WATCH_PATH, serviceId);
-        nacosManager.getDirectory().unsubscribeListener(serviceId, nacosCacheListener);
+        cache.unsubscribe(serviceId, listener);
     }
 
     @Override
@@ -75,9 +88,13 @@ public class NacosServiceRegistryAndDiscovery extends AbstractService implements
         Assert.notNull(registration, "registration must not be null");
         nacosManager.getDirectory().registerInstance(
                 registration.getServiceId(),
-                registration.getHost(),
-                registration.getPort(),
-                null);
+                NacosInstanceConverter.convert(registration));
+    }
+
+    @Override
+    public void update(DefaultServiceInstance registration) {
+        //nacos对同一ip:port重复注册即为更新实例的元数据
+        registry(registration);
     }
 
     @Override
@@ -89,4 +106,23 @@ public class NacosServiceRegistryAndDiscovery extends AbstractService implements
                 registration.getPort(),
                 null);
     }
+
+    /**
+     * 首次访问某个服务时拉取一次全量实例，之后由nacos的推送维护快照
+     */
+    private void watch(String serviceId) {
+        if (watchedServices.contains(serviceId)) {
+            return;
+        }
+        synchronized (watchedServices) {
+            if (watchedServices.contains(serviceId)) {
+                return;
+            }
+            cache.replace(serviceId, nacosManager.getDirectory().getAllHealthyInstances(serviceId).stream()
+                    .map(NacosInstanceConverter::covert)
+                    .collect(Collectors.toList()));
+            nacosManager.getDirectory().subscribeListener(serviceId, new NacosCacheListener(cache, WATCH_PATH, serviceId));
+            watchedServices.add(serviceId);
+        }
+    }
 }
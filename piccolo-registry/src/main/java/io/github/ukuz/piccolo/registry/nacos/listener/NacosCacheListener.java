@@ -20,35 +20,28 @@ import com.alibaba.nacos.api.naming.listener.EventListener;
 import com.alibaba.nacos.api.naming.listener.NamingEvent;
 import com.alibaba.nacos.api.naming.utils.NamingUtils;
 import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
-import io.github.ukuz.piccolo.api.service.discovery.ServiceListener;
+import io.github.ukuz.piccolo.registry.ServiceSnapshotCache;
 import io.github.ukuz.piccolo.registry.nacos.NacosInstanceConverter;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
+ * 将nacos推送的全量实例同步到{@link ServiceSnapshotCache}，与lookup一致只保留健康的实例
+ *
  * @author ukuz90
  */
 public class NacosCacheListener implements EventListener {
 
-    private final ServiceListener listener;
+    private final ServiceSnapshotCache<DefaultServiceInstance> cache;
     private final String group;
     private final String serviceName;
-    private final Set<DefaultServiceInstance> cache;
 
-    public NacosCacheListener(ServiceListener listener, String group, String serviceName) {
-        this.listener = listener;
+    public NacosCacheListener(ServiceSnapshotCache<DefaultServiceInstance> cache, String group, String serviceName) {
+        this.cache = cache;
         this.group = group;
         this.serviceName = serviceName;
-        cache = new HashSet<>();
-    }
-
-    public void set(List<DefaultServiceInstance> instances) {
-        cache.clear();
-        cache.addAll(instances);
     }
 
     @Override
@@ -57,28 +50,11 @@ public class NacosCacheListener implements EventListener {
             NamingEvent evt = (NamingEvent) event;
             if (NacosInstanceConverter.toNacosString(serviceName).equals(NamingUtils.getServiceName(evt.getServiceName()))) {
 
-                final List<DefaultServiceInstance> newInstances = evt.getInstances().stream()
+                List<DefaultServiceInstance> instances = evt.getInstances().stream()
+                        .filter(instance -> instance.isHealthy() && instance.isEnabled())
                         .map(NacosInstanceConverter::covert)
                         .collect(Collectors.toList());
-
-                List<DefaultServiceInstance> updated = newInstances.stream()
-                        .filter(cache::contains)
-                        .collect(Collectors.toList());
-
-                List<DefaultServiceInstance> added = newInstances.stream()
-                        .filter(instance -> !cache.contains(instance))
-                        .collect(Collectors.toList());
-
-                List<DefaultServiceInstance> removed = cache.stream()
-                        .filter(instance -> !newInstances.contains(instance))
-                        .collect(Collectors.toList());
-
-                updated.forEach(listener::onServiceUpdated);
-                added.forEach(listener::onServiceAdded);
-                removed.forEach(listener::onServiceDeleted);
-
-                cache.clear();
-                cache.addAll(newInstances);
+                cache.replace(serviceName, instances);
 
             }
         }
@@ -77,6 +77,19 @@ public class NacosDirectory {
         }
     }
 
+    public void registerInstance(String serviceName, Instance instance) {
+        Assert.notEmptyString(serviceName, "serviceName must not be empty");
+        Assert.notNull(instance, "instance must not be null");
+        Assert.notEmptyString(instance.getIp(), "ip must not be empty");
+        Assert.isTrue(instance.getPort() > 0, "port must great than 0");
+        serviceName = toNacosString(serviceName);
+        try {
+            namingService.registerInstance(serviceName, group, instance);
+        } catch (NacosException e) {
+            LOGGER.warn("registerInstance failure, err: {}", e.getCause());
+        }
+    }
+
     public void deregisterInstance(String serviceName, String ip, int port, String clusterName) {
         Assert.notEmptyString(serviceName, "serviceName must not be empty");
         Assert.notEmptyString(ip, "ip must not be empty");
@@ -22,8 +22,10 @@ import io.github.ukuz.piccolo.api.service.ServiceException;
 import io.github.ukuz.piccolo.api.service.ServiceRegistryAndDiscovery;
 import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
 import io.github.ukuz.piccolo.api.service.discovery.ServiceListener;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceSnapshot;
 import io.github.ukuz.piccolo.common.json.Jsons;
 import io.github.ukuz.piccolo.registry.NoAvailableServiceException;
+import io.github.ukuz.piccolo.registry.ServiceSnapshotCache;
 import io.github.ukuz.piccolo.registry.zookeeper.listener.ZooKeeperCacheListener;
 import io.github.ukuz.piccolo.registry.zookeeper.manager.ZooKeeperManager;
 import io.github.ukuz.piccolo.registry.zookeeper.properties.ZooKeeperProperties;
@@ -41,11 +43,14 @@ import java.util.stream.Collectors;
 public class ZKServiceRegistryAndDiscovery extends AbstractService implements ServiceRegistryAndDiscovery<DefaultServiceInstance> {
 
     private ZooKeeperManager zkManager;
+    private final ServiceSnapshotCache<DefaultServiceInstance> cache = new ServiceSnapshotCache<>(Jsons::toJson);
+    private final ZooKeeperCacheListener cacheListener = new ZooKeeperCacheListener(WATCH_PATH, cache);
 
     @Override
     public void init(PiccoloContext context) throws ServiceException {
         ZooKeeperProperties prop = context.getProperties(ZooKeeperProperties.class);
         zkManager = new ZooKeeperManager(prop, WATCH_PATH);
+        zkManager.addCacheListener(cacheListener);
         zkManager.init();
     }
 
@@ -59,15 +64,34 @@ public class ZKServiceRegistryAndDiscovery extends AbstractService implements Se
 
     @Override
     public void destroy() throws ServiceException {
+        cache.destroy();
         zkManager.destroy();
     }
 
     @Override
     public List<DefaultServiceInstance> lookup(String serviceId) {
+        ServiceSnapshot<DefaultServiceInstance> snapshot = snapshot(serviceId);
+        if (snapshot.isEmpty()) {
+            throw new NoAvailableServiceException("can not found any available service " + serviceId);
+        }
+        return snapshot.getInstances();
+    }
+
+    @Override
+    public ServiceSnapshot<DefaultServiceInstance> snapshot(String serviceId) {
         Assert.notEmptyString(serviceId, "serviceId must not empty");
+        if (!cacheListener.isInitialized()) {
+            //TreeCache初始化完成前直接访问zk
+            return new ServiceSnapshot<>(serviceId, 0, lookupRemote(serviceId));
+        }
+        ServiceSnapshot<DefaultServiceInstance> snapshot = cache.get(serviceKey(serviceId));
+        return snapshot == null ? new ServiceSnapshot<>(serviceId, 0, null) : snapshot;
+    }
+
+    private List<DefaultServiceInstance> lookupRemote(String serviceId) {
         List<String> childrenKeys = zkManager.getDirectory().getChildrenKeys(serviceId);
         if (childrenKeys.isEmpty()) {
-            throw new NoAvailableServiceException("can not found any available service " + serviceId);
+            return Collections.emptyList();
         }
         return childrenKeys.stream()
                 .map(key -> serviceId + ZKPaths.PATH_SEPARATOR + key)
@@ -82,14 +106,14 @@ public class ZKServiceRegistryAndDiscovery extends AbstractService implements Se
     public void subscribe(String serviceId, ServiceListener<DefaultServiceInstance> listener) {
         Assert.notEmptyString(serviceId, "serviceId must not empty");
         Assert.notNull(listener, "listener must not be null");
-        zkManager.getDirectory().registerListener(new ZooKeeperCacheListener(serviceId, listener));
+        cache.subscribe(serviceKey(serviceId), listener);
     }
 
     @Override
     public void unsubcribe(String serviceId, ServiceListener<DefaultServiceInstance> listener) {
         Assert.notEmptyString(serviceId, "serviceId must not empty");
         Assert.notNull(listener, "listener must not be null");
-        zkManager.getDirectory().unregisterListenr(new ZooKeeperCacheListener(serviceId, listener));
+        cache.unsubscribe(serviceKey(serviceId), listener);
     }
 
     @Override
@@ -102,10 +126,23 @@ public class ZKServiceRegistryAndDiscovery extends AbstractService implements Se
         }
     }
 
+    @Override
+    public void update(DefaultServiceInstance registration) {
+        Assert.notNull(registration, "registration must not be null");
+        zkManager.getDirectory().updateData(registration.getServicePath(), Jsons.toJson(registration));
+    }
+
     @Override
     public void deregistry(DefaultServiceInstance registration) {
         Assert.notNull(registration, "registration must not be null");
         zkManager.getDirectory().removePath(registration.getServicePath());
     }
 
+    /**
+     * 与TreeCache事件中的serviceId保持一致，例如 gateway 和 /gateway 都对应 /gateway
+     */
+    private String serviceKey(String serviceId) {
+        return serviceId.charAt(0) == ZKPaths.PATH_SEPARATOR.charAt(0) ? serviceId : ZKPaths.PATH_SEPARATOR + serviceId;
+    }
+
 }
@@ -17,68 +17,83 @@ package io.github.ukuz.piccolo.registry.zookeeper.listener;
 
 import io.github.ukuz.piccolo.api.external.common.Assert;
 import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
-import io.github.ukuz.piccolo.api.service.discovery.ServiceListener;
 import io.github.ukuz.piccolo.common.json.Jsons;
+import io.github.ukuz.piccolo.registry.ServiceSnapshotCache;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
 import org.apache.curator.framework.recipes.cache.TreeCacheListener;
-
-import java.util.Objects;
+import org.apache.curator.utils.ZKPaths;
 
 /**
+ * 将TreeCache的事件同步到{@link ServiceSnapshotCache}，实例节点的路径为 watchPath/serviceId/host:port
+ *
  * @author ukuz90
  */
 public class ZooKeeperCacheListener implements TreeCacheListener {
 
     private final String watchPath;
-    private final ServiceListener listener;
+    private final ServiceSnapshotCache<DefaultServiceInstance> cache;
+    private volatile boolean initialized;
 
-    public ZooKeeperCacheListener(String watchPath, ServiceListener listener) {
-        Assert.notNull(listener, "listener must not be null");
+    public ZooKeeperCacheListener(String watchPath, ServiceSnapshotCache<DefaultServiceInstance> cache) {
+        Assert.notNull(cache, "cache must not be null");
         Assert.notEmptyString(watchPath, "watchPath must not be empty");
         this.watchPath = watchPath;
-        this.listener = listener;
+        this.cache = cache;
+    }
+
+    /**
+     * TreeCache是否已完成初始化加载
+     *
+     * @return
+     */
+    public boolean isInitialized() {
+        return initialized;
     }
 
     @Override
     public void childEvent(CuratorFramework client, TreeCacheEvent event) throws Exception {
+        if (event.getType() == TreeCacheEvent.Type.INITIALIZED) {
+            initialized = true;
+            return;
+        }
         ChildData data = event.getData();
         if (data == null) {
             return;
         }
         String path = data.getPath();
-        if (path == null || path.isEmpty()) {
+        if (path == null || !path.startsWith(watchPath) || path.length() <= watchPath.length()) {
             return;
         }
-        if (path.startsWith(watchPath)) {
-            switch (event.getType()) {
-                case NODE_ADDED:
-                    listener.onServiceAdded(Jsons.fromJson(data.getData(), DefaultServiceInstance.class));
-                    break;
-                case NODE_REMOVED:
-                    listener.onServiceDeleted(Jsons.fromJson(data.getData(), DefaultServiceInstance.class));
-                    break;
-                case NODE_UPDATED:
-                    listener.onServiceUpdated(Jsons.fromJson(data.getData(), DefaultServiceInstance.class));
-                    break;
-                default:
-                    break;
-            }
+        ZKPaths.PathAndNode pathAndNode = ZKPaths.getPathAndNode(path.substring(watchPath.length()));
+        String serviceId = pathAndNode.getPath();
+        if (ZKPaths.PATH_SEPARATOR.equals(serviceId)) {
+            return;
+        }
+        switch (event.getType()) {
+            case NODE_ADDED:
+            case NODE_UPDATED:
+                DefaultServiceInstance instance = decode(data.getData());
+                if (instance != null) {
+                    cache.update(serviceId, instance);
+                }
+                break;
+            case NODE_REMOVED:
+                cache.remove(serviceId, pathAndNode.getNode());
+                break;
+            default:
+                break;
         }
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) {return true;}
-        if (o == null || getClass() != o.getClass()) {return false;}
-        ZooKeeperCacheListener that = (ZooKeeperCacheListener) o;
-        return Objects.equals(watchPath, that.watchPath) &&
-                Objects.equals(listener, that.listener);
+    private DefaultServiceInstance decode(byte[] data) {
+        if (data == null || data.length == 0 || data[0] != '{') {
+            return null;
+        }
+        DefaultServiceInstance instance = Jsons.fromJson(data, DefaultServiceInstance.class);
+        //忽略服务目录等非实例节点
+        return instance == null || instance.getHost() == null || instance.getPort() <= 0 ? null : instance;
     }
 
-    @Override
-    public int hashCode() {
-        return Objects.hash(watchPath, listener);
-    }
 }
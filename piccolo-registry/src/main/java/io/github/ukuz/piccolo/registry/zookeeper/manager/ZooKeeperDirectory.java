@@ -42,15 +42,15 @@ public class ZooKeeperDirectory implements ConnectionStateListener {
     private Map<String, String> ephemeralSequentialNodes = new LinkedHashMap<>(1);
     private Map<String, String> persistSequentialNodes = new LinkedHashMap<>(4);
     private final String watchPath;
-    private TreeCache localCache;
+    private final TreeCache localCache;
 
     public ZooKeeperDirectory(CuratorFramework client, String watchPath) {
         this.client = client;
         this.watchPath = watchPath;
+        this.localCache = new TreeCache(client, watchPath);
     }
 
     void start() throws Exception {
-        localCache = new TreeCache(client, watchPath);
         localCache.start();
         client.getConnectionStateListenable().addListener(this);
     }
@@ -124,9 +124,7 @@ public class ZooKeeperDirectory implements ConnectionStateListener {
     }
 
     public void stop() {
-        if (localCache != null) {
-            localCache.close();
-        }
+        localCache.close();
     }
 
     public List<String> getChildrenKeys(String path) {
@@ -145,9 +143,6 @@ public class ZooKeeperDirectory implements ConnectionStateListener {
     }
     
     public String getData(String path) {
-        if (localCache == null) {
-            return null;
-        }
         path = getFullPath(path);
         ChildData data = localCache.getCurrentData(path);
         if (data != null) {
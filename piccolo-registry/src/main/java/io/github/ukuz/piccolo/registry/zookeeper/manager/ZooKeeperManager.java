@@ -26,6 +26,7 @@ import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.framework.CuratorFrameworkFactory.Builder;
 import org.apache.curator.framework.api.ACLProvider;
+import org.apache.curator.framework.recipes.cache.TreeCacheListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.zookeeper.ZooDefs;
 import org.apache.zookeeper.data.ACL;
@@ -35,6 +36,7 @@ import org.slf4j.LoggerFactory;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -51,6 +53,10 @@ public final class ZooKeeperManager extends AbstractService {
      */
     private ZooKeeperDirectory directory;
     private final String watchPath;
+    /**
+     * 在TreeCache启动前注册的监听器，保证不会错过初始化加载时的事件
+     */
+    private final List<TreeCacheListener> cacheListeners = new CopyOnWriteArrayList<>();
 
     public ZooKeeperManager(ZooKeeperProperties zkProp, String watchPath) {
         Assert.notNull(zkProp, "zkProperties must not be null.");
@@ -123,6 +129,7 @@ public final class ZooKeeperManager extends AbstractService {
 
     private void initLocalCache(String watchPath) throws Exception {
         directory = new ZooKeeperDirectory(client, watchPath);
+        cacheListeners.forEach(directory::registerListener);
         directory.start();
     }
 
@@ -132,6 +139,11 @@ public final class ZooKeeperManager extends AbstractService {
         client.close();
     }
 
+    public void addCacheListener(TreeCacheListener listener) {
+        Assert.notNull(listener, "listener must not be null.");
+        cacheListeners.add(listener);
+    }
+
     public ZooKeeperDirectory getDirectory() {
         return directory;
     }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.registry;
+
+import io.github.ukuz.piccolo.api.service.discovery.DefaultServiceInstance;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceListener;
+import io.github.ukuz.piccolo.api.service.discovery.ServiceSnapshot;
+import io.github.ukuz.piccolo.common.json.Jsons;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author ukuz90
+ */
+public class ServiceSnapshotCacheTest {
+
+    private final ServiceSnapshotCache<DefaultServiceInstance> cache = new ServiceSnapshotCache<>(Jsons::toJson, 20);
+
+    @AfterEach
+    void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    @DisplayName("test_snapshotVersion")
+    void testSnapshotVersion() {
+        assertNull(cache.get("/gateway"));
+
+        cache.update("/gateway", instance("10.0.0.1", "a"));
+        ServiceSnapshot<DefaultServiceInstance> first = cache.get("/gateway");
+        assertEquals(1, first.getVersion());
+        assertEquals(1, first.getInstances().size());
+
+        //内容未变化不产生新版本
+        cache.update("/gateway", instance("10.0.0.1", "a"));
+        assertSame(first, cache.get("/gateway"));
+        cache.replace("/gateway", Collections.singletonList(instance("10.0.0.1", "a")));
+        assertSame(first, cache.get("/gateway"));
+
+        cache.update("/gateway", instance("10.0.0.2", "a"));
+        cache.remove("/gateway", "10.0.0.1:9000");
+        ServiceSnapshot<DefaultServiceInstance> latest = cache.get("/gateway");
+        assertEquals(3, latest.getVersion());
+        assertEquals("10.0.0.2", latest.getInstances().get(0).getHost());
+        assertEquals(1, first.getInstances().size());
+        assertThrows(UnsupportedOperationException.class, () -> latest.getInstances().clear());
+    }
+
+    @Test
+    @DisplayName("test_coalescedNotify")
+    @SuppressWarnings("unchecked")
+    void testCoalescedNotify() {
+        ServiceListener<DefaultServiceInstance> listener = mock(ServiceListener.class);
+        cache.subscribe("/gateway", listener);
+
+        cache.update("/gateway", instance("10.0.0.1", "a"));
+        cache.update("/gateway", instance("10.0.0.1", "b"));
+        cache.update("/gateway", instance("10.0.0.2", "a"));
+        cache.remove("/gateway", "10.0.0.2:9000");
+        verify(listener, timeout(1000)).onServiceAdded(argThat(i -> "10.0.0.1".equals(i.getHost())));
+
+        cache.replace("/gateway", Arrays.asList(instance("10.0.0.1", "c"), instance("10.0.0.3", "a")));
+        verify(listener, timeout(1000)).onServiceUpdated(argThat(i -> "c".equals(i.getMetaData().get("v"))));
+        verify(listener, timeout(1000)).onServiceAdded(argThat(i -> "10.0.0.3".equals(i.getHost())));
+
+        cache.replace("/gateway", Collections.emptyList());
+        verify(listener, timeout(1000).times(2)).onServiceDeleted(any());
+        verify(listener, times(2)).onServiceAdded(any());
+        verify(listener, times(1)).onServiceUpdated(any());
+    }
+
+    private DefaultServiceInstance instance(String host, String version) {
+        return new DefaultServiceInstance()
+                .serviceId("/gateway")
+                .host(host)
+                .port(9000)
+                .metaData(Collections.singletonMap("v", version));
+    }
+}
@@ -16,6 +16,7 @@
 package io.github.ukuz.piccolo.server;
 
 import io.github.ukuz.piccolo.core.PiccoloServer;
+import io.github.ukuz.piccolo.core.properties.ServerDynamicSettings;
 import io.github.ukuz.piccolo.server.boot.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,6 +77,10 @@ public class ServerLauncher {
          *MQ客户端
          */
         processChain.addLast(new MQClientBoot(server.getMQClient(), server));
+        /**
+         * 上行消息发布，停止时先于MQ客户端发送完剩余批次
+         */
+        processChain.addLast(new UpstreamPublisherBoot(server.getUpstreamPublisher()));
         /**
          * 缓存管理
          */
@@ -84,6 +89,18 @@ public class ServerLauncher {
          * 动态配置
          */
         processChain.addLast(new ConfigCenterBoot(server.getDynamicConfiguration(), server));
+        /**
+         * 快速重连票据密钥，依赖动态配置
+         */
+        processChain.addLast(new ReusableSessionBoot(server.getReusableSessionManager()));
+        /**
+         * 离线消息存储，需要在网关服务之前完成恢复
+         */
+        processChain.addLast(new OfflineStoreBoot(server.getOfflineMessageStore()));
+        /**
+         * ack推送管理，停止时晚于网关服务
+         */
+        processChain.addLast(new PushAckBoot(server.getPushAckManager()));
         /**
          * 网关服务
          */
@@ -104,6 +121,18 @@ public class ServerLauncher {
          *
          */
         processChain.addLast(new RouteLocatorBoot(server.getRouteLocator(), server));
+        /**
+         * 上行消息直连转发
+         */
+        processChain.addLast(new DirectDispatcherBoot(server.getDirectDispatcher()));
+        /**
+         * 网关之间的控制通道
+         */
+        processChain.addLast(new ClusterControlBoot(server.getClusterControlChannel()));
+        /**
+         * 发布节点负载
+         */
+        processChain.addLast(new NodeLoadReportBoot(server.getNodeLoadReporter()));
         /**
          * ID生成器
          */
@@ -112,6 +141,10 @@ public class ServerLauncher {
          * 监控，主要是metrics
          */
         processChain.addLast(new MonitorBoot(server.getMonitor(), server));
+        /**
+         * 运行期间可动态调整的配置，依赖各服务以及线程池启动完成
+         */
+        processChain.addLast(new DynamicSettingsBoot(new ServerDynamicSettings(server)));
         /**
          * bananer图
          */
@@ -22,6 +22,19 @@ public interface BootJob {
 
     default void start() {}
 
+    /**
+     * 停止前的准备阶段，所有BootJob都drain完成后才依次stop
+     */
+    default void drain() {}
+
     default void stop() {}
 
+    /**
+     * 用于启动耗时统计
+     */
+    default String getName() {
+        String name = getClass().getSimpleName();
+        return name.isEmpty() ? getClass().getName() : name;
+    }
+
 }
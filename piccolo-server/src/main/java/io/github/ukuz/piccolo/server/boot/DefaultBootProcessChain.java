@@ -15,11 +15,21 @@
  */
 package io.github.ukuz.piccolo.server.boot;
 
+import io.github.ukuz.piccolo.monitor.MetricsMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author ukuz90
  */
 public class DefaultBootProcessChain implements BootProcessChain {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultBootProcessChain.class);
+    private static final String BOOT_TIME_TAG = "piccolo_boot_time_ms";
+
     private BootJobContext header = newBootJobContext(new EmptyBootJob());
     private BootJobContext tail = newBootJobContext(new EmptyBootJob());
 
@@ -28,18 +38,41 @@ public class DefaultBootProcessChain implements BootProcessChain {
         tail.setPrev(header);
     }
 
+    /**
+     * 依次启动，并统计每个BootJob的启动耗时
+     */
     @Override
     public void start() {
+        Map<String, Long> costs = new LinkedHashMap<>();
+        long begin = System.nanoTime();
         BootJobContext cursor = header;
         while (cursor != null) {
-            cursor.getJob().start();
+            BootJob job = cursor.getJob();
+            if (job instanceof EmptyBootJob) {
+                job.start();
+            } else {
+                long jobBegin = System.nanoTime();
+                job.start();
+                long cost = (System.nanoTime() - jobBegin) / 1000000;
+                costs.merge(job.getName(), cost, Long::sum);
+                LOGGER.info("boot job {} started, cost: {}ms", job.getName(), cost);
+            }
             cursor = cursor.getNext();
         }
+        long total = (System.nanoTime() - begin) / 1000000;
+        costs.forEach((name, cost) -> MetricsMonitor.gaugeWithStrongRef(BOOT_TIME_TAG, "boot", name, () -> cost));
+        MetricsMonitor.gaugeWithStrongRef(BOOT_TIME_TAG, "boot", "total", () -> total);
+        LOGGER.info("boot process chain started, cost: {}ms, jobs: {}", total, costs);
     }
 
     @Override
     public void stop() {
         BootJobContext cursor = tail;
+        while (cursor != null) {
+            cursor.getJob().drain();
+            cursor = cursor.getPrev();
+        }
+        cursor = tail;
         while (cursor != null) {
             cursor.getJob().stop();
             cursor = cursor.getPrev();
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.server.boot;
+
+import io.github.ukuz.piccolo.core.server.NodeLoadReporter;
+
+/**
+ * @author ukuz90
+ */
+public class NodeLoadReportBoot implements BootJob {
+
+    private NodeLoadReporter nodeLoadReporter;
+
+    public NodeLoadReportBoot(NodeLoadReporter nodeLoadReporter) {
+        this.nodeLoadReporter = nodeLoadReporter;
+    }
+
+    @Override
+    public void start() {
+        this.nodeLoadReporter.start();
+    }
+
+    @Override
+    public void drain() {
+        //节点已经从注册中心摘除，不能再通过update重新注册
+        stop();
+    }
+
+    @Override
+    public void stop() {
+        if (this.nodeLoadReporter.isRunning()) {
+            this.nodeLoadReporter.stop();
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.util.concurrent.CompletableFuture;
 public class ServerBoot implements BootJob {
     private NettyServer server;
     private boolean sync;
+    private volatile boolean deregistered;
 
     public ServerBoot(NettyServer server) {
         this(server, false);
@@ -53,17 +54,36 @@ public class ServerBoot implements BootJob {
 
     }
 
+    @Override
+    public String getName() {
+        return "ServerBoot(" + server.getClass().getSimpleName() + ")";
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void drain() {
+        if (!server.isRunning() || !server.isDrainable()) {
+            return;
+        }
+        //先注销，新的客户端不再分配到当前节点
+        if (server.getRegistration() != null) {
+            server.getPiccoloContext().getServiceRegistry().deregistry(server.getRegistration());
+            deregistered = true;
+        }
+        server.drain();
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public void stop() {
         if (sync) {
-            if (server.stop() && server.getRegistration() != null) {
+            if (server.stop() && server.getRegistration() != null && !deregistered) {
                 server.getPiccoloContext().getServiceRegistry().deregistry(server.getRegistration());
             }
         } else {
             CompletableFuture<Boolean> future = server.stopAsync();
             future.whenCompleteAsync((success, throwable) -> {
-                if (success && server.getRegistration() != null) {
+                if (success && server.getRegistration() != null && !deregistered) {
                     server.getPiccoloContext().getServiceRegistry().deregistry(server.getRegistration());
                 }
             });
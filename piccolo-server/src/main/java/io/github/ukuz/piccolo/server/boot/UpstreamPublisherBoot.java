@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 ukuz90
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ukuz.piccolo.server.boot;
+
+import io.github.ukuz.piccolo.core.dispatch.UpstreamPublisher;
+
+/**
+ * 上行消息发布只有停止阶段，需要在MQ客户端关闭之前发送完未满的批次
+ *
+ * @author ukuz90
+ */
+public class UpstreamPublisherBoot implements BootJob {
+
+    private UpstreamPublisher upstreamPublisher;
+
+    public UpstreamPublisherBoot(UpstreamPublisher upstreamPublisher) {
+        this.upstreamPublisher = upstreamPublisher;
+    }
+
+    @Override
+    public void stop() {
+        this.upstreamPublisher.shutdown();
+    }
+}
@@ -19,6 +19,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -63,4 +64,27 @@ class DefaultBootProcessChainTest {
         assertEquals(Integer.valueOf(1), list.get(1));
     }
 
-}
\ No newline at end of file
+    @DisplayName("test_stop_DrainBeforeStop")
+    @Test
+    void testStopDrainBeforeStop() {
+        BootProcessChain processChain = new DefaultBootProcessChain();
+        final List<String> list = new ArrayList<>(4);
+        for (int i = 0; i < 2; i++) {
+            final int tmp = i;
+            processChain.addLast(new BootJob() {
+                @Override
+                public void drain() {
+                    list.add("drain" + tmp);
+                }
+
+                @Override
+                public void stop() {
+                    list.add("stop" + tmp);
+                }
+            });
+        }
+        processChain.stop();
+        assertEquals(Arrays.asList("drain1", "drain0", "stop1", "stop0"), list);
+    }
+
+}
@@ -33,6 +33,7 @@ import io.github.ukuz.piccolo.transport.handler.ClientHandler;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
+import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -114,6 +115,14 @@ public abstract class NettyClient extends AbstractService implements Service {
         return bootstrap.connect(new InetSocketAddress(host, port));
     }
 
+    /**
+     * 连接前给channel设置属性，channelActive时即可读取
+     */
+    public <T> ChannelFuture connect(String host, int port, AttributeKey<T> key, T value) {
+        logger.info("connect host: {} port: {} {}: {}", host, port, key, value);
+        return bootstrap.clone().attr(key, value).connect(new InetSocketAddress(host, port));
+    }
+
     public ChannelFuture connect(String host, int port, Callback callback) {
         logger.info("connect host: {} port: {} callback: {}", host, port, callback);
         ChannelFuture channelFuture = bootstrap.connect(new InetSocketAddress(host, port));
@@ -16,6 +16,7 @@
 package io.github.ukuz.piccolo.transport.codec;
 
 import io.github.ukuz.piccolo.api.connection.Connection;
+import io.github.ukuz.piccolo.api.exchange.support.BaseMessage;
 import io.github.ukuz.piccolo.api.exchange.support.MultiMessage;
 import io.github.ukuz.piccolo.api.exchange.support.PacketToMessageConverter;
 import io.netty.buffer.ByteBuf;
@@ -40,7 +41,7 @@ public class MultiPacketCodec extends MessageToPacketCodec {
     @Override
     public void encode(Connection connection, Object message, ByteBuf out) throws CodecException {
         if (message instanceof MultiMessage) {
-            ((MultiMessage) message).forEach(msg -> super.encode(connection, message, out));
+            ((MultiMessage) message).forEach(msg -> super.encode(connection, msg, out));
         } else {
             super.encode(connection, message, out);
         }
@@ -57,6 +58,10 @@ public class MultiPacketCodec extends MessageToPacketCodec {
                     multiMessage = MultiMessage.create();
                 }
                 multiMessage.addMessage(msg);
+                if (msg instanceof BaseMessage && ((BaseMessage) msg).isCipherBoundary()) {
+                    //后续报文需要等该消息处理完(切换密钥)后再解码
+                    break;
+                }
             } catch (PacketUnknownCodecException | PacketSizeLimitCodecException e) {
                 in.readerIndex(readerIndex);
                 throw e;
@@ -170,6 +170,16 @@ public class NettyConnection implements Connection, ChannelFutureListener {
         lastWriteTime = System.currentTimeMillis();
     }
 
+    @Override
+    public long getLastReadTime() {
+        return lastReadTime;
+    }
+
+    @Override
+    public long getLastWriteTime() {
+        return lastWriteTime;
+    }
+
     @Override
     public String getId() {
         return channel.id().asShortText();
@@ -21,6 +21,8 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelId;
 import io.netty.util.internal.PlatformDependent;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -50,6 +52,11 @@ public class NettyConnectionManager implements ConnectionManager {
         return CONNECTION_MAP.size();
     }
 
+    @Override
+    public List<Connection> getConnections() {
+        return new ArrayList<>(CONNECTION_MAP.values());
+    }
+
     @Override
     public void init() {
 
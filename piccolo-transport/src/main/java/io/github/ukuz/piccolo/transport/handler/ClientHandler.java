@@ -70,12 +70,14 @@ public class ClientHandler extends ChannelDuplexHandler {
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         Connection connection = cxnxManager.getConnection(ctx.channel());
+        connection.updateLastReadTime();
         handler.received(connection, msg);
     }
 
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
         Connection connection = cxnxManager.getConnection(ctx.channel());
+        connection.updateLastWriteTime();
         handler.sent(connection, msg);
         ctx.write(msg, promise);
     }
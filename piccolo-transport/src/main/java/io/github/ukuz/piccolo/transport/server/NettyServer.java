@@ -17,6 +17,7 @@ package io.github.ukuz.piccolo.transport.server;
 
 import io.github.ukuz.piccolo.api.PiccoloContext;
 import io.github.ukuz.piccolo.api.external.common.Assert;
+import io.github.ukuz.piccolo.api.connection.Connection;
 import io.github.ukuz.piccolo.api.connection.ConnectionManager;
 import io.github.ukuz.piccolo.api.exchange.handler.ChannelHandler;
 import io.github.ukuz.piccolo.api.service.AbstractService;
@@ -40,7 +41,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -56,8 +59,13 @@ public abstract class NettyServer extends AbstractService implements Server {
     private ServerHandler serverHandler;
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
+    private volatile Channel serverChannel;
     protected PiccoloContext piccoloContext;
     protected ConnectionManager cxnxManager;
+    /**
+     * 运行期间修改的连接参数，覆盖启动时的childOption
+     */
+    private final Map<ChannelOption<?>, Object> liveChildOptions = new ConcurrentHashMap<>();
 
     private final AtomicReference<State> serverState = new AtomicReference<>(State.Created);
 
@@ -118,6 +126,7 @@ public abstract class NettyServer extends AbstractService implements Server {
         server.childHandler(new ChannelInitializer<Channel>() {
             @Override
             protected void initChannel(Channel ch) {
+                applyLiveChildOptions(ch);
                 initPipeline(ch.pipeline());
             }
         });
@@ -125,6 +134,7 @@ public abstract class NettyServer extends AbstractService implements Server {
         ChannelFuture channelFuture = server.bind(getInetSocketAddress());
         channelFuture.addListener( future ->  {
             if (future.isSuccess()) {
+                serverChannel = channelFuture.channel();
                 doStartComplete((ServerSocketChannel) channelFuture.channel());
                 serverState.set(State.Started);
                 logger.info("server start async success: {}", channelFuture.channel().localAddress().toString().replace("/",""));
@@ -155,6 +165,56 @@ public abstract class NettyServer extends AbstractService implements Server {
         logger.info("{} destroy complete", getName());
     }
 
+    /**
+     * 是否需要在停止前排空连接
+     *
+     * @return
+     */
+    public boolean isDrainable() {
+        return false;
+    }
+
+    /**
+     * 停止前排空连接，从注册中心注销之后调用
+     */
+    public void drain() {
+
+    }
+
+    /**
+     * 关闭监听端口，不再接受新连接，已建立的连接不受影响
+     */
+    protected void stopAccept() {
+        Channel channel = serverChannel;
+        if (channel != null) {
+            channel.close().syncUninterruptibly();
+        }
+    }
+
+    /**
+     * 运行期间修改连接参数，同时作用于已建立的连接和之后接入的连接
+     *
+     * @param option
+     * @param value
+     */
+    public <T> void updateChildOption(ChannelOption<T> option, T value) {
+        Assert.notNull(option, "option must not be null");
+        Assert.notNull(value, "value must not be null");
+        liveChildOptions.put(option, value);
+        int updated = 0;
+        for (Connection connection : cxnxManager.getConnections()) {
+            if (connection.getChannel().config().setOption(option, value)) {
+                updated++;
+            }
+        }
+        logger.info("{} update child option, option: {} value: {} connections: {}", getName(), option, value, updated);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void applyLiveChildOptions(Channel ch) {
+        liveChildOptions.forEach((option, value) -> ch.config().setOption((ChannelOption<Object>) option, value));
+    }
+
     protected void initOptions(ServerBootstrap server) {
         server.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
         server.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
@@ -222,6 +282,10 @@ public abstract class NettyServer extends AbstractService implements Server {
         return null;
     }
 
+    public ConnectionManager getConnectionManager() {
+        return cxnxManager;
+    }
+
     public ServerHandler getServerHandler() {
         return serverHandler;
     }
@@ -18,6 +18,7 @@ package io.github.ukuz.piccolo.transport.codec;
 
 import io.github.ukuz.piccolo.api.connection.Connection;
 import io.github.ukuz.piccolo.api.exchange.protocol.Packet;
+import io.github.ukuz.piccolo.api.exchange.support.BaseMessage;
 import io.github.ukuz.piccolo.api.exchange.support.MultiMessage;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
@@ -126,4 +127,91 @@ class MultiPacketCodecTest {
         assertEquals("Hello,World!", new String(((Packet)msg.get(0)).getPayload()));
         assertEquals("HaHa", new String(((Packet)msg.get(1)).getPayload()));
     }
-}
\ No newline at end of file
+
+    @DisplayName("test_decode_StopAtCipherBoundary")
+    @Test
+    void testDecodeStopAtCipherBoundary() {
+        MultiPacketCodec converterCodec = new MultiPacketCodec((packet, conn) -> new StubMessage(packet.getCmd() == 2));
+        ByteBuf out = PooledByteBufAllocator.DEFAULT.heapBuffer();
+        writePacket(out, 1, "Hello,World!");
+        writePacket(out, 2, "SwitchKey");
+        int remaining = writePacket(out, 1, "Encrypted");
+
+        //切换密钥的报文之后的数据需要等切换完成后再解码
+        MultiMessage msg = (MultiMessage) converterCodec.decode(connection, out);
+        assertEquals(2, msg.size());
+        assertEquals("Hello,World!", new String(((StubMessage) msg.get(0)).packet.getPayload()));
+        assertEquals("SwitchKey", new String(((StubMessage) msg.get(1)).packet.getPayload()));
+        assertEquals(remaining, out.readableBytes());
+
+        msg = (MultiMessage) converterCodec.decode(connection, out);
+        assertEquals(1, msg.size());
+        assertEquals("Encrypted", new String(((StubMessage) msg.get(0)).packet.getPayload()));
+        assertEquals(0, out.readableBytes());
+        out.release();
+    }
+
+    @DisplayName("test_encode")
+    @Test
+    void testEncode() {
+        ByteBuf out = PooledByteBufAllocator.DEFAULT.heapBuffer();
+        codec.encode(connection, MultiMessage.createFromArray(newPacket("Hello,World!"), newPacket("HaHa")), out);
+
+        MultiMessage msg = (MultiMessage) codec.decode(connection, out);
+
+        assertEquals(2, msg.size());
+        assertEquals("Hello,World!", new String(((Packet)msg.get(0)).getPayload()));
+        assertEquals("HaHa", new String(((Packet)msg.get(1)).getPayload()));
+    }
+
+    private int writePacket(ByteBuf out, int cmd, String payload) {
+        int start = out.writerIndex();
+        out.writeByte(0xbc);
+        out.writeByte(0xc0);
+        out.writeByte(cmd);
+        out.writeByte(0);
+        out.writeInt(1);
+        out.writeByte(0);
+        out.writeInt(payload.length());
+        out.writeBytes(payload.getBytes());
+        return out.writerIndex() - start;
+    }
+
+    private Packet newPacket(String payload) {
+        Packet packet = new Packet();
+        packet.setCmd((byte) 1);
+        packet.setSessionId(1);
+        packet.setPayload(payload.getBytes());
+        packet.setLength(packet.getPayload().length);
+        return packet;
+    }
+
+    private static final class StubMessage implements BaseMessage {
+
+        private final boolean cipherBoundary;
+        private Packet packet;
+
+        StubMessage(boolean cipherBoundary) {
+            this.cipherBoundary = cipherBoundary;
+        }
+
+        @Override
+        public void decodeBody(Packet packet) {
+            this.packet = packet;
+        }
+
+        @Override
+        public Packet encodeBody() {
+            return packet;
+        }
+
+        @Override
+        public void setRaw(boolean isRaw) {
+        }
+
+        @Override
+        public boolean isCipherBoundary() {
+            return cipherBoundary;
+        }
+    }
+}